@@ -0,0 +1,55 @@
+library ieee;
+use ieee.std_logic_1164.all;
+
+-- ping and pong instantiate each other until DEPTH runs out
+
+entity ping is
+  generic (DEPTH : natural := 4);
+  port (a : in  std_logic;
+        b : out std_logic);
+end entity ping;
+
+library ieee;
+use ieee.std_logic_1164.all;
+
+entity pong is
+  generic (DEPTH : natural := 4);
+  port (a : in  std_logic;
+        b : out std_logic);
+end entity pong;
+
+architecture rtl of ping is
+begin
+
+  stop : if DEPTH = 0 generate
+    b <= a;
+  end generate stop;
+
+  more : if DEPTH > 0 generate
+    signal s : std_logic;
+  begin
+    s <= not a;
+    p : entity work.pong
+      generic map (DEPTH => DEPTH-1)
+      port map (a => s, b => b);
+  end generate more;
+
+end architecture rtl;
+
+architecture rtl of pong is
+begin
+
+  stop : if DEPTH = 0 generate
+    b <= a;
+  end generate stop;
+
+  more : if DEPTH > 0 generate
+    signal s : std_logic;
+  begin
+    s <= a;
+    p : entity work.ping
+      generic map (DEPTH => DEPTH-1)
+      port map (a => s, b => b);
+  end generate more;
+
+end architecture rtl;
@@ -0,0 +1,28 @@
+library ieee;
+use ieee.std_logic_1164.all;
+
+entity top is
+end entity top;
+
+architecture rtl of top is
+  signal i          : std_logic_vector(31 downto 0) := (others => '0');
+  signal a, b, c, d : std_logic := '0';
+begin
+
+  t : entity work.tree
+    generic map (DEPTH => 5)
+    port map (i => i, o => a);
+
+  p1 : entity work.ping
+    generic map (DEPTH => 6)
+    port map (a => a, b => b);
+
+  p2 : entity work.pong
+    generic map (DEPTH => 6)
+    port map (a => a, b => c);
+
+  p3 : entity work.ping
+    generic map (DEPTH => 5)
+    port map (a => b, b => d);
+
+end architecture rtl;
@@ -0,0 +1,32 @@
+library ieee;
+use ieee.std_logic_1164.all;
+
+-- both subtrees of a node share one signature, so parallel jobs
+-- claim the same modules at the same time
+
+entity tree is
+  generic (DEPTH : natural := 4);
+  port (i : in  std_logic_vector(2**DEPTH-1 downto 0);
+        o : out std_logic);
+end entity tree;
+
+architecture rtl of tree is
+begin
+
+  leaf : if DEPTH = 0 generate
+    o <= i(0);
+  end generate leaf;
+
+  node : if DEPTH > 0 generate
+    signal l, r : std_logic;
+  begin
+    left : entity work.tree
+      generic map (DEPTH => DEPTH-1)
+      port map (i => i(2**(DEPTH-1)-1 downto 0), o => l);
+    right : entity work.tree
+      generic map (DEPTH => DEPTH-1)
+      port map (i => i(2**DEPTH-1 downto 2**(DEPTH-1)), o => r);
+    o <= l xor r;
+  end generate node;
+
+end architecture rtl;
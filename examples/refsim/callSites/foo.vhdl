@@ -0,0 +1,138 @@
+
+-- every builtin call site here runs several times with different operands,
+-- including arrays of different lengths and index ranges, so nothing the
+-- interpreter binds per call site may depend on the first operands it saw
+
+library IEEE;
+use IEEE.STD_LOGIC_1164.ALL;
+
+entity foo is
+end;
+
+architecture RTL of foo is
+
+  procedure check_int(aA, aB : integer; aSum, aProd, aQuot : integer; aLess : boolean) is
+  begin
+    assert aA + aB = aSum report "int + failed";
+    assert aA * aB = aProd report "int * failed";
+    assert aA / aB = aQuot report "int / failed";
+    assert (aA < aB) = aLess report "int < failed";
+    assert -aA + aA = 0 report "int - failed";
+    assert abs aA >= 0 report "int abs failed";
+  end procedure;
+
+  procedure check_bool(aA, aB : boolean; aAnd, aOr, aXor : boolean) is
+  begin
+    assert (aA and aB) = aAnd report "boolean and failed";
+    assert (aA or aB) = aOr report "boolean or failed";
+    assert (aA xor aB) = aXor report "boolean xor failed";
+    assert (not aA) /= aA report "boolean not failed";
+  end procedure;
+
+  procedure check_bit(aA, aB : bit; aAnd, aOr, aXor : bit) is
+  begin
+    assert (aA and aB) = aAnd report "bit and failed";
+    assert (aA or aB) = aOr report "bit or failed";
+    assert (aA xor aB) = aXor report "bit xor failed";
+    assert (not aA) /= aA report "bit not failed";
+  end procedure;
+
+  procedure check_sl(aA, aB : std_logic; aAnd, aOr : std_logic) is
+  begin
+    assert (aA and aB) = aAnd report "std_logic and failed";
+    assert (aA or aB) = aOr report "std_logic or failed";
+    assert (aA = aB) = (std_logic'pos(aA) = std_logic'pos(aB)) report "std_logic = failed";
+  end procedure;
+
+  procedure check_array(aA, aB : bit_vector; aAnd, aConcat : bit_vector; aLess : boolean) is
+    variable c : bit_vector(1 to aA'length + aB'length);
+  begin
+    assert (aA and aB) = aAnd report "bit_vector and failed";
+    assert (not (aA and aB)) = (aA nand aB) report "bit_vector not failed";
+    assert (aA & aB) = aConcat report "bit_vector & failed";
+    c := aA & aB;
+    assert c = aConcat report "bit_vector & assignment failed";
+    assert (aA < aB) = aLess report "bit_vector < failed";
+    assert (aA rol 1) ror 1 = aA report "bit_vector rol/ror failed";
+  end procedure;
+
+  procedure check_slv(aA : std_logic_vector; aConcat : std_logic_vector) is
+  begin
+    assert (aA & '1') = aConcat report "std_logic_vector & failed";
+  end procedure;
+
+  -- the builtins of local_vec have a different return type in every call
+  procedure check_local(aN : positive; aA : bit) is
+    type local_vec is array (1 to aN) of bit;
+    variable v, w : local_vec;
+  begin
+    v := (others => aA);
+    w := not v;
+    assert w = (1 to aN => not aA) report "local not failed";
+    assert (v and w) = (1 to aN => '0') report "local and failed";
+    assert (v or w) = (1 to aN => '1') report "local or failed";
+    assert (v xor w) = (1 to aN => '1') report "local xor failed";
+    assert v /= w report "local /= failed";
+    assert (v = w) = false report "local = failed";
+    w := v sll 1;
+    assert w(aN) = '0' and w(1 to aN - 1) = v(2 to aN) report "local sll failed";
+    w := v ror 1;
+    assert w = v report "local ror failed";
+  end procedure;
+
+begin
+
+  tester : process is
+    variable up : bit_vector(0 to 3) := "1100";
+    variable down : bit_vector(7 downto 4) := "1010";
+    variable s3 : std_logic_vector(2 downto 0) := "01X";
+    variable s5 : std_logic_vector(1 to 5) := "Z1010";
+    variable sum : integer;
+  begin
+
+    check_int(1, 2, 3, 2, 0, true);
+    check_int(-7, 2, -5, -14, -3, true);
+    check_int(100000, -3, 99997, -300000, -33333, false);
+    check_int(integer'high, -1, integer'high - 1, -integer'high, -integer'high, false);
+
+    check_bool(true, true, true, true, false);
+    check_bool(true, false, false, true, true);
+    check_bool(false, false, false, false, false);
+
+    check_bit('1', '1', '1', '1', '0');
+    check_bit('1', '0', '0', '1', '1');
+    check_bit('0', '0', '0', '0', '0');
+
+    check_sl('1', '1', '1', '1');
+    check_sl('0', 'X', '0', 'X');
+    check_sl('1', 'Z', 'X', '1');
+    check_sl('U', '0', '0', 'U');
+
+    check_array(up, down, "1000", "11001010", false);
+    check_array(down, up, "1000", "10101100", true);
+    check_array("10", "11", "10", "1011", true);
+    check_array("111000", "011011", "011000", "111000011011", false);
+    check_array("1", "0", "0", "10", false);
+
+    check_slv(s3, "01X1");
+    check_slv(s5, "Z10101");
+
+    check_local(1, '0');
+    check_local(3, '1');
+    check_local(20, '0');
+    check_local(5, '1');
+
+    -- the same call sites in a loop
+    sum := 0;
+    for i in -3 to 3 loop
+      sum := sum + i * i;
+      check_bool(i < 0, i > 0, false, i /= 0, i /= 0);
+      down := down rol 1;
+    end loop;
+    assert sum = 28 report "loop sum failed";
+    assert down = "0101" report "loop rol failed";
+
+    wait;
+  end process tester;
+
+end;
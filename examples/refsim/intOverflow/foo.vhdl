@@ -0,0 +1,122 @@
+
+-- integer arithmetic on both sides of the 64 bit boundary, results that
+-- do not fit into a long have to come out exactly the same
+
+entity foo is
+end;
+
+architecture RTL of foo is
+
+  type huge is range -2**200 to 2**200;
+
+  constant TWO : huge := 2;
+
+  constant THREE : huge := 3;
+
+  -- VHDL division, rem and mod of aA by aB
+  procedure check_div(aA, aB : huge) is
+    variable q, r, m : huge;
+  begin
+    q := aA / aB;
+    r := aA rem aB;
+    m := aA mod aB;
+
+    assert q * aB + r = aA report "a = (a / b) * b + a rem b failed";
+    assert abs r < abs aB report "abs (a rem b) < abs b failed";
+    assert r = 0 or (r < 0) = (aA < 0) report "a rem b has the sign of a failed";
+
+    assert abs m < abs aB report "abs (a mod b) < abs b failed";
+    assert m = 0 or (m < 0) = (aB < 0) report "a mod b has the sign of b failed";
+    assert (aA - m) rem aB = 0 report "(a - a mod b) rem b = 0 failed";
+  end procedure;
+
+begin
+
+  tester : process is
+    variable max, min, big : huge;
+  begin
+
+    max := TWO**62 - 1 + TWO**62;
+    min := -max - 1;
+    big := TWO**64 + 3;
+
+    -- + and -
+    assert max + 1 = TWO**63 report "max + 1 failed";
+    assert (max + 1) - 1 = max report "(max + 1) - 1 failed";
+    assert min - 1 = -(TWO**63) - 1 report "min - 1 failed";
+    assert min + max = -1 report "min + max failed";
+    assert max - min = TWO**64 - 1 report "max - min failed";
+
+    -- *
+    assert max * 2 = TWO**64 - 2 report "max * 2 failed";
+    assert min * (-1) = TWO**63 report "min * -1 failed";
+    assert min * min = TWO**126 report "min * min failed";
+    assert (TWO**32) * (TWO**31) = TWO**63 report "2**32 * 2**31 failed";
+
+    -- /
+    assert min / (-1) = TWO**63 report "min / -1 failed";
+    assert TWO**64 / 2 = TWO**63 report "2**64 / 2 failed";
+    assert TWO**64 / TWO**63 = 2 report "2**64 / 2**63 failed";
+    assert max / min = 0 report "max / min failed";
+    assert min / max = -1 report "min / max failed";
+
+    -- abs and negation
+    assert abs min = TWO**63 report "abs min failed";
+    assert -min = TWO**63 report "-min failed";
+    assert -(-min) = min report "-(-min) failed";
+    assert abs (-(TWO**63)) = TWO**63 report "abs -2**63 failed";
+    assert abs max = max report "abs max failed";
+
+    -- **
+    assert TWO**63 - 1 = max report "2**63 - 1 failed";
+    assert TWO**64 = (TWO**32) * (TWO**32) report "2**64 failed";
+    assert THREE**40 = (THREE**20) * (THREE**20) report "3**40 failed";
+    assert (-TWO)**63 = min report "(-2)**63 failed";
+    assert (-TWO)**64 = TWO**64 report "(-2)**64 failed";
+
+    -- mod and rem, small
+    assert 7 rem 3 = 1 report "7 rem 3 failed";
+    assert (-7) rem 3 = -1 report "-7 rem 3 failed";
+    assert 7 rem (-3) = 1 report "7 rem -3 failed";
+    assert (-7) rem (-3) = -1 report "-7 rem -3 failed";
+    assert 7 mod 3 = 1 report "7 mod 3 failed";
+    assert (-7) mod 3 = 2 report "-7 mod 3 failed";
+    assert 7 mod (-3) = -2 report "7 mod -3 failed";
+    assert (-7) mod (-3) = -1 report "-7 mod -3 failed";
+
+    -- mod and rem at the boundary
+    assert min rem THREE = -2 report "min rem 3 failed";
+    assert min mod THREE = 1 report "min mod 3 failed";
+    assert max mod (-THREE) = -2 report "max mod -3 failed";
+    assert min rem (-1) = 0 report "min rem -1 failed";
+    assert min mod (-1) = 0 report "min mod -1 failed";
+    assert max mod min = -1 report "max mod min failed";
+    assert min mod max = max - 1 report "min mod max failed";
+    assert (max + 1) mod (-THREE) = -1 report "(max + 1) mod -3 failed";
+    assert (min - 1) rem THREE = 0 report "(min - 1) rem 3 failed";
+
+    check_div(7, 3);
+    check_div(-7, 3);
+    check_div(7, -3);
+    check_div(-7, -3);
+    check_div(max, 3);
+    check_div(max, -3);
+    check_div(min, 3);
+    check_div(min, -3);
+    check_div(min, -1);
+    check_div(max, min);
+    check_div(min, max);
+    check_div(max + 1, -3);
+    check_div(min - 1, 3);
+    check_div(big, 7);
+    check_div(-big, 7);
+    check_div(big, -7);
+    check_div(-big, -7);
+    check_div(max, big);
+    check_div(min, -big);
+    check_div(big * big, -big + 1);
+
+    wait;
+  end process tester;
+
+end;
@@ -0,0 +1,265 @@
+
+-- array builtins on bit, boolean and std_logic vectors, checked against
+-- element by element reference implementations, so the results have to
+-- be the same with and without packed arrays. The relational operators
+-- on arrays of different lengths end up in COMPARES, which the test
+-- compares between runs. The *_RES signals hold concrete results, left to
+-- right, which the test checks against fixed values.
+
+library IEEE;
+use IEEE.STD_LOGIC_1164.ALL;
+
+entity foo is
+end;
+
+architecture RTL of foo is
+
+  type bool_vector is array (natural range <>) of boolean;
+
+  type shift_op is (op_sll, op_srl, op_sla, op_sra, op_rol, op_ror);
+
+  -- the initial values of these are computed during elaboration
+  constant C5 : bit_vector(4 downto 0) := "10110";
+  constant C37 : bit_vector(0 to 36) := "1011001110001111000011111000000111111";
+  constant CB : bool_vector(0 to 2) := (true, false, true);
+  constant CS : std_logic_vector(3 downto 0) := "10XZ";
+  constant A5 : bit_vector(0 to 4) := "10110";
+  constant B5 : bit_vector(1 to 5) := "11100";
+  constant A3 : bit_vector(7 to 9) := "011";
+  constant D2 : bit_vector(10 downto 9) := "10";
+
+  -- sll/srl/sla/sra/rol/ror of aL by aN, one element at a time
+  function ref_shift(aL : bit_vector; aOp : shift_op; aN : integer) return bit_vector is
+    constant len : natural := aL'length;
+    variable a : bit_vector(1 to len) := aL;
+    variable res : bit_vector(1 to len);
+    variable n, j : integer;
+    variable fill : bit;
+  begin
+    if len = 0 then
+      return res;
+    end if;
+    n := aN;
+    if aOp = op_srl or aOp = op_sra or aOp = op_ror then
+      n := -n;
+    end if;
+    -- from here on n > 0 shifts to the left
+    fill := '0';
+    if aOp = op_sla or aOp = op_sra then
+      if n >= 0 then
+        fill := a(len);
+      else
+        fill := a(1);
+      end if;
+    end if;
+    for i in 1 to len loop
+      j := i + n;
+      if aOp = op_rol or aOp = op_ror then
+        res(i) := a(((j - 1) mod len) + 1);
+      elsif j >= 1 and j <= len then
+        res(i) := a(j);
+      else
+        res(i) := fill;
+      end if;
+    end loop;
+    return res;
+  end function;
+
+  function shift(aL : bit_vector; aOp : shift_op; aN : integer) return bit_vector is
+  begin
+    if aOp = op_sll then
+      return aL sll aN;
+    elsif aOp = op_srl then
+      return aL srl aN;
+    elsif aOp = op_sla then
+      return aL sla aN;
+    elsif aOp = op_sra then
+      return aL sra aN;
+    elsif aOp = op_rol then
+      return aL rol aN;
+    end if;
+    return aL ror aN;
+  end function;
+
+  procedure check_shift(aL : bit_vector; aOp : shift_op; aN : integer) is
+    variable res, ref : bit_vector(1 to aL'length);
+  begin
+    res := shift(aL, aOp, aN);
+    ref := ref_shift(aL, aOp, aN);
+    assert res = ref report shift_op'image(aOp) & " " & integer'image(aN) & " failed";
+  end procedure;
+
+  procedure check_shifts(aL : bit_vector) is
+  begin
+    for n in -aL'length - 3 to aL'length + 3 loop
+      check_shift(aL, op_sll, n);
+      check_shift(aL, op_srl, n);
+      check_shift(aL, op_sla, n);
+      check_shift(aL, op_sra, n);
+      check_shift(aL, op_rol, n);
+      check_shift(aL, op_ror, n);
+    end loop;
+  end procedure;
+
+  procedure check_logic(aA, aB : bit_vector) is
+    alias a : bit_vector(1 to aA'length) is aA;
+    alias b : bit_vector(1 to aB'length) is aB;
+    variable n, x, o, y : bit_vector(1 to aA'length);
+  begin
+    for i in 1 to aA'length loop
+      n(i) := not a(i);
+      x(i) := a(i) and b(i);
+      o(i) := a(i) or b(i);
+      y(i) := a(i) xor b(i);
+    end loop;
+    assert (not aA) = n report "not failed";
+    assert (aA and aB) = x report "and failed";
+    assert (aA nand aB) = not x report "nand failed";
+    assert (aA or aB) = o report "or failed";
+    assert (aA nor aB) = not o report "nor failed";
+    assert (aA xor aB) = y report "xor failed";
+    assert (aA xnor aB) = not y report "xnor failed";
+  end procedure;
+
+  function to_bit(aB : boolean) return bit is
+  begin
+    if aB then
+      return '1';
+    end if;
+    return '0';
+  end function;
+
+  -- =, /=, <, <=, >, >= of aA and aB
+  function compare_bits(aA, aB : bit_vector) return bit_vector is
+    variable res : bit_vector(0 to 5);
+  begin
+    res(0) := to_bit(aA = aB);
+    res(1) := to_bit(aA /= aB);
+    res(2) := to_bit(aA < aB);
+    res(3) := to_bit(aA <= aB);
+    res(4) := to_bit(aA > aB);
+    res(5) := to_bit(aA >= aB);
+    return res;
+  end function;
+
+  signal compares : bit_vector(0 to 77);
+
+  signal logic_res : bit_vector(0 to 39);
+  signal bool_res : bool_vector(0 to 11);
+  signal std_logic_res : std_logic_vector(0 to 15);
+  signal sll_res, srl_res, sla_res, sra_res, rol_res, ror_res : bit_vector(0 to 19);
+  signal concat_res : bit_vector(0 to 38);
+
+begin
+
+  tester : process is
+    variable v5 : bit_vector(4 downto 0);
+    variable v37 : bit_vector(0 to 36);
+    variable v42 : bit_vector(41 downto 0);
+    variable b : bool_vector(0 to 2);
+    variable s : std_logic_vector(3 downto 0);
+    variable s8 : std_logic_vector(7 downto 0);
+    variable nul : bit_vector(1 to 0);
+  begin
+
+    v5 := C5;
+    v37 := C37;
+
+    -- not/and/or/xor
+    assert not C5 = "01001" report "not C5 failed";
+    assert (C5 and "11100") = "10100" report "C5 and failed";
+    assert (C5 or "00001") = "10111" report "C5 or failed";
+    assert (C5 xor "11111") = "01001" report "C5 xor failed";
+    assert (C5 nand "11111") = "01001" report "C5 nand failed";
+    assert (C5 nor "00000") = "01001" report "C5 nor failed";
+    assert (C5 xnor "00000") = "01001" report "C5 xnor failed";
+    for i in 0 to 4 loop
+      v5 := v5 xor C5;
+      check_logic(v5, C5);
+      v5 := not v5 rol i;
+    end loop;
+    check_logic(C37, C37 ror 5);
+    check_logic(nul, nul);
+
+    b := not CB;
+    assert b = (false, true, false) report "not bool failed";
+    assert (CB and b) = (false, false, false) report "and bool failed";
+    assert (CB or b) = (true, true, true) report "or bool failed";
+    assert (CB xor (true, true, false)) = (false, true, true) report "xor bool failed";
+
+    s := CS;
+    assert (not s) = "01XX" report "not std_logic failed";
+    assert (s and "1101") = "100X" report "and std_logic failed";
+    assert (s or "0010") = "101X" report "or std_logic failed";
+    assert (s xor "1111") = "01XX" report "xor std_logic failed";
+
+    -- shifts and rotates, every distance from well below to well above the length
+    assert (C5 sll 0) = C5 report "sll 0 failed";
+    assert (C5 sll 1) = "01100" report "sll 1 failed";
+    assert (C5 sll -1) = "01011" report "sll -1 failed";
+    assert (C5 srl 7) = "00000" report "srl 7 failed";
+    assert (C5 sra 1) = "11011" report "sra 1 failed";
+    assert (C5 sla -1) = "11011" report "sla -1 failed";
+    assert (C5 sra 9) = "11111" report "sra 9 failed";
+    assert (C5 rol 7) = "11010" report "rol 7 failed";
+    assert (C5 ror -2) = "11010" report "ror -2 failed";
+    assert (C5 rol -12) = "10101" report "rol -12 failed";
+    check_shifts(C5);
+    check_shifts(v37);
+    check_shifts(not v37);
+    check_shifts("1");
+    check_shifts(nul);
+    assert (CB sll 1) = (false, true, false) report "sll bool failed";
+    assert (CB ror 1) = (true, true, false) report "ror bool failed";
+
+    -- concatenation of vectors and single elements
+    v42 := C5 & v37;
+    assert v42(41 downto 37) = C5 report "C5 & v37 high failed";
+    assert v42(36 downto 0) = C37 report "C5 & v37 low failed";
+    v42 := '1' & (not C37) & "0110";
+    assert v42 = '1' & (not C37) & '0' & '1' & '1' & '0' report "concat elements failed";
+    assert v42(40 downto 4) = not C37 report "concat middle failed";
+    assert C5 & nul = C5 report "C5 & null failed";
+    assert nul & C5 = C5 report "null & C5 failed";
+    assert (C5 & '1') = "101101" report "C5 & '1' failed";
+    assert ('0' & C5) = "010110" report "'0' & C5 failed";
+    assert (CB & true) = (true, false, true, true) report "bool & element failed";
+    s8 := CS & s;
+    assert s8 = "10XZ10XZ" report "std_logic concat failed";
+    assert (CS & '1') = "10XZ1" report "std_logic & element failed";
+
+    -- compare, arrays of different lengths
+    assert not (bit_vector'("10") = "100") report "10 = 100 failed";
+    assert bit_vector'("1") /= "10" report "1 /= 10 failed";
+    assert nul = "" report "null = null failed";
+    assert not (CS = "10X") report "std_logic = shorter failed";
+    assert CB /= (true, false) report "bool /= shorter failed";
+    compares <= compare_bits(C5, "10110") & compare_bits(C5, "1011") & compare_bits(C5, "101101")
+                & compare_bits(C5, "11") & compare_bits(C5, nul) & compare_bits(nul, C5)
+                & compare_bits(C37, C5) & compare_bits(C5, C37) & compare_bits(C37(0 to 4), C5)
+                & compare_bits(C37, C37(0 to 35)) & compare_bits(C37(0 to 35), C37)
+                & compare_bits(v5, C37(1 to 3))
+                & to_bit(CS > "10X") & to_bit(CS < "10X") & to_bit("0X" < std_logic_vector'("01"))
+                & to_bit(CS <= "10XZ0") & to_bit(CS >= "0") & to_bit(std_logic_vector'("1") < CS);
+
+    -- concrete values, descending, ascending and offset operands
+    logic_res <= (not C5) & (not B5) & (C5 and B5) & (C5 or B5) & (C5 xor B5)
+                 & (C5 nand B5) & (C5 nor B5) & (C5 xnor B5);
+    bool_res <= (not CB) & (CB and (false, true, false)) & (CB or (false, true, false))
+                & (CB xor (true, true, false));
+    std_logic_res <= (not CS) & (CS and "1101") & (CS or "0010") & (CS xor "1111");
+
+    sll_res <= (C5 sll 1) & (A5 sll 1) & (A5 sll -1) & (A5 sll 7);
+    srl_res <= (C5 srl 2) & (A5 srl 2) & (A5 srl -2) & (C5 srl -9);
+    sla_res <= (C5 sla 1) & (A5 sla -1) & ((not A5) sla 2) & (A5 sla 8);
+    sra_res <= (C5 sra 1) & (A5 sra 1) & (A5 sra -2) & (A5 sra 9);
+    rol_res <= (C5 rol 2) & (A5 rol 2) & (A5 rol -1) & (A5 rol 12);
+    ror_res <= (C5 ror 1) & (A5 ror 1) & (A5 ror -1) & (C5 ror -13);
+
+    concat_res <= (C5 & A5) & (D2 & A3) & (A3 & D2) & ('1' & A3) & (A3 & '0')
+                  & (C37(3 to 6) & C5(2 downto 0)) & (C5(1 downto 0) & C37(35 to 36));
+
+    wait;
+  end process tester;
+
+end;
@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -117,6 +118,7 @@ public class BuildPath implements Serializable {
 
 	public void clean() {
 		fEntries = new ArrayList<BuildPathEntry>();
+		fEntryIndex = null;
 		fVars = new HashMapArray<String, BPVar>();
 		fToplevels = new ArrayList<Toplevel>();
 		fSynthTLs = new ArrayList<Toplevel>();
@@ -668,6 +670,9 @@ public class BuildPath implements Serializable {
 
 		computeCanonicalPaths();
 
+		// prefixes have changed
+		fEntryIndex = null;
+
 		checkIsValid();
 	}
 
@@ -881,36 +886,151 @@ public class BuildPath implements Serializable {
 		return fEntries.get(aIdx);
 	}
 
-	public BuildPathEntry findEntry(SourceFile aSF) {
+	/**
+	 * Prefix trie over the entries of one kind (local or extern). Entries
+	 * match by plain string prefix like they always did, so the trie is
+	 * keyed by characters rather than path segments.
+	 */
+	private static class PrefixTrie {
 
-		String path = aSF.getLocalPath();
-		if (path != null) {
-			// local
-			int n = getNumEntries();
-			for (int i = 0; i < n; i++) {
-				BuildPathEntry entry = getEntry(i);
-				if (!entry.fExtern) {
-					String p1 = new File(path).getPath() + File.separator;
-					String p2 = entry.fPrefix;
-					if (p1.startsWith(p2))
-						return entry;
+		private static class Node {
+
+			private char[] fKeys = new char[0];
+
+			private Node[] fChildren = new Node[0];
+
+			// lowest index of an entry whose prefix ends here, -1 if none
+			private int fEntryIdx = -1;
+
+			private Node getChild(char aC) {
+				for (int i = 0; i < fKeys.length; i++) {
+					if (fKeys[i] == aC) {
+						return fChildren[i];
+					}
 				}
+				return null;
 			}
-		} else {
-			// FIXME: canonical path?
-			path = aSF.getAbsolutePath();
 
-			int n = getNumEntries();
+			private Node getOrCreateChild(char aC) {
+				Node child = getChild(aC);
+				if (child == null) {
+					int n = fKeys.length;
+					char[] keys = new char[n + 1];
+					Node[] children = new Node[n + 1];
+					System.arraycopy(fKeys, 0, keys, 0, n);
+					System.arraycopy(fChildren, 0, children, 0, n);
+					child = new Node();
+					keys[n] = aC;
+					children[n] = child;
+					fKeys = keys;
+					fChildren = children;
+				}
+				return child;
+			}
+		}
+
+		private final Node fRoot = new Node();
+
+		void add(String aPrefix, int aIdx) {
+			Node node = fRoot;
+			int n = aPrefix.length();
+			for (int i = 0; i < n; i++) {
+				node = node.getOrCreateChild(aPrefix.charAt(i));
+			}
+			if (node.fEntryIdx < 0) {
+				node.fEntryIdx = aIdx;
+			}
+		}
+
+		/**
+		 * @return lowest index of an entry aPath starts with, -1 if none
+		 */
+		int find(String aPath) {
+			Node node = fRoot;
+			int best = node.fEntryIdx;
+			int n = aPath.length();
 			for (int i = 0; i < n; i++) {
-				BuildPathEntry entry = getEntry(i);
-				if (entry.fExtern) {
-					if (path.startsWith(entry.fPrefix))
-						return entry;
+				node = node.getChild(aPath.charAt(i));
+				if (node == null) {
+					break;
+				}
+				int idx = node.fEntryIdx;
+				if (idx >= 0 && (best < 0 || idx < best)) {
+					best = idx;
 				}
 			}
+			return best;
 		}
+	}
 
-		return fDefaultEntry;
+	/**
+	 * findEntry() lookup structures for one state of fEntries, plus the
+	 * results for paths already looked up.
+	 */
+	private static class EntryIndex {
+
+		private final ArrayList<BuildPathEntry> fEntries;
+
+		private final int fNumEntries;
+
+		private final PrefixTrie fLocal = new PrefixTrie(), fExtern = new PrefixTrie();
+
+		private final ConcurrentHashMap<String, BuildPathEntry> fLocalMemo = new ConcurrentHashMap<String, BuildPathEntry>(),
+				fExternMemo = new ConcurrentHashMap<String, BuildPathEntry>();
+
+		EntryIndex(ArrayList<BuildPathEntry> aEntries) {
+			fEntries = aEntries;
+			fNumEntries = aEntries.size();
+			for (int i = 0; i < fNumEntries; i++) {
+				BuildPathEntry entry = aEntries.get(i);
+				if (entry.fPrefix != null) {
+					(entry.fExtern ? fExtern : fLocal).add(entry.fPrefix, i);
+				}
+			}
+		}
+
+		boolean isValidFor(ArrayList<BuildPathEntry> aEntries) {
+			return aEntries == fEntries && aEntries.size() == fNumEntries;
+		}
+	}
+
+	private transient volatile EntryIndex fEntryIndex;
+
+	private EntryIndex getEntryIndex() {
+		EntryIndex index = fEntryIndex;
+		if (index == null || !index.isValidFor(fEntries)) {
+			index = new EntryIndex(fEntries);
+			fEntryIndex = index;
+		}
+		return index;
+	}
+
+	public BuildPathEntry findEntry(SourceFile aSF) {
+
+		EntryIndex index = getEntryIndex();
+
+		String path = aSF.getLocalPath();
+		if (path != null) {
+			// local
+			BuildPathEntry entry = index.fLocalMemo.get(path);
+			if (entry == null) {
+				int idx = index.fLocal.find(new File(path).getPath() + File.separator);
+				entry = idx >= 0 ? index.fEntries.get(idx) : fDefaultEntry;
+				index.fLocalMemo.put(path, entry);
+			}
+			return entry;
+		}
+
+		// FIXME: canonical path?
+		path = aSF.getAbsolutePath();
+
+		BuildPathEntry entry = index.fExternMemo.get(path);
+		if (entry == null) {
+			int idx = index.fExtern.find(path);
+			entry = idx >= 0 ? index.fEntries.get(idx) : fDefaultEntry;
+			index.fExternMemo.put(path, entry);
+		}
+		return entry;
 	}
 
 	public int getNumToplevels() {
@@ -11,9 +11,13 @@ package org.zamia;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedList;
 
 import org.zamia.ZamiaException.ExCat;
+import org.zamia.instgraph.IGContainer;
 import org.zamia.instgraph.interpreter.IGInterpreterContext;
 import org.zamia.util.HashSetArray;
 import org.zamia.vhdl.VHDLIndexer;
@@ -23,6 +27,7 @@ import org.zamia.vhdl.ast.DMUID.LUType;
 import org.zamia.vhdl.ast.Entity;
 import org.zamia.vhdl.ast.Library;
 import org.zamia.vhdl.ast.VHDLPackage;
+import org.zamia.vhdl.vhdl2008.VHDL2008Parser;
 import org.zamia.zdb.ZDB;
 
 /**
@@ -41,6 +46,10 @@ public class DMManager {
 
 	private final static FSCache fsCache = FSCache.getInstance();
 
+	private final static ZamiaMetrics.Histogram parseTimer = ZamiaMetrics.getInstance().timer("zamia_parse_file_seconds", "Time spent parsing a source file", "file");
+
+	private final static ZamiaMetrics.Counter parseCacheHits = ZamiaMetrics.getInstance().counter("zamia_parse_cache_hits_total", "Source files whose cached parse result was used");
+
 	// uid -> DesignUnitStub, result of indexing
 	private static final String STUBS_IDX = "DUM_StubsIdx";
 
@@ -50,6 +59,24 @@ public class DMManager {
 	// id -> Library, library management
 	private static final String LIB_IDX = "DUM_LibIdx";
 
+	// path, library id of the bundled standard libraries
+	static final String[][] STD_LIBS = {
+			{ "vhdl/standard.vhdl", "STD" },
+			{ "vhdl/textio.vhdl", "STD" },
+			{ "vhdl/std_logic_1164.vhdl", "IEEE" },
+			{ "vhdl/std_logic_arith.vhdl", "IEEE" },
+			{ "vhdl/std_logic_misc.vhdl", "IEEE" },
+			{ "vhdl/std_logic_signed.vhdl", "IEEE" },
+			{ "vhdl/std_logic_unsigned.vhdl", "IEEE" },
+			{ "vhdl/std_logic_textio.vhdl", "IEEE" },
+			{ "vhdl/numeric_std.vhdl", "IEEE" },
+			{ "vhdl/numeric_bit.vhdl", "IEEE" },
+			{ "vhdl/vital_primitives.vhdl", "IEEE" },
+			{ "vhdl/vital_primitives_body.vhdl", "IEEE" },
+			{ "vhdl/vital_timing.vhdl", "IEEE" },
+			{ "vhdl/vital_timing_body.vhdl", "IEEE" },
+			{ "vhdl/mathpack.vhdl", "IEEE" } };
+
 	private final ZamiaProject fZPrj;
 
 	private final ZDB fZDB;
@@ -77,9 +104,34 @@ public class DMManager {
 
 	private IDesignModule fWantedDM;
 
+	// design modules handed over by the parser in compileFile() on the current thread
+	private final ThreadLocal<ArrayList<ParsedDM>> fParsed = new ThreadLocal<ArrayList<ParsedDM>>();
+
+	private final LinkedList<IHDLParser> fVHDLParserPool = new LinkedList<IHDLParser>();
+
+	private static class ParsedDM {
+
+		final IDesignModule fDM;
+
+		final SourceFile fSF;
+
+		final String fLibId;
+
+		final int fPriority;
+
+		final boolean fUseFSCache;
+
+		ParsedDM(IDesignModule aDM, SourceFile aSF, String aLibId, int aPriority, boolean aUseFSCache) {
+			fDM = aDM;
+			fSF = aSF;
+			fLibId = aLibId;
+			fPriority = aPriority;
+			fUseFSCache = aUseFSCache;
+		}
+	}
+
 	private String fWantedUID;
 
-	@SuppressWarnings("unchecked")
 	public DMManager(ZamiaProject aZPrj) throws IOException, ZamiaException {
 		fZPrj = aZPrj;
 		fZDB = fZPrj.getZDB();
@@ -87,7 +139,17 @@ public class DMManager {
 		fVHDLIndexer = fZPrj.getVHDLIndexer();
 		fVHDLParser = fZPrj.getVHDLParser();
 		fVerilogParser = fZPrj.getVerilogParser();
+		fVHDLParserPool.add(fVHDLParser);
+
+		init();
+	}
 
+	/*
+	 * pick up what the ZDB has (from a previous session or a std lib snapshot), create the rest
+	 */
+
+	@SuppressWarnings("unchecked")
+	private void init() throws IOException, ZamiaException {
 		fGlobalPackageContext = (IGInterpreterContext) fZDB.getNamedObject(PKGCONTEXT_OBJ_NAME);
 		if (fGlobalPackageContext == null) {
 			fGlobalPackageContext = new IGInterpreterContext();
@@ -109,15 +171,12 @@ public class DMManager {
 		indexStdLibs();
 	}
 
+	/**
+	 * Called right after the ZDB has been cleared.
+	 */
 	public synchronized void clean() throws IOException, ZamiaException {
-		fGlobalPackageContext = new IGInterpreterContext();
-		fZDB.createNamedObject(PKGCONTEXT_OBJ_NAME, fGlobalPackageContext);
-		fSFMap = new HashMap<String, SFDMInfo>();
-		fZDB.createNamedObject(SFMAP_OBJ_NAME, fSFMap);
-		fEA = new HashMap<String, HashSetArray<DMUID>>();
-		fZDB.createNamedObject(EA_OBJ_NAME, fEA);
-
-		indexStdLibs();
+		IGContainer.invalidateResolveCaches();
+		init();
 	}
 
 	public SFDMInfo compileFile(SourceFile aSF, Reader aReader) throws IOException, ZamiaException {
@@ -143,14 +202,73 @@ public class DMManager {
 		return compileFile(aSF, aReader, libId, priority, bottomUp, useFSCache, true);
 	}
 
-	public synchronized SFDMInfo compileFile(SourceFile aSF, Reader aReader, String aLibId, int aPriority, boolean aBottomUp, boolean aUseFSCache, boolean aUseDUCache)
+	public SFDMInfo compileFile(SourceFile aSF, Reader aReader, String aLibId, int aPriority, boolean aBottomUp, boolean aUseFSCache, boolean aUseDUCache)
+			throws IOException, ZamiaException {
+		return parseFile(aSF, aReader, aLibId, aPriority, aBottomUp, aUseFSCache, aUseDUCache).commit();
+	}
+
+	/**
+	 * Result of parseFile() that has not been registered yet.
+	 */
+	public final class ParsedFile {
+
+		private final SourceFile fSF;
+
+		private final SFDMInfo fOldInfo;
+
+		private final HashSetArray<DMUID> fDUUIDs;
+
+		private final ArrayList<ParsedDM> fDMs;
+
+		private final int fPriority;
+
+		private final boolean fUseFSCache;
+
+		private final String fDigest;
+
+		private ParsedFile(SourceFile aSF, SFDMInfo aOldInfo, HashSetArray<DMUID> aDUUIDs, ArrayList<ParsedDM> aDMs, int aPriority, boolean aUseFSCache, String aDigest) {
+			fSF = aSF;
+			fOldInfo = aOldInfo;
+			fDUUIDs = aDUUIDs;
+			fDMs = aDMs;
+			fPriority = aPriority;
+			fUseFSCache = aUseFSCache;
+			fDigest = aDigest;
+		}
+
+		private ParsedFile(SFDMInfo aInfo) {
+			this(null, aInfo, null, null, 0, false, null);
+		}
+
+		/**
+		 * Replace the stubs of the source file by what the parser produced.
+		 */
+		public SFDMInfo commit() throws ZamiaException {
+			if (fDMs == null) {
+				return fOldInfo;
+			}
+			return commitFile(fSF, fOldInfo, fDUUIDs, fDMs, fPriority, fUseFSCache, fDigest);
+		}
+	}
+
+	/**
+	 * Parsing runs without holding the DMManager lock so several files can
+	 * be parsed concurrently. Design modules the parser hands over via
+	 * addDesignUnit() are collected per thread and registered in one short
+	 * synchronized step by ParsedFile.commit(). Callers parsing several files
+	 * at once commit them in a fixed order, addStub() lets the last of
+	 * several equal-priority stubs win.
+	 */
+	public ParsedFile parseFile(SourceFile aSF, Reader aReader, String aLibId, int aPriority, boolean aBottomUp, boolean aUseFSCache, boolean aUseDUCache)
 			throws IOException, ZamiaException {
 
 		String filename = aSF.getAbsolutePath();
 
 		SFDMInfo info = null;
 		if (aUseDUCache) {
-			info = fSFMap.get(filename);
+			synchronized (this) {
+				info = fSFMap.get(filename);
+			}
 			if (info != null) {
 
 				boolean upToDate = true;
@@ -164,7 +282,7 @@ public class DMManager {
 
 				if (upToDate) {
 					//logger.info("DMManager: Not running parser for " + aSF + " because we have cached the result.");
-					return info;
+					return new ParsedFile(info);
 				}
 			}
 		}
@@ -174,73 +292,159 @@ public class DMManager {
 		// keep old info in case compilation fails
 		SFDMInfo oldInfo = info;
 
-		removeStubs(aSF);
-		fERM.removeErrors(aSF, ExCat.FRONTEND);
-		fERM.removeErrors(aSF, ExCat.INTERMEDIATE);
+		String libId = aLibId;
+		int priority = aPriority;
+		if (libId == null) {
 
-		IHDLParser compiler = getCompiler(aSF);
+			BuildPathEntry entry = fZPrj.getBuildPath().findEntry(aSF);
+			if (entry != null) {
+				libId = entry.fLibId;
+				priority = entry.fPriority;
+			} else {
+				libId = "WORK";
+			}
 
-		if (compiler == null)
-			return null;
+		}
 
-		int oldNErrors = fERM.getNumErrors();
-		Reader reader = null;
-		HashSetArray<DMUID> duuids = null;
-		try {
-			reader = aReader;
-			if (reader == null) {
-				reader = fsCache.openFile(aSF, aUseFSCache);
+		// content digest, files whose text has not changed are not parsed again
+		SourceText text = null;
+		String key = null;
+		if (libId != null && aSF.getFormat() == SourceFile.FORMAT_VHDL) {
+			if (aReader != null) {
+				try {
+					text = SourceText.read(aReader);
+				} finally {
+					aReader.close();
+				}
+			} else {
+				text = fsCache.openText(aSF, aUseFSCache);
 			}
 
-			String libId = aLibId;
-			int priority = aPriority;
-			if (libId == null) {
+			if (ParseCache.isCacheable(aSF)) {
+				key = ParseCache.getKey(text, libId, aBottomUp, aSF);
 
-				BuildPathEntry entry = fZPrj.getBuildPath().findEntry(aSF);
-				if (entry != null) {
-					libId = entry.fLibId;
-					priority = entry.fPriority;
-				} else {
-					libId = "WORK";
+				if (oldInfo != null && key.equals(oldInfo.getDigest())) {
+					synchronized (this) {
+						oldInfo.touch();
+					}
+					return new ParsedFile(oldInfo);
 				}
-
 			}
+		}
+
+		fERM.removeErrors(aSF, ExCat.FRONTEND);
+		fERM.removeErrors(aSF, ExCat.INTERMEDIATE);
+
+		IHDLParser compiler = acquireCompiler(aSF);
 
-			if (libId == null) {
-				logger.debug("DMManager: Not parsing '%s' because we have a 'none' bp entry.", aSF);
-				return new SFDMInfo();
+		if (compiler == null) {
+			removeStubs(aSF);
+			return new ParsedFile(null);
+		}
+
+		if (libId == null) {
+			releaseCompiler(compiler);
+			logger.debug("DMManager: Not parsing '%s' because we have a 'none' bp entry.", aSF);
+			removeStubs(aSF);
+			return new ParsedFile(new SFDMInfo());
+		}
+
+		HashSetArray<DMUID> duuids = null;
+		ArrayList<ParsedDM> parsed = new ArrayList<ParsedDM>();
+
+		ParseCache.Entry cached = key != null ? ParseCache.load(key, aSF, fZDB) : null;
+		if (cached != null) {
+			releaseCompiler(compiler);
+			logger.info("DMManager: Using cached parse result for '%s' => Library '%s'", aSF, libId);
+			parseCacheHits.add(1);
+
+			for (IDesignModule dm : cached.fDMs) {
+				parsed.add(new ParsedDM(dm, aSF, libId, priority, aUseFSCache));
 			}
+			duuids = cached.fDUUIDs;
+			aSF.setNumLines(cached.fNumLines);
+			aSF.setNumChars(cached.fNumChars);
+
+			return new ParsedFile(aSF, oldInfo, duuids, parsed, aPriority, aUseFSCache, key);
+		}
+
+		int oldNErrors = fERM.getNumErrors(aSF);
+		Reader reader = null;
+		ArrayList<ParsedDM> outerParsed = fParsed.get();
+		fParsed.set(parsed);
+		ZamiaMetrics.Span span = parseTimer.start(aSF.getAbsolutePath());
+		try {
 			logger.info("DMManager: Parsing '%s' => Library '%s'", aSF, libId);
 
-			duuids = compiler.parse(reader, libId, aSF, priority, aUseFSCache, aBottomUp, fZPrj);
+			if (text != null) {
+				// acquireCompiler() hands out VHDL2008Parsers for VHDL files
+				duuids = ((VHDL2008Parser) compiler).parse(text, libId, aSF, priority, aUseFSCache, aBottomUp, fZPrj);
+			} else {
+				reader = aReader != null ? aReader : fsCache.openFile(aSF, aUseFSCache);
+				duuids = compiler.parse(reader, libId, aSF, priority, aUseFSCache, aBottomUp, fZPrj);
+			}
 		} catch (IOException e) {
 			el.logException(e);
 		} finally {
+			span.stop();
+			if (outerParsed != null) {
+				fParsed.set(outerParsed);
+			} else {
+				fParsed.remove();
+			}
+			releaseCompiler(compiler);
 			if (reader != null) {
 				reader.close();
 			}
 		}
 
-		int newNErrors = fERM.getNumErrors();
+		int newNErrors = fERM.getNumErrors(aSF);
 		if (newNErrors > oldNErrors) {
 			logger.error("DMManager: %d errors found while parsing '%s'", newNErrors - oldNErrors, aSF.getAbsolutePath());
 		}
 
-		if (oldInfo != null) {
-			if (duuids == null || duuids.size() == 0) {
-				// io error occured, 
-				// restore old stub information
-				for (DMUID duuid : oldInfo) {
-					addDesignUnitSource(duuid, aSF, aPriority, aUseFSCache);
-				}
-			} else {
-				info = new SFDMInfo(duuids);
+		// files with errors are parsed again so the errors get reported
+		if (key != null && newNErrors == oldNErrors && duuids != null && duuids.size() > 0) {
+			ArrayList<IDesignModule> dms = new ArrayList<IDesignModule>(parsed.size());
+			for (ParsedDM p : parsed) {
+				dms.add(p.fDM);
 			}
+			ParseCache.store(key, new ParseCache.Entry(dms, duuids, aSF.getNumLines(), aSF.getNumChars()));
 		} else {
-			info = new SFDMInfo(duuids);
+			key = null;
 		}
 
-		return info;
+		return new ParsedFile(aSF, oldInfo, duuids, parsed, aPriority, aUseFSCache, key);
+	}
+
+	/*
+	 * serialized part of parseFile(): replace the stubs of aSF by what the parser produced
+	 */
+
+	private synchronized SFDMInfo commitFile(SourceFile aSF, SFDMInfo aOldInfo, HashSetArray<DMUID> aDUUIDs, ArrayList<ParsedDM> aParsed, int aPriority, boolean aUseFSCache,
+			String aDigest) throws ZamiaException {
+
+		removeStubs(aSF);
+
+		for (ParsedDM p : aParsed) {
+			registerDesignUnit(p.fDM, p.fSF, p.fLibId, p.fPriority, p.fUseFSCache);
+		}
+
+		SFDMInfo info = fSFMap.get(aSF.getAbsolutePath());
+		if (info != null) {
+			info.setDigest(aDigest);
+		}
+
+		if (aOldInfo != null && (aDUUIDs == null || aDUUIDs.size() == 0)) {
+			// io error occured, 
+			// restore old stub information
+			for (DMUID duuid : aOldInfo) {
+				addDesignUnitSource(duuid, aSF, aPriority, aUseFSCache);
+			}
+			return aOldInfo;
+		}
+
+		return new SFDMInfo(aDUUIDs);
 	}
 
 	public synchronized void indexFile(SourceFile aSF, String aLibId, int aPriority, boolean aUseFSCache) throws IOException, ZamiaException {
@@ -263,14 +467,7 @@ public class DMManager {
 		}
 
 		if (libId != null) {
-			Reader reader = fsCache.openFile(aSF, aUseFSCache);
-			try {
-				fVHDLIndexer.parse(reader, libId, aSF, priority, aUseFSCache, true, this);
-			} finally {
-				if (reader != null) {
-					reader.close();
-				}
-			}
+			fVHDLIndexer.parse(fsCache.openText(aSF, aUseFSCache), libId, aSF, priority, aUseFSCache, true, this);
 		}
 	}
 
@@ -298,29 +495,46 @@ public class DMManager {
 
 	private void indexStdLibs() throws IOException, ZamiaException {
 
+		if (StdLibSnapshot.isRestored(fZDB)) {
+			logger.debug("DMManager: std libs come from a snapshot, not indexing them.");
+			return;
+		}
+
 		long startTime = System.currentTimeMillis();
 
-		indexStdLib("vhdl/standard.vhdl", "STD");
-		indexStdLib("vhdl/textio.vhdl", "STD");
-		indexStdLib("vhdl/std_logic_1164.vhdl", "IEEE");
-		indexStdLib("vhdl/std_logic_arith.vhdl", "IEEE");
-		indexStdLib("vhdl/std_logic_misc.vhdl", "IEEE");
-		indexStdLib("vhdl/std_logic_signed.vhdl", "IEEE");
-		indexStdLib("vhdl/std_logic_unsigned.vhdl", "IEEE");
-		indexStdLib("vhdl/std_logic_textio.vhdl", "IEEE");
-		indexStdLib("vhdl/numeric_std.vhdl", "IEEE");
-		indexStdLib("vhdl/numeric_bit.vhdl", "IEEE");
-		indexStdLib("vhdl/vital_primitives.vhdl", "IEEE");
-		indexStdLib("vhdl/vital_primitives_body.vhdl", "IEEE");
-		indexStdLib("vhdl/vital_timing.vhdl", "IEEE");
-		indexStdLib("vhdl/vital_timing_body.vhdl", "IEEE");
-		indexStdLib("vhdl/mathpack.vhdl", "IEEE");
+		for (String[] stdLib : STD_LIBS) {
+			indexStdLib(stdLib[0], stdLib[1]);
+		}
 
 		long endTime = System.currentTimeMillis() - startTime;
 
 		logger.debug("DMManager: compiling std libs took %dms", endTime);
 	}
 
+	/*
+	 * parsers keep per-file state, concurrent compileFile() calls need one VHDL parser each
+	 */
+
+	private IHDLParser acquireCompiler(SourceFile aSF) {
+		if (aSF.getFormat() != SourceFile.FORMAT_VHDL) {
+			return getCompiler(aSF);
+		}
+		synchronized (fVHDLParserPool) {
+			if (!fVHDLParserPool.isEmpty()) {
+				return fVHDLParserPool.remove();
+			}
+		}
+		return new VHDL2008Parser();
+	}
+
+	private void releaseCompiler(IHDLParser aCompiler) {
+		if (aCompiler instanceof VHDL2008Parser) {
+			synchronized (fVHDLParserPool) {
+				fVHDLParserPool.add(aCompiler);
+			}
+		}
+	}
+
 	public IHDLParser getCompiler(SourceFile aSF) {
 		IHDLParser compiler;
 		switch (aSF.getFormat()) {
@@ -356,6 +570,8 @@ public class DMManager {
 				fZDB.delIdxObj(DM_IDX, uid);
 				// FIXME: remove from EA_IDX ?
 			}
+			// hasDM() answers are part of cached resolve results
+			IGContainer.invalidateResolveCaches();
 			fSFMap.remove(filename);
 		}
 
@@ -375,7 +591,18 @@ public class DMManager {
 
 	}
 
-	public synchronized void addDesignUnit(IDesignModule aDM, SourceFile aSF, String aLibId, int aPriority, boolean aUseFSCache) throws ZamiaException {
+	public void addDesignUnit(IDesignModule aDM, SourceFile aSF, String aLibId, int aPriority, boolean aUseFSCache) throws ZamiaException {
+
+		ArrayList<ParsedDM> parsed = fParsed.get();
+		if (parsed != null) {
+			parsed.add(new ParsedDM(aDM, aSF, aLibId, aPriority, aUseFSCache));
+			return;
+		}
+
+		registerDesignUnit(aDM, aSF, aLibId, aPriority, aUseFSCache);
+	}
+
+	private synchronized void registerDesignUnit(IDesignModule aDM, SourceFile aSF, String aLibId, int aPriority, boolean aUseFSCache) throws ZamiaException {
 
 		DMUID duuid = aDM.getDMUID(aLibId);
 
@@ -393,24 +620,44 @@ public class DMManager {
 	}
 
 	public synchronized void addDesignUnitSource(DMUID aDUUID, SourceFile aSF, int aPriority, boolean aReadonly) {
+		addStub(new DesignModuleStub(aDUUID, aSF, aPriority, aReadonly));
+	}
 
-		Library lib = getLibrary(aDUUID.getLibId());
-		lib.add(aDUUID);
+	/**
+	 * Replace the stubs of aSFs by aStubs in one go, used to merge the
+	 * results of (concurrent) indexing.
+	 */
+	public synchronized void addStubs(Collection<SourceFile> aSFs, Collection<DesignModuleStub> aStubs) {
+		for (SourceFile sf : aSFs) {
+			removeStubs(sf);
+		}
+		for (DesignModuleStub stub : aStubs) {
+			addStub(stub);
+		}
+	}
+
+	private void addStub(DesignModuleStub aStub) {
 
-		String uid = aDUUID.getUID();
+		DMUID duuid = aStub.getDUUID();
+		SourceFile sf = aStub.getSourceFile();
 
-		logger.debug("DMManager: Adding DU source for %s: '%s', uuid is '%s'", aDUUID.toString(), aSF, uid);
+		Library lib = getLibrary(duuid.getLibId());
+		lib.add(duuid);
+
+		String uid = duuid.getUID();
+
+		logger.debug("DMManager: Adding DU source for %s: '%s', uuid is '%s'", duuid.toString(), sf, uid);
 
 		DesignModuleStub oldstub = (DesignModuleStub) fZDB.getIdxObj(STUBS_IDX, uid);
-		if (oldstub != null && oldstub.getPriority() > aPriority) {
+		if (oldstub != null && oldstub.getPriority() > aStub.getPriority()) {
 			logger.info("DMManager: Already got a higher-priority stub for " + uid + ": " + oldstub.getSourceFile());
 			return;
 		}
 
-		DesignModuleStub stub = new DesignModuleStub(aDUUID, aSF, aPriority, aReadonly);
-		fZDB.putIdxObj(STUBS_IDX, uid, stub);
+		fZDB.putIdxObj(STUBS_IDX, uid, aStub);
+		IGContainer.invalidateResolveCaches();
 
-		String filename = aSF.getAbsolutePath();
+		String filename = sf.getAbsolutePath();
 		SFDMInfo info = fSFMap.get(filename);
 		if (info == null) {
 			info = new SFDMInfo();
@@ -418,20 +665,20 @@ public class DMManager {
 		} else {
 			info.touch();
 		}
-		info.add(aDUUID);
+		info.add(duuid);
 
-		if (aDUUID.getType() == LUType.Architecture) {
+		if (duuid.getType() == LUType.Architecture) {
 
-			String entityId = aDUUID.getId();
+			String entityId = duuid.getId();
 
-			String entityUID = aDUUID.getLibId() + "_#_entity_#_" + entityId;
+			String entityUID = duuid.getLibId() + "_#_entity_#_" + entityId;
 
 			HashSetArray<DMUID> archs = fEA.get(entityUID);
 			if (archs == null) {
 				archs = new HashSetArray<DMUID>();
 				fEA.put(entityUID, archs);
 			}
-			archs.add(aDUUID);
+			archs.add(duuid);
 		}
 	}
 
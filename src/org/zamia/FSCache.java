@@ -20,7 +20,21 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -43,6 +57,10 @@ import org.zamia.util.ZamiaTmpDir;
  * implementation - operations can be canceled - can be invalidated completely /
  * partially
  * 
+ * Stats and file stubs are additionally kept in memory as long as a
+ * WatchService tells us about changes to the directories they live in, so
+ * repeated lookups during builds cost a hash lookup only.
+ * 
  * @author Guenter Bartsch
  * 
  */
@@ -76,8 +94,108 @@ public class FSCache {
 
 	public final static ExceptionLogger el = ExceptionLogger.getInstance();
 
+	// max number of stats/stubs kept in memory (each)
+	public static int MEM_CACHE_SIZE = 65536;
+
+	public static boolean ENABLE_WATCHER = true;
+
+	static {
+		MEM_CACHE_SIZE = Utils.getEnvInt("ZAMIA_FS_CACHE_MEM_SIZE", MEM_CACHE_SIZE);
+		ENABLE_WATCHER = Utils.getEnvBool("ZAMIA_FS_CACHE_WATCH", ENABLE_WATCHER);
+	}
+
 	private static FSCache instance = null;
 
+	static class MemEntry<T> {
+		final String fAbsPath;
+
+		final T fValue;
+
+		MemEntry(String aAbsPath, T aValue) {
+			fAbsPath = aAbsPath;
+			fValue = aValue;
+		}
+	}
+
+	/**
+	 * In-memory entries keyed by the path as passed in by the caller, plus a
+	 * sorted index by absolute path so invalidating a path (or a whole
+	 * subtree) only touches the entries below it.
+	 */
+	static class MemCache<T> {
+
+		private final ConcurrentHashMap<String, MemEntry<T>> fEntries = new ConcurrentHashMap<String, MemEntry<T>>();
+
+		// absolute path + '\0' + caller path -> caller path
+		private final ConcurrentSkipListMap<String, String> fByAbsPath = new ConcurrentSkipListMap<String, String>();
+
+		private static String absKey(String aAbsPath, String aPath) {
+			return aAbsPath + '\0' + aPath;
+		}
+
+		MemEntry<T> get(String aPath) {
+			return fEntries.get(aPath);
+		}
+
+		int size() {
+			return fEntries.size();
+		}
+
+		void put(String aPath, MemEntry<T> aEntry) {
+			MemEntry<T> old = fEntries.put(aPath, aEntry);
+			if (old != null && !old.fAbsPath.equals(aEntry.fAbsPath)) {
+				fByAbsPath.remove(absKey(old.fAbsPath, aPath));
+			}
+			fByAbsPath.put(absKey(aEntry.fAbsPath, aPath), aPath);
+		}
+
+		void remove(String aPath) {
+			MemEntry<T> entry = fEntries.remove(aPath);
+			if (entry != null) {
+				fByAbsPath.remove(absKey(entry.fAbsPath, aPath));
+			}
+		}
+
+		/**
+		 * Drop about aN entries, no particular order.
+		 */
+		void evict(int aN) {
+			int n = aN;
+			for (Iterator<String> it = fEntries.keySet().iterator(); it.hasNext() && n-- > 0;) {
+				remove(it.next());
+			}
+		}
+
+		/**
+		 * Remove the entries for aAbsPath (and below it if aRecursive is
+		 * set) and add them to aRemoved.
+		 */
+		void forget(String aAbsPath, boolean aRecursive, ArrayList<MemEntry<T>> aRemoved) {
+			forgetRange(aAbsPath + '\0', aAbsPath + '\1', aRemoved);
+			if (aRecursive) {
+				forgetRange(aAbsPath + File.separatorChar, aAbsPath + (char) (File.separatorChar + 1), aRemoved);
+			}
+		}
+
+		private void forgetRange(String aFrom, String aTo, ArrayList<MemEntry<T>> aRemoved) {
+			for (Iterator<Map.Entry<String, String>> it = fByAbsPath.subMap(aFrom, aTo).entrySet().iterator(); it.hasNext();) {
+				Map.Entry<String, String> e = it.next();
+				it.remove();
+				String path = e.getValue();
+				MemEntry<T> entry = fEntries.get(path);
+				// the caller path may have been re-added for another absolute path meanwhile
+				if (entry != null && e.getKey().equals(absKey(entry.fAbsPath, path)) && fEntries.remove(path, entry)) {
+					aRemoved.add(entry);
+				}
+			}
+		}
+
+		void clear() {
+			fEntries.clear();
+			fByAbsPath.clear();
+		}
+	}
+
 	private File fFileCacheDir, fStatCacheDir;
 
 	private String fFileCacheDirStr, fStatCacheDirStr;
@@ -90,6 +208,18 @@ public class FSCache {
 
 	private boolean fEnabled = false;
 
+	private final MemCache<FileStat> fStatMem = new MemCache<FileStat>();
+
+	private final MemCache<FileStub> fStubMem = new MemCache<FileStub>();
+
+	// bumped on every invalidation, entries validated across a bump are not kept
+	private final AtomicLong fGeneration = new AtomicLong();
+
+	// null if the in-memory cache is disabled
+	private WatchService fWatchService;
+
+	private final ConcurrentHashMap<Path, WatchKey> fWatchedDirs = new ConcurrentHashMap<Path, WatchKey>();
+
 	private FSCache() {
 
 		String override = System.getenv("ZAMIA_FS_CACHE");
@@ -117,6 +247,10 @@ public class FSCache {
 		fStatsLock = new ReentrantLock();
 		fValidatingStats = new HashSet<String>();
 		fStatValidatedCond = fStatsLock.newCondition();
+
+		if (fEnabled && ENABLE_WATCHER) {
+			startWatcher();
+		}
 	}
 
 	private void fixDirPerms(File aDir) {
@@ -133,8 +267,145 @@ public class FSCache {
 		return instance;
 	}
 
+	/********************************************************************************
+	 * 
+	 * 
+	 * in-memory cache part
+	 * 
+	 * 
+	 ********************************************************************************/
+
+	private void startWatcher() {
+		try {
+			WatchService ws = FileSystems.getDefault().newWatchService();
+			// polling implementations report changes seconds late, the memory cache would serve stale data meanwhile
+			if (ws.getClass().getName().contains("Polling")) {
+				logger.info("FSCache: no native file system notifications, in-memory cache disabled.");
+				ws.close();
+				return;
+			}
+			fWatchService = ws;
+		} catch (Throwable t) {
+			el.logException(t);
+			return;
+		}
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "FSCache watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void watch() {
+		while (true) {
+			WatchKey key;
+			try {
+				key = fWatchService.take();
+			} catch (InterruptedException e) {
+				continue;
+			} catch (ClosedWatchServiceException e) {
+				return;
+			}
+
+			Path dir = (Path) key.watchable();
+			String dirStr = dir.toString();
+
+			for (WatchEvent<?> event : key.pollEvents()) {
+				WatchEvent.Kind<?> kind = event.kind();
+				if (kind == StandardWatchEventKinds.OVERFLOW) {
+					forget(dirStr, true, false);
+				} else {
+					boolean refresh = kind != StandardWatchEventKinds.ENTRY_DELETE;
+					forget(dir.resolve((Path) event.context()).toString(), false, refresh);
+					forget(dirStr, false, kind == StandardWatchEventKinds.ENTRY_CREATE);
+				}
+			}
+
+			if (!key.reset()) {
+				fWatchedDirs.remove(dir, key);
+				forget(dirStr, true, false);
+			}
+		}
+	}
+
+	/**
+	 * Make sure changes in aDir are reported.
+	 * 
+	 * @return 0 if aDir cannot be watched, 1 if it already was, 2 if it is
+	 *         watched from now on
+	 */
+	private int watchDir(String aDir) {
+		if (aDir == null) {
+			return 0;
+		}
+		try {
+			Path dir = Paths.get(aDir);
+			if (fWatchedDirs.containsKey(dir)) {
+				return 1;
+			}
+			WatchKey key = dir.register(fWatchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			fWatchedDirs.put(dir, key);
+			return 2;
+		} catch (Throwable t) {
+			// non-existent dir, out of inotify watches, ...
+			return 0;
+		}
+	}
+
+	private <T> void remember(MemCache<T> aMem, String aPath, String aAbsPath, T aValue, long aGeneration) {
+		if (aMem.size() >= MEM_CACHE_SIZE) {
+			aMem.evict(MEM_CACHE_SIZE / 4);
+		}
+		aMem.put(aPath, new MemEntry<T>(aAbsPath, aValue));
+		if (fGeneration.get() != aGeneration) {
+			aMem.remove(aPath);
+		}
+	}
+
+	/**
+	 * Drop in-memory cache entries for aAbsPath (and everything below it if
+	 * aRecursive is set). With aRefresh the on-disk entries go as well so the
+	 * next lookup sees the new state; otherwise (deleted files) the on-disk
+	 * entries stay available for offline use, just like before.
+	 */
+	private void forget(String aAbsPath, boolean aRecursive, boolean aRefresh) {
+		fGeneration.incrementAndGet();
+
+		ArrayList<MemEntry<FileStat>> stats = new ArrayList<MemEntry<FileStat>>();
+		fStatMem.forget(aAbsPath, aRecursive, stats);
+		ArrayList<MemEntry<FileStub>> stubs = new ArrayList<MemEntry<FileStub>>();
+		fStubMem.forget(aAbsPath, aRecursive, stubs);
+
+		if (aRefresh) {
+			for (MemEntry<FileStat> entry : stats) {
+				entry.fValue.discard();
+			}
+			for (MemEntry<FileStub> entry : stubs) {
+				entry.fValue.discard();
+			}
+		}
+
+		// the path may have been looked up before it was watched
+		if (aRefresh) {
+			new FileStat(aAbsPath, fStatCacheDirStr).discard();
+			new FileStub(aAbsPath, fFileCacheDirStr).discard();
+		}
+	}
+
+	private void forgetAll() {
+		fGeneration.incrementAndGet();
+		fStatMem.clear();
+		fStubMem.clear();
+	}
+
 	public void invalidate(String aPathPrefix) {
 
+		forgetAll();
+
 		fStatsLock.lock();
 		try {
 			while (!fValidatingStats.isEmpty()) {
@@ -241,7 +512,10 @@ public class FSCache {
 			logger.error("FSCache.list: Invalid path: '%s'", aPath);
 		}
 
-		return info.getFiles();
+		String[] files = info.getFiles();
+
+		// the stat may be shared
+		return files != null ? files.clone() : null;
 	}
 
 	public String getCanonicalPath(String aPath, boolean aUseCache) {
@@ -283,9 +557,19 @@ public class FSCache {
 
 	private FileStat getFileStat(String aPath) {
 
+		MemEntry<FileStat> entry = fStatMem.get(aPath);
+		if (entry != null) {
+			return entry.fValue;
+		}
+
+		long generation = fGeneration.get();
+
 		File f = new File(cleanupPath(aPath));
 		String path = f.getAbsolutePath();
 
+		// watch before looking so no change can slip through in between
+		int watchedParent = fWatchService != null ? watchDir(f.getAbsoluteFile().getParent()) : 0;
+
 		FileStat info = null;
 
 		fStatsLock.lock();
@@ -314,6 +598,11 @@ public class FSCache {
 			fStatsLock.unlock();
 		}
 
+		// directory listings additionally need the directory itself watched, a fresh watch comes too late for this stat
+		if (watchedParent > 0 && info.isValid() && (!info.isDirectory() || watchDir(path) == 1)) {
+			remember(fStatMem, aPath, path, info, generation);
+		}
+
 		return info;
 	}
 
@@ -358,9 +647,18 @@ public class FSCache {
 
 	private FileStub getFileInfo(String aPath) {
 
+		MemEntry<FileStub> entry = fStubMem.get(aPath);
+		if (entry != null) {
+			return entry.fValue;
+		}
+
+		long generation = fGeneration.get();
+
 		File f = new File(cleanupPath(aPath));
 		String path = f.getAbsolutePath();
 
+		int watchedParent = fWatchService != null ? watchDir(f.getAbsoluteFile().getParent()) : 0;
+
 		FileStub stub = null;
 
 		fFilesLock.lock();
@@ -389,6 +687,10 @@ public class FSCache {
 			fFilesLock.unlock();
 		}
 
+		if (watchedParent > 0 && stub.isValid()) {
+			remember(fStubMem, aPath, path, stub, generation);
+		}
+
 		return stub;
 	}
 
@@ -443,6 +745,24 @@ public class FSCache {
 		return openFile(aSF.getAbsolutePath(), aUseCache);
 	}
 
+	/**
+	 * Like openFile(), but returns the whole text. Local files are memory
+	 * mapped.
+	 */
+	public SourceText openText(SourceFile aSF, boolean aUseCache) throws IOException {
+
+		if (aSF.isLocal()) {
+			return SourceText.map(aSF.getFile());
+		}
+
+		Reader reader = openFile(aSF, aUseCache);
+		try {
+			return SourceText.read(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
 	public InputStream openFileStream(String aPath, boolean aUseCache) throws IOException {
 		return new ReaderInputStream(openFile(aPath, aUseCache));
 	}
@@ -451,6 +771,9 @@ public class FSCache {
 
 		String canonicalPath = getCanonicalPath(aPath, false);
 
+		forget(canonicalPath, false, true);
+		forget(new File(cleanupPath(aPath)).getAbsolutePath(), false, true);
+
 		String cachePath = getFileCachePath(canonicalPath);
 		File cacheFile = new File(cachePath);
 
@@ -477,6 +800,8 @@ public class FSCache {
 
 		logger.info("FSCache: Cleaning FSCache...");
 
+		forgetAll();
+
 		fFilesLock.lock();
 		try {
 			fStatsLock.lock();
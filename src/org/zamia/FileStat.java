@@ -65,9 +65,8 @@ public class FileStat {
 
 		if (!fValid) {
 			stat();
+			save();
 		}
-
-		save();
 	}
 
 	private synchronized void load() {
@@ -239,6 +238,18 @@ public class FileStat {
 		}
 	}
 
+	/**
+	 * The file changed: drop the on-disk cache entry, the next lookup will
+	 * read from the source again.
+	 */
+	public synchronized void discard() {
+		fValid = false;
+		File f = new File(fCachePath);
+		if (f.exists() && !f.delete()) {
+			logger.error("FSCache: couldn't delete cache file %s", fCachePath);
+		}
+	}
+
 	public String getPath() {
 		return fPath;
 	}
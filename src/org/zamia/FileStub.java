@@ -186,6 +186,18 @@ public class FileStub {
 
 	}
 
+	/**
+	 * The file changed: drop the on-disk cache entry, the next lookup will
+	 * read from the source again.
+	 */
+	public synchronized void discard() {
+		fValid = false;
+		File f = new File(fCachePath);
+		if (f.exists() && !f.delete()) {
+			logger.error("FSCache: couldn't delete cache file %s", fCachePath);
+		}
+	}
+
 	public String getPath() {
 		return fPath;
 	}
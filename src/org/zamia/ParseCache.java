@@ -0,0 +1,332 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.zamia.util.HashSetArray;
+import org.zamia.util.ZHash;
+import org.zamia.util.ZamiaTmpDir;
+import org.zamia.vhdl.ast.Architecture;
+import org.zamia.vhdl.ast.ConcurrentStatement;
+import org.zamia.vhdl.ast.DMUID;
+import org.zamia.zdb.ZDB;
+
+/**
+ * Content addressed cache of parse results, shared by all projects on a
+ * machine.
+ *
+ * Entries are keyed by a digest of the source text plus everything else
+ * the parser output depends on (library, bottom-up flag, file name), so
+ * touched, checked out or copied files whose content is unchanged are not
+ * parsed again. Only VHDL is cached: the text of a Verilog file does not
+ * determine its parse result, `include files would have to be part of the
+ * key.
+ *
+ * SourceFile references are not stored, they are replaced by the file the
+ * entry is loaded for. Concurrent statements of architectures are kept in
+ * the ZDB, so they are stored with the entry and put into the ZDB of the
+ * project the entry is loaded for. Entries are never updated, a new parser (or AST
+ * class) version simply causes misses: FORMAT_VERSION is part of the key
+ * and entries that fail to deserialize are deleted.
+ *
+ * Every edit of a file adds an entry, so the cache is kept below
+ * MAX_CACHE_MB: hits touch their entry, and the least recently used ones
+ * are deleted when a process first uses the cache and whenever it has
+ * stored another quarter of that size.
+ *
+ */
+class ParseCache {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	// bump whenever the parser output changes for the same input
+	private final static int FORMAT_VERSION = 2;
+
+	public static boolean ENABLE_PARSE_CACHE = true;
+
+	// null means parsecache in the zamia tmp dir
+	public static String CACHE_DIR = null;
+
+	public static int MAX_CACHE_MB = 256;
+
+	static {
+		ENABLE_PARSE_CACHE = Utils.getEnvBool("ZAMIA_PARSE_CACHE", ENABLE_PARSE_CACHE);
+		CACHE_DIR = System.getenv("ZAMIA_PARSE_CACHE_DIR");
+		MAX_CACHE_MB = Utils.getEnvInt("ZAMIA_PARSE_CACHE_MB", MAX_CACHE_MB);
+	}
+
+	// leftovers of crashed store() calls
+	private final static long TMP_FILE_AGE = 60 * 60 * 1000;
+
+	private final static AtomicBoolean trimmed = new AtomicBoolean(false);
+
+	// since the last trim()
+	private final static AtomicLong bytesStored = new AtomicLong();
+
+	/**
+	 * Parse result of one file: the design modules in the order the parser
+	 * produced them.
+	 */
+	@SuppressWarnings("serial")
+	static class Entry implements Serializable {
+
+		final ArrayList<IDesignModule> fDMs;
+
+		final HashSetArray<DMUID> fDUUIDs;
+
+		final int fNumLines;
+
+		final int fNumChars;
+
+		// concurrent statements of architectures in fDMs, null for other DMs
+		private final ArrayList<ArrayList<ConcurrentStatement>> fStatements;
+
+		Entry(ArrayList<IDesignModule> aDMs, HashSetArray<DMUID> aDUUIDs, int aNumLines, int aNumChars) {
+			fDMs = aDMs;
+			fDUUIDs = aDUUIDs;
+			fNumLines = aNumLines;
+			fNumChars = aNumChars;
+
+			fStatements = new ArrayList<ArrayList<ConcurrentStatement>>(aDMs.size());
+			for (IDesignModule dm : aDMs) {
+				ArrayList<ConcurrentStatement> css = null;
+				if (dm instanceof Architecture) {
+					Architecture arch = (Architecture) dm;
+					int n = arch.getNumConcurrentStatements();
+					css = new ArrayList<ConcurrentStatement>(n);
+					for (int i = 0; i < n; i++) {
+						css.add(arch.getConcurrentStatement(i));
+					}
+				}
+				fStatements.add(css);
+			}
+		}
+
+		private void restoreStatements() throws ZamiaException {
+			int n = fDMs.size();
+			for (int i = 0; i < n; i++) {
+				ArrayList<ConcurrentStatement> css = fStatements.get(i);
+				if (css != null) {
+					((Architecture) fDMs.get(i)).replaceConcurrentStatements(css);
+				}
+			}
+		}
+	}
+
+	// stands in for the SourceFile of the cached file
+	@SuppressWarnings("serial")
+	private static class SFMarker implements Serializable {
+	}
+
+	static boolean isCacheable(SourceFile aSF) {
+		return ENABLE_PARSE_CACHE && aSF.getFormat() == SourceFile.FORMAT_VHDL;
+	}
+
+	static String getKey(SourceText aText, String aLibId, boolean aBottomUp, SourceFile aSF) {
+		return ZHash.encodeZ("v" + FORMAT_VERSION + "\0" + aLibId + "\0" + aBottomUp + "\0" + aSF.getFileName() + "\0" + aText);
+	}
+
+	private static File getDir() {
+		return CACHE_DIR != null ? new File(CACHE_DIR) : new File(ZamiaTmpDir.getTmpDir(), "parsecache");
+	}
+
+	private static File getFile(String aKey) {
+		return new File(new File(getDir(), aKey.substring(0, 2)), aKey + ".bin");
+	}
+
+	private static long getMaxBytes() {
+		return MAX_CACHE_MB * 1024l * 1024l;
+	}
+
+	/**
+	 * Delete the least recently used entries until the cache fits into
+	 * MAX_CACHE_MB.
+	 */
+	static synchronized void trim() {
+
+		bytesStored.set(0);
+
+		File[] subDirs = getDir().listFiles();
+		if (subDirs == null) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+
+		ArrayList<File> files = new ArrayList<File>();
+		final HashMap<File, Long> lastUsed = new HashMap<File, Long>();
+		long total = 0;
+		for (File subDir : subDirs) {
+			File[] entries = subDir.listFiles();
+			if (entries == null) {
+				continue;
+			}
+			for (File file : entries) {
+				long lastModified = file.lastModified();
+				if (!file.getName().endsWith(".bin")) {
+					if (now - lastModified > TMP_FILE_AGE) {
+						file.delete();
+					}
+					continue;
+				}
+				files.add(file);
+				lastUsed.put(file, lastModified);
+				total += file.length();
+			}
+		}
+
+		long max = getMaxBytes();
+		if (total <= max) {
+			return;
+		}
+
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File aF1, File aF2) {
+				return lastUsed.get(aF1).compareTo(lastUsed.get(aF2));
+			}
+		});
+
+		int n = 0;
+		for (File file : files) {
+			if (total <= max) {
+				break;
+			}
+			long length = file.length();
+			if (file.delete()) {
+				total -= length;
+				n++;
+			}
+		}
+
+		logger.info("ParseCache: deleted %d least recently used entries, %d KB left", n, total / 1024);
+	}
+
+	private static void trimOnFirstUse() {
+		if (trimmed.compareAndSet(false, true)) {
+			trim();
+		}
+	}
+
+	/**
+	 * @return the cached parse result for aKey with all SourceFile
+	 *         references set to aSF, null if there is none
+	 */
+	static Entry load(String aKey, final SourceFile aSF, ZDB aZDB) {
+
+		trimOnFirstUse();
+
+		File file = getFile(aKey);
+		if (!file.exists()) {
+			return null;
+		}
+
+		Entry entry = null;
+		ZDB.ZDBInputStream in = null;
+		try {
+			in = new ZDB.ZDBInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))), aZDB) {
+				{
+					enableResolveObject(true);
+				}
+
+				@Override
+				protected Object resolveObject(Object aObj) throws IOException {
+					return aObj instanceof SFMarker ? aSF : aObj;
+				}
+			};
+
+			Entry e = (Entry) in.readObject();
+			e.restoreStatements();
+			entry = e;
+
+		} catch (Throwable t) {
+			logger.info("ParseCache: dropping unreadable entry %s: %s", file.getAbsolutePath(), t);
+		} finally {
+			if (in != null) {
+				ZDB.safeClose(in);
+			}
+		}
+
+		if (entry == null) {
+			file.delete();
+		} else {
+			// trim() deletes the least recently used entries first
+			file.setLastModified(System.currentTimeMillis());
+		}
+
+		return entry;
+	}
+
+	static void store(String aKey, Entry aEntry) {
+
+		trimOnFirstUse();
+
+		File file = getFile(aKey);
+		File dir = file.getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) {
+			logger.error("ParseCache: failed to create %s", dir.getAbsolutePath());
+			return;
+		}
+
+		// other processes may be reading the same key, the entry appears atomically
+		File tmpFile = null;
+		ObjectOutputStream out = null;
+		try {
+			tmpFile = File.createTempFile(aKey, ".tmp", dir);
+
+			OutputStream os = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			out = new ObjectOutputStream(os) {
+				{
+					enableReplaceObject(true);
+				}
+
+				@Override
+				protected Object replaceObject(Object aObj) throws IOException {
+					return aObj instanceof SourceFile ? new SFMarker() : aObj;
+				}
+			};
+
+			out.writeObject(aEntry);
+			out.close();
+			out = null;
+
+			if (!tmpFile.renameTo(file)) {
+				tmpFile.delete();
+			} else if (bytesStored.addAndGet(file.length()) > getMaxBytes() / 4) {
+				trim();
+			}
+
+		} catch (IOException e) {
+			el.logException(e);
+			if (out != null) {
+				ZDB.safeClose(out);
+			}
+			if (tmpFile != null) {
+				tmpFile.delete();
+			}
+		}
+	}
+}
@@ -27,6 +27,9 @@ public class SFDMInfo implements Serializable, Iterable<DMUID> {
 
 	private long fTimestamp = System.currentTimeMillis();
 
+	// ParseCache key of the text the DMUIDs were parsed from, null if unknown
+	private String fDigest;
+
 	public SFDMInfo() {
 		fDMUIDs = new HashSetArray<DMUID>();
 	}
@@ -59,5 +62,13 @@ public class SFDMInfo implements Serializable, Iterable<DMUID> {
 	public void touch() {
 		fTimestamp = System.currentTimeMillis();
 	}
+
+	public String getDigest() {
+		return fDigest;
+	}
+
+	public void setDigest(String aDigest) {
+		fDigest = aDigest;
+	}
 	
 }
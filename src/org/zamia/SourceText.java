@@ -0,0 +1,225 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Immutable text of a source file with a line start table.
+ *
+ * Local files are memory mapped. Pure ASCII files (the vast majority of HDL
+ * sources) are read straight from the mapping, anything else is decoded
+ * once using the platform charset, just like the readers FSCache hands out.
+ *
+ * Lines and columns are 1-based, tabs count as one column and a line ends
+ * after '\n', '\r' or "\r\n" - the same numbering the parsers used to
+ * compute char by char.
+ *
+ */
+public final class SourceText implements CharSequence {
+
+	// mapped files cannot be changed or deleted on windows until the mapping is garbage collected
+	public static boolean ENABLE_MMAP = File.separatorChar == '/';
+
+	static {
+		ENABLE_MMAP = Utils.getEnvBool("ZAMIA_MMAP_SOURCES", ENABLE_MMAP);
+	}
+
+	// exactly one of fBytes, fChars is set
+	private final ByteBuffer fBytes;
+
+	private final char[] fChars;
+
+	private final int fLength;
+
+	private int[] fLineStarts;
+
+	private int fNumLines;
+
+	private SourceText(ByteBuffer aBytes, char[] aChars, int aLength) {
+		fBytes = aBytes;
+		fChars = aChars;
+		fLength = aLength;
+		computeLineStarts();
+	}
+
+	public static SourceText map(File aFile) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(aFile, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("SourceText: " + aFile.getAbsolutePath() + " is too large.");
+			}
+
+			ByteBuffer bytes;
+			if (ENABLE_MMAP) {
+				// the mapping stays valid after the channel is closed
+				bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} else {
+				bytes = ByteBuffer.allocate((int) size);
+				while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+				}
+				bytes.flip();
+			}
+
+			if (isAscii(bytes)) {
+				return new SourceText(bytes, null, bytes.limit());
+			}
+
+			CharBuffer chars = Charset.defaultCharset().newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE).decode(bytes);
+			return fromChars(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+
+		} finally {
+			raf.close();
+		}
+	}
+
+	public static SourceText read(Reader aReader) throws IOException {
+		char[] buf = new char[8192];
+		int len = 0;
+		int n;
+		while ((n = aReader.read(buf, len, buf.length - len)) >= 0) {
+			len += n;
+			if (len == buf.length) {
+				char[] newBuf = new char[buf.length * 2];
+				System.arraycopy(buf, 0, newBuf, 0, len);
+				buf = newBuf;
+			}
+		}
+		return new SourceText(null, buf, len);
+	}
+
+	public static SourceText fromString(String aText) {
+		return new SourceText(null, aText.toCharArray(), aText.length());
+	}
+
+	private static SourceText fromChars(char[] aChars, int aOffset, int aLength) {
+		if (aOffset == 0) {
+			return new SourceText(null, aChars, aLength);
+		}
+		char[] chars = new char[aLength];
+		System.arraycopy(aChars, aOffset, chars, 0, aLength);
+		return new SourceText(null, chars, aLength);
+	}
+
+	private static boolean isAscii(ByteBuffer aBytes) {
+		int n = aBytes.limit();
+		for (int i = 0; i < n; i++) {
+			if (aBytes.get(i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void computeLineStarts() {
+		int[] starts = new int[fLength / 32 + 2];
+		int n = 1;
+		for (int i = 0; i < fLength; i++) {
+			char c = charAt(i);
+			if (c == '\n' || (c == '\r' && (i + 1 >= fLength || charAt(i + 1) != '\n'))) {
+				if (n == starts.length) {
+					int[] newStarts = new int[starts.length * 2];
+					System.arraycopy(starts, 0, newStarts, 0, n);
+					starts = newStarts;
+				}
+				starts[n++] = i + 1;
+			}
+		}
+		fLineStarts = starts;
+		fNumLines = n;
+	}
+
+	@Override
+	public int length() {
+		return fLength;
+	}
+
+	@Override
+	public char charAt(int aIndex) {
+		if (fChars != null) {
+			return fChars[aIndex];
+		}
+		return (char) fBytes.get(aIndex);
+	}
+
+	public String substring(int aStart, int aEnd) {
+		if (fChars != null) {
+			return new String(fChars, aStart, aEnd - aStart);
+		}
+		char[] chars = new char[aEnd - aStart];
+		for (int i = aStart; i < aEnd; i++) {
+			chars[i - aStart] = (char) fBytes.get(i);
+		}
+		return new String(chars);
+	}
+
+	@Override
+	public CharSequence subSequence(int aStart, int aEnd) {
+		return substring(aStart, aEnd);
+	}
+
+	@Override
+	public String toString() {
+		return substring(0, fLength);
+	}
+
+	/**
+	 * A trailing line break starts a last, empty line.
+	 */
+	public int getNumLines() {
+		return fNumLines;
+	}
+
+	/**
+	 * @return 0-based index of the line containing aOffset
+	 */
+	public int getLineIdx(int aOffset) {
+		int lo = 0;
+		int hi = fNumLines - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (fLineStarts[mid] <= aOffset) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	public int getLineStart(int aLineIdx) {
+		return fLineStarts[aLineIdx];
+	}
+
+	public int getLine(int aOffset) {
+		return getLineIdx(aOffset) + 1;
+	}
+
+	public int getColumn(int aOffset) {
+		return aOffset - fLineStarts[getLineIdx(aOffset)] + 1;
+	}
+
+	/**
+	 * @return offset of aLine/aCol, clipped to the text
+	 */
+	public int getOffset(int aLine, int aCol) {
+		int idx = Math.max(0, Math.min(fNumLines - 1, aLine - 1));
+		return Math.max(0, Math.min(fLength, fLineStarts[idx] + aCol - 1));
+	}
+}
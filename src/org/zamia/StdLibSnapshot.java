@@ -0,0 +1,302 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.zamia.instgraph.IGManager;
+import org.zamia.util.FileUtils;
+import org.zamia.util.ZHash;
+import org.zamia.util.ZamiaTmpDir;
+import org.zamia.vhdl.ast.DMUID;
+import org.zamia.vhdl.ast.DMUID.LUType;
+import org.zamia.zdb.ZDB;
+import org.zamia.zdb.ZDBException;
+
+/**
+ * Pre-elaborated STD and IEEE libraries.
+ *
+ * A snapshot is a copy of the ZDB of an otherwise empty project right after
+ * the std libs have been indexed and all their packages have been
+ * elaborated. Cleaned and new projects start out as a copy of it instead of
+ * indexing and elaborating the std libs again.
+ *
+ * The first project that needs the std libs and finds no snapshot creates
+ * one (ZAMIA_STDLIB_SNAPSHOT_CREATE=false turns that off), main() does the
+ * same ahead of time. Snapshots live in a sub directory named after
+ * getKey() of $ZAMIA_STDLIB_SNAPSHOT (default: stdlib in the zamia tmp dir)
+ * and are never modified afterwards. A snapshot that does not match the
+ * bundled std lib sources is simply not found.
+ *
+ */
+
+public class StdLibSnapshot {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	// bump whenever what DMManager/IGManager store for the std libs changes
+	private final static int FORMAT_VERSION = 2;
+
+	// named object marking a ZDB that was restored from a snapshot, value is the key
+	private final static String KEY_OBJ_NAME = "STDLIB_SnapshotKey";
+
+	public static boolean ENABLE_SNAPSHOT = true;
+
+	// create a missing snapshot the first time restore() is asked for it
+	public static boolean CREATE_ON_DEMAND = true;
+
+	// where snapshots are looked for, null means stdlib in the zamia tmp dir
+	public static String SNAPSHOT_DIR = null;
+
+	static {
+		ENABLE_SNAPSHOT = Utils.getEnvBool("ZAMIA_STDLIB_SNAPSHOT_ENABLE", ENABLE_SNAPSHOT);
+		CREATE_ON_DEMAND = Utils.getEnvBool("ZAMIA_STDLIB_SNAPSHOT_CREATE", CREATE_ON_DEMAND);
+		SNAPSHOT_DIR = System.getenv("ZAMIA_STDLIB_SNAPSHOT");
+	}
+
+	private static String fKey = null;
+
+	// set while a snapshot is being created so the project used for it starts from scratch
+	private static volatile boolean fCreating = false;
+
+	// snapshot creation failed in this process, do not try again
+	private static boolean fCreateFailed = false;
+
+	/**
+	 * Version of the snapshot format plus a hash of the bundled std lib
+	 * sources.
+	 */
+	public static synchronized String getKey() throws IOException {
+
+		if (fKey == null) {
+
+			StringBuilder buf = new StringBuilder();
+
+			FSCache fsCache = FSCache.getInstance();
+
+			for (String[] stdLib : DMManager.STD_LIBS) {
+				Reader r = fsCache.openFile(new SourceFile("/" + stdLib[0]), false);
+				try {
+					char[] cbuf = new char[8192];
+					int n;
+					while ((n = r.read(cbuf)) > 0) {
+						buf.append(cbuf, 0, n);
+					}
+				} finally {
+					r.close();
+				}
+				buf.append('\0').append(stdLib[1]).append('\0');
+			}
+
+			fKey = "v" + FORMAT_VERSION + "-" + ZHash.encodeZ(buf.toString());
+		}
+
+		return fKey;
+	}
+
+	public static File getBaseDir() {
+		if (SNAPSHOT_DIR != null) {
+			return new File(SNAPSHOT_DIR);
+		}
+		return new File(ZamiaTmpDir.getTmpDir(), "stdlib");
+	}
+
+	public static File getDir(File aBaseDir) throws IOException {
+		return new File(aBaseDir, getKey());
+	}
+
+	/**
+	 * Turn the freshly cleared aZDB into a copy of the snapshot. If
+	 * CREATE_ON_DEMAND is set, a missing snapshot is created first and one
+	 * that cannot be imported (e.g. written before a stored class changed)
+	 * is replaced.
+	 *
+	 * @return true if aZDB now contains the std libs
+	 */
+	public static synchronized boolean restore(ZDB aZDB) {
+
+		if (!ENABLE_SNAPSHOT || fCreating) {
+			return false;
+		}
+
+		try {
+			File baseDir = getBaseDir();
+			File dir = getDir(baseDir);
+			if (!dir.isDirectory()) {
+				if (!CREATE_ON_DEMAND || fCreateFailed) {
+					logger.debug("StdLibSnapshot: no snapshot at %s", dir.getAbsolutePath());
+					return false;
+				}
+
+				logger.info("StdLibSnapshot: no snapshot at %s yet, creating it", dir.getAbsolutePath());
+				createOnDemand(baseDir, false);
+
+			} else if (CREATE_ON_DEMAND && !fCreateFailed) {
+				try {
+					importSnapshot(aZDB, dir);
+					return true;
+				} catch (IOException e) {
+					logger.info("StdLibSnapshot: replacing unusable snapshot at %s: %s", dir.getAbsolutePath(), e.getMessage());
+					aZDB.clear();
+					createOnDemand(baseDir, true);
+				}
+			}
+
+			importSnapshot(aZDB, dir);
+			return true;
+
+		} catch (Throwable t) {
+			el.logException(t);
+			aZDB.clear();
+			return false;
+		}
+	}
+
+	private static void importSnapshot(ZDB aZDB, File aDir) throws IOException {
+
+		long startTime = System.currentTimeMillis();
+
+		aZDB.importSnapshot(aDir);
+
+		if (!getKey().equals(aZDB.getNamedObject(KEY_OBJ_NAME))) {
+			throw new IOException("StdLibSnapshot: " + aDir.getAbsolutePath() + " is not a complete snapshot");
+		}
+
+		// records are decoded lazily, a class that changed since would only fail later on
+		aZDB.checkClasses();
+
+		logger.info("StdLibSnapshot: restored std libs from %s in %d ms", aDir.getAbsolutePath(), System.currentTimeMillis() - startTime);
+	}
+
+	private static void createOnDemand(File aBaseDir, boolean aReplace) throws IOException, ZamiaException, ZDBException {
+		try {
+			create(aBaseDir, aReplace);
+		} catch (Throwable t) {
+			fCreateFailed = true;
+			throw t;
+		}
+	}
+
+	/**
+	 * @return true if the std libs in aZDB came from a snapshot of the
+	 *         current std lib sources
+	 */
+	public static boolean isRestored(ZDB aZDB) {
+		Object key = aZDB.getNamedObject(KEY_OBJ_NAME);
+		if (key == null) {
+			return false;
+		}
+		try {
+			return key.equals(getKey());
+		} catch (IOException e) {
+			el.logException(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Build a snapshot in aBaseDir, replacing an existing one with the same
+	 * key.
+	 *
+	 * @return the snapshot directory
+	 */
+	public static File create(File aBaseDir) throws IOException, ZamiaException, ZDBException {
+		return create(aBaseDir, true);
+	}
+
+	/*
+	 * other processes may be creating the same snapshot, so all scratch dirs
+	 * are unique and unless aReplace is set, whoever finishes first wins
+	 */
+	private static synchronized File create(File aBaseDir, boolean aReplace) throws IOException, ZamiaException, ZDBException {
+
+		File dir = getDir(aBaseDir);
+		String unique = "." + System.currentTimeMillis() + "-" + System.nanoTime();
+		File tmpDir = new File(aBaseDir, getKey() + ".tmp" + unique);
+		File dataDir = new File(aBaseDir, getKey() + ".prj" + unique);
+
+		FileUtils.deleteDirRecursive(tmpDir);
+		FileUtils.deleteDirRecursive(dataDir);
+
+		long startTime = System.currentTimeMillis();
+
+		ZamiaProject zprj;
+		fCreating = true;
+		try {
+			zprj = new ZamiaProject("StdLibSnapshot", aBaseDir.getAbsolutePath(), null, dataDir.getAbsolutePath());
+		} finally {
+			fCreating = false;
+		}
+
+		try {
+			DMManager dum = zprj.getDUM();
+			IGManager igm = zprj.getIGM();
+
+			int n = dum.getNumStubs();
+			for (int i = 0; i < n; i++) {
+				DMUID duuid = dum.getStub(i).getDUUID();
+				if (duuid.getType() != LUType.Package) {
+					continue;
+				}
+				logger.info("StdLibSnapshot: elaborating %s", duuid);
+				igm.findPackage(duuid.getLibId(), duuid.getId(), null);
+			}
+
+			ERManager erm = zprj.getERM();
+			if (erm.getNumErrors() > 0) {
+				for (int i = 0; i < erm.getNumErrors(); i++) {
+					logger.error("StdLibSnapshot: %s", erm.getError(i));
+				}
+				throw new ZamiaException("StdLibSnapshot: std libs have errors, not creating a snapshot.");
+			}
+
+			ZDB zdb = zprj.getZDB();
+			zdb.createNamedObject(KEY_OBJ_NAME, getKey());
+			zdb.exportSnapshot(tmpDir);
+
+		} finally {
+			zprj.shutdown();
+			FileUtils.deleteDirRecursive(dataDir);
+		}
+
+		if (aReplace) {
+			FileUtils.deleteDirRecursive(dir);
+		}
+		if (!tmpDir.renameTo(dir)) {
+			if (!aReplace && dir.isDirectory()) {
+				FileUtils.deleteDirRecursive(tmpDir);
+				logger.info("StdLibSnapshot: %s has been created by someone else meanwhile", dir.getAbsolutePath());
+				return dir;
+			}
+			throw new IOException("StdLibSnapshot: failed to rename " + tmpDir.getAbsolutePath() + " to " + dir.getAbsolutePath());
+		}
+
+		logger.info("StdLibSnapshot: created %s in %d ms", dir.getAbsolutePath(), System.currentTimeMillis() - startTime);
+
+		return dir;
+	}
+
+	/**
+	 * Build step: create a snapshot in the directory given as argument or in
+	 * the default location.
+	 */
+	public static void main(String[] args) throws IOException, ZamiaException, ZDBException {
+
+		File baseDir = args.length > 0 ? new File(args[0]) : getBaseDir();
+
+		File dir = create(baseDir);
+
+		System.out.println(dir.getAbsolutePath());
+
+		System.exit(0);
+	}
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Build telemetry: counters, gauges and histograms.
+ *
+ * Metrics are created once (typically in a static field of the class that
+ * updates them) and reset at the start of every build. Histograms created
+ * by timer() record durations of spans, broken down by a label (file,
+ * module, phase, ...) and by thread.
+ *
+ * At the end of a build the summary is logged and, if $ZAMIA_METRICS_FILE
+ * is set, written to that file: JSON if its name ends in .json, the
+ * Prometheus text format otherwise.
+ *
+ */
+
+public class ZamiaMetrics {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	public static boolean ENABLE = true;
+
+	public static String EXPORT_FILE = null;
+
+	static {
+		ENABLE = Utils.getEnvBool("ZAMIA_METRICS", ENABLE);
+		EXPORT_FILE = System.getenv("ZAMIA_METRICS_FILE");
+	}
+
+	// number of labels listed per histogram by dump()
+	private final static int DUMP_TOP_LABELS = 5;
+
+	private static ZamiaMetrics instance = null;
+
+	public static synchronized ZamiaMetrics getInstance() {
+		if (instance == null) {
+			instance = new ZamiaMetrics();
+		}
+		return instance;
+	}
+
+	private final ConcurrentHashMap<String, Counter> fCounters = new ConcurrentHashMap<String, Counter>();
+
+	private final ConcurrentHashMap<String, Gauge> fGauges = new ConcurrentHashMap<String, Gauge>();
+
+	private final ConcurrentHashMap<String, Histogram> fHistograms = new ConcurrentHashMap<String, Histogram>();
+
+	private volatile long fStartTime = System.currentTimeMillis();
+
+	private ZamiaMetrics() {
+	}
+
+	public static class Counter {
+
+		private final String fName, fHelp;
+
+		private final AtomicLong fValue = new AtomicLong();
+
+		private Counter(String aName, String aHelp) {
+			fName = aName;
+			fHelp = aHelp;
+		}
+
+		public void add(long aDelta) {
+			if (ENABLE) {
+				fValue.addAndGet(aDelta);
+			}
+		}
+
+		public long get() {
+			return fValue.get();
+		}
+	}
+
+	private static class Gauge {
+
+		private final String fName, fHelp;
+
+		private volatile long fValue;
+
+		private Gauge(String aName, String aHelp) {
+			fName = aName;
+			fHelp = aHelp;
+		}
+	}
+
+	private static class LabelStats {
+
+		final AtomicLong fCount = new AtomicLong();
+
+		final AtomicLong fSum = new AtomicLong();
+
+		void add(long aValue) {
+			fCount.incrementAndGet();
+			fSum.addAndGet(aValue);
+		}
+	}
+
+	/**
+	 * Bucket i counts values <= fMin * 4^i, the last one everything else.
+	 * Values are exported multiplied by fScale (e.g. ns to s).
+	 */
+	public static class Histogram {
+
+		private final static int NUM_BUCKETS = 16;
+
+		private final String fName, fHelp, fLabelName;
+
+		private final long fMin;
+
+		private final double fScale;
+
+		private final AtomicLongArray fBuckets = new AtomicLongArray(NUM_BUCKETS + 1);
+
+		private final AtomicLong fCount = new AtomicLong(), fSum = new AtomicLong();
+
+		private final AtomicLong fMax = new AtomicLong();
+
+		private final ConcurrentHashMap<String, LabelStats> fLabels = new ConcurrentHashMap<String, LabelStats>();
+
+		private final ConcurrentHashMap<String, LabelStats> fThreads = new ConcurrentHashMap<String, LabelStats>();
+
+		private Histogram(String aName, String aHelp, String aLabelName, long aMin, double aScale) {
+			fName = aName;
+			fHelp = aHelp;
+			fLabelName = aLabelName;
+			fMin = aMin;
+			fScale = aScale;
+		}
+
+		public void record(long aValue, String aLabel) {
+			if (!ENABLE) {
+				return;
+			}
+
+			int idx = 0;
+			long bound = fMin;
+			while (idx < NUM_BUCKETS && aValue > bound) {
+				bound *= 4;
+				idx++;
+			}
+			fBuckets.incrementAndGet(idx);
+			fCount.incrementAndGet();
+			fSum.addAndGet(aValue);
+
+			long max = fMax.get();
+			while (aValue > max && !fMax.compareAndSet(max, aValue)) {
+				max = fMax.get();
+			}
+
+			if (aLabel != null) {
+				getStats(fLabels, aLabel).add(aValue);
+			}
+			getStats(fThreads, Thread.currentThread().getName()).add(aValue);
+		}
+
+		/**
+		 * Start timing a span, see Span.stop().
+		 */
+		public Span start(String aLabel) {
+			return new Span(this, aLabel);
+		}
+
+		private static LabelStats getStats(ConcurrentHashMap<String, LabelStats> aMap, String aKey) {
+			LabelStats stats = aMap.get(aKey);
+			if (stats == null) {
+				stats = new LabelStats();
+				LabelStats old = aMap.putIfAbsent(aKey, stats);
+				if (old != null) {
+					stats = old;
+				}
+			}
+			return stats;
+		}
+
+		public long getCount() {
+			return fCount.get();
+		}
+
+		public long getSum() {
+			return fSum.get();
+		}
+
+		private void reset() {
+			for (int i = 0; i <= NUM_BUCKETS; i++) {
+				fBuckets.set(i, 0);
+			}
+			fCount.set(0);
+			fSum.set(0);
+			fMax.set(0);
+			fLabels.clear();
+			fThreads.clear();
+		}
+
+		private TreeMap<String, LabelStats> sorted(ConcurrentHashMap<String, LabelStats> aMap) {
+			return new TreeMap<String, LabelStats>(aMap);
+		}
+	}
+
+	public static class Span {
+
+		private final Histogram fHistogram;
+
+		private final String fLabel;
+
+		private final long fStart;
+
+		private Span(Histogram aHistogram, String aLabel) {
+			fHistogram = aHistogram;
+			fLabel = aLabel;
+			fStart = System.nanoTime();
+		}
+
+		/**
+		 * @return duration in ns
+		 */
+		public long stop() {
+			long d = System.nanoTime() - fStart;
+			fHistogram.record(d, fLabel);
+			return d;
+		}
+	}
+
+	public Counter counter(String aName, String aHelp) {
+		Counter counter = fCounters.get(aName);
+		if (counter == null) {
+			counter = new Counter(aName, aHelp);
+			Counter old = fCounters.putIfAbsent(aName, counter);
+			if (old != null) {
+				counter = old;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Histogram of span durations, exported in seconds.
+	 *
+	 * @param aLabelName
+	 *            what the labels passed to start() denote, e.g. "file"
+	 */
+	public Histogram timer(String aName, String aHelp, String aLabelName) {
+		return histogram(aName, aHelp, aLabelName, 1000, 1e-9);
+	}
+
+	public Histogram histogram(String aName, String aHelp, String aLabelName, long aMin, double aScale) {
+		Histogram histogram = fHistograms.get(aName);
+		if (histogram == null) {
+			histogram = new Histogram(aName, aHelp, aLabelName, aMin, aScale);
+			Histogram old = fHistograms.putIfAbsent(aName, histogram);
+			if (old != null) {
+				histogram = old;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Gauges are sampled values, e.g. ZDB cache statistics at the end of a
+	 * build.
+	 */
+	public void setGauge(String aName, String aHelp, long aValue) {
+		Gauge gauge = fGauges.get(aName);
+		if (gauge == null) {
+			gauge = new Gauge(aName, aHelp);
+			Gauge old = fGauges.putIfAbsent(aName, gauge);
+			if (old != null) {
+				gauge = old;
+			}
+		}
+		gauge.fValue = aValue;
+	}
+
+	/**
+	 * Start over, called at the beginning of every build.
+	 */
+	public void reset() {
+		for (Counter counter : fCounters.values()) {
+			counter.fValue.set(0);
+		}
+		fGauges.clear();
+		for (Histogram histogram : fHistograms.values()) {
+			histogram.reset();
+		}
+		fStartTime = System.currentTimeMillis();
+	}
+
+	public void dump() {
+
+		logger.info("");
+		logger.info("Zamia Metrics");
+		logger.info("=============");
+		logger.info("");
+
+		for (Histogram histogram : new TreeMap<String, Histogram>(fHistograms).values()) {
+			long count = histogram.getCount();
+			if (count == 0) {
+				continue;
+			}
+			logger.info("%10.3f %-40s %8d x", histogram.getSum() * histogram.fScale, histogram.fName, count);
+
+			ArrayList<Map.Entry<String, LabelStats>> labels = new ArrayList<Map.Entry<String, LabelStats>>(histogram.fLabels.entrySet());
+			Collections.sort(labels, new Comparator<Map.Entry<String, LabelStats>>() {
+				@Override
+				public int compare(Map.Entry<String, LabelStats> aE1, Map.Entry<String, LabelStats> aE2) {
+					long s1 = aE1.getValue().fSum.get(), s2 = aE2.getValue().fSum.get();
+					return s1 > s2 ? -1 : s1 < s2 ? 1 : 0;
+				}
+			});
+			int n = Math.min(DUMP_TOP_LABELS, labels.size());
+			for (int i = 0; i < n; i++) {
+				Map.Entry<String, LabelStats> entry = labels.get(i);
+				logger.info("           %10.3f %s=%s", entry.getValue().fSum.get() * histogram.fScale, histogram.fLabelName, entry.getKey());
+			}
+		}
+
+		for (Counter counter : new TreeMap<String, Counter>(fCounters).values()) {
+			if (counter.get() != 0) {
+				logger.info("%10d %s", counter.get(), counter.fName);
+			}
+		}
+		for (Gauge gauge : new TreeMap<String, Gauge>(fGauges).values()) {
+			logger.info("%10d %s", gauge.fValue, gauge.fName);
+		}
+	}
+
+	/**
+	 * Write everything to EXPORT_FILE, if set.
+	 */
+	public void export() {
+		if (EXPORT_FILE == null || !ENABLE) {
+			return;
+		}
+
+		File file = new File(EXPORT_FILE);
+		File tmpFile = new File(EXPORT_FILE + ".tmp");
+		try {
+			Writer out = new BufferedWriter(new FileWriter(tmpFile));
+			try {
+				if (EXPORT_FILE.endsWith(".json")) {
+					writeJSON(out);
+				} else {
+					writePrometheus(out);
+				}
+			} finally {
+				out.close();
+			}
+			if (!tmpFile.renameTo(file)) {
+				file.delete();
+				if (!tmpFile.renameTo(file)) {
+					throw new IOException("ZamiaMetrics: failed to rename " + tmpFile + " to " + file);
+				}
+			}
+			logger.info("ZamiaMetrics: wrote %s", file.getAbsolutePath());
+		} catch (IOException e) {
+			el.logException(e);
+		}
+	}
+
+	/********************************************************************************
+	 *
+	 *
+	 * Prometheus text format
+	 *
+	 *
+	 ********************************************************************************/
+
+	public void writePrometheus(Writer aOut) throws IOException {
+
+		for (Counter counter : new TreeMap<String, Counter>(fCounters).values()) {
+			writeHeader(aOut, counter.fName, counter.fHelp, "counter");
+			aOut.write(counter.fName + " " + counter.get() + "\n");
+		}
+
+		for (Gauge gauge : new TreeMap<String, Gauge>(fGauges).values()) {
+			writeHeader(aOut, gauge.fName, gauge.fHelp, "gauge");
+			aOut.write(gauge.fName + " " + gauge.fValue + "\n");
+		}
+
+		for (Histogram h : new TreeMap<String, Histogram>(fHistograms).values()) {
+
+			writeHeader(aOut, h.fName, h.fHelp, "histogram");
+			long cumulative = 0;
+			long bound = h.fMin;
+			for (int i = 0; i < Histogram.NUM_BUCKETS; i++) {
+				cumulative += h.fBuckets.get(i);
+				aOut.write(h.fName + "_bucket{le=\"" + bound * h.fScale + "\"} " + cumulative + "\n");
+				bound *= 4;
+			}
+			aOut.write(h.fName + "_bucket{le=\"+Inf\"} " + h.getCount() + "\n");
+			aOut.write(h.fName + "_sum " + h.getSum() * h.fScale + "\n");
+			aOut.write(h.fName + "_count " + h.getCount() + "\n");
+
+			writeLabelStats(aOut, h, h.fName + "_by_" + h.fLabelName, h.fLabelName, h.fLabels);
+			writeLabelStats(aOut, h, h.fName + "_by_thread", "thread", h.fThreads);
+		}
+	}
+
+	private void writeHeader(Writer aOut, String aName, String aHelp, String aType) throws IOException {
+		aOut.write("# HELP " + aName + " " + aHelp.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+		aOut.write("# TYPE " + aName + " " + aType + "\n");
+	}
+
+	private void writeLabelStats(Writer aOut, Histogram aHistogram, String aName, String aLabelName, ConcurrentHashMap<String, LabelStats> aStats) throws IOException {
+		if (aStats.isEmpty()) {
+			return;
+		}
+		writeHeader(aOut, aName, aHistogram.fHelp + ", by " + aLabelName, "summary");
+		for (Map.Entry<String, LabelStats> entry : aHistogram.sorted(aStats).entrySet()) {
+			String label = "{" + aLabelName + "=\"" + escapeLabel(entry.getKey()) + "\"}";
+			aOut.write(aName + "_sum" + label + " " + entry.getValue().fSum.get() * aHistogram.fScale + "\n");
+			aOut.write(aName + "_count" + label + " " + entry.getValue().fCount.get() + "\n");
+		}
+	}
+
+	private static String escapeLabel(String aValue) {
+		return aValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/********************************************************************************
+	 *
+	 *
+	 * JSON
+	 *
+	 *
+	 ********************************************************************************/
+
+	public void writeJSON(Writer aOut) throws IOException {
+
+		aOut.write("{\n  \"start\": " + fStartTime + ",\n  \"end\": " + System.currentTimeMillis() + ",\n");
+
+		aOut.write("  \"counters\": {");
+		String sep = "\n";
+		for (Counter counter : new TreeMap<String, Counter>(fCounters).values()) {
+			aOut.write(sep + "    " + quote(counter.fName) + ": " + counter.get());
+			sep = ",\n";
+		}
+		aOut.write("\n  },\n");
+
+		aOut.write("  \"gauges\": {");
+		sep = "\n";
+		for (Gauge gauge : new TreeMap<String, Gauge>(fGauges).values()) {
+			aOut.write(sep + "    " + quote(gauge.fName) + ": " + gauge.fValue);
+			sep = ",\n";
+		}
+		aOut.write("\n  },\n");
+
+		aOut.write("  \"histograms\": {");
+		sep = "\n";
+		for (Histogram h : new TreeMap<String, Histogram>(fHistograms).values()) {
+			aOut.write(sep + "    " + quote(h.fName) + ": {\n");
+			aOut.write("      \"count\": " + h.getCount() + ",\n");
+			aOut.write("      \"sum\": " + h.getSum() * h.fScale + ",\n");
+			aOut.write("      \"max\": " + h.fMax.get() * h.fScale + ",\n");
+
+			aOut.write("      \"buckets\": [");
+			long bound = h.fMin;
+			for (int i = 0; i <= Histogram.NUM_BUCKETS; i++) {
+				String le = i < Histogram.NUM_BUCKETS ? Double.toString(bound * h.fScale) : "null";
+				aOut.write((i > 0 ? ", " : "") + "{\"le\": " + le + ", \"count\": " + h.fBuckets.get(i) + "}");
+				bound *= 4;
+			}
+			aOut.write("],\n");
+
+			aOut.write("      " + quote("by_" + h.fLabelName) + ": ");
+			writeJSONStats(aOut, h, h.fLabels);
+			aOut.write(",\n      \"by_thread\": ");
+			writeJSONStats(aOut, h, h.fThreads);
+			aOut.write("\n    }");
+			sep = ",\n";
+		}
+		aOut.write("\n  }\n}\n");
+	}
+
+	private void writeJSONStats(Writer aOut, Histogram aHistogram, ConcurrentHashMap<String, LabelStats> aStats) throws IOException {
+		aOut.write("{");
+		String sep = "\n";
+		for (Map.Entry<String, LabelStats> entry : aHistogram.sorted(aStats).entrySet()) {
+			aOut.write(sep + "        " + quote(entry.getKey()) + ": {\"count\": " + entry.getValue().fCount.get() + ", \"sum\": " + entry.getValue().fSum.get() * aHistogram.fScale + "}");
+			sep = ",\n";
+		}
+		aOut.write(sep.equals("\n") ? "}" : "\n      }");
+	}
+
+	private static String quote(String aStr) {
+		StringBuilder buf = new StringBuilder(aStr.length() + 2);
+		buf.append('"');
+		int n = aStr.length();
+		for (int i = 0; i < n; i++) {
+			char c = aStr.charAt(i);
+			switch (c) {
+			case '"':
+				buf.append("\\\"");
+				break;
+			case '\\':
+				buf.append("\\\\");
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			case '\r':
+				buf.append("\\r");
+				break;
+			case '\t':
+				buf.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					buf.append(String.format("\\u%04x", (int) c));
+				} else {
+					buf.append(c);
+				}
+			}
+		}
+		buf.append('"');
+		return buf.toString();
+	}
+}
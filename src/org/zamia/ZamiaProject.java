@@ -109,6 +109,10 @@ public class ZamiaProject {
 
 		fZDB = new ZDB(dbDir, this);
 
+		if (fZDB.getNamedObject(BUILDPATH_OBJ_NAME) == null) {
+			StdLibSnapshot.restore(fZDB);
+		}
+
 		fERM = new ERManager(this);
 
 		fVHDLParser = new VHDL2008Parser();
@@ -175,8 +179,9 @@ public class ZamiaProject {
 
 	public void clean() throws IOException, ZamiaException {
 		logger.info("Cleaning project '%s'", fBasePath);
-		ZamiaProfiler.getInstance().startTimer("Cleaning");
+		ZamiaMetrics.Span span = ZamiaProjectBuilder.phaseTimer.start("Cleaning");
 		fZDB.clear();
+		StdLibSnapshot.restore(fZDB);
 		setBuildPath(new BuildPath(fBuildPath.getSourceFile()));
 		fDUM.clean();
 		fERM.clean();
@@ -192,7 +197,7 @@ public class ZamiaProject {
 
 		initJythonInterpreter();
 
-		ZamiaProfiler.getInstance().stopTimer("Cleaning");
+		span.stop();
 	}
 
 	public void zdbChanged() {
@@ -10,15 +10,26 @@ package org.zamia;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.zamia.DMManager.ParsedFile;
 import org.zamia.cli.jython.ZCJInterpreter;
 import org.zamia.instgraph.IGManager;
 import org.zamia.instgraph.IGModule;
@@ -48,17 +59,43 @@ public class ZamiaProjectBuilder {
 
 	private static final int NUM_THREADS = 8;
 
+	private static final int PARSE_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private final static ExecutorService parsePool = Executors.newFixedThreadPool(PARSE_THREADS, new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable aRunnable) {
+			Thread thread = new Thread(aRunnable, "Parser");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	public final static ZamiaMetrics metrics = ZamiaMetrics.getInstance();
+
+	public final static ZamiaMetrics.Histogram phaseTimer = metrics.timer("zamia_build_phase_seconds", "Duration of build phases", "phase");
+
+	private final static ZamiaMetrics.Histogram indexTimer = metrics.timer("zamia_index_file_seconds", "Time spent indexing an external source file", "file");
+
 	private ZamiaProject fZPrj;
 
-	private int fNumTodoFiles;
+	private final AtomicInteger fNumTodoFiles = new AtomicInteger();
 
-	private int fTotalNumDoneFiles, fTotalNumLines, fTotalNumChars;
+	private final AtomicInteger fTotalNumDoneFiles = new AtomicInteger(), fTotalNumLines = new AtomicInteger(), fTotalNumChars = new AtomicInteger();
+
+	// one indexer per worker thread of the indexing pool
+	private final ThreadLocal<VHDLIndexer> fIndexers = new ThreadLocal<VHDLIndexer>() {
+		@Override
+		protected VHDLIndexer initialValue() {
+			return new VHDLIndexer();
+		}
+	};
 
-	private ExecutorService fExecutorService;
+	// results of the current indexing pass, merged into the DMManager once it is done
+	private ConcurrentLinkedQueue<SourceFile> fIndexedFiles;
 
-	private LinkedList<VHDLIndexer> fIndexerPool;
+	private ConcurrentLinkedQueue<DesignModuleStub> fIndexedStubs;
 
-	private HashSet<String> fTodoList; // for debug output only
+	private Set<String> fTodoList; // for debug output only
 
 	private final DMManager fDUM;
 
@@ -68,7 +105,7 @@ public class ZamiaProjectBuilder {
 
 	private boolean fBuildPathErrs;
 
-	private int fLastWorked; // for progress reporting
+	private final AtomicInteger fLastWorked = new AtomicInteger(); // for progress reporting
 
 	public ZamiaProjectBuilder(ZamiaProject aZPrj) {
 		fZPrj = aZPrj;
@@ -93,6 +130,8 @@ public class ZamiaProjectBuilder {
 
 	public int build(boolean aFullBuild, boolean aBPChanged, HashSetArray<SourceFile> aSFs) throws ZamiaException, IOException {
 
+		metrics.reset();
+
 		boolean fullBuild = aFullBuild;
 		
 		// I have removed the condition to always parse the build path in order to clean "entity not found" 
@@ -100,7 +139,9 @@ public class ZamiaProjectBuilder {
 		// you are free to clean the error once it is resolved and return the condition.
 		//if (aFullBuild || aBPChanged)
 		
+		ZamiaMetrics.Span span = phaseTimer.start("BP parsing");
 		fullBuild = parseBuildPath(aFullBuild, false);
+		span.stop();
 		
 
 		if (fBuildPathErrs) {
@@ -150,14 +191,17 @@ public class ZamiaProjectBuilder {
 			return 0;
 		}
 
-		ZamiaProfiler.getInstance().startTimer("ZDB commit");
+		span = phaseTimer.start("ZDB commit");
 		setTaskName("ZDB commit");
 		fZPrj.getZDB().flush();
 		worked(100);
 
-		ZamiaProfiler.getInstance().stopTimer("ZDB commit");
+		span.stop();
+
+		fZPrj.getZDB().sampleMetrics(metrics);
 
-		ZamiaProfiler.getInstance().dump();
+		metrics.dump();
+		metrics.export();
 
 		return numChanged;
 	}
@@ -220,7 +264,6 @@ public class ZamiaProjectBuilder {
 		if (sf == null) {
 			logger.info("ZamiaProjectBuilder: Not parsing build path because no source file given.");
 			fBuildPathErrs = true;
-			ZamiaProfiler.getInstance().stopTimer("BP parsing");
 			return fullBuild;
 		}
 
@@ -264,8 +307,6 @@ public class ZamiaProjectBuilder {
 
 	private void fullBuild() throws ZamiaException, IOException {
 
-		ZamiaProfiler.getInstance().reset();
-
 		logger.info("ZamiaProjectBuilder: Running Tcl build init...");
 		setTaskName("Running Tcl build init...");
 
@@ -298,49 +339,38 @@ public class ZamiaProjectBuilder {
 
 		rebuildIGs();
 
-		synthesize();
+		synthesize(null);
 	}
 
 	/*
 	 * Indexer stuff
 	 */
 
-	private synchronized void countStats(boolean aIndexing, int aNumChars, int aNumLines) {
-		fTotalNumDoneFiles++;
-		fTotalNumChars += aNumChars;
-		fTotalNumLines += aNumLines;
+	private void countStats(boolean aIndexing, int aNumChars, int aNumLines) {
+		int done = fTotalNumDoneFiles.incrementAndGet();
+		fTotalNumChars.addAndGet(aNumChars);
+		int lines = fTotalNumLines.addAndGet(aNumLines);
+		int todo = fNumTodoFiles.get();
 		if (aIndexing) {
-			logger.info("ZamiaProjectBuilder: Indexing: %d files processed, %d to go, %d lines so far.", fTotalNumDoneFiles, fNumTodoFiles, fTotalNumLines);
+			logger.info("ZamiaProjectBuilder: Indexing: %d files processed, %d to go, %d lines so far.", done, todo, lines);
 		} else {
-			logger.info("ZamiaProjectBuilder: Parsing: %d files processed, %d lines so far.", fTotalNumDoneFiles, fTotalNumLines);
+			logger.info("ZamiaProjectBuilder: Parsing: %d files processed, %d lines so far.", done, lines);
 		}
 
-		int worked = fTotalNumDoneFiles * 1000 / (fTotalNumDoneFiles + fNumTodoFiles);
-		if (worked > fLastWorked) {
+		int worked = done * 1000 / (done + todo);
+		int lastWorked = fLastWorked.get();
+		if (worked > lastWorked && fLastWorked.compareAndSet(lastWorked, lastWorked + 1)) {
 			worked(1);
-			fLastWorked++;
 		}
 	}
 
-	private synchronized void decTodoFiles() {
-		fNumTodoFiles--;
-		notifyAll();
-	}
-
-	private synchronized void incTodoFiles() {
-		fNumTodoFiles++;
-		notifyAll();
-	}
-
-	private synchronized void addToTodoList(String aPath) {
-		fTodoList.add(aPath);
-	}
-
-	private synchronized void removeFromTodoList(String aPath) {
-		fTodoList.remove(aPath);
-	}
-
-	class ProcessFileJob implements Runnable {
+	/**
+	 * Indexes a file or, recursively, a directory. Sub directories and files
+	 * are forked so idle workers steal them, a job completes once all its
+	 * children have.
+	 */
+	@SuppressWarnings("serial")
+	class IndexJob extends RecursiveAction {
 
 		private String fPath;
 
@@ -358,7 +388,7 @@ public class ZamiaProjectBuilder {
 
 		private int fDepth;
 
-		public ProcessFileJob(String aPath, String aLibId, int aPriority, boolean aUseFSCache, boolean aBottomUp, boolean aRecursive, int aDepth) {
+		public IndexJob(String aPath, String aLibId, int aPriority, boolean aUseFSCache, boolean aBottomUp, boolean aRecursive, int aDepth) {
 			fPath = aPath;
 			fLibId = aLibId;
 			fPriority = aPriority;
@@ -367,105 +397,84 @@ public class ZamiaProjectBuilder {
 			fBottomUp = aBottomUp;
 			fRecursive = aRecursive;
 			fDepth = aDepth;
-			addToTodoList(aPath);
+			fNumTodoFiles.incrementAndGet();
+			fTodoList.add(aPath);
 		}
 
-		public void run() {
+		@Override
+		protected void compute() {
+			try {
+				if (!isCanceled()) {
+					if (dump) {
+						logger.debug("ZamiaProjectBuilder: Working on path '%s'", fPath);
+					}
 
-			if (!isCanceled()) {
-				if (dump) {
-					logger.debug("ZamiaProjectBuilder: Working on path '%s'", fPath);
+					if (fsCache.isDirectory(fPath, fUseFSCache) && (fRecursive || fDepth == 0)) {
+						indexDir();
+					} else {
+						indexFile();
+					}
 				}
+			} catch (Throwable t) {
+				// handled here, invokeAll() would cancel the siblings of this job otherwise
+				logger.error("ZamiaProjectBuilder: Exception caught while indexing '%s': %s", fPath, t);
+				el.logException(t);
+			} finally {
+				fNumTodoFiles.decrementAndGet();
+				fTodoList.remove(fPath);
+			}
+		}
 
-				if (fsCache.isDirectory(fPath, fUseFSCache) && (fRecursive || fDepth == 0)) {
-					if (!isCanceled()) {
-						String[] files = fsCache.list(fPath, fUseFSCache);
-
-						if (files != null) {
-							for (int i = 0; i < files.length; i++) {
-								String fn = files[i];
-
-								if (isCanceled()) {
-									break;
-								}
-
-								String filename = fPath + File.separator + fn;
+		private void indexDir() {
+			String[] files = fsCache.list(fPath, fUseFSCache);
+			if (files == null) {
+				return;
+			}
 
-								incTodoFiles();
-								fExecutorService.execute(new ProcessFileJob(filename, fLibId, fPriority, fUseFSCache, fBottomUp, fRecursive, fDepth + 1));
-							}
-						}
+			ArrayList<IndexJob> jobs = new ArrayList<IndexJob>(files.length);
+			for (String fn : files) {
+				if (isCanceled()) {
+					break;
+				}
+				jobs.add(new IndexJob(fPath + File.separator + fn, fLibId, fPriority, fUseFSCache, fBottomUp, fRecursive, fDepth + 1));
+			}
 
-						countStats(true, 0, 0);
-					}
-				} else {
-					File f = new File(fPath);
+			countStats(true, 0, 0);
 
-					if (fileAcceptable(f, fBP)) {
-						if (dump) {
-							logger.debug("ZamiaProjectBuilder: accepting: " + fPath);
-						}
+			invokeAll(jobs);
+		}
 
-						SourceFile sf = new SourceFile(f);
-
-						VHDLIndexer indexer = getVHDLIndexer();
-						if (indexer != null) {
-
-							Reader reader = null;
-							try {
-								reader = fsCache.openFile(sf, fUseFSCache);
-								if (!isCanceled()) {
-									indexer.parse(reader, fLibId, sf, fPriority, fUseFSCache, fBottomUp, fDUM);
-								}
-							} catch (IOException e) {
-								logger.error("ZamiaProjectBuilder: IOException caught while indexing '%s': %s", sf.getAbsolutePath(), e.getMessage());
-								el.logException(e);
-							} catch (ZamiaException e) {
-								el.logZamiaException(e);
-							} finally {
-								if (reader != null) {
-									try {
-										reader.close();
-									} catch (IOException e) {
-										el.logException(e);
-									}
-								}
-							}
-							countStats(true, sf.getNumChars(), sf.getNumLines());
-
-							putVHDLIndexer(indexer);
-						} else {
-							logger.error("ZamiaProjectBuilder: *** Error: indexer NULL!!!!!");
-						}
-
-					} else {
-						if (dump) {
-							logger.debug("ZamiaProjectBuilder: rejecting: " + fPath);
-						}
-					}
+		private void indexFile() {
+			File f = new File(fPath);
 
+			if (!fileAcceptable(f, fBP)) {
+				if (dump) {
+					logger.debug("ZamiaProjectBuilder: rejecting: " + fPath);
 				}
+				return;
+			}
 
+			if (dump) {
+				logger.debug("ZamiaProjectBuilder: accepting: " + fPath);
 			}
-			decTodoFiles();
-			removeFromTodoList(fPath);
-		}
-	}
 
-	private synchronized VHDLIndexer getVHDLIndexer() {
-		try {
-			while (fIndexerPool.isEmpty()) {
-				wait();
+			SourceFile sf = new SourceFile(f);
+
+			ZamiaMetrics.Span span = indexTimer.start(sf.getAbsolutePath());
+			try {
+				fIndexers.get().parse(fsCache.openText(sf, fUseFSCache), fLibId, sf, fPriority, fUseFSCache, fBottomUp, fIndexedStubs);
+			} catch (IOException e) {
+				logger.error("ZamiaProjectBuilder: IOException caught while indexing '%s': %s", sf.getAbsolutePath(), e.getMessage());
+				el.logException(e);
+			} catch (ZamiaException e) {
+				el.logZamiaException(e);
+			} finally {
+				span.stop();
 			}
-		} catch (InterruptedException e) {
-			el.logException(e);
-		}
-		return fIndexerPool.remove();
-	}
+			fIndexedFiles.add(sf);
 
-	private synchronized void putVHDLIndexer(VHDLIndexer aIndexer) {
-		fIndexerPool.add(aIndexer);
-		notifyAll();
+			countStats(true, sf.getNumChars(), sf.getNumLines());
+		}
 	}
 
 	public static boolean fileNameAcceptable(String aFileName) {
@@ -496,7 +505,7 @@ public class ZamiaProjectBuilder {
 		return acceptable;
 	}
 
-	private synchronized String getDirListJobsString() {
+	private String getDirListJobsString() {
 		StringBuilder buf = new StringBuilder();
 		int n = fTodoList.size();
 		int m = 0;
@@ -537,22 +546,21 @@ public class ZamiaProjectBuilder {
 		logger.info("ZamiaProjectBuilder: Starting multi-threaded indexing...");
 		logger.info("ZamiaProjectBuilder: ===================================");
 
-		ZamiaProfiler.getInstance().startTimer("Indexing");
-
-		fExecutorService = Executors.newFixedThreadPool(NUM_THREADS);
+		ZamiaMetrics.Span span = phaseTimer.start("Indexing");
 
-		fIndexerPool = new LinkedList<VHDLIndexer>();
-		for (int i = 0; i < NUM_THREADS; i++) {
-			fIndexerPool.add(new VHDLIndexer());
-		}
+		ForkJoinPool pool = new ForkJoinPool(NUM_THREADS);
 
-		fLastWorked = 0;
+		fLastWorked.set(0);
 
-		fTodoList = new HashSet<String>();
+		fTodoList = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		fIndexedFiles = new ConcurrentLinkedQueue<SourceFile>();
+		fIndexedStubs = new ConcurrentLinkedQueue<DesignModuleStub>();
 
 		BuildPath bp = fZPrj.getBuildPath();
 
-		fNumTodoFiles = 0;
+		fNumTodoFiles.set(0);
+
+		ArrayList<IndexJob> jobs = new ArrayList<IndexJob>();
 		int n = bp.getNumEntries();
 		for (int i = 0; i < n; i++) {
 			BuildPathEntry entry = bp.getEntry(i);
@@ -564,26 +572,30 @@ public class ZamiaProjectBuilder {
 				//					fsCache.invalidate(entry.fPrefix);
 				//				}
 
-				incTodoFiles();
-				fExecutorService.execute(new ProcessFileJob(entry.fPrefix, entry.fLibId, entry.fPriority, entry.fReadonly, entry.fBottomUp, entry.fRecursive, 0));
+				jobs.add(new IndexJob(entry.fPrefix, entry.fLibId, entry.fPriority, entry.fReadonly, entry.fBottomUp, entry.fRecursive, 0));
 			}
 		}
 
-		// Join will wait for just a single thread. A better solution might be a
-		// java.util.concurrent.CountDownLatch. Simply initialize the latch with
-		// the count set to the number of worker threads. Each worker thread
-		// should call countDown() just before it exits, and the main thread
-		// simply calls await(), which will block until the counter reaches
-		// zero.
+		final CountDownLatch done = new CountDownLatch(jobs.size());
+		for (final IndexJob job : jobs) {
+			pool.execute(new Runnable() {
+				public void run() {
+					try {
+						job.invoke();
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
 
-		while (!isCanceled() && getTodoDirs() > 0) {
-			logger.info("ZamiaProjectBuilder: Waiting for indexing of external files to complete. " + fNumTodoFiles + " jobs to go.");
-			logger.info("ZamiaProjectBuilder: %s", getDirListJobsString());
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				el.logException(e);
+		try {
+			while (!isCanceled() && !done.await(500, TimeUnit.MILLISECONDS)) {
+				logger.info("ZamiaProjectBuilder: Waiting for indexing of external files to complete. " + fNumTodoFiles.get() + " jobs to go.");
+				logger.info("ZamiaProjectBuilder: %s", getDirListJobsString());
 			}
+		} catch (InterruptedException e) {
+			el.logException(e);
 		}
 
 		if (isCanceled()) {
@@ -594,23 +606,27 @@ public class ZamiaProjectBuilder {
 
 		try {
 			if (isCanceled()) {
-				fExecutorService.shutdownNow();
+				pool.shutdownNow();
 			} else {
-				fExecutorService.shutdown();
+				pool.shutdown();
 			}
-			fExecutorService.awaitTermination(7, TimeUnit.DAYS);
+			pool.awaitTermination(7, TimeUnit.DAYS);
 		} catch (InterruptedException e) {
 			el.logException(e);
 		}
 		fsCache.setCancelWait(false);
 
+		fDUM.addStubs(fIndexedFiles, fIndexedStubs);
+		fIndexedFiles = null;
+		fIndexedStubs = null;
+
 		double time = (System.currentTimeMillis() - startTime) / 1000.0;
 		logger.info("ZamiaProjectBuilder: Indexing external sources done. " + fTotalNumChars + " chars in " + fTotalNumLines + " lines in " + fTotalNumDoneFiles
 				+ " files so far. Time elapsed: " + time + "s.");
-		ZamiaProfiler.getInstance().stopTimer("Indexing");
+		span.stop();
 
-		if (fLastWorked < 1000) {
-			worked(1000 - fLastWorked);
+		if (fLastWorked.get() < 1000) {
+			worked(1000 - fLastWorked.get());
 		}
 	}
 
@@ -631,7 +647,7 @@ public class ZamiaProjectBuilder {
 		return info;
 	}
 
-	private void compileDir(File[] files) throws IOException, ZamiaException {
+	private void compileDir(File[] files, ArrayList<SourceFile> aSFs) throws IOException, ZamiaException {
 
 		if (files == null)
 			return;
@@ -647,26 +663,94 @@ public class ZamiaProjectBuilder {
 			}
 
 			if (f.isDirectory()) {
-				compileDir(f.listFiles());
+				compileDir(f.listFiles(), aSFs);
 			} else {
-				compileFile(this.fZPrj.fBasePath.toSF(f), true);
+				aSFs.add(this.fZPrj.fBasePath.toSF(f));
 			}
 		}
 	}
 
+	class ParseFileJob implements Callable<ParsedFile> {
+
+		private SourceFile fSF;
+
+		public ParseFileJob(SourceFile aSF) {
+			fSF = aSF;
+		}
+
+		public ParsedFile call() throws IOException, ZamiaException {
+			if (isCanceled()) {
+				return null;
+			}
+
+			BuildPath bp = fZPrj.getBuildPath();
+			if (!fileAcceptable(fSF.getFile(), bp)) {
+				return null;
+			}
+
+			BuildPathEntry entry = bp.findEntry(fSF);
+			if (entry.fLibId == null) {
+				return null;
+			}
+
+			return fDUM.parseFile(fSF, null, entry.fLibId, entry.fPriority, entry.fBottomUp, entry.fReadonly, false);
+		}
+	}
+
 	public void parseLocalSources() throws IOException, ZamiaException {
 
 		long startTime = System.currentTimeMillis();
-		ZamiaProfiler.getInstance().startTimer("Parsing");
+		ZamiaMetrics.Span span = phaseTimer.start("Parsing");
+
+		ArrayList<SourceFile> sfs = new ArrayList<SourceFile>();
+		compileDir(fZPrj.fBasePath.getFiles(), sfs);
 
-		compileDir(fZPrj.fBasePath.getFiles());
+		/*
+		 * files are parsed concurrently but registered in the order of sfs,
+		 * so which of several equal-priority design units wins does not
+		 * depend on which thread finishes first
+		 */
+		ArrayList<Future<ParsedFile>> jobs = new ArrayList<Future<ParsedFile>>(sfs.size());
+		try {
+			for (SourceFile sf : sfs) {
+				jobs.add(parsePool.submit(new ParseFileJob(sf)));
+			}
+			for (int i = 0; i < jobs.size(); i++) {
+				ParsedFile parsed;
+				try {
+					parsed = jobs.get(i).get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					}
+					if (cause instanceof ZamiaException) {
+						throw (ZamiaException) cause;
+					}
+					throw new ZamiaException("ZamiaProjectBuilder: parsing failed: " + cause);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					logger.info("ZamiaProjectBuilder: Interrupted while parsing local sources.");
+					break;
+				}
+				if (parsed != null) {
+					parsed.commit();
+					SourceFile sf = sfs.get(i);
+					countStats(false, sf.getNumChars(), sf.getNumLines());
+				}
+			}
+		} finally {
+			for (Future<ParsedFile> job : jobs) {
+				job.cancel(true);
+			}
+		}
 		worked(1000);
 
 		double time = (System.currentTimeMillis() - startTime) / 1000.0;
 
 		logger.info("ZamiaProjectBuilder: Finished parsing local sources. Runtime: " + time + " s. " + fTotalNumChars + " chars, " + fTotalNumLines + " lines processed in "
 				+ fTotalNumDoneFiles + " files.");
-		ZamiaProfiler.getInstance().stopTimer("Parsing");
+		span.stop();
 	}
 
 	private void rebuildIGs() {
@@ -675,7 +759,7 @@ public class ZamiaProjectBuilder {
 		setTaskName("Elaborating (IG)...");
 
 		long startTime = System.currentTimeMillis();
-		ZamiaProfiler.getInstance().startTimer("IG");
+		ZamiaMetrics.Span span = phaseTimer.start("IG");
 
 		BuildPath bp = fZPrj.getBuildPath();
 
@@ -694,23 +778,33 @@ public class ZamiaProjectBuilder {
 		double d = System.currentTimeMillis() - startTime;
 
 		logger.info("ZamiaProjectBuilder: Finished building instantiation graph(s). Time elapsed: %fs", d / 1000.0);
-		ZamiaProfiler.getInstance().stopTimer("IG");
+		span.stop();
 
 	}
 
-	private void synthesize() throws ZamiaException {
+	/**
+	 * @param aRebuilt
+	 *            signatures of the IG modules changed by an incremental
+	 *            build, only RTL modules depending on them are synthesized
+	 *            again. null: synthesize everything from scratch.
+	 */
+	private void synthesize(HashSetArray<String> aRebuilt) throws ZamiaException {
 		logger.info("ZamiaProjectBuilder: Synthesizing:");
 		logger.info("ZamiaProjectBuilder: =============");
 		setTaskName("Synthesizing...");
 
 		long startTime = System.currentTimeMillis();
-		ZamiaProfiler.getInstance().startTimer("Synth");
+		ZamiaMetrics.Span span = phaseTimer.start("Synth");
 
 		BuildPath bp = fZPrj.getBuildPath();
 
 		RTLManager rtlm = fZPrj.getRTLM();
 
-		rtlm.clean();
+		if (aRebuilt == null) {
+			rtlm.clean();
+		} else {
+			rtlm.invalidate(aRebuilt);
+		}
 
 		int n = bp.getNumSynthTLs();
 
@@ -723,24 +817,24 @@ public class ZamiaProjectBuilder {
 
 			Toplevel toplevel = bp.getSynthTL(i);
 
+			if (aRebuilt != null && rtlm.findModule(toplevel) != null) {
+				continue;
+			}
+
 			rtlm.buildRTL(toplevel, fMonitor, 1000 / n);
 		}
 
 		double d = System.currentTimeMillis() - startTime;
 
 		logger.info("ZamiaProjectBuilder: Finished synthesizing. Time elapsed: %fs", d / 1000.0);
-		ZamiaProfiler.getInstance().stopTimer("Synth");
+		span.stop();
 
 	}
 
-	private synchronized int getTodoDirs() {
-		return fNumTodoFiles;
-	}
-
 	public void clean() {
-		fTotalNumChars = 0;
-		fTotalNumLines = 0;
-		fTotalNumDoneFiles = 0;
+		fTotalNumChars.set(0);
+		fTotalNumLines.set(0);
+		fTotalNumDoneFiles.set(0);
 	}
 
 	public void setMonitor(IZamiaMonitor aMonitor) {
@@ -767,8 +861,6 @@ public class ZamiaProjectBuilder {
 
 	private int incrementalBuild(HashSetArray<SourceFile> aChanged) throws IOException, ZamiaException {
 
-		ZamiaProfiler.getInstance().reset();
-
 		logger.info("ZamiaProjectBuilder: Starting an incremental build.");
 
 		tclBuildInit(false);
@@ -812,12 +904,10 @@ public class ZamiaProjectBuilder {
 		 * figure out affected DUs, drop them from DUM (we will re-parse those files in a moment)
 		 */
 
-		ZamiaProfiler.getInstance().startTimer("Parsing");
+		ZamiaMetrics.Span span = phaseTimer.start("Parsing");
 
 		HashSetArray<DMUID> affectedDUUIDs = new HashSetArray<DMUID>();
 
-		boolean needFullBuild = false;
-
 		n = changed.size();
 		for (int i = 0; i < n; i++) {
 			SourceFile sf = changed.get(i);
@@ -826,14 +916,6 @@ public class ZamiaProjectBuilder {
 			SFDMInfo info = fDUM.removeStubs(sf);
 			if (info != null) {
 				for (DMUID duuid : info) {
-
-					if (!needFullBuild) {
-						if (duuid.getType() != LUType.Entity && duuid.getType() != LUType.Architecture) {
-							logger.info("ZamiaProjectBuilder: Non-Entity/Architecture DU '%s' was changed => need a full rebuild.", duuid);
-							needFullBuild = true;
-						}
-					}
-
 					affectedDUUIDs.add(duuid);
 				}
 			}
@@ -843,12 +925,11 @@ public class ZamiaProjectBuilder {
 			if (entry.fLibId != null) {
 				info = compileFile(sf, false);
 
-				if (!needFullBuild && info != null) {
+				// packages new in this file have to be looked at, too
+				if (info != null) {
 					for (DMUID duuid : info) {
-
-						if (duuid.getType() != LUType.Entity && duuid.getType() != LUType.Architecture) {
-							logger.info("ZamiaProjectBuilder: Non-Entity/Architecture DU '%s' was changed => need a full rebuild.", duuid);
-							//needFullBuild = true;
+						if (duuid.getType() == LUType.Package || duuid.getType() == LUType.PackageBody) {
+							affectedDUUIDs.add(duuid);
 						}
 					}
 				}
@@ -862,11 +943,7 @@ public class ZamiaProjectBuilder {
 			worked(1000 / n);
 		}
 
-		ZamiaProfiler.getInstance().stopTimer("Parsing");
-
-		//if (needFullBuild) {
-		//	return -1;
-		//}
+		span.stop();
 
 		logger.info("ZamiaProjectBuilder: Number of DUs affected by incremental build: %d", affectedDUUIDs.size());
 
@@ -874,16 +951,19 @@ public class ZamiaProjectBuilder {
 		 * figure out which IG nodes are affected by this, then
 		 * - drop them from the graph and instantiators/instaniations lists
 		 * - mark their instantiators as dirty
+		 * changed packages are elaborated again, only modules using items
+		 * that actually changed are affected
 		 */
 
 		IGManager igm = fZPrj.getIGM();
-		n = igm.rebuildNodes(affectedDUUIDs, fMonitor);
+		HashSetArray<String> rebuilt = new HashSetArray<String>();
+		n = igm.rebuildNodes(affectedDUUIDs, rebuilt, fMonitor);
 
 		/*
-		 * always re-synthesize all rtl modules
+		 * re-synthesize rtl modules of rebuilt nodes and their instantiators
 		 */
 
-		synthesize();
+		synthesize(rebuilt);
 
 		return n;
 	}
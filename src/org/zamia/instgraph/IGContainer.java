@@ -9,9 +9,12 @@
 package org.zamia.instgraph;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.zamia.DMManager;
 import org.zamia.ExceptionLogger;
@@ -47,6 +50,23 @@ public class IGContainer extends IGItem {
 
 	public static final String UNIVERSAL_REAL_ID = "$$universal_real$$";
 
+	public static boolean ENABLE_RESOLVE_CACHE = true;
+
+	static {
+		ENABLE_RESOLVE_CACHE = Utils.getEnvBool("ZAMIA_RESOLVE_CACHE", ENABLE_RESOLVE_CACHE);
+	}
+
+	/*
+	 * bumped whenever design units are (re-)indexed or packages dropped for
+	 * re-elaboration, or a container some cached resolve() result of another
+	 * container looked at changes. Results which looked at nothing but their
+	 * own container do not depend on it.
+	 */
+	private static final AtomicLong resolveGeneration = new AtomicLong();
+
+	// DBIDs of the containers looked at by other containers' cached results
+	private static final Set<Long> sharedContainers = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
 	private Set<IGLibraryImport> fImportedLibs = new HashSet<IGLibraryImport>();
 
 	private ArrayList<IGPackageImport> fImportedPackages = new ArrayList<IGPackageImport>();
@@ -63,6 +83,18 @@ public class IGContainer extends IGItem {
 
 	private long fParentDBID = 0;
 
+	/*
+	 * bumped whenever the local items or imports change, cached resolve()
+	 * results record the versions of every container they looked at. Stored
+	 * along with the items so a reloaded container never goes back to a
+	 * version some cached result was computed from.
+	 */
+	private volatile long fVersion = 0;
+
+	private transient volatile ConcurrentHashMap<String, ResolveEntry> fResolveCache;
+
+	private transient volatile HashMap<String, Integer> fInterfaceSlots;
+
 	public IGContainer(long aParentDBID, SourceLocation aLocation, ZDB aZDB) {
 		super(aLocation, aZDB);
 		fParentDBID = aParentDBID;
@@ -108,6 +140,25 @@ public class IGContainer extends IGItem {
 		return (IGObject) getZDB().load(fInterfaces.get(aIdx));
 	}
 
+	/**
+	 * Index of the interface aId for getInterface(), -1 if there is none.
+	 * Lets callers that look up the same formal over and over (builtins)
+	 * skip name resolution.
+	 */
+	public int getInterfaceSlot(String aId) {
+		HashMap<String, Integer> slots = fInterfaceSlots;
+		if (slots == null) {
+			slots = new HashMap<String, Integer>();
+			int n = fInterfaces.size();
+			for (int i = n - 1; i >= 0; i--) {
+				slots.put(getInterface(i).getId(), i);
+			}
+			fInterfaceSlots = slots;
+		}
+		Integer slot = slots.get(aId);
+		return slot != null ? slot.intValue() : -1;
+	}
+
 	public Iterable<IGObject> interfaces() {
 		return fInterfaces.zdbIterator(getZDB());
 	}
@@ -155,16 +206,183 @@ public class IGContainer extends IGItem {
 			}
 		}
 
+		bumpVersion();
+		fInterfaceSlots = null;
+
 		storeOrUpdate();
 	}
 
+	/*
+	 * after the change: a lookup which saw the old version either made
+	 * us shared before this or reads the new version
+	 */
+	private void bumpVersion() {
+		fVersion++;
+		if (sharedContainers.contains(getDBID())) {
+			resolveGeneration.incrementAndGet();
+		}
+	}
+
 	public IGResolveResult resolve(String aId) {
 		IGResolveResult res = new IGResolveResult();
-		resolveP(aId, res);
+		if (ENABLE_RESOLVE_CACHE) {
+			resolveCached(aId, res, null);
+		} else {
+			resolveP(aId, res, null);
+		}
 		return res;
 	}
 
-	private void resolveP(String aId, IGResolveResult aResult) {
+	/**
+	 * Drop all memoized resolve() results that depend on which design units
+	 * and packages exist.
+	 */
+	public static void invalidateResolveCaches() {
+		resolveGeneration.incrementAndGet();
+	}
+
+	/*
+	 * Memoized resolveP(): a hit compares our version and the resolve
+	 * generation, no other container is loaded. Package uses are replayed
+	 * so IGManager's dependency tracking sees every lookup.
+	 */
+	private void resolveCached(String aId, IGResolveResult aResult, ResolveTrace aTrace) {
+
+		// before we look at anything, so changes from now on invalidate aTrace's result
+		if (aTrace != null) {
+			aTrace.addContainer(this);
+		}
+
+		ConcurrentHashMap<String, ResolveEntry> cache = fResolveCache;
+		if (cache == null) {
+			cache = new ConcurrentHashMap<String, ResolveEntry>();
+			fResolveCache = cache;
+		}
+
+		ResolveEntry entry = cache.get(aId);
+		if (entry != null && entry.isValid(this)) {
+
+			int n = entry.fPackages.length;
+			if (n > 0) {
+				IGManager igm = ((ZamiaProject) getZDB().getOwner()).getIGM();
+				for (int i = 0; i < n; i++) {
+					DMUID pkg = entry.fPackages[i];
+					igm.recordPackageUse(pkg, null);
+					igm.recordPackageUse(pkg, aId);
+				}
+			}
+
+		} else {
+
+			// read before computing: a change racing with us makes the entry stale right away
+			long version = fVersion;
+			long generation = resolveGeneration.get();
+
+			IGResolveResult res = new IGResolveResult();
+			ResolveTrace trace = new ResolveTrace(this);
+			resolveP(aId, res, trace);
+
+			entry = new ResolveEntry(version, generation, res, trace);
+			if (trace.fCacheable) {
+				cache.put(aId, entry);
+			}
+		}
+
+		for (IGItem item : entry.fItems) {
+			aResult.addItem(item);
+		}
+
+		if (aTrace != null) {
+			aTrace.add(entry);
+		}
+	}
+
+	/*
+	 * is there a cached resolve() result for aId that is still valid?
+	 */
+	boolean isResolveCached(String aId) {
+		ConcurrentHashMap<String, ResolveEntry> cache = fResolveCache;
+		ResolveEntry entry = cache != null ? cache.get(aId) : null;
+		return entry != null && entry.isValid(this);
+	}
+
+	/*
+	 * what a resolveP() call looked at
+	 */
+	private static final class ResolveTrace {
+
+		final IGContainer fOwner;
+
+		final ArrayList<DMUID> fPackages = new ArrayList<DMUID>();
+
+		// looked at other containers, design units or packages
+		boolean fShared = false;
+
+		boolean fCacheable = true;
+
+		ResolveTrace(IGContainer aOwner) {
+			fOwner = aOwner;
+		}
+
+		void addContainer(IGContainer aContainer) {
+			if (aContainer == fOwner) {
+				return;
+			}
+			long dbid = aContainer.getDBID();
+			if (dbid == 0) {
+				// we could not tell when it changes
+				fCacheable = false;
+				return;
+			}
+			sharedContainers.add(dbid);
+			fShared = true;
+		}
+
+		void add(ResolveEntry aEntry) {
+			for (DMUID pkg : aEntry.fPackages) {
+				fPackages.add(pkg);
+			}
+			fShared |= aEntry.fShared;
+		}
+	}
+
+	private static final class ResolveEntry {
+
+		final long fVersion;
+
+		// only compared if fShared
+		final long fGeneration;
+
+		final boolean fShared;
+
+		final IGItem[] fItems;
+
+		final DMUID[] fPackages;
+
+		ResolveEntry(long aVersion, long aGeneration, IGResolveResult aResult, ResolveTrace aTrace) {
+			fVersion = aVersion;
+			fGeneration = aGeneration;
+			fShared = aTrace.fShared;
+
+			int n = aResult.getNumResults();
+			fItems = new IGItem[n];
+			for (int i = 0; i < n; i++) {
+				fItems[i] = aResult.getResult(i);
+			}
+
+			fPackages = aTrace.fPackages.toArray(new DMUID[aTrace.fPackages.size()]);
+		}
+
+		boolean isValid(IGContainer aOwner) {
+			return fVersion == aOwner.fVersion && (!fShared || fGeneration == resolveGeneration.get());
+		}
+	}
+
+	private void resolveP(String aId, IGResolveResult aResult, ResolveTrace aTrace) {
+
+		if (aTrace != null) {
+			aTrace.addContainer(this);
+		}
 
 		/*
 		 * first, local items
@@ -190,7 +408,12 @@ public class IGContainer extends IGItem {
 		if (fParentDBID != 0) {
 			IGContainer parent = (IGContainer) getZDB().load(fParentDBID);
 
-			parent.resolveP(aId, res);
+			// the parent's early exits depend on what we found so far, its cache only holds results for a fresh lookup
+			if (ENABLE_RESOLVE_CACHE && res.isEmpty()) {
+				parent.resolveCached(aId, res, aTrace);
+			} else {
+				parent.resolveP(aId, res, aTrace);
+			}
 
 			if (!res.isEmpty() && !res.isContainsSubPrograms())
 				return;
@@ -204,6 +427,10 @@ public class IGContainer extends IGItem {
 		DMManager dum = zprj.getDUM();
 		IGManager igm = zprj.getIGM();
 
+		if (aTrace != null && (!fImportedLibs.isEmpty() || !fImportedPackages.isEmpty())) {
+			aTrace.fShared = true;
+		}
+
 		for (IGLibraryImport li : fImportedLibs) {
 
 			DMUID duuid = new DMUID(LUType.Entity, li.getRealId(), aId, null);
@@ -234,8 +461,15 @@ public class IGContainer extends IGItem {
 				continue;
 			}
 
+			igm.recordPackageUse(pkg.getDUUID(), aId);
+
 			IGContainer pkgContainer = pkg.getContainer();
 
+			if (aTrace != null) {
+				aTrace.fPackages.add(pkg.getDUUID());
+				aTrace.addContainer(pkgContainer);
+			}
+
 			if (itemId != null) {
 				ArrayList<IGContainerItem> itemsC = pkgContainer.findLocalItems(aId);
 				if (itemsC != null) {
@@ -476,6 +710,8 @@ public class IGContainer extends IGItem {
 	public void removeInterfaces() {
 		fLocalItemMap = new HashMap<String, ZdbList<IGContainerItem>>();
 		fInterfaces = new ZdbList<>();
+		fInterfaceSlots = null;
+		bumpVersion();
 	}
 
 	public void add(ConfigurationSpecification aConfSpec) {
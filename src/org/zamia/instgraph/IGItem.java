@@ -10,6 +10,8 @@ package org.zamia.instgraph;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
@@ -33,6 +35,7 @@ import org.zamia.vhdl.ast.VHDLNode;
 import org.zamia.vhdl.ast.VHDLNode.ASTErrorMode;
 import org.zamia.zdb.ZDB;
 import org.zamia.zdb.ZDBIIDSaver;
+import org.zamia.zdb.ZDBVarInt;
 
 /**
  * 
@@ -58,6 +61,9 @@ public abstract class IGItem implements Serializable, ZDBIIDSaver {
 
 	private transient SourceLocation fLocation;
 
+	// every IG record carries these, so they are written by hand, see writeObject()
+	private static final ObjectStreamField[] serialPersistentFields = {};
+
 	public IGItem(SourceLocation aLocation, ZDB aZDB) {
 
 		if (aZDB != null) {
@@ -76,17 +82,24 @@ public abstract class IGItem implements Serializable, ZDBIIDSaver {
 			return 0;
 		long dbid = aItem.getDBID();
 		if (dbid == 0) {
-			dbid = getZDB().store(aItem);
+			dbid = getZDB().store(aItem.getStorable());
 		}
 		return dbid;
 	}
 
+	/**
+	 * What save() hands to the ZDB for this item. Shared instances, which
+	 * must not get a DBID of their own, return a private copy.
+	 */
+	protected IGItem getStorable() {
+		return this;
+	}
+
 	public long storeOrUpdate() {
 		if (fDBID == 0) {
-			save(this);
-		} else {
-			getZDB().update(fDBID, this);
+			return save(this);
 		}
+		getZDB().update(fDBID, this);
 		return fDBID;
 	}
 
@@ -390,8 +403,20 @@ public abstract class IGItem implements Serializable, ZDBIIDSaver {
 		return false;
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		ZDBVarInt.writeLong(out, fDBID);
+		ZDBVarInt.writeLong(out, fSFDBID);
+		ZDBVarInt.writeInt(out, fLine);
+		ZDBVarInt.writeInt(out, fCol);
+	}
+
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
 		setZDB(ZDB.getZDBFromStream(in));
 		in.defaultReadObject();
+		fDBID = ZDBVarInt.readLong(in);
+		fSFDBID = ZDBVarInt.readLong(in);
+		fLine = ZDBVarInt.readInt(in);
+		fCol = ZDBVarInt.readInt(in);
 	}
 }
@@ -8,14 +8,24 @@
  */
 package org.zamia.instgraph;
 
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.zamia.BuildPath;
@@ -27,11 +37,13 @@ import org.zamia.IZamiaMonitor;
 import org.zamia.SourceLocation;
 import org.zamia.Toplevel;
 import org.zamia.ToplevelPath;
+import org.zamia.Utils;
 import org.zamia.ZamiaException;
 import org.zamia.ZamiaException.ExCat;
 import org.zamia.ZamiaLogger;
-import org.zamia.ZamiaProfiler;
+import org.zamia.ZamiaMetrics;
 import org.zamia.ZamiaProject;
+import org.zamia.ZamiaProjectBuilder;
 import org.zamia.cli.jython.ZCJInterpreter;
 import org.zamia.instgraph.IGObject.IGObjectCat;
 import org.zamia.util.HashSetArray;
@@ -40,6 +52,7 @@ import org.zamia.util.PathName;
 import org.zamia.util.ZStack;
 import org.zamia.vhdl.ast.DMUID;
 import org.zamia.vhdl.ast.DMUID.LUType;
+import org.zamia.vhdl.ast.DesignUnit;
 import org.zamia.zdb.ZDB;
 import org.zamia.zdb.ZDBListIndex;
 import org.zamia.zdb.ZDBMapIndex;
@@ -57,11 +70,28 @@ public final class IGManager {
 
 	protected final static ExceptionLogger el = ExceptionLogger.getInstance();
 
+	private final static ZamiaMetrics.Histogram moduleTimer = ZamiaMetrics.getInstance().timer("zamia_ig_module_seconds", "Time spent elaborating the statements of an IG module", "module");
+
     private static final String PYTHON_BUILD_ELABORATE_CMD = "zamia_build_elaborate";
 
-    private static final int NUM_THREADS = 1; // set to 1 to disable multithreading code
+	/**
+	 * Threads elaborating module statements, 1 elaborates everything on the
+	 * calling thread. The resulting IG does not depend on it.
+	 */
+	public static int NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+	static {
+		NUM_THREADS = Utils.getEnvInt("ZAMIA_IG_THREADS", NUM_THREADS);
+	}
 
-	private static final boolean ENABLE_MULTITHREADING = NUM_THREADS > 1;
+	private final static ExecutorService pool = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable aRunnable) {
+			Thread thread = new Thread(aRunnable, "IG elaboration");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
 	private static final String MODULE_IDX = "IGM_ModuleIdx"; // signature -> IGModule
 
@@ -71,6 +101,12 @@ public final class IGManager {
 
 	private static final String SIGNATURES_IDX = "IGM_SignaturesIdx"; // uid -> HSA{signature, signature, ...}
 
+	private static final String PACKAGE_SIGS_IDX = "IGM_PackageSigsIdx"; // package uid -> IGPackageSignature
+
+	private static final String PACKAGE_DEPS_IDX = "IGM_PackageDepsIdx"; // package uid -> PackageDeps
+
+	private static final String MODULE_PACKAGES_IDX = "IGM_ModulePackagesIdx"; // signature -> HSA{package uid, ...}
+
 	private final ZamiaProject fZPrj;
 
 	private final ZDB fZDB;
@@ -79,20 +115,34 @@ public final class IGManager {
 
 	private final ERManager fERM;
 
-	// single thread only:
-	private ZStack<BuildNodeJob> fTodoStack;
+	/*
+	 * statements are elaborated in waves, see runIGBuild(). fLock guards the
+	 * fields below.
+	 */
 
-	// multi-threading:
+	private final ReentrantLock fLock = new ReentrantLock();
 
-	private Lock fLock;
+	private final Condition fModuleCreatedCond = fLock.newCondition();
 
-	private Condition fModuleCreatedCond;
+	private final HashMap<String, Thread> fModulesBeingCreated = new HashMap<String, Thread>(); // signature -> creating thread
 
-	private HashSet<String> fTodo;
+	private final HashMap<Thread, String> fWaitingFor = new HashMap<Thread, String>(); // thread -> signature it waits for
 
-	private HashSet<String> fModulesBeingCreated;
+	private HashSet<String> fTodo = new HashSet<String>(); // signatures of scheduled jobs not done yet
 
-	private ExecutorService fExecutorService;
+	private ArrayList<Claim> fClaims = new ArrayList<Claim>(); // getOrCreateIGModule() calls of the current wave
+
+	private ArrayList<BuildNodeJob> fNextWave = new ArrayList<BuildNodeJob>();
+
+	private int fNumRootClaims; // claims made outside of jobs, main thread only
+
+	// job the current thread is running
+	private final ThreadLocal<BuildNodeJob> fCurrentJob = new ThreadLocal<BuildNodeJob>();
+
+	// packages are built one at a time, readers wait for the ones in fPackagesBeingBuilt
+	private final ReentrantLock fPackageLock = new ReentrantLock();
+
+	private final Set<String> fPackagesBeingBuilt = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 	private IZamiaMonitor fMonitor;
 
@@ -112,6 +162,86 @@ public final class IGManager {
 
 	private ZDBListIndex<Long> fSignalConnIdx;
 
+	/**
+	 * Modules and packages that looked up items of a package, with the ids
+	 * they looked up.
+	 */
+	@SuppressWarnings("serial")
+	private static class PackageDeps implements Serializable {
+
+		final HashMap<String, HashSet<String>> fModules = new HashMap<String, HashSet<String>>(); // signature -> ids
+
+		final HashMap<DMUID, HashSet<String>> fPackages = new HashMap<DMUID, HashSet<String>>(); // package -> ids
+	}
+
+	// module or package currently being elaborated by this thread
+	private static class Consumer {
+
+		final String fSignature;
+
+		final DMUID fPackage;
+
+		final HashMap<String, HashSet<String>> fUses = new HashMap<String, HashSet<String>>(); // package uid -> ids
+
+		Consumer(String aSignature, DMUID aPackage) {
+			fSignature = aSignature;
+			fPackage = aPackage;
+		}
+	}
+
+	/**
+	 * A getOrCreateIGModule() call. Claims are applied between waves in the
+	 * order of the calls a single thread would have made, so the first
+	 * claim decides the path of a module and indices are updated in the
+	 * same order no matter which thread got there first.
+	 */
+	private static class Claim implements Comparable<Claim> {
+
+		final int fJob; // index of the claiming job in its wave, -1: outside of jobs
+
+		final int fSeq; // call number within that job
+
+		final ToplevelPath fPath;
+
+		final DMUID fParentDUUID, fDUUID;
+
+		final String fSignature;
+
+		final ArrayList<Pair<String, IGStaticValue>> fActualGenerics;
+
+		final boolean fElaborateStatements;
+
+		final SourceLocation fLocation;
+
+		Claim(int aJob, int aSeq, ToplevelPath aPath, DMUID aParentDUUID, DMUID aDUUID, String aSignature, ArrayList<Pair<String, IGStaticValue>> aActualGenerics,
+				boolean aElaborateStatements, SourceLocation aLocation) {
+			fJob = aJob;
+			fSeq = aSeq;
+			fPath = aPath;
+			fParentDUUID = aParentDUUID;
+			fDUUID = aDUUID;
+			fSignature = aSignature;
+			fActualGenerics = aActualGenerics;
+			fElaborateStatements = aElaborateStatements;
+			fLocation = aLocation;
+		}
+
+		@Override
+		public int compareTo(Claim aClaim) {
+			if (fJob != aClaim.fJob) {
+				return fJob < aClaim.fJob ? -1 : 1;
+			}
+			return fSeq < aClaim.fSeq ? -1 : fSeq > aClaim.fSeq ? 1 : 0;
+		}
+	}
+
+	private final ThreadLocal<ZStack<Consumer>> fConsumers = new ThreadLocal<ZStack<Consumer>>() {
+		@Override
+		protected ZStack<Consumer> initialValue() {
+			return new ZStack<Consumer>();
+		}
+	};
+
 	public IGManager(ZamiaProject aZPrj) {
 		fZPrj = aZPrj;
 		fZDB = fZPrj.getZDB();
@@ -144,9 +274,14 @@ public final class IGManager {
 
 		private IGManager fIGM;
 
-		public BuildNodeJob(IGManager aIGM, ToplevelPath aPath, DMUID aParentDUUID, DMUID aDUUID, String aSignature, ArrayList<Pair<String, IGStaticValue>> aActualGenerics,
+		private final int fIdx; // position in its wave
+
+		private int fNumClaims = 0;
+
+		public BuildNodeJob(IGManager aIGM, int aIdx, ToplevelPath aPath, DMUID aParentDUUID, DMUID aDUUID, String aSignature, ArrayList<Pair<String, IGStaticValue>> aActualGenerics,
 				SourceLocation aLocation) {
 			fIGM = aIGM;
+			fIdx = aIdx;
 			fPath = aPath;
 			fParentDUUID = aParentDUUID;
 			fDUUID = aDUUID;
@@ -269,6 +404,7 @@ public final class IGManager {
 		public void run() {
 			IGModule module = null;
 
+			fCurrentJob.set(this);
 			try {
 				try {
 
@@ -283,7 +419,14 @@ public final class IGManager {
 						IDesignModule dm = fDUM.getDM(fDUUID);
 						if (dm != null) {
 
-							dm.computeStatementsIG(fIGM, module);
+							startConsumer(fSignature, null);
+							ZamiaMetrics.Span span = moduleTimer.start(fSignature);
+							try {
+								dm.computeStatementsIG(fIGM, module);
+							} finally {
+								span.stop();
+								finishConsumer();
+							}
 
 						} else {
 							fERM.addError(new ZamiaException(ExCat.INTERMEDIATE, true, "IGManager: failed to find " + fDUUID, fLocation));
@@ -295,11 +438,10 @@ public final class IGManager {
 				}
 			} catch (Throwable t) {
 				el.logException(t);
+			} finally {
+				fCurrentJob.remove();
 			}
 
-			if (ENABLE_MULTITHREADING) {
-				fLock.lock();
-			}
 			if (module != null) {
 				module.setStatementsElaborated(true);
 				module.storeOrUpdate();
@@ -310,23 +452,22 @@ public final class IGManager {
 				}
 			}
 
-			fTodo.remove(fSignature);
-
-			if (ENABLE_MULTITHREADING) {
+			fLock.lock();
+			try {
+				fTodo.remove(fSignature);
+			} finally {
 				fLock.unlock();
 			}
 		}
 	}
 
 	private int getNumTodo() {
-		if (ENABLE_MULTITHREADING) {
-			fLock.lock();
-		}
-		int n = fTodo.size();
-		if (ENABLE_MULTITHREADING) {
+		fLock.lock();
+		try {
+			return fTodo.size();
+		} finally {
 			fLock.unlock();
 		}
-		return n;
 	}
 
 	private boolean isCanceled() {
@@ -338,53 +479,111 @@ public final class IGManager {
 
 	private void initIGBuild() {
 		fTodo = new HashSet<String>();
+		fClaims = new ArrayList<Claim>();
+		fNextWave = new ArrayList<BuildNodeJob>();
+		fNumRootClaims = 0;
+	}
 
-		if (ENABLE_MULTITHREADING) {
+	/**
+	 * Elaborate statements in waves: the modules claimed while elaborating
+	 * one wave make up the next one. Jobs of a wave run concurrently, in
+	 * between the claims are applied in a fixed order (see Claim), so the
+	 * IG and the indices come out the same for any NUM_THREADS.
+	 */
+	private void runIGBuild() {
 
-			fExecutorService = Executors.newFixedThreadPool(NUM_THREADS);
+		applyClaims();
 
-			fModulesBeingCreated = new HashSet<String>();
-			fLock = new ReentrantLock();
-			fModuleCreatedCond = fLock.newCondition();
-		} else {
-			fTodoStack = new ZStack<BuildNodeJob>();
-		}
-	}
+		while (!fNextWave.isEmpty()) {
 
-	private void runIGBuild() {
-		if (ENABLE_MULTITHREADING) {
-			while (!isCanceled() && getNumTodo() > 0) {
-				logger.info("IGManager: waiting, %d jobs todo...", getNumTodo());
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					el.logException(e);
+			final ArrayList<BuildNodeJob> wave = fNextWave;
+			fNextWave = new ArrayList<BuildNodeJob>();
+
+			final AtomicInteger next = new AtomicInteger();
+			final Runnable worker = new Runnable() {
+				@Override
+				public void run() {
+					int idx;
+					while (!isCanceled() && (idx = next.getAndIncrement()) < wave.size()) {
+						wave.get(idx).run();
+					}
 				}
+			};
+
+			int numHelpers = Math.min(NUM_THREADS, wave.size()) - 1;
+			final CountDownLatch done = new CountDownLatch(numHelpers);
+			for (int i = 0; i < numHelpers; i++) {
+				pool.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							worker.run();
+						} finally {
+							done.countDown();
+						}
+					}
+				});
 			}
 
+			worker.run();
+
 			try {
-				if (isCanceled()) {
-					fExecutorService.shutdownNow();
-				} else {
-					fExecutorService.shutdown();
-				}
-				fExecutorService.awaitTermination(7, TimeUnit.DAYS);
+				done.await();
 			} catch (InterruptedException e) {
 				el.logException(e);
 			}
 
-		} else {
-			while (!fTodoStack.isEmpty()) {
+			applyClaims();
 
-				if (isCanceled()) {
-					logger.info("Canceled.");
-					break;
+			if (isCanceled()) {
+				logger.info("Canceled.");
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Bring the indices up to date and schedule the claimed modules for the
+	 * next wave. Runs while no jobs are running.
+	 */
+	private void applyClaims() {
+
+		Collections.sort(fClaims);
+
+		for (Claim claim : fClaims) {
+
+			if (claim.fElaborateStatements) {
+
+				long mid = fZDB.getIdx(MODULE_IDX, claim.fSignature);
+				IGModule module = mid != 0 ? (IGModule) fZDB.load(mid) : null;
+
+				if (module != null && !module.isStatementsElaborated()) {
+
+					String uid = claim.fDUUID.getUID();
+					fZDB.index(SIGNATURES_IDX, uid, claim.fSignature);
+
+					if (fTodo.add(claim.fSignature)) {
+
+						// another thread may have created the module on behalf of a later claim
+						IGStructure struct = module.getStructure();
+						if (!claim.fPath.equals(struct.getPath())) {
+							struct.setPath(claim.fPath);
+							module.storeOrUpdate();
+						}
+
+						fNextWave.add(new BuildNodeJob(this, fNextWave.size(), claim.fPath, claim.fParentDUUID, claim.fDUUID, claim.fSignature, claim.fActualGenerics,
+								claim.fLocation));
+					}
 				}
+			}
 
-				BuildNodeJob job = fTodoStack.pop();
-				job.run();
+			if (claim.fParentDUUID != null) {
+				String uid = claim.fDUUID.getUID();
+				fZDB.index(INSTANTIATORS_IDX, uid, claim.fParentDUUID);
 			}
 		}
+
+		fClaims.clear();
 	}
 
 	public IGModule buildIG(Toplevel aTL, IZamiaMonitor aMonitor/*, int aTotalUnits*/) {
@@ -433,104 +632,131 @@ public final class IGManager {
 		return module;
 	}
 
-	@SuppressWarnings("unchecked")
 	public IGModule getOrCreateIGModule(ToplevelPath aPath, DMUID aParentDUUID, DMUID aDUUID, String aSignature, ArrayList<Pair<String, IGStaticValue>> aActualGenerics,
 			boolean aElaborateStatements, SourceLocation aLocation) {
 
-		if (ENABLE_MULTITHREADING) {
-			fLock.lock();
-
-			while (!isCanceled() && fModulesBeingCreated.contains(aSignature)) {
-
+		IGModule module = null;
+		boolean create = false;
+
+		fLock.lock();
+		try {
+			Thread owner;
+			while ((owner = fModulesBeingCreated.get(aSignature)) != null) {
+				if (isWaitingFor(owner, Thread.currentThread())) {
+					fERM.addError(new ZamiaException(ExCat.INTERMEDIATE, true, "IGManager: recursive instantiation of " + aDUUID, aLocation));
+					return null;
+				}
+				if (isCanceled()) {
+					return null;
+				}
+				fWaitingFor.put(Thread.currentThread(), aSignature);
 				try {
-					fModuleCreatedCond.await();
+					fModuleCreatedCond.await(100, TimeUnit.MILLISECONDS);
 				} catch (InterruptedException e) {
-					el.logException(e);
+					Thread.currentThread().interrupt();
+					return null;
+				} finally {
+					fWaitingFor.remove(Thread.currentThread());
 				}
+			}
 
+			long mid = fZDB.getIdx(MODULE_IDX, aSignature);
+			if (mid != 0) {
+				module = (IGModule) fZDB.load(mid);
+			} else {
+				fModulesBeingCreated.put(aSignature, Thread.currentThread());
+				create = true;
 			}
+		} finally {
+			fLock.unlock();
 		}
 
-		IGModule module = null;
-
-		long mid = fZDB.getIdx(MODULE_IDX, aSignature);
-
-		if (mid != 0) {
-
-			module = (IGModule) fZDB.load(mid);
-
-		} else {
-
+		if (create) {
 			try {
-				IDesignModule dm = fDUM.getDM(aDUUID);
-				if (dm != null) {
-
-					if (ENABLE_MULTITHREADING) {
-						fModulesBeingCreated.add(aSignature);
-						fLock.unlock();
-					}
+				module = createIGModule(aPath, aDUUID, aSignature, aActualGenerics, aLocation);
+			} finally {
+				fLock.lock();
+				try {
+					fModulesBeingCreated.remove(aSignature);
+					fModuleCreatedCond.signalAll();
+				} finally {
+					fLock.unlock();
+				}
+			}
+		}
 
-					module = new IGModule(aPath, aDUUID, dm.getLocation(), fZDB);
+		BuildNodeJob job = fCurrentJob.get();
+		int seq = job != null ? job.fNumClaims++ : fNumRootClaims++;
+		Claim claim = new Claim(job != null ? job.fIdx : -1, seq, aPath, aParentDUUID, aDUUID, aSignature, aActualGenerics, aElaborateStatements, aLocation);
 
-					int n = aActualGenerics != null ? aActualGenerics.size() : 0;
-					for (int i = 0; i < n; i++) {
-						module.addActualGeneric(aActualGenerics.get(i).getSecond());
-					}
-
-					dm.computeIG(this, module);
+		fLock.lock();
+		try {
+			fClaims.add(claim);
+		} finally {
+			fLock.unlock();
+		}
 
-					if (ENABLE_MULTITHREADING) {
-						fLock.lock();
-					}
-					mid = module.storeOrUpdate();
-					fZDB.putIdx(IGManager.MODULE_IDX, aSignature, mid);
+		return module;
+	}
 
-					if (ENABLE_MULTITHREADING) {
-						fModulesBeingCreated.remove(aSignature);
-						fModuleCreatedCond.signal();
-					}
-				} else {
-					fERM.addError(new ZamiaException(ExCat.INTERMEDIATE, true, "IGManager: failed to find " + aDUUID, aLocation));
-				}
-			} catch (ZamiaException e) {
-				el.logException(e);
-				fERM.addError(new ZamiaException(ExCat.INTERMEDIATE, true, e.getMessage(), e.getLocation()));
+	/*
+	 * true if aThread is aWaiter itself or (indirectly) waits for a module
+	 * aWaiter is creating, waiting for aThread would never end then.
+	 * Called with fLock held.
+	 */
+	private boolean isWaitingFor(Thread aThread, Thread aWaiter) {
+		Thread thread = aThread;
+		for (int i = 0; i <= fWaitingFor.size(); i++) {
+			if (thread == aWaiter) {
+				return true;
+			}
+			String signature = fWaitingFor.get(thread);
+			if (signature == null) {
+				return false;
+			}
+			thread = fModulesBeingCreated.get(signature);
+			if (thread == null) {
+				return false;
 			}
 		}
+		return false;
+	}
 
-		if (module != null) {
+	private IGModule createIGModule(ToplevelPath aPath, DMUID aDUUID, String aSignature, ArrayList<Pair<String, IGStaticValue>> aActualGenerics, SourceLocation aLocation) {
 
-			if (!module.isStatementsElaborated() && aElaborateStatements) {
+		try {
+			IDesignModule dm = fDUM.getDM(aDUUID);
+			if (dm == null) {
+				fERM.addError(new ZamiaException(ExCat.INTERMEDIATE, true, "IGManager: failed to find " + aDUUID, aLocation));
+				return null;
+			}
 
-				String uid = aDUUID.getUID();
-				fZDB.index(SIGNATURES_IDX, uid, aSignature);
-				
-				if (!fTodo.contains(aSignature)) {
-					fTodo.add(aSignature);
+			IGModule module = new IGModule(aPath, aDUUID, dm.getLocation(), fZDB);
 
-					BuildNodeJob job = new BuildNodeJob(this, aPath, aParentDUUID, aDUUID, aSignature, aActualGenerics, aLocation);
+			int n = aActualGenerics != null ? aActualGenerics.size() : 0;
+			for (int i = 0; i < n; i++) {
+				module.addActualGeneric(aActualGenerics.get(i).getSecond());
+			}
 
-					if (ENABLE_MULTITHREADING) {
-						fExecutorService.execute(job);
-					} else {
-						fTodoStack.push(job);
-					}
-				}
+			startConsumer(aSignature, null);
+			try {
+				dm.computeIG(this, module);
+			} finally {
+				finishConsumer();
 			}
-		}
 
-		if (aParentDUUID != null) {
-			String uid = aDUUID.getUID();
-			fZDB.index(INSTANTIATORS_IDX, uid, aParentDUUID);
-		}
+			long mid = module.storeOrUpdate();
+			fZDB.putIdx(IGManager.MODULE_IDX, aSignature, mid);
 
-		if (ENABLE_MULTITHREADING) {
-			fLock.unlock();
-		}
+			return module;
 
-		return module;
+		} catch (ZamiaException e) {
+			el.logException(e);
+			fERM.addError(new ZamiaException(ExCat.INTERMEDIATE, true, e.getMessage(), e.getLocation()));
+		}
+		return null;
 	}
-	
+
 	public IGModule findModule(DMUID dmuid) {
 		String signature = IGInstantiation.computeSignature(dmuid, null);
 		return findModule(signature);
@@ -592,11 +818,25 @@ public final class IGManager {
 	 * @param aDUUIDs
 	 * @return number of rebuilt nodes
 	 */
-	@SuppressWarnings("unchecked")
 	public int rebuildNodes(HashSetArray<DMUID> aDUUIDs, IZamiaMonitor aMonitor) {
+		return rebuildNodes(aDUUIDs, null, aMonitor);
+	}
+
+	/**
+	 * Re-elaborate the given design units and everything depending on them.
+	 * Changed packages are elaborated again right away, modules that use
+	 * them are only rebuilt if they looked up an item that changed.
+	 * 
+	 * @param aRebuilt
+	 *            if not null, receives the signatures of all modules that
+	 *            were rebuilt or had their instantiations updated
+	 * @return number of rebuilt and updated modules
+	 */
+	@SuppressWarnings("unchecked")
+	public int rebuildNodes(HashSetArray<DMUID> aDUUIDs, HashSetArray<String> aRebuilt, IZamiaMonitor aMonitor) {
 
 		fMonitor = aMonitor;
-		ZamiaProfiler.getInstance().startTimer("IG");
+		ZamiaMetrics.Span span = ZamiaProjectBuilder.phaseTimer.start("IG");
 
 		// figure out affected IG nodes,
 		// delete them, invalidate parents
@@ -604,8 +844,27 @@ public final class IGManager {
 		HashSetArray<String> deleteNodes = new HashSetArray<String>();
 		HashSetArray<String> invalidateNodes = new HashSetArray<String>();
 
+		rebuildPackages(aDUUIDs, deleteNodes);
+
+		// modules that use changed package items are rebuilt completely,
+		// their instantiators need to update the instantiations
+
+		int n = deleteNodes.size();
+		for (int i = 0; i < n; i++) {
+			long dbid = fZDB.getIdx(MODULE_IDX, deleteNodes.get(i));
+			if (dbid == 0) {
+				continue;
+			}
+			IGModule module = (IGModule) fZDB.load(dbid);
+			addInstantiators(module.getDUUID().getUID(), invalidateNodes);
+		}
+
 		for (DMUID duuid : aDUUIDs) {
 
+			if (duuid.getType() == LUType.Package || duuid.getType() == LUType.PackageBody) {
+				continue;
+			}
+
 			DMUID archDUUID = fDUM.getArchDUUID(duuid);
 
 			if (archDUUID == null) {
@@ -628,29 +887,13 @@ public final class IGManager {
 				}
 			}
 
-			long dbid = fZDB.getIdx(INSTANTIATORS_IDX, uid);
-			if (dbid != 0) {
-				HashSetArray<DMUID> instantiators = (HashSetArray<DMUID>) fZDB.load(dbid);
-
-				for (DMUID instantiator : instantiators) {
-
-					String uidI = instantiator.getUID();
-
-					HashSetArray<String> signaturesI = (HashSetArray<String>) fZDB.getIdxObj(SIGNATURES_IDX, uidI);
-
-					if (signaturesI != null) {
-						for (String signature : signaturesI) {
-							if (invalidateNodes.add(signature)) {
-								logger.info("IGManager: Need to re-elaborate statements: %s", signature);
-							}
-						}
-					}
-				}
-			}
+			addInstantiators(uid, invalidateNodes);
 		}
 
 		for (String signature : deleteNodes) {
 
+			removePackageUses(signature);
+
 			long dbid = fZDB.getIdx(MODULE_IDX, signature);
 
 			if (dbid == 0) {
@@ -729,11 +972,333 @@ public final class IGManager {
 
 		runIGBuild();
 
-		ZamiaProfiler.getInstance().stopTimer("IG");
+		span.stop();
+
+		if (aRebuilt != null) {
+			for (String signature : deleteNodes) {
+				aRebuilt.add(signature);
+			}
+			for (String signature : invalidateNodes) {
+				aRebuilt.add(signature);
+			}
+		}
 
 		return deleteNodes.size() + invalidateNodes.size();
 	}
 
+	@SuppressWarnings("unchecked")
+	private void addInstantiators(String aUID, HashSetArray<String> aInvalidateNodes) {
+
+		long dbid = fZDB.getIdx(INSTANTIATORS_IDX, aUID);
+		if (dbid == 0) {
+			return;
+		}
+
+		HashSetArray<DMUID> instantiators = (HashSetArray<DMUID>) fZDB.load(dbid);
+
+		for (DMUID instantiator : instantiators) {
+
+			String uidI = instantiator.getUID();
+
+			HashSetArray<String> signaturesI = (HashSetArray<String>) fZDB.getIdxObj(SIGNATURES_IDX, uidI);
+
+			if (signaturesI != null) {
+				for (String signature : signaturesI) {
+					if (aInvalidateNodes.add(signature)) {
+						logger.info("IGManager: Need to re-elaborate statements: %s", signature);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * package dependency tracking
+	 */
+
+	/**
+	 * Elaborate changed packages again and collect the modules that have to
+	 * be rebuilt because they use items that changed. Packages using changed
+	 * items are elaborated again as well, in turn all their dependents are
+	 * affected. A package which is affected again after it has been rebuilt
+	 * (the packages depend on each other through their bodies) is dropped
+	 * along with everything depending on it, see dropDependents().
+	 */
+	private void rebuildPackages(HashSetArray<DMUID> aDUUIDs, HashSetArray<String> aDeleteNodes) {
+
+		LinkedList<DMUID> todo = new LinkedList<DMUID>();
+		HashMap<DMUID, IGPackageSignature> oldSigs = new HashMap<DMUID, IGPackageSignature>();
+		HashSet<DMUID> forced = new HashSet<DMUID>();
+		HashSet<DMUID> rebuilt = new HashSet<DMUID>();
+		HashSet<DMUID> dropped = new HashSet<DMUID>();
+
+		for (DMUID duuid : aDUUIDs) {
+			if (duuid.getType() != LUType.Package && duuid.getType() != LUType.PackageBody) {
+				continue;
+			}
+			DMUID pkgDUUID = new DMUID(LUType.Package, duuid.getLibId(), duuid.getId(), null);
+			if (!todo.contains(pkgDUUID)) {
+				todo.add(pkgDUUID);
+			}
+		}
+
+		// drop them all first so they get rebuilt against each other's new version
+		for (DMUID duuid : todo) {
+			oldSigs.put(duuid, dropPackage(duuid));
+		}
+
+		while (!todo.isEmpty()) {
+
+			DMUID duuid = todo.removeFirst();
+			String uid = duuid.getUID();
+
+			if (dropped.contains(duuid)) {
+				continue;
+			}
+			rebuilt.add(duuid);
+
+			findPackage(duuid.getLibId(), duuid.getId(), null);
+
+			IGPackageSignature newSig = (IGPackageSignature) fZDB.getIdxObj(PACKAGE_SIGS_IDX, uid);
+
+			HashSet<String> changed = forced.remove(duuid) ? null : IGPackageSignature.diff(oldSigs.remove(duuid), newSig);
+
+			if (changed == null) {
+				logger.info("IGManager: Package %s changed completely", duuid);
+			} else {
+				logger.info("IGManager: Package %s: %d changed items", duuid, changed.size());
+				if (changed.isEmpty()) {
+					continue;
+				}
+			}
+
+			PackageDeps deps = (PackageDeps) fZDB.getIdxObj(PACKAGE_DEPS_IDX, uid);
+			if (deps == null) {
+				continue;
+			}
+
+			for (Map.Entry<String, HashSet<String>> entry : deps.fModules.entrySet()) {
+				String signature = entry.getKey();
+				if (IGPackageSignature.isAffected(entry.getValue(), changed) && aDeleteNodes.add(signature)) {
+					logger.info("IGManager: Need to re-elaborate completeley because of %s: %s", duuid, signature);
+				}
+			}
+
+			for (Map.Entry<DMUID, HashSet<String>> entry : deps.fPackages.entrySet()) {
+				DMUID dep = entry.getKey();
+				if (!IGPackageSignature.isAffected(entry.getValue(), changed)) {
+					continue;
+				}
+
+				if (todo.contains(dep) || dropped.contains(dep)) {
+					continue;
+				}
+
+				if (rebuilt.contains(dep)) {
+					logger.error("IGManager: Package %s is affected by %s again, dropping it and all its dependents", dep, duuid);
+					dropDependents(dep, dropped, aDeleteNodes);
+					continue;
+				}
+
+				logger.info("IGManager: Need to re-elaborate package because of %s: %s", duuid, dep);
+
+				dropPackage(dep);
+				forced.add(dep);
+				todo.add(dep);
+			}
+		}
+	}
+
+	/*
+	 * Drop aDUUID and all packages depending on it, directly or not, and mark
+	 * all modules using any of them. They are elaborated again on demand,
+	 * against each other's new version, like the packages rebuildPackages()
+	 * started with.
+	 */
+	private void dropDependents(DMUID aDUUID, HashSet<DMUID> aDropped, HashSetArray<String> aDeleteNodes) {
+
+		LinkedList<DMUID> todo = new LinkedList<DMUID>();
+		todo.add(aDUUID);
+		aDropped.add(aDUUID);
+
+		while (!todo.isEmpty()) {
+
+			DMUID duuid = todo.removeFirst();
+
+			dropPackage(duuid);
+
+			PackageDeps deps = (PackageDeps) fZDB.getIdxObj(PACKAGE_DEPS_IDX, duuid.getUID());
+			if (deps == null) {
+				continue;
+			}
+
+			for (String signature : deps.fModules.keySet()) {
+				if (aDeleteNodes.add(signature)) {
+					logger.info("IGManager: Need to re-elaborate completeley because of %s: %s", duuid, signature);
+				}
+			}
+
+			for (DMUID dep : deps.fPackages.keySet()) {
+				if (aDropped.add(dep)) {
+					todo.add(dep);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove aDUUID from the package index so the next findPackage() builds
+	 * it again. The old IGPackage is left in the ZDB, unaffected modules may
+	 * still refer to its items.
+	 * 
+	 * @return signature of the old package, null if there is none
+	 */
+	private IGPackageSignature dropPackage(DMUID aDUUID) {
+		String uid = aDUUID.getUID();
+		IGPackageSignature sig = (IGPackageSignature) fZDB.getIdxObj(PACKAGE_SIGS_IDX, uid);
+		fZDB.delIdx(PACKAGE_IDX, uid);
+		fZDB.delIdxObj(PACKAGE_SIGS_IDX, uid);
+		// cached resolve() results may point into the old package
+		IGContainer.invalidateResolveCaches();
+		return sig;
+	}
+
+	private void storeSignature(DMUID aDUUID, IDesignModule aDM, IGPackage aPkg) {
+
+		if (!(aDM instanceof DesignUnit)) {
+			return;
+		}
+
+		try {
+			IDesignModule body = fDUM.getDM(new DMUID(LUType.PackageBody, aDUUID.getLibId(), aDUUID.getId(), null));
+
+			IGPackageSignature sig = IGPackageSignature.compute((DesignUnit) aDM, body instanceof DesignUnit ? (DesignUnit) body : null, aPkg.getContainer());
+
+			fZDB.delIdxObj(PACKAGE_SIGS_IDX, aDUUID.getUID());
+			fZDB.putIdxObj(PACKAGE_SIGS_IDX, aDUUID.getUID(), sig);
+
+		} catch (IOException e) {
+			el.logException(e);
+		} catch (ZamiaException e) {
+			el.logException(e);
+		}
+	}
+
+	private void startConsumer(String aSignature, DMUID aPackage) {
+		fConsumers.get().push(new Consumer(aSignature, aPackage));
+	}
+
+	private void finishConsumer() {
+
+		Consumer consumer = fConsumers.get().pop();
+
+		for (Map.Entry<String, HashSet<String>> entry : consumer.fUses.entrySet()) {
+			storeUses(entry.getKey(), consumer, entry.getValue());
+		}
+	}
+
+	private synchronized void storeUses(String aPkgUID, Consumer aConsumer, HashSet<String> aIds) {
+
+		long dbid = fZDB.getIdx(PACKAGE_DEPS_IDX, aPkgUID);
+
+		PackageDeps deps = dbid != 0 ? (PackageDeps) fZDB.load(dbid) : new PackageDeps();
+
+		HashSet<String> ids;
+		if (aConsumer.fSignature != null) {
+			ids = deps.fModules.get(aConsumer.fSignature);
+			if (ids == null) {
+				ids = new HashSet<String>();
+				deps.fModules.put(aConsumer.fSignature, ids);
+				addModulePackage(aConsumer.fSignature, aPkgUID);
+			}
+		} else {
+			ids = deps.fPackages.get(aConsumer.fPackage);
+			if (ids == null) {
+				ids = new HashSet<String>();
+				deps.fPackages.put(aConsumer.fPackage, ids);
+			}
+		}
+
+		if (dbid != 0 && ids.containsAll(aIds)) {
+			return;
+		}
+		ids.addAll(aIds);
+
+		if (dbid != 0) {
+			fZDB.update(dbid, deps);
+		} else {
+			fZDB.putIdxObj(PACKAGE_DEPS_IDX, aPkgUID, deps);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addModulePackage(String aSignature, String aPkgUID) {
+
+		long dbid = fZDB.getIdx(MODULE_PACKAGES_IDX, aSignature);
+		if (dbid == 0) {
+			HashSetArray<String> uids = new HashSetArray<String>();
+			uids.add(aPkgUID);
+			fZDB.putIdxObj(MODULE_PACKAGES_IDX, aSignature, uids);
+		} else {
+			HashSetArray<String> uids = (HashSetArray<String>) fZDB.load(dbid);
+			if (uids.add(aPkgUID)) {
+				fZDB.update(dbid, uids);
+			}
+		}
+	}
+
+	/*
+	 * aSignature is elaborated again, its package uses are recorded anew
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized void removePackageUses(String aSignature) {
+
+		HashSetArray<String> uids = (HashSetArray<String>) fZDB.getIdxObj(MODULE_PACKAGES_IDX, aSignature);
+		if (uids == null) {
+			return;
+		}
+
+		for (String uid : uids) {
+			long dbid = fZDB.getIdx(PACKAGE_DEPS_IDX, uid);
+			if (dbid == 0) {
+				continue;
+			}
+			PackageDeps deps = (PackageDeps) fZDB.load(dbid);
+			if (deps.fModules.remove(aSignature) != null) {
+				fZDB.update(dbid, deps);
+			}
+		}
+
+		fZDB.delIdxObj(MODULE_PACKAGES_IDX, aSignature);
+	}
+
+	/**
+	 * Remember that the module or package currently being elaborated looked
+	 * up aItemId (null: just the package itself) in package aPkg.
+	 */
+	public void recordPackageUse(DMUID aPkg, String aItemId) {
+
+		ZStack<Consumer> consumers = fConsumers.get();
+		if (consumers.isEmpty()) {
+			return;
+		}
+
+		Consumer consumer = consumers.peek();
+		if (aPkg.equals(consumer.fPackage)) {
+			return;
+		}
+
+		String uid = aPkg.getUID();
+		HashSet<String> ids = consumer.fUses.get(uid);
+		if (ids == null) {
+			ids = new HashSet<String>();
+			consumer.fUses.put(uid, ids);
+		}
+		if (aItemId != null) {
+			ids.add(aItemId);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private void removeFromInstantiators(DMUID aDUUID, IGStructure aStructure) {
 
@@ -800,11 +1365,31 @@ public final class IGManager {
 
 	public IGPackage findPackage(String aLibId, String aPkgId, SourceLocation aLocation) {
 
-		if (ENABLE_MULTITHREADING) {
-			fLock.lock();
+		DMUID duuid = new DMUID(LUType.Package, aLibId, aPkgId, null);
+
+		String uid = duuid.getUID();
+
+		// fast path: packages are indexed before they are built
+		long id = fZDB.getIdx(PACKAGE_IDX, uid);
+		if (id != 0 && !fPackagesBeingBuilt.contains(uid)) {
+			IGPackage pkg = (IGPackage) fZDB.load(id);
+			if (pkg != null) {
+				recordPackageUse(duuid, null);
+			}
+			return pkg;
 		}
 
-		DMUID duuid = new DMUID(LUType.Package, aLibId, aPkgId, null);
+		fPackageLock.lock();
+		try {
+			return findPackage(duuid);
+		} finally {
+			fPackageLock.unlock();
+		}
+	}
+
+	private IGPackage findPackage(DMUID aDUUID) {
+
+		DMUID duuid = aDUUID;
 
 		String uid = duuid.getUID();
 
@@ -833,14 +1418,26 @@ public final class IGManager {
 
 				// store it right away to avoid recursion
 				id = pkg.store();
+				fPackagesBeingBuilt.add(uid);
 				fZDB.putIdx(IGManager.PACKAGE_IDX, duuid.getUID(), id);
 
-				dm.computeIG(this, pkg);
+				try {
+					startConsumer(null, duuid);
+					try {
+						dm.computeIG(this, pkg);
+					} finally {
+						finishConsumer();
+					}
+
+					storeSignature(duuid, dm, pkg);
+				} finally {
+					fPackagesBeingBuilt.remove(uid);
+				}
 			}
 		}
 
-		if (ENABLE_MULTITHREADING) {
-			fLock.unlock();
+		if (pkg != null) {
+			recordPackageUse(duuid, null);
 		}
 
 		return pkg;
@@ -8,8 +8,14 @@
  */
 package org.zamia.instgraph;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+
 import org.zamia.SourceLocation;
 import org.zamia.zdb.ZDB;
+import org.zamia.zdb.ZDBVarInt;
 
 
 /**
@@ -44,6 +50,9 @@ public final class IGObject extends IGContainerItem {
 
 	private boolean fIsShared = false;
 
+	// enums as ordinals instead of class descriptor + name, see writeObject()
+	private static final ObjectStreamField[] serialPersistentFields = {};
+
 	public IGObject(OIDir aDir, IGOperation aInitialValue, IGObjectCat aCat, IGType aType, String aId, SourceLocation aSrc, ZDB aZDB) {
 		super(aId, aSrc, aZDB);
 
@@ -127,4 +136,24 @@ public final class IGObject extends IGContainerItem {
 	public static boolean isInputPort(IGObjectCat aCat, OIDir aDir) {
 		return aCat == IGObjectCat.SIGNAL && aDir == OIDir.IN;
 	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeByte(fCat != null ? fCat.ordinal() + 1 : 0);
+		out.writeByte(fDir != null ? fDir.ordinal() + 1 : 0);
+		out.writeBoolean(fIsShared);
+		ZDBVarInt.writeLong(out, fTypeDBID);
+		out.writeObject(fInitialValue);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int cat = in.readUnsignedByte();
+		fCat = cat > 0 ? IGObjectCat.values()[cat - 1] : null;
+		int dir = in.readUnsignedByte();
+		fDir = dir > 0 ? OIDir.values()[dir - 1] : null;
+		fIsShared = in.readBoolean();
+		fTypeDBID = ZDBVarInt.readLong(in);
+		fInitialValue = (IGOperation) in.readObject();
+	}
 }
@@ -9,7 +9,9 @@
 package org.zamia.instgraph;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 
 import org.zamia.ErrorReport;
 import org.zamia.SourceLocation;
@@ -24,6 +26,7 @@ import org.zamia.instgraph.interpreter.IGStmt.ReturnStatus;
 import org.zamia.util.HashSetArray;
 import org.zamia.vhdl.ast.VHDLNode.ASTErrorMode;
 import org.zamia.zdb.ZDB;
+import org.zamia.zdb.ZDBVarInt;
 
 /**
  * 
@@ -38,6 +41,8 @@ public abstract class IGOperation extends IGContainerItem {
 
 	private transient IGType fType;
 
+	private static final ObjectStreamField[] serialPersistentFields = {};
+
 	public IGOperation(IGType aType, SourceLocation aSrc, ZDB aZDB) {
 		super(null, aSrc, aZDB);
 
@@ -120,6 +125,12 @@ public abstract class IGOperation extends IGContainerItem {
 			fType = null; // we have to drop the reference so GC will be able to free the memory
 		}
 		out.defaultWriteObject();
+		ZDBVarInt.writeLong(out, fTypeDBID);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		fTypeDBID = ZDBVarInt.readLong(in);
 	}
 
 	public IGType getType() {
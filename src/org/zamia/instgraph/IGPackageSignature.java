@@ -0,0 +1,352 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.instgraph;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.zamia.FSCache;
+import org.zamia.SourceFile;
+import org.zamia.SourceLocation;
+import org.zamia.SourceText;
+import org.zamia.util.ZHash;
+import org.zamia.vhdl.ast.BlockDeclarativeItem;
+import org.zamia.vhdl.ast.Context;
+import org.zamia.vhdl.ast.DesignUnit;
+import org.zamia.vhdl.ast.TypeDeclaration;
+import org.zamia.vhdl.ast.TypeDefinitionSubType;
+
+/**
+ * Per item digests of a package, used to find out which items an edit of
+ * the package (or its body) actually changed.
+ *
+ * Every declaration is hashed by its source text. An item's digest covers
+ * all declarations that declare it (spec and body of a subprogram,
+ * overloads), items the container got implicitly (enum literals, implicit
+ * operators) are attributed to the declaration they are located in.
+ *
+ * diff() is conservative: items whose declarations mention a changed item
+ * count as changed as well, so do all items of type declarations since
+ * types are compared by identity and dependents must not mix the old and
+ * the new one.
+ *
+ */
+@SuppressWarnings("serial")
+public class IGPackageSignature implements Serializable {
+
+	private final String fContextSig;
+
+	// item id -> digest of its declarations
+	private final HashMap<String, String> fItemSigs = new HashMap<String, String>();
+
+	// item id -> identifiers its declarations refer to
+	private final HashMap<String, HashSet<String>> fItemRefs = new HashMap<String, HashSet<String>>();
+
+	// items that count as changed whenever anything in the package changed
+	private final HashSet<String> fVolatileIds = new HashSet<String>();
+
+	private IGPackageSignature(String aContextSig) {
+		fContextSig = aContextSig;
+	}
+
+	// declarations starting at the same position (constant a, b : ...) share their text
+	private static class DeclGroup {
+
+		final int fStart;
+
+		int fEnd;
+
+		boolean fType;
+
+		final HashSet<String> fIds = new HashSet<String>();
+
+		DeclGroup(int aStart) {
+			fStart = aStart;
+		}
+	}
+
+	public static IGPackageSignature compute(DesignUnit aPkg, DesignUnit aBody, IGContainer aContainer) throws IOException {
+
+		StringBuilder context = new StringBuilder();
+		appendContext(aPkg.getContext(), context);
+
+		SourceFile pkgSF = aPkg.getLocation().fSF;
+		SourceText pkgText = FSCache.getInstance().openText(pkgSF, true);
+
+		SourceFile bodySF = null;
+		SourceText bodyText = null;
+		int pkgEnd = pkgText.length();
+		if (aBody != null) {
+			context.append('\0');
+			appendContext(aBody.getContext(), context);
+
+			SourceLocation bodyLocation = aBody.getLocation();
+			bodySF = bodyLocation.fSF;
+			if (bodySF.equals(pkgSF)) {
+				bodyText = pkgText;
+				int bodyStart = getOffset(pkgText, bodyLocation);
+				if (bodyStart > getOffset(pkgText, aPkg.getLocation())) {
+					pkgEnd = bodyStart;
+				}
+			} else {
+				bodyText = FSCache.getInstance().openText(bodySF, true);
+			}
+		}
+
+		IGPackageSignature sig = new IGPackageSignature(ZHash.encodeZ(context.toString()));
+
+		ArrayList<DeclGroup> pkgGroups = computeGroups(aPkg, pkgText, pkgEnd);
+		ArrayList<DeclGroup> bodyGroups = aBody != null ? computeGroups(aBody, bodyText, bodyText.length()) : new ArrayList<DeclGroup>();
+
+		for (IGContainerItem item : aContainer.localItems()) {
+
+			String id = item.getId();
+			if (id == null) {
+				continue;
+			}
+
+			SourceLocation location = item.computeSourceLocation();
+
+			DeclGroup group = null;
+			if (location != null && location.fSF != null) {
+				if (location.fSF.equals(pkgSF)) {
+					group = findGroup(pkgGroups, getOffset(pkgText, location));
+				}
+				if (group == null && location.fSF.equals(bodySF)) {
+					group = findGroup(bodyGroups, getOffset(bodyText, location));
+				}
+			}
+
+			if (group != null) {
+				group.fIds.add(id);
+			} else {
+				sig.fVolatileIds.add(id);
+				sig.fItemSigs.put(id, "?");
+			}
+		}
+
+		HashMap<String, StringBuilder> texts = new HashMap<String, StringBuilder>();
+		sig.addGroups(pkgGroups, pkgText, texts);
+		sig.addGroups(bodyGroups, bodyText, texts);
+
+		for (Map.Entry<String, StringBuilder> entry : texts.entrySet()) {
+			sig.fItemSigs.put(entry.getKey(), ZHash.encodeZ(entry.getValue().toString()));
+		}
+
+		return sig;
+	}
+
+	private void addGroups(ArrayList<DeclGroup> aGroups, SourceText aText, HashMap<String, StringBuilder> aTexts) {
+
+		for (DeclGroup group : aGroups) {
+
+			String text = aText.substring(group.fStart, group.fEnd);
+			HashSet<String> refs = tokenize(text);
+
+			for (String id : group.fIds) {
+
+				StringBuilder buf = aTexts.get(id);
+				if (buf == null) {
+					buf = new StringBuilder();
+					aTexts.put(id, buf);
+				}
+				buf.append(text).append('\0');
+
+				HashSet<String> itemRefs = fItemRefs.get(id);
+				if (itemRefs == null) {
+					itemRefs = new HashSet<String>();
+					fItemRefs.put(id, itemRefs);
+				}
+				itemRefs.addAll(refs);
+
+				if (group.fType) {
+					fVolatileIds.add(id);
+				}
+			}
+		}
+	}
+
+	private static ArrayList<DeclGroup> computeGroups(DesignUnit aDU, SourceText aText, int aEnd) {
+
+		ArrayList<DeclGroup> groups = new ArrayList<DeclGroup>();
+
+		DeclGroup group = null;
+		int n = aDU.getNumDeclarations();
+		for (int i = 0; i < n; i++) {
+			BlockDeclarativeItem decl = aDU.getDeclaration(i);
+
+			int start = Math.min(getOffset(aText, decl.getLocation()), aEnd);
+			if (group == null || start > group.fStart) {
+				group = new DeclGroup(start);
+				groups.add(group);
+			}
+
+			group.fIds.add(decl.getId());
+			if (decl instanceof TypeDeclaration && !(((TypeDeclaration) decl).getType() instanceof TypeDefinitionSubType)) {
+				group.fType = true;
+			}
+		}
+
+		n = groups.size();
+		for (int i = 0; i < n; i++) {
+			groups.get(i).fEnd = i < n - 1 ? groups.get(i + 1).fStart : aEnd;
+		}
+
+		return groups;
+	}
+
+	private static DeclGroup findGroup(ArrayList<DeclGroup> aGroups, int aOffset) {
+		for (DeclGroup group : aGroups) {
+			if (aOffset >= group.fStart && aOffset < group.fEnd) {
+				return group;
+			}
+		}
+		return null;
+	}
+
+	private static void appendContext(Context aContext, StringBuilder aBuf) {
+		if (aContext == null) {
+			return;
+		}
+		int n = aContext.getNumLibraries();
+		for (int i = 0; i < n; i++) {
+			aBuf.append(aContext.getLibrary(i)).append('\n');
+		}
+		n = aContext.getNumUses();
+		for (int i = 0; i < n; i++) {
+			aBuf.append(aContext.getUse(i)).append('\n');
+		}
+	}
+
+	private static int getOffset(SourceText aText, SourceLocation aLocation) {
+		return aText.getOffset(aLocation.fLine, aLocation.fCol);
+	}
+
+	/**
+	 * @return upper case identifiers and string literals (operator
+	 *         designators) in aText, comments skipped
+	 */
+	private static HashSet<String> tokenize(String aText) {
+
+		HashSet<String> tokens = new HashSet<String>();
+
+		int n = aText.length();
+		int i = 0;
+		while (i < n) {
+			char c = aText.charAt(i);
+
+			if (c == '-' && i + 1 < n && aText.charAt(i + 1) == '-') {
+				while (i < n && aText.charAt(i) != '\n') {
+					i++;
+				}
+			} else if (Character.isLetter(c)) {
+				int start = i;
+				while (i < n && (Character.isLetterOrDigit(aText.charAt(i)) || aText.charAt(i) == '_')) {
+					i++;
+				}
+				tokens.add(aText.substring(start, i).toUpperCase());
+			} else if (c == '"') {
+				int start = i++;
+				while (i < n && aText.charAt(i) != '"' && aText.charAt(i) != '\n') {
+					i++;
+				}
+				if (i < n && aText.charAt(i) == '"') {
+					i++;
+					tokens.add(aText.substring(start, i).toUpperCase());
+				}
+			} else {
+				i++;
+			}
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * @return ids of all items of aNew that differ from aOld, null if
+	 *         everything has to be considered changed
+	 */
+	public static HashSet<String> diff(IGPackageSignature aOld, IGPackageSignature aNew) {
+
+		if (aOld == null || aNew == null || !aOld.fContextSig.equals(aNew.fContextSig)) {
+			return null;
+		}
+
+		HashSet<String> changed = new HashSet<String>();
+
+		HashSet<String> ids = new HashSet<String>(aOld.fItemSigs.keySet());
+		ids.addAll(aNew.fItemSigs.keySet());
+
+		for (String id : ids) {
+			String oldSig = aOld.fItemSigs.get(id);
+			String newSig = aNew.fItemSigs.get(id);
+			if (oldSig == null || !oldSig.equals(newSig) || oldSig.equals("?")) {
+				changed.add(id);
+			}
+		}
+
+		if (changed.isEmpty()) {
+			return changed;
+		}
+
+		changed.addAll(aOld.fVolatileIds);
+		changed.addAll(aNew.fVolatileIds);
+
+		// items referring to changed items have changed, too
+
+		boolean progress = true;
+		while (progress) {
+			progress = false;
+			for (String id : ids) {
+				if (changed.contains(id)) {
+					continue;
+				}
+				if (refersTo(aOld.fItemRefs.get(id), changed) || refersTo(aNew.fItemRefs.get(id), changed)) {
+					changed.add(id);
+					progress = true;
+				}
+			}
+		}
+
+		return changed;
+	}
+
+	private static boolean refersTo(HashSet<String> aRefs, HashSet<String> aIds) {
+		if (aRefs == null) {
+			return false;
+		}
+		for (String id : aIds) {
+			if (aRefs.contains(id.toUpperCase())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param aUsedItems
+	 *            items a dependent looked up in the package
+	 * @param aChanged
+	 *            result of diff()
+	 */
+	public static boolean isAffected(HashSet<String> aUsedItems, HashSet<String> aChanged) {
+		if (aChanged == null) {
+			return true;
+		}
+		for (String id : aUsedItems) {
+			if (aChanged.contains(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
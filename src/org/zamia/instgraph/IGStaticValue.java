@@ -12,14 +12,17 @@ import java.io.File;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.zamia.ErrorReport;
 import org.zamia.SourceLocation;
+import org.zamia.Utils;
 import org.zamia.ZamiaException;
 import org.zamia.instgraph.IGItemAccess.AccessType;
 import org.zamia.instgraph.IGObject.OIDir;
 import org.zamia.instgraph.IGOperationBinary.BinOp;
 import org.zamia.instgraph.IGOperationUnary.UnaryOp;
+import org.zamia.instgraph.IGSubProgram.IGBuiltin;
 import org.zamia.instgraph.IGType.TypeCat;
 import org.zamia.instgraph.interpreter.IGInterpreterCode;
 import org.zamia.instgraph.interpreter.IGInterpreterRuntimeEnv;
@@ -49,6 +52,15 @@ public class IGStaticValue extends IGOperation {
 	public final static char BIT_H = 'H';
 	public final static char BIT_W = 'W';
 
+	// arrays of enums with up to this many literals are stored as PACKED
+	public final static int MAX_PACKED_LITERALS = 16;
+
+	public static boolean ENABLE_PACKED_ARRAYS = true;
+
+	static {
+		ENABLE_PACKED_ARRAYS = Utils.getEnvBool("ZAMIA_PACKED_ARRAYS", ENABLE_PACKED_ARRAYS);
+	}
+
 	// TODO: why do we need an ID? can we get rid of it?
 	protected IGStaticValue(IGStaticValueBuilder aBuilder) {
 		super(aBuilder.getType(), aBuilder.getSrc(), aBuilder.getZDB());
@@ -64,7 +76,20 @@ public class IGStaticValue extends IGOperation {
 	}
 	
 	public static class INT extends IGStaticValue {
-		private BigInteger fNum;
+
+		// getCachedInt() range
+		public final static int CACHE_LOW = -128;
+
+		public final static int CACHE_HIGH = 1023;
+
+		// the value, unless it does not fit into a long
+		private final long fLong;
+
+		// null if fLong holds the value
+		private final BigInteger fNum;
+
+		// handed out by IGTypeStatic.getCachedInt(), see getStorable()
+		private transient boolean fShared = false;
 		
 		public INT(IGStaticValueBuilder aBuilder) throws ZamiaException {
 			this(aBuilder.getType(), aBuilder.getId(), aBuilder.getSrc(), aBuilder.getZDB(), aBuilder.getNum());
@@ -79,26 +104,120 @@ public class IGStaticValue extends IGOperation {
 			assert getType().isInteger() || getType().isPhysical() : "IGStaticValue.INT<init>: int/physical type expected here instead of " + getType();
 			assert value != null : "IGStaticValue.INT<init>: int value is not defined in the builder";
 			fId = aId;
-			fNum = value;
+			if (value.bitLength() < 64) {
+				fLong = value.longValue();
+				fNum = null;
+			} else {
+				fLong = 0;
+				fNum = value;
+			}
+		}
+
+		public INT(IGTypeStatic aType, String aId, SourceLocation aSrc, long aValue) {
+			super(aType, aSrc, aType.getZDB());
+			assert getType().isInteger() || getType().isPhysical() : "IGStaticValue.INT<init>: int/physical type expected here instead of " + getType();
+			fId = aId;
+			fLong = aValue;
+			fNum = null;
+		}
+
+		void markShared() {
+			fShared = true;
+		}
+
+		/*
+		 * a shared value may be used anywhere, every save() stores a copy of
+		 * its own
+		 */
+		@Override
+		protected IGItem getStorable() {
+			if (fShared) {
+				return new INT(getStaticType(), fId, null, fLong);
+			}
+			return this;
+		}
+
+		@Override
+		public void setDBID(long aId) {
+			if (fShared) {
+				throw new IllegalStateException("IGStaticValue.INT: shared value " + this + " must not be stored");
+			}
+			super.setDBID(aId);
+		}
+
+		/**
+		 * true if getOrd() is the exact value
+		 */
+		public boolean isLong() {
+			return fNum == null;
 		}
 
 		public long getOrd() throws ZamiaException {
-			return fNum.longValue();
+			return fNum != null ? fNum.longValue() : fLong;
 		}
 		
-		public BigInteger getNum() { return fNum; }
-		public int getInt() { return fNum.intValue(); }
+		public BigInteger getNum() { return fNum != null ? fNum : BigInteger.valueOf(fLong); }
+		public int getInt() { return fNum != null ? fNum.intValue() : (int) fLong; }
 		public int getInt(SourceLocation aSrc) {
 			assert getType().isInteger() : "IGStaticValue: Integer type expected in getInt instead of " + getType();
-			return fNum.intValue();
+			return getInt();
 		}
-		
+
+		/*
+		 * overflow checked long arithmetic, Math.addExact() and friends are
+		 * Java 8
+		 */
+
+		public static long addExact(long aA, long aB) {
+			long r = aA + aB;
+			if (((aA ^ r) & (aB ^ r)) < 0) {
+				throw new ArithmeticException("long overflow");
+			}
+			return r;
+		}
+
+		public static long subtractExact(long aA, long aB) {
+			long r = aA - aB;
+			if (((aA ^ aB) & (aA ^ r)) < 0) {
+				throw new ArithmeticException("long overflow");
+			}
+			return r;
+		}
+
+		public static long multiplyExact(long aA, long aB) {
+			long r = aA * aB;
+			long absA = Math.abs(aA), absB = Math.abs(aB);
+			if (((absA | absB) >>> 31) != 0) {
+				if ((aB != 0 && r / aB != aA) || (aA == Long.MIN_VALUE && aB == -1)) {
+					throw new ArithmeticException("long overflow");
+				}
+			}
+			return r;
+		}
+
+		public static long negateExact(long aA) {
+			if (aA == Long.MIN_VALUE) {
+				throw new ArithmeticException("long overflow");
+			}
+			return -aA;
+		}
+
+		/**
+		 * aA / aB truncated like BigInteger.divide()
+		 */
+		public static long divideExact(long aA, long aB) {
+			if (aA == Long.MIN_VALUE && aB == -1) {
+				throw new ArithmeticException("long overflow");
+			}
+			return aA / aB;
+		}
+
 		public String toHRString() {
 			IGType type = getType();
 			try {
 				switch (type.getCat()) {
 				case INTEGER:
-					return "" + fNum;
+					return fNum != null ? fNum.toString() : Long.toString(fLong);
 
 				case PHYSICAL:
 		
@@ -111,14 +230,14 @@ public class IGStaticValue extends IGOperation {
 						baseUnit = unit.getId();
 					}
 		
-					return fNum + " " + baseUnit.toLowerCase(); // units must be lowercased to conform VHDL spec
+					return getNum() + " " + baseUnit.toLowerCase(); // units must be lowercased to conform VHDL spec
 				}
 
 			} catch (Exception e) {
 				return "***ERR: " + e.getMessage();
 			}
 
-			return "***ERR: value " + fNum + " is incompliant with TYPE " + getType();
+			return "***ERR: value " + getNum() + " is incompliant with TYPE " + getType();
 		}
 		
 	}
@@ -238,6 +357,438 @@ public class IGStaticValue extends IGOperation {
 		
 	}
 	
+	/**
+	 * Constrained one-dimensional array of an enum type with at most
+	 * MAX_PACKED_LITERALS literals (BIT, BOOLEAN, STD_ULOGIC...), one nibble per
+	 * element: the ord of element i (counted from the array offset) sits in
+	 * bits 4*(i%16) of fWords[i/16]. Unused nibbles are always 0, so equal
+	 * contents have equal words.
+	 */
+	public static class PACKED extends IGStaticValue {
+
+		private static final long ONES = 0x1111111111111111L;
+
+		private final long[] fWords;
+
+		private final int fNumEntries;
+
+		private final int fArrayOffset;
+
+		// element type literals by ord
+		private transient IGStaticValue[] fLiterals;
+
+		private PACKED(IGTypeStatic aType, String aId, SourceLocation aSrc, ZDB aZDB, long[] aWords, int aNumEntries, int aArrayOffset, IGStaticValue[] aLiterals) {
+			super(aType, aSrc, aZDB);
+			fId = aId;
+			fWords = aWords;
+			fNumEntries = aNumEntries;
+			fArrayOffset = aArrayOffset;
+			fLiterals = aLiterals;
+		}
+
+		/**
+		 * @return null if the builder's array cannot be packed
+		 */
+		static PACKED pack(IGStaticValueBuilder aBuilder) throws ZamiaException {
+			if (!ENABLE_PACKED_ARRAYS) {
+				return null;
+			}
+
+			IGTypeStatic type = aBuilder.getType();
+			if (type.isUnconstrained()) {
+				return null;
+			}
+			IGStaticValue[] literals = getPackableLiterals(type);
+			if (literals == null) {
+				return null;
+			}
+
+			SourceLocation location = aBuilder.getSrc();
+			IGTypeStatic indexType = type.getStaticIndexType(location);
+			int card = (int) indexType.computeCardinality(location);
+			if (card < 0) {
+				return null;
+			}
+			int offset = (int) indexType.getStaticLow(location).getOrd();
+
+			long[] words = new long[(card + 15) >> 4];
+			for (int i = 0; i < card; i++) {
+				int ord = getOrd(aBuilder.get(i + offset, location), literals);
+				if (ord < 0) {
+					return null;
+				}
+				words[i >> 4] |= (long) ord << ((i & 15) << 2);
+			}
+
+			return new PACKED(type, aBuilder.getId(), location, aBuilder.getZDB(), words, card, offset, literals);
+		}
+
+		private static PACKED create(IGTypeStatic aType, long[] aWords, int aNumEntries, SourceLocation aSrc) throws ZamiaException {
+			if (aType.isUnconstrained()) {
+				return null;
+			}
+			IGStaticValue[] literals = getPackableLiterals(aType);
+			if (literals == null) {
+				return null;
+			}
+			IGTypeStatic indexType = aType.getStaticIndexType(aSrc);
+			if (indexType.computeCardinality(aSrc) != aNumEntries) {
+				return null;
+			}
+			int offset = (int) indexType.getStaticLow(aSrc).getOrd();
+			return new PACKED(aType, null, aSrc, aType.getZDB(), aWords, aNumEntries, offset, literals);
+		}
+
+		private static IGStaticValue[] getPackableLiterals(IGTypeStatic aType) {
+			IGType et = aType.getElementType();
+			if (et == null || !et.isEnum()) {
+				return null;
+			}
+			IGStaticValue[] literals = et.getEnumLiteralTable();
+			if (literals == null || literals.length == 0 || literals.length > MAX_PACKED_LITERALS) {
+				return null;
+			}
+			return literals;
+		}
+
+		/*
+		 * ord of aValue among aLiterals, -1 if it is not one of them
+		 */
+		private static int getOrd(IGStaticValue aValue, IGStaticValue[] aLiterals) {
+			if (!(aValue instanceof ENUM)) {
+				return -1;
+			}
+			int ord = aValue.getEnumOrd();
+			if (ord < 0 || ord >= aLiterals.length) {
+				return -1;
+			}
+			IGStaticValue literal = aLiterals[ord];
+			if (literal != aValue && (literal.isCharLiteral() != aValue.isCharLiteral() || literal.getCharLiteral() != aValue.getCharLiteral())) {
+				return -1;
+			}
+			return ord;
+		}
+
+		private static boolean sameLiterals(IGStaticValue[] aL1, IGStaticValue[] aL2) {
+			if (aL1 == aL2) {
+				return true;
+			}
+			if (aL1.length != aL2.length) {
+				return false;
+			}
+			for (int i = 0; i < aL1.length; i++) {
+				if (getOrd(aL2[i], aL1) != i) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private IGStaticValue[] getLiterals() {
+			IGStaticValue[] literals = fLiterals;
+			if (literals == null) {
+				literals = getStaticType().getElementType().getEnumLiteralTable();
+				fLiterals = literals;
+			}
+			return literals;
+		}
+
+		private int getOrdAt(int aI) {
+			return (int) (fWords[aI >> 4] >>> ((aI & 15) << 2)) & 15;
+		}
+
+		private long getValidMask(int aWord) {
+			int rest = fNumEntries - (aWord << 4);
+			return rest >= 16 ? ONES : ONES & ((1L << (rest << 2)) - 1);
+		}
+
+		public int getNumArrayEntries(SourceLocation aLocation) {
+			return fNumEntries;
+		}
+
+		public int getArrayOffset() {
+			return fArrayOffset;
+		}
+
+		@Override
+		public IGStaticValue getValue(int aIdx, SourceLocation aSrc) throws ZamiaException {
+			return getLiterals()[getEnumOrd(aIdx, aSrc)];
+		}
+
+		/**
+		 * Ord of element aIdx, same as getValue(aIdx, aSrc).getEnumOrd()
+		 */
+		public int getEnumOrd(int aIdx, SourceLocation aSrc) throws ZamiaException {
+			int i = aIdx - fArrayOffset;
+			if (i < 0 || i >= fNumEntries) {
+				throw new ZamiaException("IGStaticValue: getValue(): array index out of bounds: " + aIdx + " limit was " + fArrayOffset + " to " + (fArrayOffset + fNumEntries - 1), aSrc);
+			}
+			return getOrdAt(i);
+		}
+
+		/**
+		 * true if both arrays have the same element literals, so their
+		 * elements are equal exactly when their ords are
+		 */
+		public boolean hasSameLiterals(PACKED aV) {
+			return sameLiterals(getLiterals(), aV.getLiterals());
+		}
+
+		/**
+		 * Elementwise equality regardless of the index ranges, only valid if
+		 * hasSameLiterals(aV).
+		 */
+		public boolean equalsEntries(PACKED aV) {
+			return fNumEntries == aV.fNumEntries && Arrays.equals(fWords, aV.fWords);
+		}
+
+		@Override
+		public boolean equalsValue(IGStaticValue aV) throws ZamiaException {
+			if (aV instanceof PACKED) {
+				PACKED v = (PACKED) aV;
+				if (hasSameLiterals(v)) {
+					return fArrayOffset == v.fArrayOffset && equalsEntries(v);
+				}
+			}
+			return super.equalsValue(aV);
+		}
+
+		/*
+		 * per element 1 if its ord is 1 (i.e. it is true/'1'), 0 otherwise
+		 */
+		private long[] computeTruthWords() {
+			if (getLiterals().length <= 2) {
+				return fWords;
+			}
+			int n = fWords.length;
+			long[] res = new long[n];
+			for (int k = 0; k < n; k++) {
+				long x = fWords[k] ^ ONES;
+				long any = (x | (x >>> 1) | (x >>> 2) | (x >>> 3)) & ONES;
+				res[k] = ~any & getValidMask(k);
+			}
+			return res;
+		}
+
+		/**
+		 * ARRAY_NOT (aB == null) or ARRAY_AND/NAND/NOR/OR/XNOR/XOR of aB (same
+		 * length) on the truth values (ord 1) of the elements, computed 16
+		 * elements at a time. The result elements are ord 0/1 of aType's
+		 * element type.
+		 * 
+		 * @return null if aType cannot be packed or does not fit
+		 */
+		public PACKED computeLogic(IGBuiltin aOp, PACKED aB, IGTypeStatic aType, SourceLocation aSrc) throws ZamiaException {
+
+			if (aB != null && aB.fNumEntries != fNumEntries) {
+				return null;
+			}
+
+			long[] a = computeTruthWords();
+			long[] b = aB != null ? aB.computeTruthWords() : null;
+
+			int n = fWords.length;
+			long[] res = new long[n];
+			for (int k = 0; k < n; k++) {
+				long r;
+				switch (aOp) {
+				case ARRAY_NOT:
+					r = ~a[k];
+					break;
+				case ARRAY_AND:
+					r = a[k] & b[k];
+					break;
+				case ARRAY_NAND:
+					r = ~(a[k] & b[k]);
+					break;
+				case ARRAY_NOR:
+					r = ~(a[k] | b[k]);
+					break;
+				case ARRAY_OR:
+					r = a[k] | b[k];
+					break;
+				case ARRAY_XNOR:
+					r = ~(a[k] ^ b[k]);
+					break;
+				case ARRAY_XOR:
+					r = a[k] ^ b[k];
+					break;
+				default:
+					return null;
+				}
+				res[k] = r & getValidMask(k);
+			}
+
+			PACKED resValue = create(aType, res, fNumEntries, aSrc);
+			if (resValue == null || resValue.getLiterals().length < 2) {
+				return null;
+			}
+			return resValue;
+		}
+
+		/**
+		 * BITVECTOR_ROR/ROL/SRL/SLL/SRA/SLA by aDistance, result of type aType.
+		 * 
+		 * @return null if the shift is not handled here or aType does not fit
+		 */
+		public PACKED computeShift(IGBuiltin aOp, int aDistance, IGTypeStatic aType, SourceLocation aSrc) throws ZamiaException {
+
+			int n = fNumEntries;
+			if (n == 0) {
+				return null;
+			}
+
+			// SLL: fill at the low end, SRL: at the high end
+			boolean rotate = false, fillLow = false;
+			int right = 1, filler = 0;
+
+			switch (aOp) {
+			case BITVECTOR_ROR:
+				rotate = true;
+				break;
+			case BITVECTOR_ROL:
+				rotate = true;
+				right = -1;
+				break;
+			case BITVECTOR_SRL:
+				fillLow = aDistance < 0;
+				break;
+			case BITVECTOR_SLL:
+				right = -1;
+				fillLow = aDistance >= 0;
+				break;
+			case BITVECTOR_SRA:
+				fillLow = aDistance < 0;
+				filler = fillLow ? getOrdAt(0) : getOrdAt(n - 1);
+				break;
+			case BITVECTOR_SLA:
+				right = -1;
+				fillLow = aDistance >= 0;
+				filler = fillLow ? getOrdAt(0) : getOrdAt(n - 1);
+				break;
+			default:
+				return null;
+			}
+
+			long[] res = new long[fWords.length];
+			long d = (long) right * aDistance;
+			for (int j = 0; j < n; j++) {
+				long s = j + d;
+				int ord;
+				if (rotate) {
+					ord = getOrdAt((int) ((s % n + n) % n));
+				} else if (fillLow ? s >= 0 : s < n) {
+					if (s < 0 || s >= n) {
+						return null;
+					}
+					ord = getOrdAt((int) s);
+				} else {
+					ord = filler;
+				}
+				res[j >> 4] |= (long) ord << ((j & 15) << 2);
+			}
+
+			PACKED resValue = create(aType, res, n, aSrc);
+			if (resValue == null || !resValue.hasSameLiterals(this)) {
+				return null;
+			}
+			return resValue;
+		}
+
+		/**
+		 * aFirst followed by aSecond, each either a packed array or a single
+		 * element of aType's element type.
+		 * 
+		 * @return null if the parts do not fit aType
+		 */
+		public static PACKED concat(IGTypeStatic aType, IGStaticValue aFirst, IGStaticValue aSecond, SourceLocation aSrc) throws ZamiaException {
+
+			if (aType.isUnconstrained()) {
+				return null;
+			}
+			IGStaticValue[] literals = getPackableLiterals(aType);
+			if (literals == null) {
+				return null;
+			}
+
+			int n1 = getConcatLength(aFirst, literals);
+			int n2 = getConcatLength(aSecond, literals);
+			if (n1 < 0 || n2 < 0) {
+				return null;
+			}
+
+			int n = n1 + n2;
+			long[] res = new long[(n + 15) >> 4];
+			append(res, 0, aFirst, n1, literals);
+			append(res, n1, aSecond, n2, literals);
+
+			return create(aType, res, n, aSrc);
+		}
+
+		private static int getConcatLength(IGStaticValue aV, IGStaticValue[] aLiterals) {
+			if (aV instanceof PACKED) {
+				PACKED v = (PACKED) aV;
+				return sameLiterals(aLiterals, v.getLiterals()) ? v.fNumEntries : -1;
+			}
+			return getOrd(aV, aLiterals) >= 0 ? 1 : -1;
+		}
+
+		private static void append(long[] aWords, int aPos, IGStaticValue aV, int aN, IGStaticValue[] aLiterals) {
+			if (aV instanceof PACKED) {
+				PACKED v = (PACKED) aV;
+				for (int i = 0; i < aN; i++) {
+					int j = aPos + i;
+					aWords[j >> 4] |= (long) v.getOrdAt(i) << ((j & 15) << 2);
+				}
+			} else {
+				aWords[aPos >> 4] |= (long) getOrd(aV, aLiterals) << ((aPos & 15) << 2);
+			}
+		}
+
+		public String toHRString() {
+			StringBuilder buf = new StringBuilder();
+
+			IGTypeStatic at = getStaticType();
+			IGStaticValue[] literals = getLiterals();
+
+			int n = fNumEntries;
+			if (at.isLogic() || at.isString()) {
+				for (int i = n - 1; i >= 0; i--) {
+					buf.append(literals[getOrdAt(i)].toHRString());
+				}
+			} else {
+				buf.append("(");
+				for (int i = 0; i < n; i++) {
+					buf.append(literals[getOrdAt(i)]);
+					if (i < n - 1)
+						buf.append(", ");
+				}
+				buf.append(")");
+			}
+			return buf.toString();
+		}
+
+		public String toBinString() throws ZamiaException {
+
+			IGTypeStatic type = getStaticType();
+
+			if (!type.isLogic()) {
+				return toHRString();
+			}
+
+			StringBuilder buf = new StringBuilder("B\"");
+			boolean ascending = type.getStaticIndexType(null).isAscending();
+			IGStaticValue[] literals = getLiterals();
+			int n = fNumEntries;
+
+			for (int i = 0; i < n; i++) {
+				buf.append(literals[getOrdAt(ascending ? i : n - i - 1)].toHRString());
+			}
+
+			return buf.append("\"").toString();
+		}
+	}
+
 	public static class RANGE extends IGStaticValue {
 		
 		private final IGStaticValue fLeft, fRight, fAscending;
@@ -697,6 +1248,24 @@ public class IGStaticValue extends IGOperation {
 
 		case INTEGER:
 
+			if (isLongInt(aA) && aA.getOrd() != Long.MIN_VALUE) {
+				long l = aA.getOrd();
+
+				switch (aOp) {
+				case ABS:
+					l = Math.abs(l);
+					break;
+				case NEG:
+					l = -l;
+					break;
+				default:
+					throw new ZamiaException("IGStaticValue: Unsupported operation: " + aOp, aSrc);
+				}
+
+				resValue = new IGStaticValue.INT(t, null, aSrc, l);
+				break;
+			}
+
 			BigInteger num = aA.getNum();
 			BigInteger res = null;
 
@@ -753,6 +1322,44 @@ public class IGStaticValue extends IGOperation {
 		return resValue;
 	}
 
+	private static boolean isLongInt(IGStaticValue aValue) {
+		return aValue instanceof INT && ((INT) aValue).isLong();
+	}
+
+	/*
+	 * integer computeBinary() on longs, null if the operation needs
+	 * BigInteger, ArithmeticException on overflow
+	 */
+	private static IGStaticValue computeBinaryLong(long aA, long aB, BinOp aOp, IGTypeStatic aResType, SourceLocation aSrc) {
+
+		long res;
+
+		switch (aOp) {
+		case ADD:
+			res = INT.addExact(aA, aB);
+			break;
+		case SUB:
+			res = INT.subtractExact(aA, aB);
+			break;
+		case MUL:
+			res = INT.multiplyExact(aA, aB);
+			break;
+		case DIV:
+			res = INT.divideExact(aA, aB);
+			break;
+		case MAX:
+			res = Math.max(aA, aB);
+			break;
+		case MIN:
+			res = Math.min(aA, aB);
+			break;
+		default:
+			return null;
+		}
+
+		return new INT(aResType, null, aSrc, res);
+	}
+
 	public static IGStaticValue computeBinary(IGStaticValue aA, IGStaticValue aB, BinOp aOp, IGTypeStatic aResType, SourceLocation aSrc, ASTErrorMode aErrorMode,
 			ErrorReport aReport) throws ZamiaException {
 		
@@ -770,6 +1377,17 @@ public class IGStaticValue extends IGOperation {
 
 			if (tA.getCat() == TypeCat.INTEGER && tB.getCat() == TypeCat.INTEGER) {
 
+				if (isLongInt(aA) && isLongInt(aB)) {
+					try {
+						resValue = computeBinaryLong(aA.getOrd(), aB.getOrd(), aOp, aResType, aSrc);
+					} catch (ArithmeticException e) {
+						// overflow or division by zero, handled (or reported) by BigInteger below
+					}
+					if (resValue != null) {
+						break;
+					}
+				}
+
 				BigInteger numA = aA.getNum();
 				BigInteger numB = aB.getNum();
 
@@ -944,6 +1562,38 @@ public class IGStaticValue extends IGOperation {
 
 		case INTEGER:
 
+			if (isLongInt(aA) && isLongInt(aB)) {
+				long lA = aA.getOrd();
+				long lB = aB.getOrd();
+				boolean b;
+
+				switch (aOp) {
+				case GREATER:
+					b = lA > lB;
+					break;
+				case GREATEREQ:
+					b = lA >= lB;
+					break;
+				case LESS:
+					b = lA < lB;
+					break;
+				case LESSEQ:
+					b = lA <= lB;
+					break;
+				case EQUAL:
+					b = lA == lB;
+					break;
+				case NEQUAL:
+					b = lA != lB;
+					break;
+				default:
+					throw new ZamiaException("IGStaticValue: Unsupported operation: " + aOp, aSrc);
+				}
+
+				resValue = aResType.getEnumLiteral(b ? 1 : 0, aSrc, aErrorMode, aReport);
+				break;
+			}
+
 			BigInteger numA = aA.getNum();
 			BigInteger numB = aB.getNum();
 
@@ -1524,7 +2174,7 @@ public class IGStaticValue extends IGOperation {
 			long l = toLongNumber();
 
 			
-			int len = (this instanceof ARRAY) ? (((ARRAY)this).fArrayValues.size() + 3) / 4 : 1;
+			int len = (this instanceof ARRAY || this instanceof PACKED) ? (getNumArrayEntries(null) + 3) / 4 : 1;
 			if (len < 1) {
 				len = 1;
 			}
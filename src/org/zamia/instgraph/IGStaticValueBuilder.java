@@ -148,7 +148,9 @@ public class IGStaticValueBuilder {
 			case ENUM: return  (isCharLiteral()) ? new IGStaticValue.CHAR_LITERAL(this)
 				: new IGStaticValue.ENUM(this);
 			case FILE: return new IGStaticValue.FILE(this); 
-			case ARRAY: return new IGStaticValue.ARRAY(this);
+			case ARRAY:
+				IGStaticValue packed = IGStaticValue.PACKED.pack(this);
+				return packed != null ? packed : new IGStaticValue.ARRAY(this);
 			case RANGE: throw new ZamiaException("attempt to use StaticValueBuilder for range create. Invoke value constructor directly.");
 			case RECORD: return new IGStaticValue.RECORD(this);
 			case PHYSICAL:
@@ -114,6 +114,10 @@ public class IGStructure extends IGConcurrentStatement implements Scope {
 		return fPath;
 	}
 
+	void setPath(ToplevelPath aPath) {
+		fPath = aPath;
+	}
+
 	public void add(IGMapping aMapping) {
 		fMappings.add(aMapping);
 	}
@@ -49,6 +49,8 @@ public class IGType extends IGContainerItem {
 
 	protected HashMapArray<String, IGStaticValue> fEnumLiterals;
 
+	private transient volatile IGStaticValue[] fEnumLiteralTable;
+
 	protected boolean fIsCharEnum = false;
 
 	// scalar (sub-)types:
@@ -785,6 +787,30 @@ public class IGType extends IGContainerItem {
 		return fEnumLiterals.get(aIdx);
 	}
 
+	/*
+	 * enum literals by ord, shared by all subtypes of the same base type
+	 */
+	IGStaticValue[] getEnumLiteralTable() {
+		IGType bt = getBaseType();
+		if (bt != null) {
+			return bt.getEnumLiteralTable();
+		}
+		if (fEnumLiterals == null) {
+			return null;
+		}
+
+		int n = fEnumLiterals.size();
+		IGStaticValue[] table = fEnumLiteralTable;
+		if (table == null || table.length != n) {
+			table = new IGStaticValue[n];
+			for (int i = 0; i < n; i++) {
+				table[i] = fEnumLiterals.get(i);
+			}
+			fEnumLiteralTable = table;
+		}
+		return table;
+	}
+
 	public boolean isBool() {
 		return fCat == TypeCat.ENUM && getNumEnumLiterals() == 2;
 	}
@@ -8,6 +8,8 @@
  */
 package org.zamia.instgraph;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import org.zamia.ErrorReport;
 import org.zamia.SourceLocation;
 import org.zamia.ZamiaException;
@@ -37,6 +39,9 @@ public class IGTypeStatic extends IGType {
 
 	private HashMapArray<String, IGTypeStatic> fStaticFields;
 
+	// integer/physical types: values INT.CACHE_LOW..INT.CACHE_HIGH, created on demand
+	private transient volatile AtomicReferenceArray<IGStaticValue.INT> fIntCache;
+
 	/**
 	 * For creating a static type
 	 * 
@@ -229,6 +234,30 @@ public class IGTypeStatic extends IGType {
 	 * 
 	 */
 
+	/**
+	 * Shared INT value of this integer or physical type without source
+	 * location, null if aValue is outside the cached range. Shared values
+	 * never get a DBID, storing one stores a copy.
+	 */
+	public IGStaticValue.INT getCachedInt(long aValue) {
+		if (aValue < IGStaticValue.INT.CACHE_LOW || aValue > IGStaticValue.INT.CACHE_HIGH) {
+			return null;
+		}
+		AtomicReferenceArray<IGStaticValue.INT> cache = fIntCache;
+		if (cache == null) {
+			cache = new AtomicReferenceArray<IGStaticValue.INT>(IGStaticValue.INT.CACHE_HIGH - IGStaticValue.INT.CACHE_LOW + 1);
+			fIntCache = cache;
+		}
+		int idx = (int) aValue - IGStaticValue.INT.CACHE_LOW;
+		IGStaticValue.INT v = cache.get(idx);
+		if (v == null) {
+			v = new IGStaticValue.INT(this, null, null, aValue);
+			v.markShared();
+			cache.set(idx, v);
+		}
+		return v;
+	}
+
 	public IGStaticValue getStaticRange() {
 		return (IGStaticValue) fRange;
 	}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.instgraph.interpreter;
+
+import org.zamia.ErrorReport;
+import org.zamia.SourceLocation;
+import org.zamia.ZamiaException;
+import org.zamia.instgraph.IGContainer;
+import org.zamia.instgraph.IGObject;
+import org.zamia.instgraph.IGOperation;
+import org.zamia.instgraph.IGStaticValue;
+import org.zamia.instgraph.IGSubProgram;
+import org.zamia.instgraph.IGSubProgram.IGBuiltin;
+import org.zamia.instgraph.IGType;
+import org.zamia.instgraph.IGTypeStatic;
+import org.zamia.vhdl.ast.VHDLNode.ASTErrorMode;
+
+/**
+ * A builtin call site with its operands and (if it does not depend on the
+ * runtime) its static return type bound up front, so executing it needs no
+ * name resolution. Built lazily by IGCallStmt and never stored.
+ *
+ */
+
+final class IGBuiltinCall {
+
+	final IGSubProgram fSub;
+
+	final IGBuiltin fBuiltin;
+
+	final SourceLocation fLocation;
+
+	// formals "a" and "b", null if the builtin does not have them
+	final IGObject fA;
+
+	final IGObject fB;
+
+	// null if it has to be computed at runtime (e.g. unconstrained arrays)
+	final IGTypeStatic fReturnType;
+
+	// enum literals 0 and 1 of fReturnType for boolean results
+	private final IGStaticValue fFalse;
+
+	private final IGStaticValue fTrue;
+
+	IGBuiltinCall(IGSubProgram aSub, SourceLocation aLocation) throws ZamiaException {
+		fSub = aSub;
+		fBuiltin = aSub.getBuiltin();
+		fLocation = aLocation;
+
+		IGContainer container = aSub.getContainer();
+		fA = findFormal(container, "a");
+		fB = findFormal(container, "b");
+
+		fReturnType = computeStaticReturnType(aSub.getReturnType());
+
+		if (fReturnType != null && fReturnType.isEnum() && fReturnType.getNumEnumLiterals() >= 2) {
+			fFalse = fReturnType.getEnumLiteral(0, aLocation, ASTErrorMode.EXCEPTION, null);
+			fTrue = fReturnType.getEnumLiteral(1, aLocation, ASTErrorMode.EXCEPTION, null);
+		} else {
+			fFalse = null;
+			fTrue = null;
+		}
+	}
+
+	private static IGObject findFormal(IGContainer aContainer, String aId) {
+		int slot = aContainer.getInterfaceSlot(aId);
+		return slot >= 0 ? aContainer.getInterface(slot) : null;
+	}
+
+	/*
+	 * scalar types with a static range come out the same for every runtime
+	 */
+	private static IGTypeStatic computeStaticReturnType(IGType aType) {
+		if (aType == null) {
+			return null;
+		}
+		if (aType instanceof IGTypeStatic) {
+			return (IGTypeStatic) aType;
+		}
+		if (!aType.isScalar()) {
+			return null;
+		}
+		IGOperation range = aType.getRange();
+		if (range != null && !(range instanceof IGStaticValue)) {
+			return null;
+		}
+		try {
+			return aType.computeStaticType(null, ASTErrorMode.EXCEPTION, null);
+		} catch (ZamiaException e) {
+			// leave it to the runtime, which reports it properly
+			return null;
+		}
+	}
+
+	IGTypeStatic computeReturnType(IGInterpreterRuntimeEnv aRuntime, ASTErrorMode aErrorMode, ErrorReport aReport) throws ZamiaException {
+		if (fReturnType != null) {
+			return fReturnType;
+		}
+		return fSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
+	}
+
+	/**
+	 * Enum literal 1 (true) or 0 (false) of the return type, null on error.
+	 */
+	IGStaticValue computeBoolean(boolean aValue, IGInterpreterRuntimeEnv aRuntime, ASTErrorMode aErrorMode, ErrorReport aReport) throws ZamiaException {
+		if (fTrue != null) {
+			return aValue ? fTrue : fFalse;
+		}
+		IGTypeStatic rt = computeReturnType(aRuntime, aErrorMode, aReport);
+		if (rt == null) {
+			return null;
+		}
+		return rt.getEnumLiteral(aValue ? 1 : 0, fLocation, ASTErrorMode.EXCEPTION, null);
+	}
+
+	/**
+	 * Integer/physical result aValue, shared if aType is the static return
+	 * type and aValue is small.
+	 */
+	IGStaticValue createInt(IGTypeStatic aType, SourceLocation aLocation, long aValue) {
+		if (aType == fReturnType) {
+			IGStaticValue v = aType.getCachedInt(aValue);
+			if (v != null) {
+				return v;
+			}
+		}
+		return new IGStaticValue.INT(aType, null, aLocation, aValue);
+	}
+
+	@Override
+	public String toString() {
+		return "IGBuiltinCall(" + fBuiltin + ")";
+	}
+}
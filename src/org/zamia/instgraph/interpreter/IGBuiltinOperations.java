@@ -44,14 +44,20 @@ public class IGBuiltinOperations {
 
 	public static ReturnStatus execBuiltin(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
+		return execBuiltin(new IGBuiltinCall(aSub, aLocation), aRuntime, aErrorMode, aReport);
+	}
+
+	static ReturnStatus execBuiltin(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, ASTErrorMode aErrorMode, ErrorReport aReport) throws ZamiaException {
 
-		IGBuiltin builtin = aSub.getBuiltin();
+		IGSubProgram sub = aCall.fSub;
+		SourceLocation location = aCall.fLocation;
+		IGBuiltin builtin = aCall.fBuiltin;
 
 		switch (builtin) {
 		case INT_ABS:
 		case INT_NEG:
 		case INT_POS:
-			return execIntUnary(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execIntUnary(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case INT_ADD:
 		case INT_DIV:
@@ -60,19 +66,19 @@ public class IGBuiltinOperations {
 		case INT_MUL:
 		case INT_POWER:
 		case INT_REM:
-			return execIntBinary(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execIntBinary(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case REAL_ABS:
 		case REAL_NEG:
 		case REAL_POS:
-			return execRealUnary(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execRealUnary(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case REAL_ADD:
 		case REAL_MINUS:
 		case REAL_DIV:
 		case REAL_MUL:
 		case REAL_POWER:
-			return execRealBinary(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execRealBinary(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case SCALAR_EQUALS:
 		case SCALAR_GREATER:
@@ -80,7 +86,7 @@ public class IGBuiltinOperations {
 		case SCALAR_LESS:
 		case SCALAR_LESSEQ:
 		case SCALAR_NEQUALS:
-			return execScalarCompare(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execScalarCompare(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case BOOL_AND:
 		case BOOL_NAND:
@@ -88,13 +94,13 @@ public class IGBuiltinOperations {
 		case BOOL_OR:
 		case BOOL_XNOR:
 		case BOOL_XOR:
-			return execBoolBinary(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execBoolBinary(aCall, builtin, aRuntime, location, aErrorMode, aReport);
 
 		case BOOL_NOT:
-			return execBoolNot(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execBoolNot(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case BIT_NOT:
-			return execBitNot(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execBitNot(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case BIT_AND:
 		case BIT_NAND:
@@ -102,20 +108,20 @@ public class IGBuiltinOperations {
 		case BIT_OR:
 		case BIT_XNOR:
 		case BIT_XOR:
-			return execBitBinary(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execBitBinary(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case ARRAY_NOT:
-			return execArrayNot(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execArrayNot(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case ARRAY_EQUALS:
 		case ARRAY_NEQUALS:
-			return execArrayCompare(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execArrayCompare(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case ARRAY_GREATER:
 		case ARRAY_GREATEREQ:
 		case ARRAY_LESS:
 		case ARRAY_LESSEQ:
-			return execArrayCompareRelative(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execArrayCompareRelative(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case ARRAY_AND:
 		case ARRAY_NAND:
@@ -123,7 +129,7 @@ public class IGBuiltinOperations {
 		case ARRAY_OR:
 		case ARRAY_XNOR:
 		case ARRAY_XOR:
-			return execArrayBinary(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execArrayBinary(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case BITVECTOR_ROR:
 		case BITVECTOR_ROL:
@@ -131,55 +137,55 @@ public class IGBuiltinOperations {
 		case BITVECTOR_SRL:
 		case BITVECTOR_SLA:
 		case BITVECTOR_SRA:
-			return execBitvectorBinary(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execBitvectorBinary(aCall, aRuntime, location, aErrorMode, aReport);
 			
 		case ARRAY_CONCATAA:
 		case ARRAY_CONCATAE:
 		case ARRAY_CONCATEA:
 		case ARRAY_CONCATEE:
-			return execArrayConcat(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execArrayConcat(aCall, aRuntime, location, aErrorMode, aReport);
 
 		case READ:
-			return execRead(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execRead(sub, aRuntime, location, aErrorMode, aReport);
 
 		case WRITE:
-			return execWrite(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execWrite(sub, aRuntime, location, aErrorMode, aReport);
 
 		case READLINE:
-			return execReadline(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execReadline(sub, aRuntime, location, aErrorMode, aReport);
 
 		case WRITELINE:
-			return execWriteline(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execWriteline(sub, aRuntime, location, aErrorMode, aReport);
 
 		case ENDFILE:
-			return execEndfile(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execEndfile(sub, aRuntime, location, aErrorMode, aReport);
 
 		case FILE_OPEN:
-			return execFileOpen(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execFileOpen(sub, aRuntime, location, aErrorMode, aReport);
 
 		case FILE_CLOSE:
-			return execFileClose(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execFileClose(sub, aRuntime, location, aErrorMode, aReport);
 			
 		case FLUSH:
 			ZamiaLogger.getInstance().info("Flush is not needed. Zamia keeps files closed. ");
 			return ReturnStatus.CONTINUE;
 
 		case NOW:
-			return execNow(aSub, aRuntime, aLocation, aErrorMode, aReport);
+			return execNow(aCall, aRuntime, location, aErrorMode, aReport);
 		
 		default:
-			throw new ZamiaException("Sorry, unimplemented builtin: " + builtin, aLocation);
+			throw new ZamiaException("Sorry, unimplemented builtin: " + builtin, location);
 		}
 
 	}
 	
-	private static ReturnStatus execNow(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport) throws ZamiaException {
+	private static ReturnStatus execNow(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport) throws ZamiaException {
 		
 		if (aRuntime instanceof IGSimProcess) {
 			
 			BigInteger now = ((IGSimProcess) aRuntime).getCurrentTime(aLocation);
 		
-			IGTypeStatic timeType = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
+			IGTypeStatic timeType = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
 		
 			IGStaticValue nowTime = new IGStaticValue.INT(timeType, "NOW", aLocation, now);
 		
@@ -188,18 +194,42 @@ public class IGBuiltinOperations {
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execIntUnary(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execIntUnary(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
+		IGStaticValue v = aRuntime.getObjectValue(aCall.fA);
+
+		IGTypeStatic rt = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
+		if (rt == null) {
+			return ReturnStatus.ERROR;
+		}
 
-		IGStaticValue v = aRuntime.getObjectValue(intfA);
+		if (isLongInt(v) && v.getOrd() != Long.MIN_VALUE) {
+			long num = v.getOrd();
+			long res;
+
+			switch (aCall.fBuiltin) {
+			case INT_ABS:
+				res = Math.abs(num);
+				break;
+			case INT_NEG:
+				res = -num;
+				break;
+			case INT_POS:
+				res = num;
+				break;
+			default:
+				throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aCall.fSub, aLocation);
+			}
+
+			aRuntime.push(aCall.createInt(rt, aLocation, res));
+			return ReturnStatus.CONTINUE;
+		}
 
 		BigInteger num = v.getNum();
 		BigInteger res = null;
 
-		switch (aSub.getBuiltin()) {
+		switch (aCall.fBuiltin) {
 		case INT_ABS:
 			res = num.abs();
 			break;
@@ -210,12 +240,7 @@ public class IGBuiltinOperations {
 			res = num;
 			break;
 		default:
-			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aSub, aLocation);
-		}
-
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
-		if (rt == null) {
-			return ReturnStatus.ERROR;
+			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aCall.fSub, aLocation);
 		}
 
 		IGStaticValue resValue = new IGStaticValue.INT(rt, null, aLocation, res);
@@ -224,29 +249,42 @@ public class IGBuiltinOperations {
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execIntBinary(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execIntBinary(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		IGStaticValue vA = aRuntime.getObjectValue(intfA);
+		IGStaticValue vA = aRuntime.getObjectValue(aCall.fA);
 		if (vA == null)	{
 			return error(vA, "execIntBinary(): vA", aErrorMode, aLocation);
 		}
 
-		BigInteger numA = vA.getNum();
-
-		IGObject intfB = container.resolveObject("b");
-		IGStaticValue vB = aRuntime.getObjectValue(intfB);
+		IGStaticValue vB = aRuntime.getObjectValue(aCall.fB);
 		if (vB == null)	{
 			return error(vB, "execIntBinary(): vB", aErrorMode, aLocation);
 		}
-		
+
+		IGTypeStatic rt = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
+		if (rt == null) {
+			return ReturnStatus.ERROR;
+		}
+
+		if (isLongInt(vA) && isLongInt(vB)) {
+			try {
+				IGStaticValue resValue = execIntBinaryLong(aCall, vA.getOrd(), vB.getOrd(), rt, aLocation);
+				if (resValue != null) {
+					aRuntime.push(resValue);
+					return ReturnStatus.CONTINUE;
+				}
+			} catch (ArithmeticException e) {
+				// overflow or division by zero, handled (or reported) by BigInteger below
+			}
+		}
+
+		BigInteger numA = vA.getNum();
 		BigInteger numB = vB.getNum();
 
 		BigInteger res = null;
 
-		switch (aSub.getBuiltin()) {
+		switch (aCall.fBuiltin) {
 		case INT_ADD:
 			res = numA.add(numB);
 			break;
@@ -263,21 +301,17 @@ public class IGBuiltinOperations {
 			res = numA.pow(numB.intValue());
 			break;
 		case INT_MOD:
-			res = numA.mod(numB);
-			if (numB.signum() < 0) {
-				res = res.negate();
+			// the result takes the sign of numB
+			res = numA.remainder(numB);
+			if (res.signum() != 0 && res.signum() != numB.signum()) {
+				res = res.add(numB);
 			}
 			break;
 		case INT_REM:
 			res = numA.remainder(numB);
 			break;
 		default:
-			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aSub, aLocation);
-		}
-
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
-		if (rt == null) {
-			return ReturnStatus.ERROR;
+			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aCall.fSub, aLocation);
 		}
 
 		IGStaticValue resValue = new IGStaticValue.INT(rt, null, aLocation, res);
@@ -287,18 +321,57 @@ public class IGBuiltinOperations {
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execRealUnary(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
-			throws ZamiaException {
+	private static boolean isLongInt(IGStaticValue aValue) {
+		return aValue instanceof IGStaticValue.INT && ((IGStaticValue.INT) aValue).isLong();
+	}
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
+	/*
+	 * execIntBinary() on longs, null if the operation needs BigInteger,
+	 * ArithmeticException on overflow
+	 */
+	private static IGStaticValue execIntBinaryLong(IGBuiltinCall aCall, long aA, long aB, IGTypeStatic aRt, SourceLocation aLocation) throws ZamiaException {
 
-		IGStaticValue v = aRuntime.getObjectValue(intfA);
+		long res;
+
+		switch (aCall.fBuiltin) {
+		case INT_ADD:
+			res = IGStaticValue.INT.addExact(aA, aB);
+			break;
+		case INT_MINUS:
+			res = IGStaticValue.INT.subtractExact(aA, aB);
+			break;
+		case INT_DIV:
+			res = IGStaticValue.INT.divideExact(aA, aB);
+			break;
+		case INT_MUL:
+			res = IGStaticValue.INT.multiplyExact(aA, aB);
+			break;
+		case INT_MOD:
+			// the result takes the sign of aB
+			res = aA % aB;
+			if (res != 0 && (res ^ aB) < 0) {
+				res += aB;
+			}
+			break;
+		case INT_REM:
+			res = aA % aB;
+			break;
+		default:
+			return null;
+		}
+
+		return aCall.createInt(aRt, aLocation, res);
+	}
+
+	private static ReturnStatus execRealUnary(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+			throws ZamiaException {
+
+		IGStaticValue v = aRuntime.getObjectValue(aCall.fA);
 
 		BigDecimal num = v.getReal();
 		BigDecimal res = null;
 
-		switch (aSub.getBuiltin()) {
+		switch (aCall.fBuiltin) {
 		case REAL_ABS:
 			res = num.abs();
 			break;
@@ -309,10 +382,10 @@ public class IGBuiltinOperations {
 			res = num;
 			break;
 		default:
-			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aSub, aLocation);
+			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aCall.fSub, aLocation);
 		}
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
+		IGTypeStatic rt = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
 		if (rt == null) {
 			return ReturnStatus.ERROR;
 		}
@@ -324,20 +397,17 @@ public class IGBuiltinOperations {
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execRealBinary(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execRealBinary(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		IGStaticValue vA = aRuntime.getObjectValue(intfA);
+		IGStaticValue vA = aRuntime.getObjectValue(aCall.fA);
 		if (vA == null)	{
 			return error(vA, "execRealBinary(): vA", aErrorMode, aLocation);
 		}
 		
 		BigDecimal numA = vA.getReal();
 
-		IGObject intfB = container.resolveObject("b");
-		IGStaticValue vB = aRuntime.getObjectValue(intfB);
+		IGStaticValue vB = aRuntime.getObjectValue(aCall.fB);
 		if (vB == null)	{
 			return error(vB, "execRealBinary(): vB", aErrorMode, aLocation);
 		}
@@ -346,7 +416,7 @@ public class IGBuiltinOperations {
 
 		BigDecimal res = null;
 
-		switch (aSub.getBuiltin()) {
+		switch (aCall.fBuiltin) {
 		case REAL_ADD:
 			res = numA.add(numB);
 			break;
@@ -363,10 +433,10 @@ public class IGBuiltinOperations {
 			res = numA.pow(numB.intValue());
 			break;
 		default:
-			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aSub, aLocation);
+			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aCall.fSub, aLocation);
 		}
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
+		IGTypeStatic rt = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
 		if (rt == null) {
 			return ReturnStatus.ERROR;
 		}
@@ -378,99 +448,98 @@ public class IGBuiltinOperations {
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execScalarCompare(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execScalarCompare(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		IGStaticValue vA = aRuntime.getObjectValue(intfA);
+		IGStaticValue vA = aRuntime.getObjectValue(aCall.fA);
 		if (vA == null)	{
 			return error(vA, "execScalarCompare(): vA", aErrorMode, aLocation);
 		}
-		long ordA = vA.getOrd();
 		
-		IGObject intfB = container.resolveObject("b");
-		IGStaticValue vB = aRuntime.getObjectValue(intfB);
+		IGStaticValue vB = aRuntime.getObjectValue(aCall.fB);
 		if (vB == null)	{
 			return error(vB, "execScalarCompare(): vB", aErrorMode, aLocation);
 		}
-		long ordB = vB.getOrd();
+
+		// getOrd() truncates integers that do not fit into a long
+		int cmp;
+		if (isBigInt(vA) || isBigInt(vB)) {
+			cmp = vA.getNum().compareTo(vB.getNum());
+		} else {
+			cmp = Long.compare(vA.getOrd(), vB.getOrd());
+		}
 
 		boolean res;
 
-		switch (aSub.getBuiltin()) {
+		switch (aCall.fBuiltin) {
 			case SCALAR_EQUALS:
-				res = ordA == ordB;
+				res = cmp == 0;
 				break;
 			case SCALAR_GREATER:
-				res = ordA > ordB;
+				res = cmp > 0;
 				break;
 			case SCALAR_GREATEREQ:
-				res = ordA >= ordB;
+				res = cmp >= 0;
 				break;
 			case SCALAR_LESS:
-				res = ordA < ordB;
+				res = cmp < 0;
 				break;
 			case SCALAR_LESSEQ:
-				res = ordA <= ordB;
+				res = cmp <= 0;
 				break;
 			case SCALAR_NEQUALS:
-				res = ordA != ordB;
+				res = cmp != 0;
 				break;
 			default:
-				throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aSub, aLocation);
+				throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aCall.fSub, aLocation);
 		}
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
-		if (rt == null) {
+		IGStaticValue resValue = aCall.computeBoolean(res, aRuntime, aErrorMode, aReport);
+		if (resValue == null) {
 			return ReturnStatus.ERROR;
 		}
-		IGStaticValue resValue = rt.getEnumLiteral(res ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
 
 		aRuntime.push(resValue);
 
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execBoolNot(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
-			throws ZamiaException {
+	private static boolean isBigInt(IGStaticValue aValue) {
+		return aValue instanceof IGStaticValue.INT && !((IGStaticValue.INT) aValue).isLong();
+	}
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
+	private static ReturnStatus execBoolNot(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+			throws ZamiaException {
 
-		IGStaticValue v = aRuntime.getObjectValue(intfA);
+		IGStaticValue v = aRuntime.getObjectValue(aCall.fA);
 
 		boolean b = v.getOrd() == 1;
 		boolean res = !b;
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
-		if (rt == null) {
+		IGStaticValue resValue = aCall.computeBoolean(res, aRuntime, aErrorMode, aReport);
+		if (resValue == null) {
 			return ReturnStatus.ERROR;
 		}
-		IGStaticValue resValue = rt.getEnumLiteral(res ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
 
 		aRuntime.push(resValue);
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execBoolBinary(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execBoolBinary(IGBuiltinCall aCall, IGBuiltin aOp, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		IGStaticValue vA = aRuntime.getObjectValue(intfA);
+		IGStaticValue vA = aRuntime.getObjectValue(aCall.fA);
 		if (vA == null)	{
 			return error(vA, "execIntBinary(): vB", aErrorMode, aLocation);
 		}
 		
 		boolean bA = vA.getOrd() == 1;
 
-		IGObject intfB = container.resolveObject("b");
-		IGStaticValue vB = aRuntime.getObjectValue(intfB);
+		IGStaticValue vB = aRuntime.getObjectValue(aCall.fB);
 		boolean bB = vB.getOrd() == 1;
 
 		boolean res = false;
 
-		switch (aSub.getBuiltin()) {
+		switch (aOp) {
 		case BOOL_AND:
 			res = bA & bB;
 			break;
@@ -496,45 +565,40 @@ public class IGBuiltinOperations {
 
 			break;
 		default:
-			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aSub, aLocation);
+			throw new ZamiaException("Sorry. Internal error. Unsupported operation: " + aCall.fSub, aLocation);
 		}
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
-		if (rt == null) {
+		IGStaticValue resValue = aCall.computeBoolean(res, aRuntime, aErrorMode, aReport);
+		if (resValue == null) {
 			return ReturnStatus.ERROR;
 		}
-		IGStaticValue resValue = rt.getEnumLiteral(res ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
 
 		aRuntime.push(resValue);
 
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execBitNot(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execBitNot(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-
-		IGStaticValue v = aRuntime.getObjectValue(intfA);
+		IGStaticValue v = aRuntime.getObjectValue(aCall.fA);
 
 		boolean b = v.getOrd() == 1;
 		boolean res = !b;
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
-		if (rt == null) {
+		IGStaticValue resValue = aCall.computeBoolean(res, aRuntime, aErrorMode, aReport);
+		if (resValue == null) {
 			return ReturnStatus.ERROR;
 		}
-		IGStaticValue resValue = rt.getEnumLiteral(res ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
 
 		aRuntime.push(resValue);
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execBitBinary(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execBitBinary(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGBuiltin originalBuiltin = aSub.getBuiltin();
+		IGBuiltin originalBuiltin = aCall.fBuiltin;
 		IGBuiltin boolBuiltin;
 		switch (originalBuiltin) {
 			case BIT_AND:
@@ -552,25 +616,17 @@ public class IGBuiltinOperations {
 			default:
 				throw new ZamiaException("Sorry, unimplemented builtin: " + originalBuiltin, aLocation);
 		}
-		aSub.setBuiltin(boolBuiltin);
-		ReturnStatus returnStatus = execBoolBinary(aSub, aRuntime, aLocation, aErrorMode, aReport);
-		aSub.setBuiltin(originalBuiltin);
-
-		return returnStatus;
+		return execBoolBinary(aCall, boolBuiltin, aRuntime, aLocation, aErrorMode, aReport);
 	}
 
-	private static ReturnStatus execArrayNot(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execArrayNot(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-
-		IGStaticValue value = aRuntime.getObjectValue(intfA);
+		IGStaticValue value = aRuntime.getObjectValue(aCall.fA);
 
 		int offset = value.getArrayOffset();
 		int n = value.getNumArrayEntries(aLocation);
-		IGType t = aSub.getReturnType();
-		IGTypeStatic rt = t.computeStaticType(aRuntime, aErrorMode, aReport);
+		IGTypeStatic rt = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
 		if (rt == null) {
 			return ReturnStatus.ERROR;
 		}
@@ -579,14 +635,25 @@ public class IGBuiltinOperations {
 
 		rt = ensureConstrainedArray(rt, value, aLocation);
 
+		if (value instanceof IGStaticValue.PACKED) {
+			IGStaticValue.PACKED resValue = ((IGStaticValue.PACKED) value).computeLogic(IGBuiltin.ARRAY_NOT, null, rt, aLocation);
+			if (resValue != null && resValue.getArrayOffset() == offset) {
+				aRuntime.push(resValue);
+				return ReturnStatus.CONTINUE;
+			}
+		}
+
 		IGStaticValueBuilder builder = new IGStaticValueBuilder(rt, null, aLocation);
 
+		IGStaticValue zero = et.getEnumLiteral(0, aLocation, ASTErrorMode.EXCEPTION, null);
+		IGStaticValue one = et.getEnumLiteral(1, aLocation, ASTErrorMode.EXCEPTION, null);
+
 		for (int i = 0; i < n; i++) {
 
 			IGStaticValue v = value.getValue(i + offset, aLocation);
 			boolean b = v.getOrd() == 1;
 
-			v = et.getEnumLiteral(!b ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
+			v = !b ? one : zero;
 
 			builder.set(i + offset, v, aLocation);
 		}
@@ -603,18 +670,15 @@ public class IGBuiltinOperations {
 		}
 		throw new ZamiaException ("IGBuiltinOperations: " + varName + "==null", aLocation);
 	}
-	private static ReturnStatus execArrayCompare(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execArrayCompare(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		IGStaticValue valueA = aRuntime.getObjectValue(intfA);
+		IGStaticValue valueA = aRuntime.getObjectValue(aCall.fA);
 		if (valueA == null)	{
 			return error(valueA, "execArrayCompare(): vA", aErrorMode, aLocation);
 		}
 
-		IGObject intfB = container.resolveObject("b");
-		IGStaticValue valueB = aRuntime.getObjectValue(intfB);
+		IGStaticValue valueB = aRuntime.getObjectValue(aCall.fB);
 		if (valueB == null) {
 			return error(valueB, "execArrayCompare(): vB", aErrorMode, aLocation);
 		}
@@ -625,20 +689,22 @@ public class IGBuiltinOperations {
 		int nB = valueB.getNumArrayEntries(aLocation);
 
 		boolean doEquals = true;
-		switch (aSub.getBuiltin()) {
+		switch (aCall.fBuiltin) {
 		case ARRAY_EQUALS:
 			break;
 		case ARRAY_NEQUALS:
 			doEquals = false;
 			break;
 		default:
-			throw new ZamiaException("Internal interpreter error: execArrayCompare() called on non-compare op " + aSub.getBuiltin(), aLocation);
+			throw new ZamiaException("Internal interpreter error: execArrayCompare() called on non-compare op " + aCall.fBuiltin, aLocation);
 		}
 
 		boolean bRes = false;
 
 		if (nA != nB) {
 			bRes = !doEquals;
+		} else if (valueA instanceof IGStaticValue.PACKED && valueB instanceof IGStaticValue.PACKED && ((IGStaticValue.PACKED) valueA).hasSameLiterals((IGStaticValue.PACKED) valueB)) {
+			bRes = ((IGStaticValue.PACKED) valueA).equalsEntries((IGStaticValue.PACKED) valueB) == doEquals;
 		} else {
 
 			// compute equals, invert it if necessary
@@ -660,28 +726,24 @@ public class IGBuiltinOperations {
 			}
 		}
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
-		if (rt == null) {
+		IGStaticValue resValue = aCall.computeBoolean(bRes, aRuntime, aErrorMode, aReport);
+		if (resValue == null) {
 			return ReturnStatus.ERROR;
 		}
-		IGStaticValue resValue = rt.getEnumLiteral(bRes ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
 
 		aRuntime.push(resValue);
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execArrayCompareRelative(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execArrayCompareRelative(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		IGStaticValue valueA = aRuntime.getObjectValue(intfA);
+		IGStaticValue valueA = aRuntime.getObjectValue(aCall.fA);
 		if (valueA == null)	{
 			return error(valueA, "execArrayCompareRelative(): vA", aErrorMode, aLocation);
 		}
 
-		IGObject intfB = container.resolveObject("b");
-		IGStaticValue valueB = aRuntime.getObjectValue(intfB);
+		IGStaticValue valueB = aRuntime.getObjectValue(aCall.fB);
 		if (valueB == null)	{
 			return error(valueB, "execArrayCompareRelative(): vB", aErrorMode, aLocation);
 		}
@@ -691,7 +753,7 @@ public class IGBuiltinOperations {
 		int nA = valueA.getNumArrayEntries(aLocation);
 		int nB = valueB.getNumArrayEntries(aLocation);
 
-		switch (aSub.getBuiltin()) {
+		switch (aCall.fBuiltin) {
 		case ARRAY_GREATER:
 		case ARRAY_GREATEREQ:
 
@@ -711,11 +773,11 @@ public class IGBuiltinOperations {
 		case ARRAY_LESSEQ:
 			break;
 		default:
-			throw new ZamiaException("Internal interpreter error: execArrayCompareRelative() called on non-compare op " + aSub.getBuiltin(), aLocation);
+			throw new ZamiaException("Internal interpreter error: execArrayCompareRelative() called on non-compare op " + aCall.fBuiltin, aLocation);
 		}
 
 		boolean bRes; // true when with EQ, false otherwise. see std_logic_arith.vhd:1355 (unsigned_is_less_or_equal())
-		switch (aSub.getBuiltin()) {
+		switch (aCall.fBuiltin) {
 			case ARRAY_GREATEREQ:
 			case ARRAY_LESSEQ:
 				bRes = true;
@@ -727,24 +789,39 @@ public class IGBuiltinOperations {
 		int nM = nA > nB ? nA : nB;
 		IGStaticValue zero = valueA.getStaticType().getStaticElementType(aLocation).findEnumLiteral('0');
 		IGStaticValue one = valueA.getStaticType().getStaticElementType(aLocation).findEnumLiteral('1');
-		for (int i = 0; i < nM; i++) {
+		if (zero != null && one != null && valueA instanceof IGStaticValue.PACKED && valueB instanceof IGStaticValue.PACKED
+				&& ((IGStaticValue.PACKED) valueA).hasSameLiterals((IGStaticValue.PACKED) valueB)) {
+
+			// same loop on the ords, zero is not one
+			IGStaticValue.PACKED pA = (IGStaticValue.PACKED) valueA;
+			IGStaticValue.PACKED pB = (IGStaticValue.PACKED) valueB;
+			int zeroOrd = zero.getEnumOrd();
+			int oneOrd = one.getEnumOrd();
+			for (int i = 0; i < nM; i++) {
+				bAis0 = i + offsetA >= nA || pA.getEnumOrd(i + offsetA, aLocation) == zeroOrd;
+				bBis1 = i + offsetB < nB && pB.getEnumOrd(i + offsetB, aLocation) == oneOrd;
+
+				bRes = (bAis0 && bBis1) || (bAis0 && bRes) || (bBis1 && bRes);
+			}
+		} else {
+			for (int i = 0; i < nM; i++) {
 
-			boolean beyondA = i + offsetA >= nA;
-			boolean beyondB = i + offsetB >= nB;
-			IGStaticValue vA = beyondA ? zero : valueA.getValue(i + offsetA, aLocation);
-			IGStaticValue vB = beyondB ? zero : valueB.getValue(i + offsetB, aLocation);
+				boolean beyondA = i + offsetA >= nA;
+				boolean beyondB = i + offsetB >= nB;
+				IGStaticValue vA = beyondA ? zero : valueA.getValue(i + offsetA, aLocation);
+				IGStaticValue vB = beyondB ? zero : valueB.getValue(i + offsetB, aLocation);
 
-			bAis0 = vA.equalsValue(zero);
-			bBis1 = vB.equalsValue(one);
+				bAis0 = vA.equalsValue(zero);
+				bBis1 = vB.equalsValue(one);
 
-			bRes = (bAis0 && bBis1) || (bAis0 && bRes) || (bBis1 && bRes); // see std_logic_arith.vhd:1332 (unsigned_is_less())
+				bRes = (bAis0 && bBis1) || (bAis0 && bRes) || (bBis1 && bRes); // see std_logic_arith.vhd:1332 (unsigned_is_less())
+			}
 		}
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
-		if (rt == null) {
+		IGStaticValue resValue = aCall.computeBoolean(bRes, aRuntime, aErrorMode, aReport);
+		if (resValue == null) {
 			return ReturnStatus.ERROR;
 		}
-		IGStaticValue resValue = rt.getEnumLiteral(bRes ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
 
 		aRuntime.push(resValue);
 		return ReturnStatus.CONTINUE;
@@ -761,23 +838,20 @@ public class IGBuiltinOperations {
 		return aRt;
 	}
 		
-	private static ReturnStatus execBitvectorBinary(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, final SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execBitvectorBinary(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, final SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		final IGStaticValue valueA = aRuntime.getObjectValue(intfA);
+		final IGStaticValue valueA = aRuntime.getObjectValue(aCall.fA);
 		if (valueA == null)	{
 			return error(valueA, "execBitvectorBinary(): vA", aErrorMode, aLocation);
 		}
 
-		IGObject intfB = container.resolveObject("b");
-		final IGStaticValue valueB = aRuntime.getObjectValue(intfB);
+		final IGStaticValue valueB = aRuntime.getObjectValue(aCall.fB);
 		if (valueB == null)	{
 			return error(valueB, "execBitvectorBinary(): vB", aErrorMode, aLocation);
 		}
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
+		IGTypeStatic rt = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
 		if (rt == null) {
 			return ReturnStatus.ERROR;
 		}
@@ -786,9 +860,23 @@ public class IGBuiltinOperations {
 		if (rt.isUnconstrained())
 			throw new ZamiaException("Interpreter error: cannot determine resulting array boundaries, all types involved are unconstrained :-/", aLocation);
 
-		final IGStaticValueBuilder builder = new IGStaticValueBuilder(rt, null, aLocation);
+		IGSubProgram.IGBuiltin func = aCall.fBuiltin;
+
+		if (valueA instanceof IGStaticValue.PACKED) {
+			IGStaticValue resValue = ((IGStaticValue.PACKED) valueA).computeShift(func, valueB.getInt(), rt, aLocation);
+			if (resValue != null) {
+				aRuntime.push(resValue);
+				return ReturnStatus.CONTINUE;
+			}
+		}
 
-		IGSubProgram.IGBuiltin func = aSub.getBuiltin();
+		// nothing to shift, and no element to fill with
+		if (valueA.getNumArrayEntries(aLocation) == 0) {
+			aRuntime.push(valueA);
+			return ReturnStatus.CONTINUE;
+		}
+
+		final IGStaticValueBuilder builder = new IGStaticValueBuilder(rt, null, aLocation);
 
 		final int offset = valueA.getArrayOffset();
 		final int nA = valueA.getNumArrayEntries(aLocation);
@@ -863,7 +951,7 @@ public class IGBuiltinOperations {
 		case BITVECTOR_SRA: ((valueb < 0) ? new SLA( 1) : new SRA( 1)).run(); break;
 		case BITVECTOR_SLA: ((valueb < 0) ? new SRA(-1) : new SLA(-1)).run(); break;
 		default:
-			throw new ZamiaException("Internal interpreter error: execArrayBinary() called on non-implemented op " + aSub.getBuiltin(), aLocation);
+			throw new ZamiaException("Internal interpreter error: execArrayBinary() called on non-implemented op " + aCall.fBuiltin, aLocation);
 		}
 
 		IGStaticValue resValue = builder.buildConstant();
@@ -871,18 +959,15 @@ public class IGBuiltinOperations {
 		aRuntime.push(resValue);
 		return ReturnStatus.CONTINUE;
 	}
-	private static ReturnStatus execArrayBinary(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execArrayBinary(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		IGStaticValue valueA = aRuntime.getObjectValue(intfA);
+		IGStaticValue valueA = aRuntime.getObjectValue(aCall.fA);
 		if (valueA == null)	{
 			return error(valueA, "execArrayBinary(): vA", aErrorMode, aLocation);
 		}
 
-		IGObject intfB = container.resolveObject("b");
-		IGStaticValue valueB = aRuntime.getObjectValue(intfB);
+		IGStaticValue valueB = aRuntime.getObjectValue(aCall.fB);
 		if (valueB == null)	{
 			return error(valueB, "execArrayBinary(): vB", aErrorMode, aLocation);
 		}
@@ -893,7 +978,7 @@ public class IGBuiltinOperations {
 		int nA = valueA.getNumArrayEntries(aLocation);
 		int nB = valueB.getNumArrayEntries(aLocation);
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
+		IGTypeStatic rt = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
 		if (rt == null) {
 			return ReturnStatus.ERROR;
 		}
@@ -904,10 +989,21 @@ public class IGBuiltinOperations {
 			rt = ensureConstrainedArray(valueA.getStaticType(), valueB, aLocation);
 		}
 
+		if (valueA instanceof IGStaticValue.PACKED && valueB instanceof IGStaticValue.PACKED) {
+			IGStaticValue resValue = ((IGStaticValue.PACKED) valueA).computeLogic(aCall.fBuiltin, (IGStaticValue.PACKED) valueB, rt, aLocation);
+			if (resValue != null) {
+				aRuntime.push(resValue);
+				return ReturnStatus.CONTINUE;
+			}
+		}
+
 		IGStaticValueBuilder builder = new IGStaticValueBuilder(rt, null, aLocation);
 
 		int offsetR = builder.getArrayOffset();
 
+		IGStaticValue zero = et.getEnumLiteral(0, aLocation, ASTErrorMode.EXCEPTION, null);
+		IGStaticValue one = et.getEnumLiteral(1, aLocation, ASTErrorMode.EXCEPTION, null);
+
 		if (nA != nB) {
 			throw new ZamiaException("Interpreter error: execArrayBinary() called on non-equal-lengths operands: " + valueA + ", " + valueB, aLocation);
 		} else {
@@ -921,7 +1017,7 @@ public class IGBuiltinOperations {
 				boolean bB = vB.getOrd() == 1;
 				boolean res = false;
 
-				switch (aSub.getBuiltin()) {
+				switch (aCall.fBuiltin) {
 				case ARRAY_AND:
 					res = bA & bB;
 					break;
@@ -948,12 +1044,10 @@ public class IGBuiltinOperations {
 					break;
 
 				default:
-					throw new ZamiaException("Internal interpreter error: execArrayBinary() called on non-implemented op " + aSub.getBuiltin(), aLocation);
+					throw new ZamiaException("Internal interpreter error: execArrayBinary() called on non-implemented op " + aCall.fBuiltin, aLocation);
 				}
 
-				IGStaticValue resValue = et.getEnumLiteral(res ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
-
-				builder.set(i + offsetR, resValue, aLocation);
+				builder.set(i + offsetR, res ? one : zero, aLocation);
 			}
 		}
 
@@ -963,17 +1057,14 @@ public class IGBuiltinOperations {
 		return ReturnStatus.CONTINUE;
 	}
 
-	private static ReturnStatus execArrayConcat(IGSubProgram aSub, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
+	private static ReturnStatus execArrayConcat(IGBuiltinCall aCall, IGInterpreterRuntimeEnv aRuntime, SourceLocation aLocation, ASTErrorMode aErrorMode, ErrorReport aReport)
 			throws ZamiaException {
 
-		IGContainer container = aSub.getContainer();
-		IGObject intfA = container.resolveObject("a");
-		IGStaticValue valueA = aRuntime.getObjectValue(intfA);
+		IGStaticValue valueA = aRuntime.getObjectValue(aCall.fA);
 
-		IGObject intfB = container.resolveObject("b");
-		IGStaticValue valueB = aRuntime.getObjectValue(intfB);
+		IGStaticValue valueB = aRuntime.getObjectValue(aCall.fB);
 
-		IGTypeStatic rt = aSub.getReturnType().computeStaticType(aRuntime, aErrorMode, aReport);
+		IGTypeStatic rt = aCall.computeReturnType(aRuntime, aErrorMode, aReport);
 		if (rt == null) {
 			return ReturnStatus.ERROR;
 		}
@@ -990,7 +1081,7 @@ public class IGBuiltinOperations {
 
 			IGTypeStatic idxType = rt.getStaticIndexType(aLocation);
 
-			switch (aSub.getBuiltin()) {
+			switch (aCall.fBuiltin) {
 			case ARRAY_CONCATAA:
 
 				IGStaticValue aRange = idxType.getStaticRange();
@@ -1039,13 +1130,13 @@ public class IGBuiltinOperations {
 				break;
 
 			default:
-				throw new ZamiaException("Internal interpreter error: execArrayConcat() called on non-implemented op " + aSub.getBuiltin(), aLocation);
+				throw new ZamiaException("Internal interpreter error: execArrayConcat() called on non-implemented op " + aCall.fBuiltin, aLocation);
 			}
 
 			IGStaticValue left = new IGStaticValueBuilder(idxType, null, aLocation).setOrd(l).buildConstant();
 			IGStaticValue right = new IGStaticValueBuilder(idxType, null, aLocation).setOrd(r).buildConstant();
 
-			IGType boolT = container.findBoolType();
+			IGType boolT = aCall.fSub.getContainer().findBoolType();
 
 			IGStaticValue ascending = boolT.getEnumLiteral(a ? 1 : 0, aLocation, ASTErrorMode.EXCEPTION, null);
 
@@ -1055,11 +1146,18 @@ public class IGBuiltinOperations {
 			rt = rt.createSubtype(range, aLocation);
 		}
 
+		// b comes first, see below
+		IGStaticValue packed = IGStaticValue.PACKED.concat(rt, valueB, valueA, aLocation);
+		if (packed != null) {
+			aRuntime.push(packed);
+			return ReturnStatus.CONTINUE;
+		}
+
 		IGStaticValueBuilder resBuilder = new IGStaticValueBuilder(rt, null, aLocation);
 
 		int off = resBuilder.getArrayOffset();
 
-		if (aSub.getBuiltin() == IGBuiltin.ARRAY_CONCATAA || aSub.getBuiltin() == IGBuiltin.ARRAY_CONCATEA) {
+		if (aCall.fBuiltin == IGBuiltin.ARRAY_CONCATAA || aCall.fBuiltin == IGBuiltin.ARRAY_CONCATEA) {
 			int n = (int) tB.getStaticIndexType(aLocation).computeCardinality(aLocation);
 			int offB = valueB.getArrayOffset();
 			for (int i = 0; i < n; i++) {
@@ -1072,7 +1170,7 @@ public class IGBuiltinOperations {
 			off += 1;
 		}
 
-		if (aSub.getBuiltin() == IGBuiltin.ARRAY_CONCATAA || aSub.getBuiltin() == IGBuiltin.ARRAY_CONCATAE) {
+		if (aCall.fBuiltin == IGBuiltin.ARRAY_CONCATAA || aCall.fBuiltin == IGBuiltin.ARRAY_CONCATAE) {
 			int n = (int) tA.getStaticIndexType(aLocation).computeCardinality(aLocation);
 			int offA = valueA.getArrayOffset();
 			for (int i = 0; i < n; i++) {
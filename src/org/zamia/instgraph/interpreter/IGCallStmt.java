@@ -29,6 +29,9 @@ public class IGCallStmt extends IGStmt {
 
 	private long fSPDBID;
 
+	// builtins only: the call with its operands bound, built on first execution
+	private transient volatile IGBuiltinCall fBuiltinCall;
+
 	public IGCallStmt(IGSubProgram aSP, SourceLocation aLocation, SourceLocation aOpLocation, ZDB aZDB) {
 		super(aLocation, aZDB);
 		fOpLine = aOpLocation.fLine;
@@ -44,6 +47,15 @@ public class IGCallStmt extends IGStmt {
 	@Override
 	public ReturnStatus execute(IGInterpreterRuntimeEnv aRuntime, ASTErrorMode aErrorMode, ErrorReport aReport) throws ZamiaException {
 
+		IGBuiltinCall call = fBuiltinCall;
+		if (call != null) {
+			ReturnStatus status = IGBuiltinOperations.execBuiltin(call, aRuntime, aErrorMode, aReport);
+
+			logLogicalValue(aRuntime);
+
+			return status;
+		}
+
 		IGSubProgram sub = getSub();
 
 		//		int n = fSPS.getNumSubPrograms();
@@ -99,7 +111,10 @@ public class IGCallStmt extends IGStmt {
 			IGBuiltin bi = sub.getBuiltin();
 			if (bi != null) {
 
-				ReturnStatus status = IGBuiltinOperations.execBuiltin(sub, aRuntime, computeSourceLocation(), aErrorMode, aReport);
+				call = new IGBuiltinCall(sub, computeSourceLocation());
+				fBuiltinCall = call;
+
+				ReturnStatus status = IGBuiltinOperations.execBuiltin(call, aRuntime, aErrorMode, aReport);
 
 				logLogicalValue(aRuntime);
 
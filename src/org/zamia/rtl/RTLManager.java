@@ -8,8 +8,11 @@
  */
 package org.zamia.rtl;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
+import org.zamia.BuildPath;
 import org.zamia.DMManager;
 import org.zamia.ERManager;
 import org.zamia.ExceptionLogger;
@@ -20,10 +23,13 @@ import org.zamia.ToplevelPath;
 import org.zamia.ZamiaException;
 import org.zamia.ZamiaException.ExCat;
 import org.zamia.ZamiaLogger;
+import org.zamia.ZamiaMetrics;
 import org.zamia.ZamiaProject;
+import org.zamia.instgraph.IGConcurrentStatement;
 import org.zamia.instgraph.IGInstantiation;
 import org.zamia.instgraph.IGManager;
 import org.zamia.instgraph.IGModule;
+import org.zamia.instgraph.IGStructure;
 import org.zamia.instgraph.synth.IGSynth;
 import org.zamia.rtl.RTLType.TypeCat;
 import org.zamia.util.HashSetArray;
@@ -45,6 +51,8 @@ public class RTLManager {
 
 	protected final static ExceptionLogger el = ExceptionLogger.getInstance();
 
+	private final static ZamiaMetrics.Histogram moduleTimer = ZamiaMetrics.getInstance().timer("zamia_rtl_module_seconds", "Time spent synthesizing an RTL module", "module");
+
 	private static final String MODULE_IDX = "RTLM_ModuleIdx"; // signature -> RTLModule
 
 	private static final String TYPES_IDX = "RTLM_TypesIdx";
@@ -83,6 +91,85 @@ public class RTLManager {
 		fZDB.delAllIdx(SIGNATURES_IDX);
 	}
 
+	/**
+	 * Drop the RTL modules built from the given IG modules and those of all
+	 * their (transitive) instantiators below the synthesis toplevels, so the
+	 * next buildRTL() synthesizes them again. Everything else is kept.
+	 * 
+	 * @return number of dropped modules
+	 */
+	public int invalidate(HashSetArray<String> aIGSignatures) {
+
+		BuildPath bp = fZPrj.getBuildPath();
+
+		HashMap<String, Boolean> affected = new HashMap<String, Boolean>();
+
+		int n = bp.getNumSynthTLs();
+		for (int i = 0; i < n; i++) {
+
+			DMUID duuid = fDUM.getArchDUUID(bp.getSynthTL(i));
+			if (duuid == null) {
+				continue;
+			}
+
+			isAffected(IGInstantiation.computeSignature(duuid, null), aIGSignatures, affected);
+		}
+
+		int count = 0;
+		for (Map.Entry<String, Boolean> entry : affected.entrySet()) {
+			if (entry.getValue() && fZDB.getIdx(MODULE_IDX, entry.getKey()) != 0) {
+				logger.info("RTLManager: Need to re-synthesize %s", entry.getKey());
+				fZDB.delIdx(MODULE_IDX, entry.getKey());
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	private boolean isAffected(String aSignature, HashSetArray<String> aIGSignatures, HashMap<String, Boolean> aAffected) {
+
+		Boolean b = aAffected.get(aSignature);
+		if (b != null) {
+			return b;
+		}
+		aAffected.put(aSignature, false);
+
+		boolean res = aIGSignatures.contains(aSignature);
+
+		IGModule module = fIGM.findModule(aSignature);
+		if (module != null) {
+			// no short cut, all affected modules below need to be found
+			res |= isAffected(module.getStructure(), aIGSignatures, aAffected);
+		}
+
+		aAffected.put(aSignature, res);
+
+		return res;
+	}
+
+	private boolean isAffected(IGStructure aStructure, HashSetArray<String> aIGSignatures, HashMap<String, Boolean> aAffected) {
+
+		boolean res = false;
+
+		for (IGConcurrentStatement stmt : aStructure.getStatements()) {
+
+			if (stmt instanceof IGInstantiation) {
+
+				String signature = ((IGInstantiation) stmt).getSignature();
+				if (signature != null) {
+					res |= isAffected(signature, aIGSignatures, aAffected);
+				}
+
+			} else if (stmt instanceof IGStructure) {
+
+				res |= isAffected((IGStructure) stmt, aIGSignatures, aAffected);
+			}
+		}
+
+		return res;
+	}
+
 	private class BuildNodeJob implements Runnable {
 
 		public final ToplevelPath fPath;
@@ -121,7 +208,12 @@ public class RTLManager {
 						logger.error("RTLManager: Internal error: module %s on todo list was already done!", fSignature);
 					} else {
 
-						fSynth.synthesizeBody();
+						ZamiaMetrics.Span span = moduleTimer.start(fSignature);
+						try {
+							fSynth.synthesizeBody();
+						} finally {
+							span.stop();
+						}
 					}
 				} catch (ZamiaException e) {
 					el.logException(e);
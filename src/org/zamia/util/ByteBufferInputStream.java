@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Unsynchronized InputStream reading the remaining bytes of a ByteBuffer
+ * (heap or memory mapped) without copying them into an intermediate buffer.
+ *
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	private final ByteBuffer fBuf;
+
+	public ByteBufferInputStream(ByteBuffer aBuf) {
+		fBuf = aBuf;
+	}
+
+	@Override
+	public int read() {
+		if (!fBuf.hasRemaining()) {
+			return -1;
+		}
+		return fBuf.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] aB, int aOff, int aLen) {
+		if (aLen == 0) {
+			return 0;
+		}
+		int n = Math.min(aLen, fBuf.remaining());
+		if (n == 0) {
+			return -1;
+		}
+		fBuf.get(aB, aOff, n);
+		return n;
+	}
+
+	@Override
+	public long skip(long aN) {
+		int n = (int) Math.min(aN, fBuf.remaining());
+		if (n <= 0) {
+			return 0;
+		}
+		fBuf.position(fBuf.position() + n);
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return fBuf.remaining();
+	}
+
+}
@@ -66,10 +66,40 @@ public class LLFSHashMap {
 			x = (x + 1) % fAllocedSize;
 		}
 
+		if (fFree[x]) {
+			fNumEntries++;
+		}
 		fValues[x] = aValue;
 		fKeys[x] = aKey;
 		fFree[x] = false;
-		fNumEntries++;
+	}
+
+	public void remove(long aKey) {
+
+		int x = hash(aKey);
+
+		while (!fFree[x] && fKeys[x] != aKey) {
+			x = (x + 1) % fAllocedSize;
+		}
+
+		if (fFree[x]) {
+			return;
+		}
+
+		fFree[x] = true;
+		fNumEntries--;
+
+		// linear probing: re-insert the rest of the cluster so lookups still find it
+
+		x = (x + 1) % fAllocedSize;
+		while (!fFree[x]) {
+			long k = fKeys[x];
+			long v = fValues[x];
+			fFree[x] = true;
+			fNumEntries--;
+			put(k, v);
+			x = (x + 1) % fAllocedSize;
+		}
 	}
 
 	public long get(long aKey) {
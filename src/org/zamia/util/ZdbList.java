@@ -13,6 +13,11 @@ import org.zamia.zdb.ZDB;
  * */
 public class ZdbList<T> extends ArrayList<Long> {
 	
+	// objects are fetched through ZDB.loadAll() in batches growing up to this size
+	private static final int MAX_BATCH_SIZE = 256;
+
+	private static final int MIN_BATCH_SIZE = 16;
+
 	public ZdbList(int size) {
 		super(size);
 	}
@@ -33,10 +38,27 @@ public class ZdbList<T> extends ArrayList<Long> {
 	    private final int size = size();
 	    private boolean created = false; // just in case somebody wants to reuse the iterable
 	    private final ZDB zdb;
+	    private Object[] batch = null; // prefetched objects starting at batchStart
+	    private int batchStart = 0;
 	    ZdbIterator(ZDB zdb) { this.zdb = zdb; }
 	    public T next() { 
 	        if (!hasNext()) throw new NoSuchElementException(); 
-	        return (T) zdb.load(get(i++));
+	        if (batch == null || i >= batchStart + batch.length) {
+	            fetch();
+	        }
+	        return (T) batch[i++ - batchStart];
+	    }
+
+	    // start small since callers may stop early, double up to MAX_BATCH_SIZE
+	    private void fetch() {
+	        int n = batch == null ? MIN_BATCH_SIZE : Math.min(batch.length * 2, MAX_BATCH_SIZE);
+	        n = Math.min(n, size - i);
+	        long[] ids = new long[n];
+	        for (int j = 0; j < n; j++) {
+	            ids[j] = get(i + j);
+	        }
+	        batch = zdb.loadAll(ids);
+	        batchStart = i;
 	    }
 
 	    public boolean hasNext() { return i != size;}
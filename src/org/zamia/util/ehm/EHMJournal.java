@@ -0,0 +1,29 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.util.ehm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Undo log hook of EHMPageManager: pages are written in place, so their
+ * previous content has to be saved first if the owner wants to be able to
+ * roll back to its last commit, see org.zamia.zdb.ZDBJournal.
+ *
+ */
+public interface EHMJournal {
+
+	/**
+	 * Save the current content of aLength bytes at each of aOffsets in
+	 * aFile, which are about to be overwritten through aChannel. Nothing is
+	 * written if this throws.
+	 */
+	public void save(File aFile, FileChannel aChannel, long[] aOffsets, int aLength) throws IOException;
+
+}
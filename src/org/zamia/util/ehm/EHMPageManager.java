@@ -8,20 +8,36 @@
  */
 package org.zamia.util.ehm;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.zamia.ExceptionLogger;
+import org.zamia.Utils;
 import org.zamia.ZamiaLogger;
+import org.zamia.ZamiaMetrics;
 import org.zamia.util.LLFSHashMap;
 
 
 /**
+ * Pages are written behind: evicted dirty pages are serialized into
+ * fPending and written out by a background thread which coalesces pages
+ * sorted by offset into large gathering writes over a channel that stays
+ * open. flush() drains whatever is left and optionally forces the file to
+ * disk (ZAMIA_EHM_FSYNC).
+ * 
+ * If a journal is set, the old content of every page is handed to it
+ * before the page is overwritten.
  * 
  * @author Guenter Bartsch
  *
@@ -40,14 +56,61 @@ public class EHMPageManager {
 
 	public final static ExceptionLogger el = ExceptionLogger.getInstance();
 
+	private final static ZamiaMetrics metrics = ZamiaMetrics.getInstance();
+
+	private final static ZamiaMetrics.Counter cacheHits = metrics.counter("zamia_ehm_page_cache_hits_total", "EHM pages found in the page cache");
+
+	private final static ZamiaMetrics.Counter pendingHits = metrics.counter("zamia_ehm_page_pending_hits_total", "EHM pages found in the write-behind queue");
+
+	private final static ZamiaMetrics.Counter pageReads = metrics.counter("zamia_ehm_page_reads_total", "EHM pages read from disk");
+
+	private final static ZamiaMetrics.Counter readBytes = metrics.counter("zamia_ehm_read_bytes_total", "Bytes of EHM pages read from disk");
+
+	private final static ZamiaMetrics.Counter pageWrites = metrics.counter("zamia_ehm_page_writes_total", "EHM pages written to disk");
+
+	private final static ZamiaMetrics.Counter writeBytes = metrics.counter("zamia_ehm_write_bytes_total", "Bytes of EHM pages written to disk");
+
+	private final static ZamiaMetrics.Histogram writeRunTimer = metrics.timer("zamia_ehm_write_run_seconds", "Time spent writing a run of adjacent EHM pages", "file");
+
+	public static boolean ENABLE_FSYNC = false;
+
+	private final static int PAGE_BYTES = PAGE_ENTRIES * 16 + 4;
+
+	// the writer starts once this many pages are pending, evict() blocks at MAX_PENDING
+	private final static int WRITE_BEHIND_PAGES = 256;
+
+	private final static int MAX_PENDING = 4096;
+
+	static {
+		ENABLE_FSYNC = Utils.getEnvBool("ZAMIA_EHM_FSYNC", ENABLE_FSYNC);
+	}
+
 	private long fNumPages;
 
+	private final TreeSet<Long> fFreePages = new TreeSet<Long>();
+
 	private File fFile;
 
 	private HashMap<Long, EHMCacheEntry> fCache;
 
 	private EHMCacheEntry fCacheHead, fCacheTail;
 
+	// serialized pages waiting to be written, by file offset
+	private TreeMap<Long, byte[]> fPending = new TreeMap<Long, byte[]>();
+
+	private RandomAccessFile fRAF;
+
+	private FileChannel fChannel;
+
+	private Thread fWriter;
+
+	private boolean fClosed;
+
+	private EHMJournal fJournal;
+
+	// serializes all writes to the file, always taken before the monitor of this
+	private final Object fWriteLock = new Object();
+
 	public EHMPageManager(File aFile) {
 
 		fFile = aFile;
@@ -56,6 +119,11 @@ public class EHMPageManager {
 
 		start();
 
+		readHeader();
+	}
+
+	private void readHeader() {
+
 		if (fFile.exists() && fFile.canRead()) {
 
 			DataInputStream in = null;
@@ -84,17 +152,119 @@ public class EHMPageManager {
 		fCache = new HashMap<Long, EHMCacheEntry>();
 		fCacheHead = null;
 		fCacheTail = null;
+		fPending = new TreeMap<Long, byte[]>();
+		fFreePages.clear();
+		fClosed = false;
 	}
 	
-	public synchronized void clear() {
-		fFile.delete();
-		start();
+	public void clear() {
+		synchronized (fWriteLock) {
+			synchronized (this) {
+				stopWriter();
+				closeChannel();
+				fFile.delete();
+				start();
+			}
+		}
 	}
 
-	public long alloc() {
+	/**
+	 * Drop all cached and pending pages and pick up the file as it is on
+	 * disk now, e.g. after it has been replaced.
+	 */
+	public void reopen() {
+		synchronized (fWriteLock) {
+			synchronized (this) {
+				stopWriter();
+				closeChannel();
+				start();
+				fNumPages = 0;
+				readHeader();
+			}
+		}
+	}
+
+	/**
+	 * Write out everything and release the file, the page manager must not be
+	 * used afterwards.
+	 */
+	public void close() {
+		flush();
+		synchronized (fWriteLock) {
+			synchronized (this) {
+				stopWriter();
+				closeChannel();
+			}
+		}
+	}
+
+	private synchronized void stopWriter() {
+		fClosed = true;
+		notifyAll();
+		fWriter = null;
+	}
+
+	private synchronized FileChannel getChannel() throws IOException {
+		if (fChannel == null || !fChannel.isOpen()) {
+			if (fRAF != null) {
+				fRAF.close();
+			}
+			fRAF = new RandomAccessFile(fFile, "rw");
+			fChannel = fRAF.getChannel();
+		}
+		return fChannel;
+	}
+
+	private synchronized void closeChannel() {
+		if (fRAF != null) {
+			try {
+				fRAF.close();
+			} catch (IOException e) {
+				el.logException(e);
+			}
+			fRAF = null;
+			fChannel = null;
+		}
+	}
+
+	public synchronized void setJournal(EHMJournal aJournal) {
+		fJournal = aJournal;
+	}
+
+	public synchronized long alloc() {
+		if (!fFreePages.isEmpty()) {
+			return fFreePages.pollFirst();
+		}
 		return fNumPages++;
 	}
 
+	/**
+	 * aId is not used by any EHM anymore, alloc() may hand it out again.
+	 * The free list is not part of the page file, its owner has to persist
+	 * it (see getFreePages()).
+	 */
+	public synchronized void free(long aId) {
+		if (aId >= 0 && aId < fNumPages) {
+			fFreePages.add(aId);
+		}
+	}
+
+	public synchronized long[] getFreePages() {
+		long[] res = new long[fFreePages.size()];
+		int i = 0;
+		for (long id : fFreePages) {
+			res[i++] = id;
+		}
+		return res;
+	}
+
+	public synchronized void setFreePages(long[] aIds) {
+		fFreePages.clear();
+		for (long id : aIds) {
+			free(id);
+		}
+	}
+
 	private synchronized void storeInMem(long aId, LLFSHashMap aPage, boolean aMarkDirty) {
 		// put it into memory cache
 
@@ -158,72 +328,181 @@ public class EHMPageManager {
 
 		long offset = idToOffset(id);
 
-		RandomAccessFile out = null;
-		try {
+		byte buf[] = new byte[PAGE_BYTES];
 
-			out = new RandomAccessFile(fFile, "rw");
+		int byteIdx = 0;
 
-			out.seek(offset);
+		int s = page.size();
+		
+		buf[byteIdx++] = (byte) ((int) (s >>> 24) & 0xFF);
+		buf[byteIdx++] = (byte) ((int) (s >>> 16) & 0xFF);
+		buf[byteIdx++] = (byte) ((int) (s >>> 8) & 0xFF);
+		buf[byteIdx++] = (byte) ((int) (s >>> 0) & 0xFF);
+		
+		int n = page.getAllocedSize();
+		for (int i = 0; i<n; i++) {
+			
+			if (page.getFree(i)) {
+				continue;
+			}
+			
+			long k = page.getKey(i);
+
+			buf[byteIdx++] = (byte) ((int) (k >>> 56) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (k >>> 48) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (k >>> 40) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (k >>> 32) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (k >>> 24) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (k >>> 16) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (k >>> 8) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (k >>> 0) & 0xFF);
+
+			long v = page.getValue(i);
+
+			buf[byteIdx++] = (byte) ((int) (v >>> 56) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (v >>> 48) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (v >>> 40) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (v >>> 32) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (v >>> 24) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (v >>> 16) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (v >>> 8) & 0xFF);
+			buf[byteIdx++] = (byte) ((int) (v >>> 0) & 0xFF);
+		}
 
-			int nEntries = 0;
+		// don't let the writer fall behind too far
+		while (fPending.size() >= MAX_PENDING && fWriter != null && !fPending.containsKey(offset)) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				el.logException(e);
+				break;
+			}
+		}
 
-			byte buf[] = new byte[PAGE_ENTRIES * 16 + 4];
+		fPending.put(offset, buf);
 
-			int byteIdx = 0;
+		if (fPending.size() >= WRITE_BEHIND_PAGES) {
+			if (fWriter == null) {
+				startWriter();
+			}
+			notifyAll();
+		}
+	}
 
-			int s = page.size();
-			
-			buf[byteIdx++] = (byte) ((int) (s >>> 24) & 0xFF);
-			buf[byteIdx++] = (byte) ((int) (s >>> 16) & 0xFF);
-			buf[byteIdx++] = (byte) ((int) (s >>> 8) & 0xFF);
-			buf[byteIdx++] = (byte) ((int) (s >>> 0) & 0xFF);
-			
-			int n = page.getAllocedSize();
-			for (int i = 0; i<n; i++) {
-				
-				if (page.getFree(i)) {
-					continue;
+	private void startWriter() {
+		fClosed = false;
+		fWriter = new Thread("EHM page writer - " + fFile.getName()) {
+			public void run() {
+				while (true) {
+					synchronized (EHMPageManager.this) {
+						while (!fClosed && fWriter == this && fPending.size() < WRITE_BEHIND_PAGES) {
+							try {
+								EHMPageManager.this.wait();
+							} catch (InterruptedException e) {
+								return;
+							}
+						}
+						if (fClosed || fWriter != this) {
+							return;
+						}
+					}
+					writePending();
 				}
-				nEntries++;
-				
-				long k = page.getKey(i);
-
-				buf[byteIdx++] = (byte) ((int) (k >>> 56) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (k >>> 48) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (k >>> 40) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (k >>> 32) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (k >>> 24) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (k >>> 16) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (k >>> 8) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (k >>> 0) & 0xFF);
-
-				long v = page.getValue(i);
-
-				buf[byteIdx++] = (byte) ((int) (v >>> 56) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (v >>> 48) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (v >>> 40) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (v >>> 32) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (v >>> 24) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (v >>> 16) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (v >>> 8) & 0xFF);
-				buf[byteIdx++] = (byte) ((int) (v >>> 0) & 0xFF);
 			}
+		};
+		fWriter.setDaemon(true);
+		fWriter.start();
+	}
 
-			out.write(buf);
+	/**
+	 * Write all currently pending pages. Runs on the writer thread or in
+	 * flush(), without holding the monitor of this during I/O so loads and
+	 * evictions can go on.
+	 */
+	private void writePending() {
+
+		synchronized (fWriteLock) {
+
+			TreeMap<Long, byte[]> batch;
+			FileChannel channel;
+			EHMJournal journal;
+			synchronized (this) {
+				if (fPending.isEmpty()) {
+					return;
+				}
+				batch = new TreeMap<Long, byte[]>(fPending);
+				journal = fJournal;
+				try {
+					channel = getChannel();
+				} catch (IOException e) {
+					el.logException(e);
+					return;
+				}
+			}
 
-		} catch (IOException e1) {
-			el.logException(e1);
-		} finally {
-			if (out != null) {
+			if (journal != null) {
+				long[] offsets = new long[batch.size()];
+				int i = 0;
+				for (long offset : batch.keySet()) {
+					offsets[i++] = offset;
+				}
 				try {
-					out.close();
+					journal.save(fFile, channel, offsets, PAGE_BYTES);
 				} catch (IOException e) {
+					// the pages stay pending, we must not overwrite what we cannot undo
 					el.logException(e);
+					return;
+				}
+			}
+
+			try {
+				// coalesce runs of adjacent pages into one gathering write each
+				ArrayList<ByteBuffer> run = new ArrayList<ByteBuffer>();
+				long runStart = -1, runEnd = -1;
+				for (Map.Entry<Long, byte[]> entry : batch.entrySet()) {
+					long offset = entry.getKey();
+					if (offset != runEnd) {
+						writeRun(channel, runStart, run);
+						runStart = offset;
+					}
+					run.add(ByteBuffer.wrap(entry.getValue()));
+					runEnd = offset + PAGE_BYTES;
+				}
+				writeRun(channel, runStart, run);
+
+			} catch (IOException e) {
+				el.logException(e);
+			}
+
+			synchronized (this) {
+				for (Map.Entry<Long, byte[]> entry : batch.entrySet()) {
+					// unless the page has been evicted again in the meantime
+					if (fPending.get(entry.getKey()) == entry.getValue()) {
+						fPending.remove(entry.getKey());
+					}
 				}
+				notifyAll();
 			}
 		}
 	}
 
+	private void writeRun(FileChannel aChannel, long aOffset, ArrayList<ByteBuffer> aRun) throws IOException {
+		if (aRun.isEmpty()) {
+			return;
+		}
+		ZamiaMetrics.Span span = writeRunTimer.start(fFile.getName());
+		ByteBuffer[] bufs = aRun.toArray(new ByteBuffer[aRun.size()]);
+		long remaining = (long) bufs.length * PAGE_BYTES;
+		aChannel.position(aOffset);
+		while (remaining > 0) {
+			remaining -= aChannel.write(bufs);
+		}
+		span.stop();
+		pageWrites.add(bufs.length);
+		writeBytes.add((long) bufs.length * PAGE_BYTES);
+		aRun.clear();
+	}
+
 	public synchronized LLFSHashMap load(long aId) {
 
 		if (aId < 0) {
@@ -256,6 +535,7 @@ public class EHMPageManager {
 
 				fCacheHead = entry;
 			}
+			cacheHits.add(1);
 			return page;
 		}
 
@@ -268,22 +548,37 @@ public class EHMPageManager {
 			return null;
 		}
 
-		DataInputStream in = null;
 		try {
-			in = new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)));
-			long lo = in.skip(offset);
-			if (lo != offset) {
-				throw new IOException("Failed to seek.");
+			ByteBuffer buf;
+			byte[] pending = fPending.get(offset);
+			if (pending != null) {
+				// evicted, but not written yet
+				buf = ByteBuffer.wrap(pending);
+				pendingHits.add(1);
+			} else {
+				buf = ByteBuffer.allocate(PAGE_BYTES);
+				FileChannel channel = getChannel();
+				long pos = offset;
+				while (buf.hasRemaining()) {
+					int n = channel.read(buf, pos);
+					if (n < 0) {
+						throw new EOFException("EHM: page " + aId + " is beyond the end of the file.");
+					}
+					pos += n;
+				}
+				buf.flip();
+				pageReads.add(1);
+				readBytes.add(PAGE_BYTES);
 			}
 
 			page = new LLFSHashMap(PAGE_ENTRIES);
 			
-			int nEntries = in.readInt();
+			int nEntries = buf.getInt();
 
 			for (int i = 0; i < nEntries; i++) {
 
-				long key = in.readLong();
-				long value = in.readLong();
+				long key = buf.getLong();
+				long value = buf.getLong();
 
 				page.put(key, value);
 			}
@@ -291,14 +586,6 @@ public class EHMPageManager {
 		} catch (IOException e) {
 			logger.error("EHM: IOException while reading element %s (file: '%s')", aId, fFile.getAbsolutePath());
 			el.logException(e);
-		} finally {
-			if (in != null) {
-				try {
-					in.close();
-				} catch (IOException e) {
-					el.logException(e);
-				}
-			}
 		}
 
 		if (page != null) {
@@ -339,31 +626,44 @@ public class EHMPageManager {
 		}
 	}
 
-	public synchronized void flush() {
+	public void flush() {
 		logger.info("EHMPageManager: flush(): evicting memory cache...");
 
-		while (fCacheHead != null) {
-			evict();
+		synchronized (this) {
+			while (fCacheHead != null) {
+				evict();
+			}
 		}
 
-		RandomAccessFile ras = null;
+		writePending();
 
-		try {
+		synchronized (fWriteLock) {
+			try {
+				FileChannel channel = getChannel();
 
-			ras = new RandomAccessFile(fFile, "rw");
+				ByteBuffer header = ByteBuffer.allocate(8);
+				EHMJournal journal;
+				synchronized (this) {
+					header.putLong(fNumPages);
+					journal = fJournal;
+				}
+				header.flip();
 
-			ras.seek(0);
-			ras.writeLong(fNumPages);
+				if (journal != null) {
+					journal.save(fFile, channel, new long[] { 0 }, 8);
+				}
 
-		} catch (IOException e) {
-			el.logException(e);
-		} finally {
-			if (ras != null) {
-				try {
-					ras.close();
-				} catch (IOException e) {
-					e.printStackTrace();
+				long pos = 0;
+				while (header.hasRemaining()) {
+					pos += channel.write(header, pos);
+				}
+
+				if (ENABLE_FSYNC) {
+					channel.force(false);
 				}
+
+			} catch (IOException e) {
+				el.logException(e);
 			}
 		}
 
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 
 import org.zamia.ExceptionLogger;
 import org.zamia.ZamiaLogger;
@@ -47,6 +48,17 @@ public class ExtendibleHashMap {
 		fManager = aManager;
 		fFile = aFile;
 
+		reload();
+	}
+
+	/**
+	 * (Re-)read the nodes from the file, pages are fetched through the
+	 * manager. A missing file results in an empty map.
+	 */
+	public synchronized void reload() {
+
+		fRoot = null;
+
 		if (fFile.exists() && fFile.canRead())
 			try {
 				ObjectInputStream in = new ObjectInputStream(ZDB.openInputStream(fFile));
@@ -82,6 +94,10 @@ public class ExtendibleHashMap {
 		return node;
 	}
 
+	public File getFile() {
+		return fFile;
+	}
+
 	public void clear() {
 		long rootId = fManager.alloc();
 		LLFSHashMap page = new LLFSHashMap(EHMPageManager.PAGE_ENTRIES);
@@ -89,6 +105,49 @@ public class ExtendibleHashMap {
 		fRoot = new EHMNode(rootId, null);
 	}
 
+	/**
+	 * Hand all pages of this map back to the page manager, the map must not
+	 * be used afterwards.
+	 */
+	public synchronized void freePages() {
+		freePages(fRoot);
+		fRoot = null;
+	}
+
+	private void freePages(EHMNode aNode) {
+		if (aNode == null) {
+			return;
+		}
+		long id = aNode.getId();
+		if (id >= 0) {
+			fManager.free(id);
+		} else {
+			freePages(aNode.getOneNode());
+			freePages(aNode.getZeroNode());
+		}
+	}
+
+	/**
+	 * @return ids of all pages holding entries of this map. A split keeps
+	 *         the id of the split page for one half, the other half gets a
+	 *         new one.
+	 */
+	public synchronized ArrayList<Long> getPageIds() {
+		ArrayList<Long> res = new ArrayList<Long>();
+		getPageIds(fRoot, res);
+		return res;
+	}
+
+	private void getPageIds(EHMNode aNode, ArrayList<Long> aRes) {
+		long id = aNode.getId();
+		if (id >= 0) {
+			aRes.add(id);
+		} else {
+			getPageIds(aNode.getOneNode(), aRes);
+			getPageIds(aNode.getZeroNode(), aRes);
+		}
+	}
+
 	private boolean getBit(long aKey, int aBitIdx) {
 		return (aKey & (1 << aBitIdx)) != 0;
 	}
@@ -226,8 +285,38 @@ public class ExtendibleHashMap {
 		}
 	}
 
-	public void delete(long aId) {
-		// FIXME: implement.
+	public synchronized void delete(long aKey) {
+
+		LLFSHashMap page = null;
+
+		int bitIdx = 0;
+
+		EHMNode node = fRoot;
+
+		while (page == null) {
+
+			long id = node.getId();
+
+			if (id >= 0) {
+
+				page = fManager.load(id);
+
+			} else {
+
+				boolean bit = getBit(aKey, bitIdx);
+
+				bitIdx++;
+				node = bit ? node.getOneNode() : node.getZeroNode();
+			}
+		}
+
+		if (!page.hasKey(aKey)) {
+			return;
+		}
+
+		page.remove(aKey);
+
+		fManager.store(node.getId(), page);
 	}
 	
 	public EHMIterator keyIterator() {
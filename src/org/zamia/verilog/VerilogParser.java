@@ -50,8 +50,9 @@ public class VerilogParser implements IHDLParser {
 		DMManager dum = aZPrj.getDUM();
 		ERManager erm = aZPrj.getERM();
 
+		IPreprocessor pre = null;
 		try {
-			IPreprocessor pre = new VerilogPreprocessor(aSF, aReader, aUseFSCache);
+			pre = new VerilogPreprocessor(aSF, aReader, aUseFSCache);
 
 			Parser p = new Parser(new Lexer(pre));
 
@@ -69,6 +70,10 @@ public class VerilogParser implements IHDLParser {
 			erm.addError(new ZamiaException(e.toString(), new SourceLocation(e.getToken().getSource(), e.getToken().getLine(), e.getToken().getPos())));
 		} catch (LexerException e) {
 			erm.addError(new ZamiaException(e.toString()));
+		} finally {
+			if (pre != null) {
+				pre.close();
+			}
 		}
 
 		return dus;
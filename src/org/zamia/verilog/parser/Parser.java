@@ -6313,7 +6313,7 @@ public class Parser
         listNode2 = (LinkedList)nodeArrayList1.get(0);
 	if(listNode2 != null)
 	{
-	  listNode3.addAll(listNode2);
+	  if(listNode3.isEmpty()) { listNode3 = listNode2; } else { listNode3.addAll(listNode2); }
 	}
         }
 
@@ -6522,7 +6522,7 @@ public class Parser
         listNode7 = (LinkedList)nodeArrayList4.get(0);
 	if(listNode7 != null)
 	{
-	  listNode8.addAll(listNode7);
+	  if(listNode8.isEmpty()) { listNode8 = listNode7; } else { listNode8.addAll(listNode7); }
 	}
         }
         tkendmoduleNode9 = (TKEndmodule)nodeArrayList5.get(0);
@@ -6566,7 +6566,7 @@ public class Parser
         listNode7 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode7 != null)
 	{
-	  listNode8.addAll(listNode7);
+	  if(listNode8.isEmpty()) { listNode8 = listNode7; } else { listNode8.addAll(listNode7); }
 	}
         }
         tkendmoduleNode9 = (TKEndmodule)nodeArrayList6.get(0);
@@ -6610,7 +6610,7 @@ public class Parser
         listNode7 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode7 != null)
 	{
-	  listNode8.addAll(listNode7);
+	  if(listNode8.isEmpty()) { listNode8 = listNode7; } else { listNode8.addAll(listNode7); }
 	}
         }
         tkendmoduleNode9 = (TKEndmodule)nodeArrayList6.get(0);
@@ -6656,7 +6656,7 @@ public class Parser
         listNode7 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode7 != null)
 	{
-	  listNode8.addAll(listNode7);
+	  if(listNode8.isEmpty()) { listNode8 = listNode7; } else { listNode8.addAll(listNode7); }
 	}
         }
         tkendmoduleNode9 = (TKEndmodule)nodeArrayList7.get(0);
@@ -7250,7 +7250,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList3.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         ttrbraceNode6 = (TTRbrace)nodeArrayList4.get(0);
@@ -7399,7 +7399,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList3.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         ttrbraceNode6 = (TTRbrace)nodeArrayList4.get(0);
@@ -13613,7 +13613,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
 
@@ -14501,7 +14501,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
         ttcommaNode5 = (TTComma)nodeArrayList3.get(0);
@@ -14558,7 +14558,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
 
@@ -14623,7 +14623,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
         ttcommaNode5 = (TTComma)nodeArrayList3.get(0);
@@ -14680,7 +14680,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
 
@@ -16745,7 +16745,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList4.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList5.get(0);
@@ -16800,7 +16800,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList6.get(0);
@@ -16855,7 +16855,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList6.get(0);
@@ -16912,7 +16912,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList7.get(0);
@@ -16966,7 +16966,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList6.get(0);
@@ -17020,7 +17020,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList6.get(0);
@@ -17074,7 +17074,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList6.get(0);
@@ -17128,7 +17128,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList6.get(0);
@@ -17183,7 +17183,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList6.get(0);
@@ -17240,7 +17240,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList7.get(0);
@@ -17297,7 +17297,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList7.get(0);
@@ -17356,7 +17356,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList8.get(0);
@@ -17412,7 +17412,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList7.get(0);
@@ -17468,7 +17468,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList7.get(0);
@@ -17524,7 +17524,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList7.get(0);
@@ -17580,7 +17580,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList7.get(0);
@@ -17635,7 +17635,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList6.get(0);
@@ -17692,7 +17692,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList7.get(0);
@@ -17749,7 +17749,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList7.get(0);
@@ -17808,7 +17808,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList8.get(0);
@@ -17864,7 +17864,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList7.get(0);
@@ -17920,7 +17920,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList7.get(0);
@@ -17976,7 +17976,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList7.get(0);
@@ -18032,7 +18032,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList7.get(0);
@@ -18089,7 +18089,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList7.get(0);
@@ -18148,7 +18148,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList8.get(0);
@@ -18207,7 +18207,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList8.get(0);
@@ -18268,7 +18268,7 @@ public class Parser
         listNode10 = (LinkedList)nodeArrayList8.get(0);
 	if(listNode10 != null)
 	{
-	  listNode11.addAll(listNode10);
+	  if(listNode11.isEmpty()) { listNode11 = listNode10; } else { listNode11.addAll(listNode10); }
 	}
         }
         pstatementNode12 = (PStatement)nodeArrayList9.get(0);
@@ -18326,7 +18326,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList8.get(0);
@@ -18384,7 +18384,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList8.get(0);
@@ -18442,7 +18442,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList8.get(0);
@@ -18500,7 +18500,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementNode11 = (PStatement)nodeArrayList8.get(0);
@@ -19013,7 +19013,7 @@ public class Parser
         listNode6 = (LinkedList)nodeArrayList4.get(0);
 	if(listNode6 != null)
 	{
-	  listNode7.addAll(listNode6);
+	  if(listNode7.isEmpty()) { listNode7 = listNode6; } else { listNode7.addAll(listNode6); }
 	}
         }
         pstatementornullNode8 = (PStatementOrNull)nodeArrayList5.get(0);
@@ -19059,7 +19059,7 @@ public class Parser
         listNode6 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode6 != null)
 	{
-	  listNode7.addAll(listNode6);
+	  if(listNode7.isEmpty()) { listNode7 = listNode6; } else { listNode7.addAll(listNode6); }
 	}
         }
         pstatementornullNode8 = (PStatementOrNull)nodeArrayList6.get(0);
@@ -19294,7 +19294,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementornullNode11 = (PStatementOrNull)nodeArrayList7.get(0);
@@ -19347,7 +19347,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementornullNode11 = (PStatementOrNull)nodeArrayList8.get(0);
@@ -19400,7 +19400,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList7.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementornullNode11 = (PStatementOrNull)nodeArrayList8.get(0);
@@ -19455,7 +19455,7 @@ public class Parser
         listNode9 = (LinkedList)nodeArrayList8.get(0);
 	if(listNode9 != null)
 	{
-	  listNode10.addAll(listNode9);
+	  if(listNode10.isEmpty()) { listNode10 = listNode9; } else { listNode10.addAll(listNode9); }
 	}
         }
         pstatementornullNode11 = (PStatementOrNull)nodeArrayList9.get(0);
@@ -21677,7 +21677,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
 
@@ -21732,7 +21732,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
 
@@ -25253,7 +25253,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         tkjoinNode6 = (TKJoin)nodeArrayList3.get(0);
@@ -25290,7 +25290,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList3.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         tkjoinNode6 = (TKJoin)nodeArrayList4.get(0);
@@ -25383,7 +25383,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         tkendNode6 = (TKEnd)nodeArrayList3.get(0);
@@ -25420,7 +25420,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList3.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         tkendNode6 = (TKEnd)nodeArrayList4.get(0);
@@ -25482,7 +25482,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList3.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
 
@@ -26835,7 +26835,7 @@ public class Parser
         listNode7 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode7 != null)
 	{
-	  listNode8.addAll(listNode7);
+	  if(listNode8.isEmpty()) { listNode8 = listNode7; } else { listNode8.addAll(listNode7); }
 	}
         }
         tkendcaseNode9 = (TKEndcase)nodeArrayList7.get(0);
@@ -26920,7 +26920,7 @@ public class Parser
         listNode7 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode7 != null)
 	{
-	  listNode8.addAll(listNode7);
+	  if(listNode8.isEmpty()) { listNode8 = listNode7; } else { listNode8.addAll(listNode7); }
 	}
         }
         tkendcaseNode9 = (TKEndcase)nodeArrayList7.get(0);
@@ -27005,7 +27005,7 @@ public class Parser
         listNode7 = (LinkedList)nodeArrayList6.get(0);
 	if(listNode7 != null)
 	{
-	  listNode8.addAll(listNode7);
+	  if(listNode8.isEmpty()) { listNode8 = listNode7; } else { listNode8.addAll(listNode7); }
 	}
         }
         tkendcaseNode9 = (TKEndcase)nodeArrayList7.get(0);
@@ -27666,7 +27666,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
         tkendspecifyNode5 = (TKEndspecify)nodeArrayList3.get(0);
@@ -34516,7 +34516,7 @@ public class Parser
         listNode5 = (LinkedList)nodeArrayList4.get(0);
 	if(listNode5 != null)
 	{
-	  listNode6.addAll(listNode5);
+	  if(listNode6.isEmpty()) { listNode6 = listNode5; } else { listNode6.addAll(listNode5); }
 	}
         }
         ttrbracketNode7 = (TTRbracket)nodeArrayList5.get(0);
@@ -34626,7 +34626,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList3.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         ttrbraceNode6 = (TTRbrace)nodeArrayList4.get(0);
@@ -34716,7 +34716,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList3.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         ttrbraceNode6 = (TTRbrace)nodeArrayList4.get(0);
@@ -34841,7 +34841,7 @@ public class Parser
         listNode5 = (LinkedList)nodeArrayList4.get(0);
 	if(listNode5 != null)
 	{
-	  listNode6.addAll(listNode5);
+	  if(listNode6.isEmpty()) { listNode6 = listNode5; } else { listNode6.addAll(listNode5); }
 	}
         }
         ttrparenNode7 = (TTRparen)nodeArrayList5.get(0);
@@ -35520,7 +35520,7 @@ public class Parser
         listNode7 = (LinkedList)nodeArrayList5.get(0);
 	if(listNode7 != null)
 	{
-	  listNode8.addAll(listNode7);
+	  if(listNode8.isEmpty()) { listNode8 = listNode7; } else { listNode8.addAll(listNode7); }
 	}
         }
         ttrparenNode9 = (TTRparen)nodeArrayList6.get(0);
@@ -35753,7 +35753,7 @@ public class Parser
         listNode6 = (LinkedList)nodeArrayList4.get(0);
 	if(listNode6 != null)
 	{
-	  listNode7.addAll(listNode6);
+	  if(listNode7.isEmpty()) { listNode7 = listNode6; } else { listNode7.addAll(listNode6); }
 	}
         }
         ttrparenNode8 = (TTRparen)nodeArrayList5.get(0);
@@ -36019,7 +36019,7 @@ public class Parser
         listNode5 = (LinkedList)nodeArrayList4.get(0);
 	if(listNode5 != null)
 	{
-	  listNode6.addAll(listNode5);
+	  if(listNode6.isEmpty()) { listNode6 = listNode5; } else { listNode6.addAll(listNode5); }
 	}
         }
         ttrparenNode7 = (TTRparen)nodeArrayList5.get(0);
@@ -36190,7 +36190,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
 
@@ -36255,7 +36255,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
         ttperiodNode5 = (TTPeriod)nodeArrayList3.get(0);
@@ -36343,7 +36343,7 @@ public class Parser
         listNode4 = (LinkedList)nodeArrayList3.get(0);
 	if(listNode4 != null)
 	{
-	  listNode5.addAll(listNode4);
+	  if(listNode5.isEmpty()) { listNode5 = listNode4; } else { listNode5.addAll(listNode4); }
 	}
         }
         ttrbraceNode6 = (TTRbrace)nodeArrayList4.get(0);
@@ -37652,7 +37652,7 @@ public class Parser
         listNode3 = (LinkedList)nodeArrayList2.get(0);
 	if(listNode3 != null)
 	{
-	  listNode4.addAll(listNode3);
+	  if(listNode4.isEmpty()) { listNode4 = listNode3; } else { listNode4.addAll(listNode3); }
 	}
         }
 
@@ -37751,7 +37751,7 @@ public class Parser
         pdescriptionNode2 = (PDescription)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pdescriptionNode2 != null)
 	{
@@ -37802,7 +37802,7 @@ public class Parser
         pmoduleitemNode2 = (PModuleItem)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pmoduleitemNode2 != null)
 	{
@@ -37853,7 +37853,7 @@ public class Parser
         pportexpressionrepNode2 = (PPortExpressionRep)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pportexpressionrepNode2 != null)
 	{
@@ -37904,7 +37904,7 @@ public class Parser
         pdimensionNode2 = (PDimension)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pdimensionNode2 != null)
 	{
@@ -37955,7 +37955,7 @@ public class Parser
         pfunctionitemdeclarationNode2 = (PFunctionItemDeclaration)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pfunctionitemdeclarationNode2 != null)
 	{
@@ -38006,7 +38006,7 @@ public class Parser
         ptaskitemdeclarationNode2 = (PTaskItemDeclaration)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(ptaskitemdeclarationNode2 != null)
 	{
@@ -38057,7 +38057,7 @@ public class Parser
         pblockitemdeclarationNode2 = (PBlockItemDeclaration)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pblockitemdeclarationNode2 != null)
 	{
@@ -38108,7 +38108,7 @@ public class Parser
         pstatementNode2 = (PStatement)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pstatementNode2 != null)
 	{
@@ -38159,7 +38159,7 @@ public class Parser
         pcaseitemNode2 = (PCaseItem)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pcaseitemNode2 != null)
 	{
@@ -38210,7 +38210,7 @@ public class Parser
         pspecifyitemNode2 = (PSpecifyItem)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pspecifyitemNode2 != null)
 	{
@@ -38261,7 +38261,7 @@ public class Parser
         pedgecontrolspecifierrepNode2 = (PEdgeControlSpecifierRep)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pedgecontrolspecifierrepNode2 != null)
 	{
@@ -38312,7 +38312,7 @@ public class Parser
         pconcatenationrepNode2 = (PConcatenationRep)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pconcatenationrepNode2 != null)
 	{
@@ -38363,7 +38363,7 @@ public class Parser
         pmodulepathconcatenationrepNode2 = (PModulePathConcatenationRep)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pmodulepathconcatenationrepNode2 != null)
 	{
@@ -38414,7 +38414,7 @@ public class Parser
         psystemfunctioncallrepNode2 = (PSystemFunctionCallRep)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(psystemfunctioncallrepNode2 != null)
 	{
@@ -38465,7 +38465,7 @@ public class Parser
         pfunctioncallrepNode2 = (PFunctionCallRep)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pfunctioncallrepNode2 != null)
 	{
@@ -38516,7 +38516,7 @@ public class Parser
         pbracketrangeNode2 = (PBracketRange)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(pbracketrangeNode2 != null)
 	{
@@ -38567,7 +38567,7 @@ public class Parser
         plvaluerep2Node2 = (PLvalueRep2)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(plvaluerep2Node2 != null)
 	{
@@ -38618,7 +38618,7 @@ public class Parser
         phierarchicalidentifiermbextNode2 = (PHierarchicalIdentifierMbExt)nodeArrayList2.get(0);
 	if(listNode1 != null)
 	{
-	  listNode3.addAll(listNode1);
+	  if(listNode3.isEmpty()) { listNode3 = listNode1; } else { listNode3.addAll(listNode1); }
 	}
 	if(phierarchicalidentifiermbextNode2 != null)
 	{
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.verilog.pre;
+
+import org.zamia.SourceFile;
+
+/**
+ * A piece of expanded text with the source position of every char.
+ *
+ */
+
+class VPChunk {
+
+	final char[] fChars;
+
+	final int[] fLines;
+
+	final int[] fCols;
+
+	final SourceFile[] fSFs;
+
+	int fLen;
+
+	// end of text reached, possibly because of fError
+	boolean fLast;
+
+	// IOException, LexerException or RuntimeException to be thrown once the lexer gets here
+	Exception fError;
+
+	VPChunk(int aSize) {
+		fChars = new char[aSize];
+		fLines = new int[aSize];
+		fCols = new int[aSize];
+		fSFs = new SourceFile[aSize];
+	}
+
+	void clear() {
+		fLen = 0;
+		fLast = false;
+		fError = null;
+	}
+}
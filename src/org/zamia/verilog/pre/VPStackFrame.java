@@ -38,6 +38,10 @@ public class VPStackFrame {
 
 	private final Reader fIn;
 
+	private final char[] fBuf;
+
+	private int fBufPos = 0, fBufLen = 0;
+
 	private final boolean fCond;
 
 	private boolean fElse = false;
@@ -62,6 +66,8 @@ public class VPStackFrame {
 
 		fDoClose = aReader == null;
 
+		fBuf = new char[8192];
+
 		fCond = false;
 	}
 
@@ -69,6 +75,7 @@ public class VPStackFrame {
 		fType = VPSFType.CONDITION;
 		fFile = null;
 		fIn = null;
+		fBuf = null;
 		fCond = aCond;
 		fDoClose = false;
 	}
@@ -79,7 +86,12 @@ public class VPStackFrame {
 
 	public int read() throws IOException {
 
-		int ich = fIn.read();
+		if (fBufPos == fBufLen) {
+			fBufPos = 0;
+			fBufLen = Math.max(0, fIn.read(fBuf, 0, fBuf.length));
+		}
+
+		int ich = fBufPos < fBufLen ? fBuf[fBufPos++] : -1;
 
 		fLine = fNextLine;
 		fCol = fNextCol;
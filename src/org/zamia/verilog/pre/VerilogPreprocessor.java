@@ -10,19 +10,30 @@ package org.zamia.verilog.pre;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.zamia.ExceptionLogger;
 import org.zamia.FSCache;
 import org.zamia.SourceFile;
+import org.zamia.Utils;
 import org.zamia.ZamiaLogger;
 import org.zamia.util.ZStack;
 import org.zamia.verilog.lexer.LexerException;
 import org.zamia.verilog.pre.VPStackFrame.VPSFType;
 
 /**
+ * 
+ * The source is expanded ahead of the lexer in chunks which carry the source
+ * position of every char, so pushing back chars on behalf of the lexer is
+ * just a matter of moving backwards in the expanded text. With
+ * ENABLE_PIPELINE the chunks are produced on a pool thread while the lexer
+ * and parser work on the previous ones.
  * 
  * @author Guenter Bartsch
  *
@@ -34,6 +45,33 @@ public class VerilogPreprocessor implements IPreprocessor {
 
 	public final static ExceptionLogger el = ExceptionLogger.getInstance();
 
+	public static boolean ENABLE_PIPELINE = true;
+
+	static {
+		ENABLE_PIPELINE = Utils.getEnvBool("ZAMIA_VERILOG_PIPELINE", ENABLE_PIPELINE);
+	}
+
+	private final static int CHUNK_SIZE = 8192;
+
+	// number of chunks expanded ahead of the lexer
+	private final static int MAX_READY = 4;
+
+	// expanded text kept behind the lexer for unread()
+	private final static int MAX_UNREAD = 1024;
+
+	private final static ExecutorService pool = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable aRunnable) {
+			Thread thread = new Thread(aRunnable, "Verilog preprocessor");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/*
+	 * source side: only touched by whoever expands the next chunk
+	 */
+
 	private final ZStack<VPStackFrame> fStack = new ZStack<VPStackFrame>();
 
 	private VPStackFrame fCurFileSF = null;
@@ -44,19 +82,73 @@ public class VerilogPreprocessor implements IPreprocessor {
 
 	private boolean fEnabled = true;
 
-	private final ArrayList<Character> fPushbackBuffer = new ArrayList<Character>();
+	// pushed back (macro) text, next char on top
+	private char[] fPushback = new char[256];
+
+	private int fPushbackLen = 0;
 
 	private final boolean fUseCache;
 
+	/*
+	 * chunk hand over, guarded by this
+	 */
+
+	private final ArrayDeque<VPChunk> fReady = new ArrayDeque<VPChunk>();
+
+	private final ArrayDeque<VPChunk> fFree = new ArrayDeque<VPChunk>();
+
+	private boolean fProducing = false;
+
+	private boolean fProducedLast = false;
+
+	private boolean fClosed = false;
+
+	private final Runnable fProducer = new Runnable() {
+		@Override
+		public void run() {
+			produce();
+		}
+	};
+
+	/*
+	 * lexer side: the expanded text around the lexer's position
+	 */
+
+	private char[] fOut = new char[MAX_UNREAD + CHUNK_SIZE];
+
+	private int[] fOutLines = new int[MAX_UNREAD + CHUNK_SIZE];
+
+	private int[] fOutCols = new int[MAX_UNREAD + CHUNK_SIZE];
+
+	private SourceFile[] fOutSFs = new SourceFile[MAX_UNREAD + CHUNK_SIZE];
+
+	private int fOutLen = 0, fOutPos = 0;
+
+	private boolean fOutLast = false;
+
+	private Exception fOutError = null;
+
+	// position of the char last returned by read()
+	private int fLine = 0, fCol = 0;
+
+	private SourceFile fSF;
+
 	public VerilogPreprocessor(SourceFile aSF, Reader aReader, boolean aUseCache) throws IOException, LexerException {
 		fUseCache = aUseCache;
+		fSF = aSF;
 
 		File f = aSF.getFile();
 
 		fCurDir = f != null ? f.getAbsoluteFile().getParentFile() : null;
 
 		openFile(aSF, aReader);
-		
+
+		if (ENABLE_PIPELINE) {
+			synchronized (this) {
+				fProducing = true;
+			}
+			pool.execute(fProducer);
+		}
 	}
 
 	private void openFile(SourceFile aSF, Reader aReader) throws IOException, LexerException {
@@ -89,6 +181,7 @@ public class VerilogPreprocessor implements IPreprocessor {
 				fCurFileSF = frame;
 				break;
 			}
+			idx--;
 		}
 	}
 
@@ -97,7 +190,7 @@ public class VerilogPreprocessor implements IPreprocessor {
 	private boolean fEOF = false;
 
 	private void nextCh() throws IOException, LexerException {
-		if (fPushbackBuffer.isEmpty()) {
+		if (fPushbackLen == 0) {
 
 			while (true) {
 
@@ -119,7 +212,7 @@ public class VerilogPreprocessor implements IPreprocessor {
 			}
 
 		} else {
-			fCh = fPushbackBuffer.remove(0);
+			fCh = fPushback[--fPushbackLen];
 		}
 	}
 
@@ -128,7 +221,12 @@ public class VerilogPreprocessor implements IPreprocessor {
 		for (int i = aStr.length() - 1; i >= 0; i--) {
 
 			if (!fEOF) {
-				fPushbackBuffer.add(0, fCh);
+				if (fPushbackLen == fPushback.length) {
+					char[] pushback = new char[fPushbackLen * 2];
+					System.arraycopy(fPushback, 0, pushback, 0, fPushbackLen);
+					fPushback = pushback;
+				}
+				fPushback[fPushbackLen++] = fCh;
 			}
 			
 			fCh = aStr.charAt(i);
@@ -495,7 +593,7 @@ public class VerilogPreprocessor implements IPreprocessor {
 
 						} else {
 
-							throw new LexerException(getSourceFile() + ":" + getLine() + "," + getCol() + ": Unknown directive: " + dir);
+							throw new LexerException(fCurFileSF.getSourceFile() + ":" + fCurFileSF.getLine() + "," + fCurFileSF.getCol() + ": Unknown directive: " + dir);
 						}
 					}
 
@@ -504,37 +602,260 @@ public class VerilogPreprocessor implements IPreprocessor {
 		}
 	}
 	
+	/********************************************************************************
+	 * 
+	 * 
+	 * chunk hand over
+	 * 
+	 * 
+	 ********************************************************************************/
+
+	private void expand(VPChunk aChunk) {
+		aChunk.clear();
+		try {
+			while (aChunk.fLen < aChunk.fChars.length) {
+				int ich = readNextChar();
+				if (ich < 0) {
+					aChunk.fLast = true;
+					return;
+				}
+				int i = aChunk.fLen++;
+				aChunk.fChars[i] = (char) ich;
+				if (fCurFileSF != null) {
+					aChunk.fLines[i] = fCurFileSF.getLine();
+					aChunk.fCols[i] = fCurFileSF.getCol();
+					aChunk.fSFs[i] = fCurFileSF.getSourceFile();
+				} else {
+					aChunk.fLines[i] = 0;
+					aChunk.fCols[i] = 0;
+					aChunk.fSFs[i] = null;
+				}
+			}
+		} catch (IOException e) {
+			aChunk.fError = e;
+			aChunk.fLast = true;
+		} catch (LexerException e) {
+			aChunk.fError = e;
+			aChunk.fLast = true;
+		} catch (RuntimeException e) {
+			aChunk.fError = e;
+			aChunk.fLast = true;
+		}
+	}
+
+	/*
+	 * runs on a pool thread until MAX_READY chunks are waiting, so an
+	 * abandoned preprocessor never keeps a thread busy
+	 */
+	private void produce() {
+		while (true) {
+			VPChunk chunk;
+			synchronized (this) {
+				if (fClosed || fReady.size() >= MAX_READY) {
+					fProducing = false;
+					notifyAll();
+					return;
+				}
+				chunk = fFree.poll();
+			}
+			if (chunk == null) {
+				chunk = new VPChunk(CHUNK_SIZE);
+			}
+
+			expand(chunk);
+
+			synchronized (this) {
+				fReady.add(chunk);
+				if (chunk.fLast) {
+					fProducedLast = true;
+					fProducing = false;
+				}
+				notifyAll();
+				if (chunk.fLast) {
+					return;
+				}
+			}
+		}
+	}
+
+	private synchronized VPChunk takeChunk() throws InterruptedIOException {
+		while (fReady.isEmpty()) {
+			if (!fProducing) {
+				fProducing = true;
+				pool.execute(fProducer);
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Verilog preprocessor interrupted");
+			}
+		}
+		VPChunk chunk = fReady.poll();
+		if (!fProducing && !fProducedLast) {
+			fProducing = true;
+			pool.execute(fProducer);
+		}
+		return chunk;
+	}
+
+	private synchronized void recycle(VPChunk aChunk) {
+		fFree.add(aChunk);
+	}
+
+	private void fill() throws InterruptedIOException {
+
+		VPChunk chunk;
+		if (ENABLE_PIPELINE) {
+			chunk = takeChunk();
+		} else {
+			chunk = fFree.isEmpty() ? new VPChunk(CHUNK_SIZE) : fFree.poll();
+			expand(chunk);
+		}
+
+		int keep = Math.min(fOutLen, MAX_UNREAD);
+		int len = keep + chunk.fLen;
+		if (len > fOut.length) {
+			growOut(len);
+		}
+
+		System.arraycopy(fOut, fOutLen - keep, fOut, 0, keep);
+		System.arraycopy(fOutLines, fOutLen - keep, fOutLines, 0, keep);
+		System.arraycopy(fOutCols, fOutLen - keep, fOutCols, 0, keep);
+		System.arraycopy(fOutSFs, fOutLen - keep, fOutSFs, 0, keep);
+
+		System.arraycopy(chunk.fChars, 0, fOut, keep, chunk.fLen);
+		System.arraycopy(chunk.fLines, 0, fOutLines, keep, chunk.fLen);
+		System.arraycopy(chunk.fCols, 0, fOutCols, keep, chunk.fLen);
+		System.arraycopy(chunk.fSFs, 0, fOutSFs, keep, chunk.fLen);
+
+		fOutLen = len;
+		fOutPos = keep;
+		fOutLast = chunk.fLast;
+		fOutError = chunk.fError;
+
+		if (ENABLE_PIPELINE) {
+			recycle(chunk);
+		} else {
+			fFree.add(chunk);
+		}
+	}
+
+	private void growOut(int aMinLen) {
+		int len = Math.max(aMinLen, fOut.length * 2);
+
+		char[] out = new char[len];
+		System.arraycopy(fOut, 0, out, 0, fOutLen);
+		fOut = out;
+
+		int[] lines = new int[len];
+		System.arraycopy(fOutLines, 0, lines, 0, fOutLen);
+		fOutLines = lines;
+
+		int[] cols = new int[len];
+		System.arraycopy(fOutCols, 0, cols, 0, fOutLen);
+		fOutCols = cols;
+
+		SourceFile[] sfs = new SourceFile[len];
+		System.arraycopy(fOutSFs, 0, sfs, 0, fOutLen);
+		fOutSFs = sfs;
+	}
+
+	/********************************************************************************
+	 * 
+	 * 
+	 * lexer side
+	 * 
+	 * 
+	 ********************************************************************************/
+
 	@Override
 	public int read() throws IOException, LexerException {
-		return readNextChar();
+		while (fOutPos == fOutLen) {
+			if (fOutLast) {
+				Exception e = fOutError;
+				if (e != null) {
+					fOutError = null;
+					if (e instanceof IOException) {
+						throw (IOException) e;
+					}
+					if (e instanceof LexerException) {
+						throw (LexerException) e;
+					}
+					throw (RuntimeException) e;
+				}
+				return -1;
+			}
+			fill();
+		}
+
+		int i = fOutPos++;
+		fLine = fOutLines[i];
+		fCol = fOutCols[i];
+		fSF = fOutSFs[i];
+
+		return fOut[i];
 	}
 
+	/**
+	 * Stop expanding and close included files, the reader passed to the
+	 * constructor is left to the caller.
+	 */
 	@Override
 	public void close() throws IOException {
-		try {
-			closeFile();
-		} catch (LexerException e) {
-			throw new IOException(e.getMessage());
+		synchronized (this) {
+			fClosed = true;
+			while (fProducing) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Verilog preprocessor interrupted");
+				}
+			}
 		}
+
+		while (!fStack.isEmpty()) {
+			VPStackFrame frame = fStack.pop();
+			if (frame.getType() == VPSFType.FILE) {
+				frame.close();
+			}
+		}
+		fCurFileSF = null;
 	}
 
 	@Override
 	public int getLine() {
-		return fCurFileSF != null ? fCurFileSF.getLine() : 0;
+		return fLine;
 	}
 
 	@Override
 	public int getCol() {
-		return fCurFileSF != null ? fCurFileSF.getCol() : 0;
+		return fCol;
 	}
 
 	@Override
 	public SourceFile getSourceFile() {
-		return fCurFileSF != null ? fCurFileSF.getSourceFile() : null;
+		return fSF;
 	}
 
 	@Override
 	public void unread(char aC) {
-		pushback("" + aC);
+		if (fOutPos == 0) {
+			// further back than MAX_UNREAD: make room in front
+			if (fOutLen == fOut.length) {
+				growOut(fOutLen + 1);
+			}
+			System.arraycopy(fOut, 0, fOut, 1, fOutLen);
+			System.arraycopy(fOutLines, 0, fOutLines, 1, fOutLen);
+			System.arraycopy(fOutCols, 0, fOutCols, 1, fOutLen);
+			System.arraycopy(fOutSFs, 0, fOutSFs, 1, fOutLen);
+			fOutLen++;
+			fOutPos++;
+			fOutLines[0] = fLine;
+			fOutCols[0] = fCol;
+			fOutSFs[0] = fSF;
+		}
+		fOut[--fOutPos] = aC;
 	}
 }
@@ -10,10 +10,15 @@ package org.zamia.vhdl;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 
 import org.zamia.DMManager;
+import org.zamia.DesignModuleStub;
 import org.zamia.SourceFile;
+import org.zamia.SourceText;
 import org.zamia.ZamiaException;
 import org.zamia.ZamiaLogger;
 import org.zamia.vhdl.ast.DMUID;
@@ -38,7 +43,9 @@ public class VHDLIndexer {
 
 	public final static boolean dump = false;
 
-	private Reader fSrc;
+	private SourceText fSrc;
+
+	private int fPos;
 
 	private Symbol fSym;
 
@@ -58,7 +65,7 @@ public class VHDLIndexer {
 
 	private String fTargetLib;
 
-	private DMManager fDUM;
+	private Collection<DesignModuleStub> fStubs;
 
 	private int fPriority;
 
@@ -123,7 +130,7 @@ public class VHDLIndexer {
 
 		if (fBottomUp || checkFileName(entityId)) {
 			DMUID duuid = new DMUID(LUType.Architecture, fTargetLib, entityId, archId);
-			fDUM.addDesignUnitSource(duuid, fSF, fPriority, fUseFSCache);
+			addStub(duuid);
 		}
 	}
 
@@ -148,7 +155,7 @@ public class VHDLIndexer {
 
 		DMUID duuid = new DMUID(LUType.Configuration, fTargetLib, entityId, null);
 
-		fDUM.addDesignUnitSource(duuid, fSF, fPriority, fUseFSCache);
+		addStub(duuid);
 	}
 
 	private void packageDeclaration() throws IOException, ZamiaException {
@@ -175,7 +182,7 @@ public class VHDLIndexer {
 
 			if (fBottomUp || checkFileName(pkgId)) {
 				DMUID duuid = new DMUID(LUType.PackageBody, fTargetLib, pkgId, null);
-				fDUM.addDesignUnitSource(duuid, fSF, fPriority, fUseFSCache);
+				addStub(duuid);
 			}
 
 		} else {
@@ -185,7 +192,7 @@ public class VHDLIndexer {
 			
 			if (fBottomUp || checkFileName(pkgId)) {
 				DMUID duuid = new DMUID(LUType.Package, fTargetLib, pkgId, null);
-				fDUM.addDesignUnitSource(duuid, fSF, fPriority, fUseFSCache);
+				addStub(duuid);
 			}
 		}
 	}
@@ -205,23 +212,37 @@ public class VHDLIndexer {
 
 		if (fBottomUp || checkFileName(entityId)) {
 			DMUID duuid = new DMUID(LUType.Entity, fTargetLib, entityId, null);
-			fDUM.addDesignUnitSource(duuid, fSF, fPriority, fUseFSCache);
+			addStub(duuid);
 		}
 	}
 
 	public void parse(Reader aReader, String aTargetLib, SourceFile aSF, int aPriority, boolean aUseFSCache, boolean aBottomUp, DMManager aDUM) throws IOException, ZamiaException {
+		parse(SourceText.read(aReader), aTargetLib, aSF, aPriority, aUseFSCache, aBottomUp, aDUM);
+	}
+
+	public void parse(SourceText aText, String aTargetLib, SourceFile aSF, int aPriority, boolean aUseFSCache, boolean aBottomUp, DMManager aDUM) throws IOException, ZamiaException {
+		ArrayList<DesignModuleStub> stubs = new ArrayList<DesignModuleStub>();
+		try {
+			parse(aText, aTargetLib, aSF, aPriority, aUseFSCache, aBottomUp, stubs);
+		} finally {
+			aDUM.addStubs(Collections.singletonList(aSF), stubs);
+		}
+	}
+
+	/**
+	 * Index aText without touching the DMManager: stubs of the design units
+	 * found are added to aStubs, which may be shared between threads.
+	 */
+	public void parse(SourceText aText, String aTargetLib, SourceFile aSF, int aPriority, boolean aUseFSCache, boolean aBottomUp, Collection<DesignModuleStub> aStubs) throws IOException, ZamiaException {
 
 		//if (dump)
 			logger.debug("VHDLIndexer: indexing '%s', target lib : '%s'", aSF.getAbsolutePath(), aTargetLib);
 
-		if (aReader == null) {
-			logger.error("VHDLIndexer: reader == null!");
-		}
-
 		fSF = aSF;
 		fTargetLib = aTargetLib;
-		fDUM = aDUM;
-		fSrc = aReader;
+		fStubs = aStubs;
+		fSrc = aText;
+		fPos = 0;
 		fLine = 1;
 		fCol = 1;
 		fNumChars = 0;
@@ -230,8 +251,6 @@ public class VHDLIndexer {
 		fBottomUp = aBottomUp;
 		fPath = fSF.getAbsolutePath();
 
-		fDUM.removeStubs(fSF);
-
 		clean();
 
 		getCh();
@@ -261,10 +280,18 @@ public class VHDLIndexer {
 
 		aSF.setNumLines(fLine);
 		aSF.setNumChars(fNumChars);
+
+		// indexers are pooled, do not keep the text alive
+		fSrc = null;
+		fStubs = null;
+	}
+
+	private void addStub(DMUID aDUUID) {
+		fStubs.add(new DesignModuleStub(aDUUID, fSF, fPriority, fUseFSCache));
 	}
 
 	private void getCh() throws IOException {
-		fICh = fSrc.read();
+		fICh = fPos < fSrc.length() ? fSrc.charAt(fPos++) : -1;
 		fCol++;
 		if (fICh != -1)
 			fCh = (char) fICh;
@@ -109,6 +109,18 @@ public class Architecture extends SecondaryUnit {
 		return fCSS.size();
 	}
 
+	/**
+	 * Concurrent statements live in the ZDB, call this when an architecture
+	 * was deserialized into another ZDB (e.g. from the parse cache) to store
+	 * them there.
+	 */
+	public void replaceConcurrentStatements(ArrayList<ConcurrentStatement> aCSS) throws ZamiaException {
+		fCSS = new ArrayList<Long>(aCSS.size());
+		for (ConcurrentStatement cs : aCSS) {
+			add(cs);
+		}
+	}
+
 	public ConcurrentStatement getConcurrentStatement(int aIdx) {
 		Long l = fCSS.get(aIdx);
 		if (l == null) {
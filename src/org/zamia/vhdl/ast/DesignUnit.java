@@ -8,6 +8,8 @@
 
 package org.zamia.vhdl.ast;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -69,6 +71,12 @@ public abstract class DesignUnit extends DeclarativeItem implements IDesignModul
 		this(new Context(null, aLocation), aId, aSF, aLocation, aLibId, aZDB);
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		// may have been stored by another project, e.g. a std lib snapshot
+		fZDB = ZDB.getZDBFromStream(in);
+		in.defaultReadObject();
+	}
+
 	public ZDB getZDB() {
 
 		if (fZDB == null) {
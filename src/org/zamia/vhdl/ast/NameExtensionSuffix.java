@@ -106,6 +106,7 @@ public class NameExtensionSuffix extends NameExtension {
 
 		if (aItem instanceof IGPackage) {
 			IGPackage pkg = (IGPackage) aItem;
+			aEE.getZamiaProject().getIGM().recordPackageUse(pkg.getDUUID(), suffix.getId());
 			IGContainer container = pkg.getContainer();
 			ArrayList<IGContainerItem> items = container.findLocalItems(suffix.getId());
 			if (items == null) {
@@ -134,6 +135,7 @@ public class NameExtensionSuffix extends NameExtension {
 
 			IGPackage pkg = igm.findPackage(duuid.getLibId(), duuid.getId(), getLocation());
 			if (pkg != null) {
+				igm.recordPackageUse(pkg.getDUUID(), suffix.getId());
 				IGContainer container = pkg.getContainer();
 				ArrayList<IGContainerItem> items = container.findLocalItems(suffix.getId());
 				if (items == null) {
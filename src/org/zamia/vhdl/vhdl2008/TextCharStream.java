@@ -0,0 +1,140 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.vhdl.vhdl2008;
+
+import java.io.IOException;
+
+import org.zamia.SourceText;
+
+/**
+ * CharStream reading straight from a SourceText.
+ *
+ * Nothing is copied and no per char line/column bookkeeping is done, token
+ * positions are looked up in the line start table of the text when the
+ * token manager asks for them.
+ *
+ */
+
+public final class TextCharStream implements CharStream {
+
+	private final SourceText fText;
+
+	private final int fLength;
+
+	private int fPos = -1;
+
+	private int fTokenBegin = -1;
+
+	// line of the last lookup, positions are mostly asked for in order
+	private int fLineIdx = 0;
+
+	public TextCharStream(SourceText aText) {
+		fText = aText;
+		fLength = aText.length();
+	}
+
+	public char readChar() throws IOException {
+		if (fPos + 1 >= fLength) {
+			if (fPos < 0) {
+				fPos = 0;
+			}
+			if (fTokenBegin == -1) {
+				fTokenBegin = fPos;
+			}
+			throw new IOException();
+		}
+		return fText.charAt(++fPos);
+	}
+
+	public char BeginToken() throws IOException {
+		fTokenBegin = -1;
+		char c = readChar();
+		fTokenBegin = fPos;
+		return c;
+	}
+
+	private int getLineIdx(int aPos) {
+		int idx = fLineIdx;
+		if (aPos < fText.getLineStart(idx) || (idx + 1 < fText.getNumLines() && aPos >= fText.getLineStart(idx + 1))) {
+			idx = fText.getLineIdx(aPos);
+			fLineIdx = idx;
+		}
+		return idx;
+	}
+
+	// an empty text has no position at all
+	private int getLine(int aPos) {
+		if (aPos >= fLength) {
+			return 0;
+		}
+		return getLineIdx(aPos) + 1;
+	}
+
+	private int getColumn(int aPos) {
+		if (aPos >= fLength) {
+			return 0;
+		}
+		return aPos - fText.getLineStart(getLineIdx(aPos)) + 1;
+	}
+
+	/***
+	 * @deprecated
+	 * @see #getEndColumn
+	 */
+	public int getColumn() {
+		return getEndColumn();
+	}
+
+	/***
+	 * @deprecated
+	 * @see #getEndLine
+	 */
+	public int getLine() {
+		return getEndLine();
+	}
+
+	public int getEndColumn() {
+		return getColumn(fPos);
+	}
+
+	public int getEndLine() {
+		return getLine(fPos);
+	}
+
+	public int getBeginColumn() {
+		return getColumn(fTokenBegin);
+	}
+
+	public int getBeginLine() {
+		return getLine(fTokenBegin);
+	}
+
+	public void backup(int aAmount) {
+		fPos -= aAmount;
+	}
+
+	public String GetImage() {
+		return fText.substring(fTokenBegin, fPos + 1);
+	}
+
+	public char[] GetSuffix(int aLen) {
+		char[] ret = new char[aLen];
+		int start = fPos - aLen + 1;
+		for (int i = 0; i < aLen; i++) {
+			ret[i] = fText.charAt(start + i);
+		}
+		return ret;
+	}
+
+	public void Done() {
+	}
+
+	public int getNumChars() {
+		return fLength;
+	}
+}
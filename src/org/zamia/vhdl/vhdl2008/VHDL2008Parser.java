@@ -12,7 +12,6 @@ package org.zamia.vhdl.vhdl2008;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.ArrayList;
 
 import org.zamia.DMManager;
@@ -20,6 +19,7 @@ import org.zamia.ERManager;
 import org.zamia.IHDLParser;
 import org.zamia.SourceFile;
 import org.zamia.SourceLocation;
+import org.zamia.SourceText;
 import org.zamia.ZamiaException;
 import org.zamia.ZamiaLogger;
 import org.zamia.ZamiaProject;
@@ -53,14 +53,14 @@ public class VHDL2008Parser implements IHDLParser, VHDL2008ParserConstants {
     private DMManager dum;
     private ERManager erm;
     private HashSetArray<DMUID> dus;
-        private BackupCharStream stream;
+        private TextCharStream stream;
         private int priority;
         private boolean fUseFSCache;
         private boolean bottomUp;
         private ZDB zdb;
 
         public VHDL2008Parser() {
-                this (new BackupCharStream(new StringReader("")));
+                this (new TextCharStream(SourceText.fromString("")));
         }
 
     private long getLocation(Token token_) {
@@ -76,6 +76,10 @@ public class VHDL2008Parser implements IHDLParser, VHDL2008ParserConstants {
     }
 
         public HashSetArray<DMUID> parse(Reader aReader, String aLibId, SourceFile aSF, int aPriority, boolean aUseFSCache, boolean aBottomUp, ZamiaProject aZPrj) throws IOException {
+                return parse(SourceText.read(aReader), aLibId, aSF, aPriority, aUseFSCache, aBottomUp, aZPrj);
+        }
+
+        public HashSetArray<DMUID> parse(SourceText aText, String aLibId, SourceFile aSF, int aPriority, boolean aUseFSCache, boolean aBottomUp, ZamiaProject aZPrj) throws IOException {
                         logger.debug("VHDL2008Parser: parsing %s, target lib : %s", aSF, aLibId);
 
                 dus = new HashSetArray<DMUID>();
@@ -85,7 +89,7 @@ public class VHDL2008Parser implements IHDLParser, VHDL2008ParserConstants {
                         erm = zprj.getERM();
                         zdb = zprj.getZDB();
             lib = aLibId;
-                stream = new BackupCharStream(aReader);
+                stream = new TextCharStream(aText);
                 priority = aPriority;
                 fUseFSCache = aUseFSCache;
                 bottomUp = aBottomUp;
@@ -14,22 +14,36 @@ import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 
@@ -38,9 +52,10 @@ import org.zamia.ExceptionLogger;
 import org.zamia.SourceFile;
 import org.zamia.Utils;
 import org.zamia.ZamiaLogger;
+import org.zamia.ZamiaMetrics;
 import org.zamia.ZamiaProject;
+import org.zamia.util.ByteBufferInputStream;
 import org.zamia.util.FileUtils;
-import org.zamia.util.HashMapArray;
 import org.zamia.util.HashSetArray;
 import org.zamia.util.LevelGZIPOutputStream;
 import org.zamia.util.ObjectSize;
@@ -67,15 +82,25 @@ public class ZDB {
 
 	public final static String OFFSETS_FILENAME = "offsets.ehm";
 
+	public final static String LENGTHS_FILENAME = "lengths.ehm";
+
 	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
 
 	public final static ExceptionLogger el = ExceptionLogger.getInstance();
 
-	private static int CACHE_MAX_SIZE = 
-			16384; // <- Guenter optimum determined by experiment (does opening zdb per every open project affect this num?)
-			//32768;
-			//65536;
-			//3; // debug purposes
+	// the cache is bounded by the estimated heap footprint of the cached objects (MB),
+	// 0 means an eighth of the max heap (does opening zdb per every open project affect this num?)
+	static int CACHE_MAX_MB = 0;
+
+	// optional additional limit on the number of cached objects, 0 means none
+	// (used to be the only limit, 16384 was Guenter's optimum determined by experiment)
+	static int CACHE_MAX_SIZE = 0;
+
+	private static final int CACHE_INITIAL_CAPACITY = 16384;
+
+	// heap footprint estimate of a cached object: overhead + factor * serialized length, see weigh()
+	static int CACHE_HEAP_FACTOR = 4;
+	static int CACHE_ENTRY_OVERHEAD = 96;
 
 	static int FLUSH_OUT_WHEN = 1512; // this does not seem to have any noticabe effect in the range 100-100000
 	
@@ -85,21 +110,66 @@ public class ZDB {
 	public static boolean ENABLE_COMPRESSION = false; 
 	public static boolean ENABLE_STATISTICS = false;
 	public static boolean ENABLE_LOCKING = true;
+	public static boolean ENABLE_CONCURRENT_CACHE = false;
+	public static boolean ENABLE_AUTO_COMPACTION = true;
+	public static boolean ENABLE_MMAP = true;
+	public static boolean ENABLE_COMPACT_CODEC = true;
+	public static boolean ENABLE_SOFT_CACHE = true;
+
+	// data.bin is split into segments of this size (MB), see ZDBDataFile
+	static int SEGMENT_SIZE = 256;
+
+	// background compaction after flush() kicks in once this much of the data is garbage
+	static double AUTO_COMPACTION_RATIO = 0.5;
+	static long AUTO_COMPACTION_MIN_BYTES = 64l * 1024l * 1024l;
 
 	private static final int BUFSIZE = 1 << 16;
 
+	// loadAll() reads in file order and deserializes in parallel once a batch has this many cache misses
+	static int LOAD_THREADS = Runtime.getRuntime().availableProcessors();
+	private static final int LOAD_BULK_MIN = 8;
+
+	// loadAll() reads records no further apart than LOAD_CHUNK_GAP in chunks of up to LOAD_CHUNK_SIZE
+	private static final int LOAD_CHUNK_SIZE = 1 << 20;
+	private static final int LOAD_CHUNK_GAP = 1 << 14;
+
 	private File fDBDir;
 
-	private HashMap<Long, ZDBCacheEntry> fCache;
+	// read without holding the ZDB monitor on cache hits, see load()
+	private volatile ZDBCache fCache;
+
+	private long fCacheMaxBytes;
+
+	// running average of the serialized record length, used to weigh objects not written yet
+	private long fAvgRecordLength = 256;
+
+	// evicted objects the GC has not reclaimed yet, guarded by the ZDB monitor
+	private ZDBSoftCache fSoftCache;
 
-	public ZDBCacheEntry fCacheHead, fCacheTail;
+	private final AtomicLong fCacheHits = new AtomicLong(), fCacheMisses = new AtomicLong(), fCacheEvictions = new AtomicLong();
+
+	private final AtomicLong fSoftCacheHits = new AtomicLong();
 
 	private ZDBPersistentData fPD;
 
-	private File fDataFile, fPDFile, fEHMPagesFile, fOffsetsFile;
+	// string indices are guarded separately so lookups do not contend with load/store
+	private final ReentrantReadWriteLock fIdxLock = new ReentrantReadWriteLock();
+
+	private File fPDFile, fEHMPagesFile, fOffsetsFile, fLengthsFile;
 	private FileLock fLock = null;
+
+	// address the next record will be written to
 	private long fLength;
 
+	private ZDBDataFile fData;
+
+	// records are written with fCodec, but may be read with any of fCodecs
+	private ZDBClassTable fClassTable;
+
+	private ZDBCodec fCodec;
+
+	private ZDBCodec[] fCodecs;
+
 	private Object fOwner;
 
 	// statistics:
@@ -116,12 +186,36 @@ public class ZDB {
 
 	private ExtendibleHashMap fOffsets;
 
+	// serialized record length by id, needed to account for dead bytes
+	private ExtendibleHashMap fLengths;
+
+	// string key based indices, guarded by fIdxLock
+	private ZDBStringIndices fIndices;
+
+	// undo log for everything changed since the last commit()
+	private ZDBJournal fJournal;
+
+	private final ZDBCompactor fCompactor = new ZDBCompactor(this);
+
+	private Thread fCompactionThread;
+
+	// compacted segments, deleted after the next commit()
+	private final ArrayList<Integer> fRetiredSegments = new ArrayList<Integer>();
+
 	static {
 		ENABLE_LOCKING = Utils.getEnvBool("ZAMIA_LOCKING", ENABLE_LOCKING);
 		ENABLE_COMPRESSION = Utils.getEnvBool("ZAMIA_COMPRESSION", ENABLE_COMPRESSION);
 		ENABLE_STATISTICS = Utils.getEnvBool("ZAMIA_STATISTICS", ENABLE_STATISTICS);
+		ENABLE_CONCURRENT_CACHE = Utils.getEnvBool("ZAMIA_CONCURRENT_CACHE", ENABLE_CONCURRENT_CACHE);
+		ENABLE_AUTO_COMPACTION = Utils.getEnvBool("ZAMIA_AUTO_COMPACTION", ENABLE_AUTO_COMPACTION);
+		ENABLE_MMAP = Utils.getEnvBool("ZAMIA_MMAP", ENABLE_MMAP);
+		ENABLE_COMPACT_CODEC = Utils.getEnvBool("ZAMIA_COMPACT_CODEC", ENABLE_COMPACT_CODEC);
+		ENABLE_SOFT_CACHE = Utils.getEnvBool("ZAMIA_SOFT_CACHE", ENABLE_SOFT_CACHE);
+		SEGMENT_SIZE = Utils.getEnvInt("ZAMIA_SEGMENT_SIZE", SEGMENT_SIZE);
 		CACHE_MAX_SIZE = Utils.getEnvInt("ZAMIA_CACHE_SIZE", CACHE_MAX_SIZE);
+		CACHE_MAX_MB = Utils.getEnvInt("ZAMIA_CACHE_MB", CACHE_MAX_MB);
 		FLUSH_OUT_WHEN = Utils.getEnvInt("ZAMIA_WRITER_SIZE", FLUSH_OUT_WHEN);
+		LOAD_THREADS = Utils.getEnvInt("ZAMIA_LOAD_THREADS", LOAD_THREADS);
 	}
 	
 	public ZDB(File aDBDir, Object aOwner) throws ZDBException, FileNotFoundException {
@@ -129,9 +223,9 @@ public class ZDB {
 		fDBDir = aDBDir;
 		fOwner = aOwner;
 		fPDFile = new File(fDBDir.getAbsolutePath() + File.separator + PD_FILENAME);
-		fDataFile = new File(fDBDir.getAbsolutePath() + File.separator + DATA_TABLE_FILENAME);
 		fEHMPagesFile = new File(fDBDir.getAbsolutePath() + File.separator + EHM_PAGES_FILENAME);
 		fOffsetsFile = new File(fDBDir.getAbsolutePath() + File.separator + OFFSETS_FILENAME);
+		fLengthsFile = new File(fDBDir.getAbsolutePath() + File.separator + LENGTHS_FILENAME);
 
 		if (ENABLE_STATISTICS) {
 			fNumObjectsByClass = new Utils.StatCounter();
@@ -151,42 +245,200 @@ public class ZDB {
 
 		doLock();
 
+		// undo whatever a crash left half written since the last commit
+		boolean consistent = true;
+		try {
+			long startTime = System.currentTimeMillis();
+			int n = ZDBJournal.recover(fDBDir);
+			if (n > 0) {
+				logger.info("ZDB: rolled back %d changes to the last commit in %d ms.", n, System.currentTimeMillis() - startTime);
+			}
+		} catch (IOException e) {
+			el.logException(e);
+			consistent = false;
+		}
+
 		initStructures();
 
+		fJournal = new ZDBJournal(fDBDir);
 		fEHMManager = new EHMPageManager(fEHMPagesFile);
+		fEHMManager.setJournal(fJournal);
 		fEHMs = new HashMap<String, ExtendibleHashMap>();
 		fOffsets = new ExtendibleHashMap(fEHMManager, fOffsetsFile);
+		fLengths = new ExtendibleHashMap(fEHMManager, fLengthsFile);
+		fIndices = new ZDBStringIndices(fDBDir, fEHMManager, fJournal);
 
-		if (!fPD.load(fPDFile, this)) {
+		if (!consistent || !fPD.load(fPDFile, this)) {
 			fPD.clear();
 			fOffsets.clear();
+			fLengths.clear();
+			fIndices.clear();
 		}
 	}
 
-	public synchronized void clear() {
+	public void clear() {
 
-		baosToDiskThread.shutdown();
+		stopCompaction();
+
+		synchronized (this) {
+			baosToDiskThread.shutdown();
+			fData.close();
 
-		fEHMManager.clear();
-		for (ExtendibleHashMap ehm : fEHMs.values()) {
-			ehm.clear();
+			fEHMManager.clear();
+			for (ExtendibleHashMap ehm : fEHMs.values()) {
+				ehm.clear();
+			}
+			fOffsets.clear();
+			fLengths.clear();
+
+			fIdxLock.writeLock().lock();
+			try {
+				fIndices.close();
+				fJournal.close();
+
+				FileUtils.deleteDirRecursive(fDBDir);
+				mkdirChecked(fDBDir);
+
+				fJournal = new ZDBJournal(fDBDir);
+				fEHMManager.setJournal(fJournal);
+				fIndices = new ZDBStringIndices(fDBDir, fEHMManager, fJournal);
+			} finally {
+				fIdxLock.writeLock().unlock();
+			}
+
+			initStructures();
 		}
-		fOffsets.clear();
 
-		FileUtils.deleteDirRecursive(fDBDir);
-		mkdirChecked(fDBDir);
+		fCompactor.setAborted(false);
+	}
 
-		initStructures();
+	/**
+	 * Copy the committed state of this database to aDir which must not exist
+	 * yet, importSnapshot() turns another (empty) database into a copy of
+	 * it.
+	 */
+	public void exportSnapshot(File aDir) throws IOException {
+
+		stopCompaction();
+
+		synchronized (this) {
+
+			flush();
+
+			fIdxLock.writeLock().lock();
+			try {
+				if (!aDir.mkdirs()) {
+					throw new IOException("ZDB: failed to create snapshot dir " + aDir.getAbsolutePath());
+				}
+				for (File file : fDBDir.listFiles()) {
+					if (isSnapshotFile(file) && !FileUtils.copy(file, new File(aDir, file.getName()))) {
+						throw new IOException("ZDB: failed to copy " + file.getAbsolutePath() + " to snapshot dir " + aDir.getAbsolutePath());
+					}
+				}
+			} finally {
+				fIdxLock.writeLock().unlock();
+			}
+		}
+
+		fCompactor.setAborted(false);
+	}
+
+	/**
+	 * Replace the whole content of this database by a snapshot written by
+	 * exportSnapshot(). Whatever was stored here before is lost, so this is
+	 * meant to be used right after clear().
+	 */
+	public void importSnapshot(File aDir) throws IOException {
+
+		File[] files = aDir.listFiles();
+		if (files == null) {
+			throw new IOException("ZDB: snapshot dir " + aDir.getAbsolutePath() + " is not readable");
+		}
+
+		stopCompaction();
+
+		synchronized (this) {
+			baosToDiskThread.shutdown();
+			fData.close();
+
+			fIdxLock.writeLock().lock();
+			try {
+				fIndices.close();
+				fJournal.close();
+				fEHMManager.clear();
+
+				FileUtils.deleteDirRecursive(fDBDir);
+				mkdirChecked(fDBDir);
+
+				for (File file : files) {
+					if (isSnapshotFile(file) && !FileUtils.copy(file, new File(fDBDir, file.getName()))) {
+						throw new IOException("ZDB: failed to copy " + file.getAbsolutePath() + " from snapshot dir");
+					}
+				}
+
+				// EHMs handed out by getOrCreateEHM() stay valid
+				fJournal = new ZDBJournal(fDBDir);
+				fEHMManager.setJournal(fJournal);
+				fEHMManager.reopen();
+				fOffsets.reload();
+				fLengths.reload();
+				for (ExtendibleHashMap ehm : fEHMs.values()) {
+					ehm.reload();
+				}
+				fIndices = new ZDBStringIndices(fDBDir, fEHMManager, fJournal);
+			} finally {
+				fIdxLock.writeLock().unlock();
+			}
+
+			initStructures();
+
+			if (!fPD.load(fPDFile, this)) {
+				throw new IOException("ZDB: failed to load snapshot from " + aDir.getAbsolutePath());
+			}
+		}
+
+		fCompactor.setAborted(false);
+	}
+
+	/**
+	 * Throws if this database holds records of classes that are gone or have
+	 * changed since they were stored, e.g. after importing an old snapshot.
+	 */
+	public void checkClasses() throws IOException {
+		try {
+			fClassTable.checkClasses();
+		} catch (ClassNotFoundException e) {
+			throw new InvalidClassException(e.getMessage());
+		}
+	}
+
+	private static boolean isSnapshotFile(File aFile) {
+		String name = aFile.getName();
+		return aFile.isFile() && !name.equals(LOCK_FILENAME) && !name.equals(ZDBJournal.JOURNAL_FILENAME) && !name.endsWith(ZDBJournal.BACKUP_SUFFIX);
 	}
 
 	private void initStructures() {
 
-		fCache = new HashMap<Long, ZDBCacheEntry>();
-		fCacheHead = null;
-		fCacheTail = null;
+		fCache = ENABLE_CONCURRENT_CACHE ? new ZDBClockCache(CACHE_MAX_SIZE > 0 ? CACHE_MAX_SIZE : CACHE_INITIAL_CAPACITY) : new ZDBLRUCache();
+		fSoftCache = new ZDBSoftCache();
+		fCacheMaxBytes = CACHE_MAX_MB > 0 ? CACHE_MAX_MB * 1024l * 1024l : Runtime.getRuntime().maxMemory() / 8;
 		fCurrentlyStoring = new HashMap<Object, Long>();
+		fRetiredSegments.clear();
+
+		fIdxLock.writeLock().lock();
+		try {
+			fPD = new ZDBPersistentData();
+		} finally {
+			fIdxLock.writeLock().unlock();
+		}
+
+		fData = new ZDBDataFile(fDBDir, DATA_TABLE_FILENAME, SEGMENT_SIZE * 1024l * 1024l);
 
-		fPD = new ZDBPersistentData();
+		fClassTable = new ZDBClassTable(fDBDir);
+		ZDBCodec javaCodec = new ZDBJavaCodec();
+		ZDBCodec compactCodec = new ZDBCompactCodec(fClassTable);
+		fCodecs = new ZDBCodec[] { javaCodec, compactCodec };
+		fCodec = ENABLE_COMPACT_CODEC ? compactCodec : javaCodec;
 
 		baosToDiskThread = new BaosToDiskThread();
 	}
@@ -209,9 +461,18 @@ public class ZDB {
 	}
 
 	public synchronized void flush() {
+		doFlush();
+		startAutoCompaction();
+	}
+
+	/*
+	 * @return number of bytes freed by deleting retired segments
+	 */
+	private synchronized long doFlush() {
+		logger.info("ZDB: flush(): cache: %d objects, %d of %d KB, %d hits, %d misses (%d soft hits), %d evictions", fCache.size(), fCache.getWeight() / 1024, fCacheMaxBytes / 1024, fCacheHits.get(), fCacheMisses.get(), fSoftCacheHits.get(), fCacheEvictions.get());
 		logger.info("ZDB: flush(): evicting memory cache...");
 
-		while (fCacheHead != null) {
+		while (!fCache.isEmpty()) {
 			evict();
 		}
 
@@ -219,37 +480,402 @@ public class ZDB {
 		baosToDiskThread.sanityCheck();
 		baosToDiskThread = new BaosToDiskThread();
 
-		logger.info("ZDB: flush(): writing EHM pages...");
+		long freed = commit() ? dropRetiredSegments() : 0;
+
+		long size = FileUtils.du(fDBDir) / (1024 * 1024);
 
-		fEHMManager.flush();
+		logger.info("ZDB: flush(): done. Current DB size: %d MB.", size);
 
-		logger.info("ZDB: flush(): writing EHM nodes...");
+		return freed;
+	}
+
+	/**
+	 * Write out all metadata so that it matches the records on disk and make
+	 * that state the one recovery rolls back to, see ZDBJournal. Objects
+	 * still in the cache are not part of the commit.
+	 * 
+	 * @return false if the commit failed, the journal still rolls back to
+	 *         the previous one then
+	 */
+	private synchronized boolean commit() {
 
-		fOffsets.flush();
-		for (ExtendibleHashMap ehm : fEHMs.values()) {
-			ehm.flush();
+		try {
+			baosToDiskThread.sync().await();
+		} catch (InterruptedException e) {
+			el.logException(e);
+			return false;
 		}
 
-		logger.info("ZDB: flush(): writing indices and persistent objects...");
+		// index pages and nodes have to be written consistently
+		fIdxLock.writeLock().lock();
+		try {
+			ArrayList<File> files = new ArrayList<File>();
+			files.add(fPDFile);
+			files.add(fOffsetsFile);
+			files.add(fLengthsFile);
+			for (ExtendibleHashMap ehm : fEHMs.values()) {
+				files.add(ehm.getFile());
+			}
+			fIndices.collectFiles(files);
+			files.add(new File(fDBDir, ZDBClassTable.CLASSES_FILENAME));
+			files.add(new File(fDBDir, ZDBDataFile.SEGMENTS_FILENAME));
 
-		fPD.save(fPDFile);
+			// the old versions are moved aside, the writers below create new ones
+			for (File file : files) {
+				fJournal.moveAside(file);
+			}
 
-		long size = FileUtils.du(fDBDir) / (1024 * 1024);
+			logger.info("ZDB: flush(): writing EHM pages...");
 
-		logger.info("ZDB: flush(): done. Current DB size: %d MB.", size);
+			fEHMManager.flush();
+
+			logger.info("ZDB: flush(): writing EHM nodes...");
+
+			fOffsets.flush();
+			fLengths.flush();
+			for (ExtendibleHashMap ehm : fEHMs.values()) {
+				ehm.flush();
+			}
+			fIndices.flush();
+
+			fData.saveStats();
+			fClassTable.save();
+
+			logger.info("ZDB: flush(): writing indices and persistent objects...");
+
+			fPD.save(fPDFile);
+
+			// e.g. classes.bin is only written if it changed
+			for (File file : files) {
+				fJournal.restoreIfMissing(file);
+			}
+
+			if (EHMPageManager.ENABLE_FSYNC) {
+				fData.force();
+				for (File file : files) {
+					force(file);
+				}
+				forceDir(fDBDir);
+			}
 
+			fJournal.commit();
+
+		} catch (IOException e) {
+			// the journal stays, next startup rolls back to the previous commit
+			el.logException(e);
+			return false;
+		} finally {
+			fIdxLock.writeLock().unlock();
+		}
+		return true;
 	}
 
-	public synchronized void shutdown() {
+	/*
+	 * make the renames and new files durable, not supported on all platforms
+	 */
+	private static void forceDir(File aDir) {
+		try {
+			FileChannel channel = FileChannel.open(aDir.toPath(), StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			} finally {
+				safeClose(channel);
+			}
+		} catch (IOException e) {
+			logger.debug("ZDB: cannot force directory %s: %s", aDir, e.getMessage());
+		}
+	}
 
-		if (ENABLE_STATISTICS) {
-			printStats();
+	private static void force(File aFile) throws IOException {
+		if (!aFile.exists()) {
+			return;
+		}
+		RandomAccessFile raf = new RandomAccessFile(aFile, "rw");
+		try {
+			raf.getChannel().force(true);
+		} finally {
+			safeClose(raf);
 		}
+	}
 
-		flush();
-		baosToDiskThread.shutdown();
+	public void shutdown() {
+
+		stopCompaction();
+
+		synchronized (this) {
+			if (ENABLE_STATISTICS) {
+				printStats();
+			}
 
-		doUnLock();
+			flush();
+			baosToDiskThread.shutdown();
+			fData.close();
+			fIndices.close();
+			fEHMManager.close();
+
+			// closing rewrites the unchanged EHM header only
+			try {
+				fJournal.commit();
+			} catch (IOException e) {
+				el.logException(e);
+			}
+			fJournal.close();
+
+			doUnLock();
+		}
+	}
+
+	/*
+	 * 
+	 * Compaction (garbage collection of the data file)
+	 * 
+	 */
+
+	/**
+	 * Rewrite the live records of all segments containing dead records into
+	 * a fresh segment, then flush() and delete the old segment files. The
+	 * copying runs concurrently with loads and stores, only the bookkeeping
+	 * steps take the ZDB lock.
+	 * 
+	 * @return number of bytes reclaimed
+	 */
+	public long compact() {
+		long moved = fCompactor.compact(0.0);
+		if (moved < 0) {
+			return 0;
+		}
+		return doFlush() - moved;
+	}
+
+	public long getDataSize() {
+		return fData.getTotalBytes();
+	}
+
+	public long getDeadBytes() {
+		return fData.getDeadBytes();
+	}
+
+	/*
+	 * cache statistics, e.g. to size the JVM for a project
+	 */
+
+	ZDBJournal getJournal() {
+		return fJournal;
+	}
+
+	public long getCacheHits() {
+		return fCacheHits.get();
+	}
+
+	public long getCacheMisses() {
+		return fCacheMisses.get();
+	}
+
+	/**
+	 * @return number of misses served from the soft reference tier
+	 */
+	public long getSoftCacheHits() {
+		return fSoftCacheHits.get();
+	}
+
+	public long getCacheEvictions() {
+		return fCacheEvictions.get();
+	}
+
+	public int getCacheSize() {
+		return fCache.size();
+	}
+
+	/**
+	 * @return estimated heap footprint of the cached objects in bytes
+	 */
+	public synchronized long getCacheBytes() {
+		return fCache.getWeight();
+	}
+
+	public long getCacheMaxBytes() {
+		return fCacheMaxBytes;
+	}
+
+	/**
+	 * Record the statistics above as gauges, values are totals since this
+	 * ZDB was opened.
+	 */
+	public void sampleMetrics(ZamiaMetrics aMetrics) {
+		aMetrics.setGauge("zamia_zdb_cache_hits", "ZDB object cache hits", getCacheHits());
+		aMetrics.setGauge("zamia_zdb_cache_misses", "ZDB object cache misses", getCacheMisses());
+		aMetrics.setGauge("zamia_zdb_soft_cache_hits", "ZDB object cache misses served from soft references", getSoftCacheHits());
+		aMetrics.setGauge("zamia_zdb_cache_evictions", "ZDB object cache evictions", getCacheEvictions());
+		aMetrics.setGauge("zamia_zdb_cache_objects", "Objects in the ZDB object cache", getCacheSize());
+		aMetrics.setGauge("zamia_zdb_cache_bytes", "Estimated heap footprint of the ZDB object cache", getCacheBytes());
+		aMetrics.setGauge("zamia_zdb_cache_max_bytes", "Capacity of the ZDB object cache", getCacheMaxBytes());
+		aMetrics.setGauge("zamia_zdb_data_bytes", "Size of the ZDB data file", getDataSize());
+		aMetrics.setGauge("zamia_zdb_dead_bytes", "Unreferenced bytes in the ZDB data file", getDeadBytes());
+	}
+
+	private synchronized void startAutoCompaction() {
+
+		if (!ENABLE_AUTO_COMPACTION || fCompactor.isAborted()) {
+			return;
+		}
+		if (fCompactionThread != null && fCompactionThread.isAlive()) {
+			return;
+		}
+
+		long total = fData.getTotalBytes();
+		long dead = fData.getDeadBytes();
+		if (dead < AUTO_COMPACTION_MIN_BYTES || dead < total * AUTO_COMPACTION_RATIO) {
+			return;
+		}
+
+		fCompactionThread = new Thread("ZDB compaction - " + fOwner) {
+			@Override
+			public void run() {
+				fCompactor.compact(AUTO_COMPACTION_RATIO);
+			}
+		};
+		fCompactionThread.setDaemon(true);
+		fCompactionThread.start();
+	}
+
+	private void stopCompaction() {
+
+		fCompactor.setAborted(true);
+
+		Thread t;
+		synchronized (this) {
+			t = fCompactionThread;
+			fCompactionThread = null;
+		}
+		if (t != null) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				el.logException(e);
+			}
+		}
+	}
+
+	ZDBDataFile getDataFile() {
+		return fData;
+	}
+
+	ExtendibleHashMap getOffsets() {
+		return fOffsets;
+	}
+
+	ExtendibleHashMap getLengths() {
+		return fLengths;
+	}
+
+	EHMPageManager getEHMManager() {
+		return fEHMManager;
+	}
+
+	/**
+	 * Make the current segment immutable by starting a new one, so it can be
+	 * compacted as well.
+	 */
+	synchronized void rollDataFile() {
+		fLength = fData.roll(fLength);
+	}
+
+	/**
+	 * Append raw, already serialized records at the end of the data file.
+	 * Offsets are not touched yet since the data is not on disk yet.
+	 * 
+	 * @return latch that is released once all records have been written
+	 */
+	synchronized CountDownLatch appendRaw(long[] aIds, long[] aAddresses, byte[][] aData, long[] aNewAddresses) {
+
+		for (int i = 0; i < aIds.length; i++) {
+
+			if (fOffsets.get(aIds[i]) != aAddresses[i]) {
+				// object has been re-stored or deleted in the meantime
+				aNewAddresses[i] = -1;
+				continue;
+			}
+
+			byte[] data = aData[i];
+
+			BAOS baos = new BAOS(data.length);
+			baos.write(data, 0, data.length);
+			baos.id = 0;
+			baos.offset = fData.allocate(fLength, data.length);
+			baosToDiskThread.submit(baos);
+			fLength = baos.offset + data.length;
+
+			aNewAddresses[i] = baos.offset;
+		}
+
+		return baosToDiskThread.sync();
+	}
+
+	/**
+	 * Point records copied by appendRaw() to their new location, unless they
+	 * have been changed in the meantime.
+	 */
+	synchronized void commitRaw(long[] aIds, long[] aAddresses, long[] aNewAddresses, long[] aLengths) {
+
+		for (int i = 0; i < aIds.length; i++) {
+
+			long newAddress = aNewAddresses[i];
+			if (newAddress < 0) {
+				continue;
+			}
+
+			if (fOffsets.get(aIds[i]) == aAddresses[i]) {
+				fOffsets.put(aIds[i], newAddress);
+			} else {
+				fData.markDead(newAddress, aLengths[i]);
+			}
+		}
+	}
+
+	/**
+	 * Delete the given segments, which no longer contain live records, once
+	 * the offsets of their moved records have been committed by flush().
+	 * Committing here could make a build's half stored objects the rollback
+	 * state.
+	 */
+	synchronized void retireSegments(ArrayList<Integer> aSegments) {
+		for (int seg : aSegments) {
+			if (!fRetiredSegments.contains(seg)) {
+				fRetiredSegments.add(seg);
+			}
+		}
+	}
+
+	synchronized boolean isRetired(int aSegment) {
+		return fRetiredSegments.contains(aSegment);
+	}
+
+	/*
+	 * after commit(), the committed offsets do not point into retired
+	 * segments anymore
+	 */
+	private long dropRetiredSegments() {
+
+		if (fRetiredSegments.isEmpty()) {
+			return 0;
+		}
+
+		long freed = 0;
+		for (int seg : fRetiredSegments) {
+			freed += fData.deleteSegment(seg);
+		}
+		fRetiredSegments.clear();
+
+		try {
+			fJournal.moveAside(new File(fDBDir, ZDBDataFile.SEGMENTS_FILENAME));
+			fData.saveStats();
+		} catch (IOException e) {
+			el.logException(e);
+		}
+
+		logger.info("ZDB: flush(): deleted retired segments, %d KB.", freed / 1024);
+
+		return freed;
 	}
 
 	public synchronized void update(long aId, Object aObject) {
@@ -263,25 +889,8 @@ public class ZDB {
 		if (entry != null) {
 			entry.setDirty(true);
 			entry.setObject(aObject);
-
-			if (entry.getPrev() != null) {
-				if (entry.getNext() != null) {
-					entry.getNext().setPrev(entry.getPrev());
-				} else {
-					fCacheTail = entry.getPrev();
-				}
-				entry.getPrev().setNext(entry.getNext());
-
-				entry.setPrev(null);
-
-				entry.setNext(fCacheHead);
-				fCacheHead.setPrev(entry);
-
-				fCacheHead = entry;
-			}
-
 		} else {
-			storeInMem(aId, aObject, true);
+			storeInMem(aId, aObject, true, -1);
 		}
 	}
 
@@ -338,7 +947,7 @@ public class ZDB {
 			((ZDBIIDSaver) aObj).setDBID(id);
 		}
 
-		storeInMem(id, aObj, true);
+		storeInMem(id, aObj, true, -1);
 
 		fCurrentlyStoring.remove(aObj);
 		return id;
@@ -364,7 +973,10 @@ public class ZDB {
 		return dbid;
 	}
 
-	private synchronized void storeInMem(long aId, Object aObj, boolean aMarkDirty) {
+	/**
+	 * @param aLength serialized length of aObj if known, -1 otherwise
+	 */
+	private synchronized void storeInMem(long aId, Object aObj, boolean aMarkDirty, long aLength) {
 
 		// already in memory cache?
 
@@ -380,48 +992,47 @@ public class ZDB {
 
 		// put it into memory cache
 
+		fSoftCache.remove(aId);
+
 		entry = new ZDBCacheEntry(aId, aObj, aMarkDirty);
+		entry.setWeight(weigh(aLength));
 
-		fCache.put(aId, entry);
+		fCache.put(entry);
 
-		entry.setNext(fCacheHead);
-		if (fCacheHead != null) {
-			fCacheHead.setPrev(entry);
-		}
-		fCacheHead = entry;
-		if (fCacheTail == null) {
-			fCacheTail = entry;
-		}
-		int nCachedItems = fCache.size();
-
-		if (nCachedItems > CACHE_MAX_SIZE) {
+		while (fCache.size() > 1 && (fCache.getWeight() > fCacheMaxBytes || (CACHE_MAX_SIZE > 0 && fCache.size() > CACHE_MAX_SIZE))) {
+			fCacheEvictions.incrementAndGet();
 			evict();
 		}
 	}
 
 	private synchronized void evict() {
 
-		long id = fCacheTail.getId();
-
-		ZDBCacheEntry evictedEntry = fCache.remove(id);
+		ZDBCacheEntry evictedEntry = fCache.evict();
 
 		if (evictedEntry == null) {
-			if (!fCacheTail.isDeleted()) {
-				System.out.printf("ZDB: Internal error: id %d was not part of cache.\n", id);
-			}
-		} 
-		
-		fCacheTail = fCacheTail.getPrev();
-		if (fCacheTail != null) {
-			fCacheTail.setNext(null);
-		} else {
-			fCacheHead = null;
+			return;
 		}
-		
-		if (evictedEntry != null && evictedEntry.isDirty()) {
+
+		if (evictedEntry.isDirty()) {
 			storeOnDisk(evictedEntry);
 		}
-		
+
+		// the object is on disk (or in the writer queue) now, so it can be dropped any time
+		if (ENABLE_SOFT_CACHE) {
+			fSoftCache.put(evictedEntry.getId(), evictedEntry.getObject());
+		}
+	}
+
+	/**
+	 * Estimate the heap footprint of an object from its serialized length.
+	 */
+	private int weigh(long aLength) {
+		long length = aLength > 0 ? aLength : fAvgRecordLength;
+		return (int) Math.min(Integer.MAX_VALUE, CACHE_ENTRY_OVERHEAD + CACHE_HEAP_FACTOR * length);
+	}
+
+	private void recordLength(long aLength) {
+		fAvgRecordLength += (aLength - fAvgRecordLength) / 64;
 	}
 
 	//It may happen that the same id entry is evicted twice so that second eviction happens while
@@ -478,15 +1089,29 @@ public class ZDB {
 
 		try {
 			
-			ObjectOutputStream serializer = new ObjectOutputStream(ENABLE_COMPRESSION ? new LevelGZIPOutputStream(baos, Deflater.BEST_SPEED) : baos);
+			ObjectOutputStream serializer = fCodec.createOutputStream(ENABLE_COMPRESSION ? new LevelGZIPOutputStream(baos, Deflater.BEST_SPEED) : baos);
 			serializer.writeObject(obj);
 			serializer.close();
 			
 			//logger.info ("ZDB: File for %d is '%s'", id, dataFile);
 
-			fOffsets.put(baos.id = id, baos.offset = fLength);
+			long size = baos.size();
+
+			long oldAddress = fOffsets.get(id);
+			if (oldAddress >= 0) {
+				long oldLength = fLengths.get(id);
+				if (oldLength > 0) {
+					fData.markDead(oldAddress, oldLength);
+				}
+			}
+
+			fOffsets.put(baos.id = id, baos.offset = fData.allocate(fLength, size));
+			fLengths.put(id, size);
 			baosToDiskThread.submit(baos);
-			fLength += baos.size();
+			fLength = baos.offset + size;
+
+			recordLength(size);
+			fCache.setWeight(aEntry, weigh(size));
 			
 		} catch (IOException e) {
 			el.logException(e);
@@ -503,33 +1128,24 @@ public class ZDB {
 	
 	BaosToDiskThread baosToDiskThread;
 	BAOS END_OF_STREAM = new BAOS(0); // null is dreadfully forbidden in the BlockingQueue
+
+	static class SyncMarker extends BAOS {
+		final CountDownLatch fLatch = new CountDownLatch(1);
+		SyncMarker() {super(0);}
+	}
 	
 	//TODO: a single static thread, started when first ZDB is created and disposed as  
 	// the last zdb shuts down, could serve all ZDBs, provided that all data.bin files
 	// are located on the same disk (so that concurrence between writers does not make sense).
 	class BaosToDiskThread extends Thread {
 
-		private final RandomAccessFile raf;
-
 		private final EvictingSet fCurrentlyEvicting; // We should not (re)load the value until it was saved. This set keeps the save queue.
 
 		BaosToDiskThread() {
-			super("BaosToDisk - " + fOwner);
-			raf = createNewFile();
-			fCurrentlyEvicting = new EvictingSet();
-			fLength = fDataFile.length();
-			start();
-		}
-
-		private RandomAccessFile createNewFile() {
-			try {
-				return new RandomAccessFile(fDataFile, "rw");
-			} catch (FileNotFoundException e) {
-				// if we cannot create files in temp directory,
-				// then just crushing zamia with NPE is not a that bad thing
-				el.logException(e);
-				return null;
-			}
+			super("BaosToDisk - " + fOwner);
+			fCurrentlyEvicting = new EvictingSet();
+			fLength = fData.getEndAddress();
+			start();
 		}
 
 		public void submit(BAOS baos) {
@@ -545,7 +1161,15 @@ public class ZDB {
 			try {
 				join();
 			} catch (InterruptedException e) { el.logException(e); }
-			safeClose(raf);
+		}
+
+		/**
+		 * @return latch released once everything submitted so far is on disk
+		 */
+		public CountDownLatch sync() {
+			SyncMarker marker = new SyncMarker();
+			submit(marker);
+			return marker.fLatch;
 		}
 		
 		private BlockingQueue<BAOS> input = new LinkedBlockingQueue<BAOS>(10);
@@ -554,11 +1178,7 @@ public class ZDB {
 		private Collection<Long> ids = new ArrayList<Long>();
 		
 		private void flush() throws IOException {
-			synchronized (raf) {
-				assert offset == raf.length() : "specified offset " + offset + " is different from file size " + raf.length();
-				raf.seek(offset); // seek can be avoided if we ensure that no seeks were done for other purposes
-				raf.write(buf.getBytes(), 0, buf.size());
-			}
+			fData.write(offset, buf.getBytes(), buf.size());
 
 			synchronized (fCurrentlyEvicting) {
 				for (Long id : ids) {
@@ -579,17 +1199,33 @@ public class ZDB {
 					BAOS baos = input.take();
 					
 					if (baos == END_OF_STREAM) {
-						if (!ids.isEmpty()) {
+						if (buf.size() > 0) {
 							flush();
 						}
 						break;
 					}
+
+					if (baos instanceof SyncMarker) {
+						if (buf.size() > 0) {
+							flush();
+						}
+						((SyncMarker) baos).fLatch.countDown();
+						continue;
+					}
+
+					// a series must be contiguous and within one segment
+					if (buf.size() > 0 && baos.offset != offset + buf.size()) {
+						flush();
+					}
 					
-					if (ids.isEmpty()) {
+					if (buf.size() == 0) {
 						offset = baos.offset; // remember location of the first chunk of the series
 					}
 					
-					ids.add(baos.id);
+					// raw records written by compaction are not part of the evicting set
+					if (baos.id != 0) {
+						ids.add(baos.id);
+					}
 					baos.writeTo(buf);
 					if (buf.size() > FLUSH_OUT_WHEN)
 						flush();
@@ -602,60 +1238,6 @@ public class ZDB {
 			
 		}
 
-		public Object readObject(long aOffset) throws ClassNotFoundException, IOException {
-
-			synchronized (raf) {
-				raf.seek(aOffset);
-				InputStream rafIs = new BufferedInputStream(new InputStream() {
-					public int read() throws IOException {
-						throw new IOException("not implemneted, sorry"); // tell me if this happens
-						//return raf.read();
-					}
-
-					@Override
-					public int read(byte[] b, int off, int len) throws IOException {
-						return raf.read(b, off, len);
-					}
-				});
-
-				if (ENABLE_COMPRESSION)
-					rafIs = new GZIPInputStream(rafIs);
-
-				return new ZDBInputStream(rafIs).readObject();
-			}
-		}
-
-		public void exportTo(DataOutputStream aOutputStream) throws IOException {
-
-			synchronized (raf) {
-				raf.seek(0);
-
-				byte buffer[] = new byte[BUFSIZE];
-
-				int n;
-				while ((n = raf.read(buffer)) > 0) {
-					aOutputStream.write(buffer, 0, n);
-				}
-			}
-		}
-
-		public void importFrom(DataInputStream aInputStream) throws IOException {
-
-			synchronized (raf) {
-				raf.seek(0);
-
-				byte buffer[] = new byte[BUFSIZE];
-
-				int n;
-				do {
-					n = aInputStream.read(buffer);
-					if (n > 0) {
-						raf.write(buffer, 0, n);
-					}
-				} while (n > 0);
-			}
-		}
-
 		public void sanityCheck() {
 			assert !Thread.holdsLock(fCurrentlyEvicting);
 			assert fCurrentlyEvicting.isEmpty() :
@@ -673,73 +1255,407 @@ public class ZDB {
 		}
 	}
 	
-	public synchronized Object load(long aId) {
+	public Object load(long aId) {
 
 		if (aId == 0) {
 			return null;
 		}
 
-		// look for that object in memory cache
+		// look for that object in memory cache, this does not take the ZDB monitor
 
 		ZDBCacheEntry entry = fCache.get(aId);
 
 		//logger.debug ("ZDB: loading %d", aId);
 
-		Object obj = null;
 		if (entry != null) {
+			fCacheHits.incrementAndGet();
+			return entry.getObject();
+		}
+
+		fCacheMisses.incrementAndGet();
 
-			obj = entry.getObject();
+		return loadMiss(aId);
+	}
 
-			//logger.debug ("ZDB: loading %d, was in ram: %s", aId, obj);
+	private Object loadMiss(long aId) {
 
-			if (entry.getPrev() != null) {
-				if (entry.getNext() != null) {
-					entry.getNext().setPrev(entry.getPrev());
-				} else {
-					fCacheTail = entry.getPrev();
+		while (true) {
+
+			long address, length;
+			ZDBDataFile.Segment segment;
+
+			synchronized (this) {
+
+				// someone else may have loaded it while we were waiting for the lock
+
+				ZDBCacheEntry entry = fCache.get(aId);
+				if (entry != null) {
+					return entry.getObject();
 				}
-				entry.getPrev().setNext(entry.getNext());
 
-				entry.setPrev(null);
+				Object obj = baosToDiskThread.getCurrentlyEvicting(aId);
+				if (obj != null) {
+					//logger.debug ("ZDB: loading %d, was in evicting: %s", aId, obj);
+					return obj;
+				}
+
+				// we didn't find it in memory, so load it from disk
+
+				address = fOffsets.get(aId);
+
+				if (address < 0) {
+					// invalid id
+					return null;
+				}
+
+				length = fLengths.get(aId);
+
+				obj = fSoftCache.remove(aId);
+				if (obj != null) {
+					fSoftCacheHits.incrementAndGet();
+					storeInMem(aId, obj, false, length);
+					return obj;
+				}
+
+				try {
+					segment = fData.pin(address);
+				} catch (IOException e) {
+					el.logException(e);
+					return null;
+				}
+			}
+
+			// read and deserialize without holding the ZDB monitor so cache misses do not serialize
+
+			Object obj = null;
+			try {
+				obj = readObject(segment, address, length);
+			} catch (IOException e) {
+				logger.error("ZDB: IOException while reading element %s (file: '%s')", aId, fData.getSegmentFile(ZDBDataFile.getSegment(address)).getAbsolutePath());
+				el.logException(e);
+			} catch (ClassNotFoundException e) {
+				el.logException(e);
+			} finally {
+				fData.unpin(segment);
+			}
+
+			if (obj == null) {
+				return null;
+			}
+
+			synchronized (this) {
+
+				ZDBCacheEntry entry = fCache.get(aId);
+				if (entry != null) {
+					return entry.getObject();
+				}
 
-				entry.setNext(fCacheHead);
-				fCacheHead.setPrev(entry);
+				if (fOffsets.get(aId) != address) {
+					// re-stored, moved or deleted while we were reading it
+					continue;
+				}
 
-				fCacheHead = entry;
+				if (length > 0) {
+					recordLength(length);
+				}
+				storeInMem(aId, obj, false, length);
 			}
+
 			return obj;
 		}
+	}
+
+	private Object readObject(ZDBDataFile.Segment aSegment, long aAddress, long aLength) throws ClassNotFoundException, IOException {
+
+		if (aLength <= 0) {
+			// record predates length tracking
+			InputStream is = fData.openStream(aSegment, aAddress);
+			if (ENABLE_COMPRESSION) {
+				is = new GZIPInputStream(is);
+			}
+			return decode(is);
+		}
 
-		obj = baosToDiskThread.getCurrentlyEvicting(aId);
-		if (obj != null) {
-			//logger.debug ("ZDB: loading %d, was in evicting: %s", aId, obj);
-			return obj;
+		ByteBuffer buf = fData.read(aSegment, aAddress, (int) aLength);
+		try {
+			return decode(buf);
+		} finally {
+			fData.release(buf);
+		}
+	}
+
+	private Object decode(ByteBuffer aBuf) throws ClassNotFoundException, IOException {
+		InputStream is = new ByteBufferInputStream(aBuf);
+		if (ENABLE_COMPRESSION) {
+			is = new GZIPInputStream(is);
+		}
+		return decode(is);
+	}
+
+	/*
+	 * 
+	 * bulk loading
+	 * 
+	 */
+
+	private static class BulkRecord implements Comparable<BulkRecord> {
+
+		final int fIdx;
+
+		final long fId, fAddress, fLength;
+
+		final ZDBDataFile.Segment fSegment;
+
+		Object fObject;
+
+		BulkRecord(int aIdx, long aId, long aAddress, long aLength, ZDBDataFile.Segment aSegment) {
+			fIdx = aIdx;
+			fId = aId;
+			fAddress = aAddress;
+			fLength = aLength;
+			fSegment = aSegment;
+		}
+
+		public int compareTo(BulkRecord aOther) {
+			return fAddress < aOther.fAddress ? -1 : (fAddress == aOther.fAddress ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Reads a run of neighbouring records in one go and deserializes them.
+	 */
+	private class BulkLoadJob implements Callable<Object> {
+
+		private final List<BulkRecord> fRecords;
+
+		BulkLoadJob(List<BulkRecord> aRecords) {
+			fRecords = aRecords;
 		}
 
-		// we didn't find it in memory, so load it from disk
+		public Object call() {
 
-		long offset = fOffsets.get(aId);
+			BulkRecord first = fRecords.get(0);
+			BulkRecord last = fRecords.get(fRecords.size() - 1);
 
-		if (offset < 0) {
-			// invalid id
+			ByteBuffer buf = null;
+			try {
+				buf = fData.read(first.fSegment, first.fAddress, (int) (last.fAddress + last.fLength - first.fAddress));
+
+				for (BulkRecord record : fRecords) {
+					ByteBuffer rb = buf.duplicate();
+					int offset = (int) (record.fAddress - first.fAddress);
+					rb.limit(offset + (int) record.fLength);
+					rb.position(offset);
+					try {
+						record.fObject = decode(rb.slice());
+					} catch (Exception e) {
+						// left to load() which will report it
+					}
+				}
+			} catch (IOException e) {
+				el.logException(e);
+			} finally {
+				if (buf != null) {
+					fData.release(buf);
+				}
+			}
 			return null;
 		}
+	}
+
+	private static ForkJoinPool fLoadPool = null;
+
+	private static synchronized ForkJoinPool getLoadPool() {
+		if (fLoadPool == null) {
+			fLoadPool = new ForkJoinPool(LOAD_THREADS);
+		}
+		return fLoadPool;
+	}
+
+	/**
+	 * Load a batch of objects. Cache misses are read in file order, in
+	 * chunks of neighbouring records, and deserialized in parallel before
+	 * they are published into the cache. Use this instead of calling
+	 * load() in a loop when walking large structures.
+	 * 
+	 * @return the objects in the order of aIds, null for invalid ids
+	 */
+	public Object[] loadAll(long[] aIds) {
+
+		int n = aIds.length;
+		Object[] res = new Object[n];
+
+		int nMisses = 0;
+		for (int i = 0; i < n; i++) {
+			long id = aIds[i];
+			if (id == 0) {
+				continue;
+			}
+			ZDBCacheEntry entry = fCache.get(id);
+			if (entry != null) {
+				fCacheHits.incrementAndGet();
+				res[i] = entry.getObject();
+			} else {
+				nMisses++;
+			}
+		}
+
+		// the monitor check avoids deadlocks with workers should decoding need ZDB
+		if (nMisses >= LOAD_BULK_MIN && !Thread.holdsLock(this)) {
+			loadMisses(aIds, res, nMisses);
+		}
+
+		// whatever is left: small batches, legacy records, races with store/delete
+		for (int i = 0; i < n; i++) {
+			if (res[i] == null && aIds[i] != 0) {
+				res[i] = load(aIds[i]);
+			}
+		}
+
+		return res;
+	}
+
+	private void loadMisses(long[] aIds, Object[] aRes, int aNumMisses) {
+
+		ArrayList<BulkRecord> records = new ArrayList<BulkRecord>(aNumMisses);
 
 		try {
-			obj = baosToDiskThread.readObject(offset);
+			synchronized (this) {
+
+				for (int i = 0; i < aIds.length; i++) {
+
+					long id = aIds[i];
+					if (id == 0 || aRes[i] != null) {
+						continue;
+					}
+
+					ZDBCacheEntry entry = fCache.get(id);
+					if (entry != null) {
+						aRes[i] = entry.getObject();
+						continue;
+					}
+
+					if (baosToDiskThread.getCurrentlyEvicting(id) != null) {
+						continue;
+					}
+
+					long address = fOffsets.get(id);
+					long length = address >= 0 ? fLengths.get(id) : -1;
+					if (length <= 0 || length > LOAD_CHUNK_SIZE) {
+						continue;
+					}
+
+					Object obj = fSoftCache.remove(id);
+					if (obj != null) {
+						fCacheMisses.incrementAndGet();
+						fSoftCacheHits.incrementAndGet();
+						storeInMem(id, obj, false, length);
+						aRes[i] = obj;
+						continue;
+					}
+
+					records.add(new BulkRecord(i, id, address, length, fData.pin(address)));
+				}
+			}
+
+			Collections.sort(records);
+
+			// group into runs of close records within one segment
+
+			ArrayList<BulkLoadJob> jobs = new ArrayList<BulkLoadJob>();
+			int start = 0;
+			for (int i = 1; i <= records.size(); i++) {
+				if (i < records.size()) {
+					BulkRecord first = records.get(start);
+					BulkRecord prev = records.get(i - 1);
+					BulkRecord record = records.get(i);
+					if (record.fSegment == first.fSegment && record.fAddress - (prev.fAddress + prev.fLength) <= LOAD_CHUNK_GAP && record.fAddress + record.fLength - first.fAddress <= LOAD_CHUNK_SIZE) {
+						continue;
+					}
+				}
+				if (i > start) {
+					jobs.add(new BulkLoadJob(records.subList(start, i)));
+				}
+				start = i;
+			}
+
+			fCacheMisses.addAndGet(records.size());
+
+			if (LOAD_THREADS > 1) {
+				getLoadPool().invokeAll(jobs);
+			} else {
+				for (BulkLoadJob job : jobs) {
+					job.call();
+				}
+			}
+
+			// publish
+
+			synchronized (this) {
+				for (BulkRecord record : records) {
+
+					if (record.fObject == null) {
+						continue;
+					}
+
+					ZDBCacheEntry entry = fCache.get(record.fId);
+					if (entry != null) {
+						aRes[record.fIdx] = entry.getObject();
+						continue;
+					}
+
+					if (fOffsets.get(record.fId) != record.fAddress) {
+						// re-stored, moved or deleted while we were reading it
+						continue;
+					}
+
+					recordLength(record.fLength);
+					storeInMem(record.fId, record.fObject, false, record.fLength);
+					aRes[record.fIdx] = record.fObject;
+				}
+			}
+
 		} catch (IOException e) {
-			logger.error("ZDB: IOException while reading element %s (file: '%s')", aId, fDataFile.getAbsolutePath());
-			el.logException(e);
-		} catch (ClassNotFoundException e) {
 			el.logException(e);
+		} finally {
+			for (BulkRecord record : records) {
+				fData.unpin(record.fSegment);
+			}
 		}
-		
-		if (obj != null) {
+	}
 
-			storeInMem(aId, obj, false);
+	/**
+	 * Deserialize a record, picking the codec it was written with by its
+	 * first byte.
+	 */
+	Object decode(InputStream aIn) throws IOException, ClassNotFoundException {
+
+		PushbackInputStream in = new PushbackInputStream(aIn, 1);
+
+		int marker = in.read();
+		if (marker < 0) {
+			throw new EOFException("ZDB: empty record");
+		}
+		in.unread(marker);
+
+		return getCodec(marker).createInputStream(in, this).readObject();
+	}
+
+	ZDBCodec getCodec(int aMarker) throws IOException {
+		for (ZDBCodec codec : fCodecs) {
+			if (codec.getMarker() == aMarker) {
+				return codec;
+			}
 		}
+		throw new StreamCorruptedException(String.format("ZDB: unknown record marker %02X", aMarker));
+	}
+
+	ZDBCodec getCodec() {
+		return fCodec;
+	}
 
-		return obj;
+	ZDBCodec[] getCodecs() {
+		return fCodecs;
 	}
 
 	public synchronized void delete(long aId) {
@@ -755,9 +1671,17 @@ public class ZDB {
 			entry.setDirty(false);
 			entry.setDeleted(true); 
 		}
-		
-		
-		fOffsets.delete(aId);
+		fSoftCache.remove(aId);
+
+		long address = fOffsets.get(aId);
+		if (address >= 0) {
+			long length = fLengths.get(aId);
+			if (length > 0) {
+				fData.markDead(address, length);
+			}
+			fOffsets.delete(aId);
+			fLengths.delete(aId);
+		}
 	}
 
 	/*
@@ -788,15 +1712,15 @@ public class ZDB {
 	 * 
 	 */
 
-	public synchronized void putIdx(String aIdx, String aKey, long aId) {
-		HashMapArray<String, Long> idx = fPD.getIdx(aIdx);
-
-		if (idx == null) {
-			idx = new HashMapArray<String, Long>();
-			fPD.putIdx(aIdx, idx);
+	public void putIdx(String aIdx, String aKey, long aId) {
+		fIdxLock.writeLock().lock();
+		try {
+			fIndices.getOrCreate(aIdx).put(aKey, aId);
+		} catch (IOException e) {
+			el.logException(e);
+		} finally {
+			fIdxLock.writeLock().unlock();
 		}
-
-		idx.put(aKey, aId);
 	}
 
 	public void putIdxObj(String aIdx, String aId, Object aObj) {
@@ -804,7 +1728,7 @@ public class ZDB {
 		putIdx(aIdx, aId, id);
 	}
 
-	public <T> void index(String primaryIdx, String name, T value) {
+	public synchronized <T> void index(String primaryIdx, String name, T value) {
 		long collectionDBID = getIdx(primaryIdx, name);
 		if (collectionDBID != 0) {
 			HashSetArray<T> collection = (HashSetArray<T>) load(collectionDBID);
@@ -822,23 +1746,33 @@ public class ZDB {
 	}
 	
 	
-	public synchronized boolean isIdxKey(String aIdx, String aKey) {
-		HashMapArray<String, Long> idx = fPD.getIdx(aIdx);
-		if (idx == null)
-			return false;
-		return idx.containsKey(aKey);
+	public boolean isIdxKey(String aIdx, String aKey) {
+		fIdxLock.readLock().lock();
+		try {
+			ZDBStringIndex idx = fIndices.get(aIdx);
+			if (idx == null)
+				return false;
+			return idx.containsKey(aKey);
+		} finally {
+			fIdxLock.readLock().unlock();
+		}
 	}
 
-	public synchronized long getIdx(String aIdx, String aKey) {
-		HashMapArray<String, Long> idx = fPD.getIdx(aIdx);
-		if (idx == null)
-			return 0;
+	public long getIdx(String aIdx, String aKey) {
+		fIdxLock.readLock().lock();
+		try {
+			ZDBStringIndex idx = fIndices.get(aIdx);
+			if (idx == null)
+				return 0;
 
-		Long id = idx.get(aKey);
-		if (id == null) {
-			return 0;
+			long id = idx.get(aKey);
+			if (id < 0) {
+				return 0;
+			}
+			return id;
+		} finally {
+			fIdxLock.readLock().unlock();
 		}
-		return id.longValue();
 	}
 
 	public Object getIdxObj(String aIdx, String aKey) {
@@ -849,34 +1783,48 @@ public class ZDB {
 		return load(id);
 	}
 
-	public synchronized int getIdxNumEntries(String aIdx) {
-		HashMapArray<String, Long> idx = fPD.getIdx(aIdx);
-		if (idx == null)
-			return 0;
-		return idx.size();
+	public int getIdxNumEntries(String aIdx) {
+		fIdxLock.readLock().lock();
+		try {
+			ZDBStringIndex idx = fIndices.get(aIdx);
+			if (idx == null)
+				return 0;
+			return idx.size();
+		} finally {
+			fIdxLock.readLock().unlock();
+		}
 	}
 
-	public synchronized Object getIdxObj(String aIdx, int aI) {
-		HashMapArray<String, Long> idx = fPD.getIdx(aIdx);
-		if (idx == null) {
-			return null;
-		}
+	public Object getIdxObj(String aIdx, int aI) {
+		long id;
+		fIdxLock.readLock().lock();
+		try {
+			ZDBStringIndex idx = fIndices.get(aIdx);
+			if (idx == null) {
+				return null;
+			}
 
-		Long idL = idx.get(aI);
-		if (idL == null) {
-			return null;
+			id = idx.get(aI);
+			if (id < 0) {
+				return null;
+			}
+		} finally {
+			fIdxLock.readLock().unlock();
 		}
-
-		long id = idL.longValue();
 		return load(id);
 	}
 
-	public synchronized void delIdx(String aIdx, String aKey) {
-		HashMapArray<String, Long> idx = fPD.getIdx(aIdx);
-		if (idx == null)
-			return;
+	public void delIdx(String aIdx, String aKey) {
+		fIdxLock.writeLock().lock();
+		try {
+			ZDBStringIndex idx = fIndices.get(aIdx);
+			if (idx == null)
+				return;
 
-		idx.remove(aKey);
+			idx.remove(aKey);
+		} finally {
+			fIdxLock.writeLock().unlock();
+		}
 	}
 
 	public void delIdxObj(String aIdx, String aKey) {
@@ -888,8 +1836,15 @@ public class ZDB {
 		delIdx(aIdx, aKey);
 	}
 
-	public synchronized void delAllIdx(String aIdx) {
-		fPD.delIdx(aIdx);
+	public void delAllIdx(String aIdx) {
+		fIdxLock.writeLock().lock();
+		try {
+			fIndices.remove(aIdx);
+		} catch (IOException e) {
+			el.logException(e);
+		} finally {
+			fIdxLock.writeLock().unlock();
+		}
 	}
 
 	/*
@@ -944,6 +1899,12 @@ public class ZDB {
 
 		flush();
 
+		// records outside data.bin have addresses importFromFile() cannot restore
+		if (!fData.isSingleSegment()) {
+			logger.error("ZDB: export(): %s uses more than one data segment, refusing to export it to %s.", fDBDir.getAbsolutePath(), aFileName);
+			return;
+		}
+
 		BufferedOutputStream out = null;
 		try {
 
@@ -1033,7 +1994,7 @@ public class ZDB {
 			logger.info("ZDB: export(): exporting data objects...");
 
 			try {
-				baosToDiskThread.exportTo(dout);
+				fData.exportTo(dout);
 			} catch (IOException t) {
 				el.logException(t);
 			}
@@ -1143,7 +2104,13 @@ public class ZDB {
 
 			ObjectInputStream ois = new ObjectInputStream(din);
 
-			fPD = (ZDBPersistentData) ois.readObject();
+			ZDBPersistentData pd = (ZDBPersistentData) ois.readObject();
+			fIdxLock.writeLock().lock();
+			try {
+				fPD = pd;
+			} finally {
+				fIdxLock.writeLock().unlock();
+			}
 
 			logger.info("ZDB: import(): importing indices and persistent objects...done.");
 
@@ -1154,7 +2121,7 @@ public class ZDB {
 			logger.info("ZDB: import(): importing data objects...");
 
 			try {
-				baosToDiskThread.importFrom(din);
+				fData.importFrom(din);
 			} catch (IOException t) {
 				el.logException(t);
 			}
@@ -1325,15 +2292,22 @@ public class ZDB {
 	}
 
 	public ObjectInputStream createZDBObjectInputStream(File aFile) throws IOException {
-		return new ZDBInputStream(openInputStream(aFile));
+		return new ZDBInputStream(openInputStream(aFile), this);
 	}
 
-	private class ZDBInputStream extends ObjectInputStream {
-		private ZDBInputStream(InputStream in) throws IOException {
+	/**
+	 * Objects read through this stream find their ZDB via getZDBFromStream(),
+	 * public so objects from elsewhere (e.g. the parse cache) can be read
+	 * for a ZDB as well.
+	 */
+	public static class ZDBInputStream extends ObjectInputStream {
+		private final ZDB fZDB;
+		public ZDBInputStream(InputStream in, ZDB aZDB) throws IOException {
 			super(in);
+			fZDB = aZDB;
 		}
 		private ZDB getZDB() {
-			return ZDB.this;
+			return fZDB;
 		}
 	}
 
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+/**
+ * In-memory object cache in front of the ZDB data file.
+ *
+ * Implementations must allow get() to be called without holding the ZDB
+ * monitor; all other operations are only ever called while ZDB is locked.
+ *
+ */
+public interface ZDBCache {
+
+	/**
+	 * Look up an entry and mark it as recently used.
+	 *
+	 * @return the cached entry or null
+	 */
+	public ZDBCacheEntry get(long aId);
+
+	public void put(ZDBCacheEntry aEntry);
+
+	public ZDBCacheEntry remove(long aId);
+
+	/**
+	 * Pick a victim according to the replacement policy and remove it from
+	 * the cache.
+	 *
+	 * @return the evicted entry or null if the cache is empty
+	 */
+	public ZDBCacheEntry evict();
+
+	/**
+	 * Change the weight of aEntry, keeping the cache total consistent if
+	 * the entry is currently cached.
+	 */
+	public void setWeight(ZDBCacheEntry aEntry, int aWeight);
+
+	public int size();
+
+	/**
+	 * @return sum of the weights of all cached entries
+	 */
+	public long getWeight();
+
+	public boolean isEmpty();
+
+}
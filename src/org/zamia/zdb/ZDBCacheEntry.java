@@ -14,7 +14,7 @@ package org.zamia.zdb;
  */
 public class ZDBCacheEntry {
 
-	private Object fObject;
+	private volatile Object fObject;
 
 	private ZDBCacheEntry fPrev, fNext;
 
@@ -24,6 +24,14 @@ public class ZDBCacheEntry {
 
 	private boolean fDeleted = false;
 
+	// CLOCK replacement support, see ZDBClockCache
+	private volatile boolean fReferenced = false;
+
+	private int fSlot = -1;
+
+	// estimated heap footprint in bytes, see ZDB.weigh()
+	private int fWeight = 0;
+
 	public ZDBCacheEntry(long aId, Object aObject, boolean aDirty) {
 		fId = aId;
 		fObject = aObject;
@@ -73,4 +81,28 @@ public class ZDBCacheEntry {
 	public boolean isDeleted() {
 		return fDeleted;
 	}
+
+	public boolean isReferenced() {
+		return fReferenced;
+	}
+
+	public void setReferenced(boolean aReferenced) {
+		fReferenced = aReferenced;
+	}
+
+	int getSlot() {
+		return fSlot;
+	}
+
+	void setSlot(int aSlot) {
+		fSlot = aSlot;
+	}
+
+	public int getWeight() {
+		return fWeight;
+	}
+
+	void setWeight(int aWeight) {
+		fWeight = aWeight;
+	}
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectStreamClass;
+import java.io.StreamCorruptedException;
+import java.util.HashMap;
+
+import org.zamia.ExceptionLogger;
+import org.zamia.ZamiaLogger;
+
+/**
+ * Registered class ids used by ZDBCompactCodec instead of full class
+ * descriptors. Ids are handed out on first use and never change, the table
+ * is persisted in classes.bin along with the serialVersionUID of each class
+ * so records of classes which have changed since are rejected just like
+ * plain java serialization would.
+ *
+ * Lookups by id do not lock, they happen concurrently during loads.
+ *
+ */
+class ZDBClassTable {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	public final static String CLASSES_FILENAME = "classes.bin";
+
+	public final static int CLASSES_VERSION = 1;
+
+	static class Entry {
+
+		final String fName;
+
+		final long fUID;
+
+		volatile ObjectStreamClass fDesc;
+
+		Entry(String aName, long aUID, ObjectStreamClass aDesc) {
+			fName = aName;
+			fUID = aUID;
+			fDesc = aDesc;
+		}
+	}
+
+	private final File fFile;
+
+	// indexed by id, replaced when it grows
+	private volatile Entry[] fEntries = new Entry[64];
+
+	private int fNumEntries = 0;
+
+	private final HashMap<String, Integer> fIds = new HashMap<String, Integer>();
+
+	private boolean fDirty = false;
+
+	ZDBClassTable(File aDBDir) {
+		fFile = new File(aDBDir, CLASSES_FILENAME);
+		load();
+	}
+
+	synchronized int getId(ObjectStreamClass aDesc) {
+
+		String name = aDesc.getName();
+
+		Integer id = fIds.get(name);
+		if (id != null) {
+			return id.intValue();
+		}
+
+		add(new Entry(name, aDesc.getSerialVersionUID(), aDesc));
+		fDirty = true;
+
+		return fNumEntries - 1;
+	}
+
+	private void add(Entry aEntry) {
+		Entry[] entries = fEntries;
+		if (fNumEntries == entries.length) {
+			Entry[] grown = new Entry[entries.length * 2];
+			System.arraycopy(entries, 0, grown, 0, fNumEntries);
+			entries = grown;
+		}
+		entries[fNumEntries] = aEntry;
+		fIds.put(aEntry.fName, fNumEntries);
+		fNumEntries++;
+		fEntries = entries;
+	}
+
+	ObjectStreamClass lookup(int aId) throws IOException, ClassNotFoundException {
+
+		Entry[] entries = fEntries;
+		Entry entry = aId >= 0 && aId < entries.length ? entries[aId] : null;
+		if (entry == null) {
+			throw new StreamCorruptedException("ZDB: unknown class id " + aId);
+		}
+
+		ObjectStreamClass desc = entry.fDesc;
+		if (desc != null) {
+			return desc;
+		}
+
+		Class<?> cls = Class.forName(entry.fName, false, ZDBClassTable.class.getClassLoader());
+		desc = ObjectStreamClass.lookup(cls);
+		if (desc == null) {
+			throw new InvalidClassException(entry.fName, "ZDB: class is not serializable any more");
+		}
+		if (desc.getSerialVersionUID() != entry.fUID) {
+			throw new InvalidClassException(entry.fName, "ZDB: class has changed, stored serialVersionUID = " + entry.fUID + ", local = " + desc.getSerialVersionUID());
+		}
+
+		entry.fDesc = desc;
+
+		return desc;
+	}
+
+	/**
+	 * Throws if any registered class is gone or has changed, i.e. if there
+	 * are records this table cannot decode any more.
+	 */
+	void checkClasses() throws IOException, ClassNotFoundException {
+		int n;
+		synchronized (this) {
+			n = fNumEntries;
+		}
+		for (int i = 0; i < n; i++) {
+			lookup(i);
+		}
+	}
+
+	private void load() {
+
+		if (!fFile.exists() || !fFile.canRead()) {
+			return;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)));
+
+			if (in.readInt() != CLASSES_VERSION) {
+				logger.error("ZDB: %s has wrong version, ignoring it.", fFile.getAbsolutePath());
+				return;
+			}
+
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				String name = in.readUTF();
+				long uid = in.readLong();
+				add(new Entry(name, uid, null));
+			}
+
+		} catch (IOException e) {
+			el.logException(e);
+		} finally {
+			if (in != null) {
+				ZDB.safeClose(in);
+			}
+		}
+	}
+
+	synchronized void save() {
+
+		if (!fDirty) {
+			return;
+		}
+
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fFile)));
+
+			out.writeInt(CLASSES_VERSION);
+			out.writeInt(fNumEntries);
+
+			Entry[] entries = fEntries;
+			for (int i = 0; i < fNumEntries; i++) {
+				out.writeUTF(entries[i].fName);
+				out.writeLong(entries[i].fUID);
+			}
+
+			fDirty = false;
+
+		} catch (IOException e) {
+			el.logException(e);
+		} finally {
+			if (out != null) {
+				ZDB.safeClose(out);
+			}
+		}
+	}
+
+	synchronized int size() {
+		return fNumEntries;
+	}
+
+}
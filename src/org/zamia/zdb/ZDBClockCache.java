@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-concurrent cache with CLOCK (second chance) replacement.
+ *
+ * Lookups go through a ConcurrentHashMap and only set the entry's reference
+ * bit, so cache hits never take a lock and never reorder shared structures.
+ * Insertion, removal and eviction are serialized on the ring.
+ *
+ */
+public class ZDBClockCache implements ZDBCache {
+
+	private static final int CONCURRENCY_LEVEL = 64;
+
+	private final ConcurrentHashMap<Long, ZDBCacheEntry> fMap;
+
+	private final ArrayList<ZDBCacheEntry> fRing;
+
+	private int fHand = 0;
+
+	private long fWeight = 0;
+
+	public ZDBClockCache(int aCapacity) {
+		fMap = new ConcurrentHashMap<Long, ZDBCacheEntry>(aCapacity, 0.75f, CONCURRENCY_LEVEL);
+		fRing = new ArrayList<ZDBCacheEntry>(aCapacity);
+	}
+
+	public ZDBCacheEntry get(long aId) {
+
+		ZDBCacheEntry entry = fMap.get(aId);
+
+		if (entry != null && !entry.isReferenced()) {
+			entry.setReferenced(true);
+		}
+
+		return entry;
+	}
+
+	public synchronized void put(ZDBCacheEntry aEntry) {
+
+		ZDBCacheEntry old = fMap.put(aEntry.getId(), aEntry);
+		if (old != null) {
+			removeSlot(old);
+			fWeight -= old.getWeight();
+		}
+
+		fWeight += aEntry.getWeight();
+		aEntry.setReferenced(true);
+		aEntry.setSlot(fRing.size());
+		fRing.add(aEntry);
+	}
+
+	public synchronized ZDBCacheEntry remove(long aId) {
+
+		ZDBCacheEntry entry = fMap.remove(aId);
+		if (entry != null) {
+			removeSlot(entry);
+			fWeight -= entry.getWeight();
+		}
+		return entry;
+	}
+
+	public synchronized ZDBCacheEntry evict() {
+
+		while (!fRing.isEmpty()) {
+
+			if (fHand >= fRing.size()) {
+				fHand = 0;
+			}
+
+			ZDBCacheEntry entry = fRing.get(fHand);
+
+			if (entry.isReferenced()) {
+				entry.setReferenced(false);
+				fHand++;
+				continue;
+			}
+
+			fMap.remove(entry.getId());
+			removeSlot(entry);
+			fWeight -= entry.getWeight();
+
+			return entry;
+		}
+
+		return null;
+	}
+
+	public synchronized void setWeight(ZDBCacheEntry aEntry, int aWeight) {
+		if (fMap.get(aEntry.getId()) == aEntry) {
+			fWeight += aWeight - aEntry.getWeight();
+		}
+		aEntry.setWeight(aWeight);
+	}
+
+	public int size() {
+		return fMap.size();
+	}
+
+	public synchronized long getWeight() {
+		return fWeight;
+	}
+
+	public boolean isEmpty() {
+		return fMap.isEmpty();
+	}
+
+	/*
+	 * O(1) removal: the last entry of the ring takes over the freed slot.
+	 */
+
+	private void removeSlot(ZDBCacheEntry aEntry) {
+
+		int slot = aEntry.getSlot();
+		int last = fRing.size() - 1;
+
+		ZDBCacheEntry moved = fRing.remove(last);
+		if (slot != last) {
+			fRing.set(slot, moved);
+			moved.setSlot(slot);
+		}
+
+		aEntry.setSlot(-1);
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Serialization format of ZDB records.
+ *
+ * Every record starts with its codec's marker byte so databases containing
+ * records written by different codecs can still be read, see
+ * ZDB.decode().
+ *
+ */
+public interface ZDBCodec {
+
+	/**
+	 * @return first byte of every record written by this codec
+	 */
+	public int getMarker();
+
+	public ObjectOutputStream createOutputStream(OutputStream aOut) throws IOException;
+
+	/**
+	 * @return a stream objects can get the ZDB they are loaded from with
+	 *         ZDB.getZDBFromStream()
+	 */
+	public ObjectInputStream createInputStream(InputStream aIn, ZDB aZDB) throws IOException;
+
+}
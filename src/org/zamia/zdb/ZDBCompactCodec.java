@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * java.io serialization with class descriptors replaced by varint ids from
+ * the ZDBClassTable. Descriptors (class name, serialVersionUID, field names
+ * and signatures of the class and all its superclasses) used to make up the
+ * bulk of small IG records.
+ *
+ * Field values are still written by java serialization, so classes may
+ * provide their own writeObject()/readObject() (see IGItem) to shrink them
+ * further.
+ *
+ */
+public class ZDBCompactCodec implements ZDBCodec {
+
+	public static final int MARKER = 0x5A;
+
+	public static final int VERSION = 1;
+
+	private final ZDBClassTable fClassTable;
+
+	ZDBCompactCodec(ZDBClassTable aClassTable) {
+		fClassTable = aClassTable;
+	}
+
+	public int getMarker() {
+		return MARKER;
+	}
+
+	public ObjectOutputStream createOutputStream(OutputStream aOut) throws IOException {
+		return new CompactOutputStream(aOut);
+	}
+
+	public ObjectInputStream createInputStream(InputStream aIn, ZDB aZDB) throws IOException {
+		return new CompactInputStream(aIn, aZDB);
+	}
+
+	private class CompactOutputStream extends ObjectOutputStream {
+
+		CompactOutputStream(OutputStream aOut) throws IOException {
+			super(aOut);
+		}
+
+		@Override
+		protected void writeStreamHeader() throws IOException {
+			writeByte(MARKER);
+			writeByte(VERSION);
+		}
+
+		@Override
+		protected void writeClassDescriptor(ObjectStreamClass aDesc) throws IOException {
+			ZDBVarInt.writeInt(this, fClassTable.getId(aDesc));
+		}
+	}
+
+	private class CompactInputStream extends ZDB.ZDBInputStream {
+
+		CompactInputStream(InputStream aIn, ZDB aZDB) throws IOException {
+			super(aIn, aZDB);
+		}
+
+		@Override
+		protected void readStreamHeader() throws IOException {
+			int marker = readUnsignedByte();
+			int version = readUnsignedByte();
+			if (marker != MARKER || version != VERSION) {
+				throw new StreamCorruptedException(String.format("ZDB: invalid compact stream header: %02X%02X", marker, version));
+			}
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+			return fClassTable.lookup(ZDBVarInt.readInt(this));
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass aDesc) throws IOException, ClassNotFoundException {
+			// descriptors come from the local class already
+			Class<?> cls = aDesc.forClass();
+			return cls != null ? cls : super.resolveClass(aDesc);
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.zamia.ExceptionLogger;
+import org.zamia.ZamiaLogger;
+import org.zamia.util.LLFSHashMap;
+import org.zamia.util.ehm.EHMPageManager;
+import org.zamia.util.ehm.ExtendibleHashMap;
+
+/**
+ * Garbage collection for the ZDB data file.
+ *
+ * Live records of segments with a high fraction of dead bytes are copied
+ * verbatim (no deserialization) to the end of the data file, then their
+ * offsets are switched over and the old segments are retired, the next
+ * ZDB.flush() deletes them once it has committed the new offsets. Copying
+ * happens without holding the ZDB lock; records which are re-stored or
+ * deleted while being copied are detected when the offsets are switched.
+ *
+ */
+class ZDBCompactor {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	// how many bytes to copy per batch
+	private static final int BATCH_SIZE = 4 * 1024 * 1024;
+
+	// how many offset index pages to scan per ZDB lock
+	private static final int SCAN_PAGES = 64;
+
+	private final ZDB fZDB;
+
+	private volatile boolean fAborted = false;
+
+	private int fNumMoved;
+
+	private long fBytesMoved;
+
+	static class Record {
+		final long fId, fAddress, fLength;
+
+		Record(long aId, long aAddress, long aLength) {
+			fId = aId;
+			fAddress = aAddress;
+			fLength = aLength;
+		}
+	}
+
+	ZDBCompactor(ZDB aZDB) {
+		fZDB = aZDB;
+	}
+
+	void setAborted(boolean aAborted) {
+		fAborted = aAborted;
+	}
+
+	boolean isAborted() {
+		return fAborted;
+	}
+
+	/**
+	 * @param aMinDeadRatio
+	 *            only segments with at least this fraction of dead bytes are
+	 *            compacted
+	 * @return number of bytes moved, -1 if nothing was compacted
+	 */
+	synchronized long compact(double aMinDeadRatio) {
+
+		ZDBDataFile data = fZDB.getDataFile();
+
+		long startTime = System.currentTimeMillis();
+
+		// the active segment can only be compacted once it is immutable
+		int active = data.getActiveSegment();
+		long activeDead = data.getDeadBytes(active);
+		if (activeDead > 0 && activeDead >= data.getTotalBytes() * aMinDeadRatio) {
+			fZDB.rollDataFile();
+		}
+
+		ArrayList<Integer> segments = data.getCompactionCandidates(aMinDeadRatio);
+		for (Iterator<Integer> it = segments.iterator(); it.hasNext();) {
+			if (fZDB.isRetired(it.next())) {
+				it.remove();
+			}
+		}
+		if (segments.isEmpty() || fAborted) {
+			return -1;
+		}
+
+		logger.info("ZDB: compaction: compacting %d segment(s)...", segments.size());
+
+		ArrayList<Record> records = collectLiveRecords(segments);
+
+		fNumMoved = 0;
+		fBytesMoved = 0;
+
+		int i = 0;
+		while (i < records.size()) {
+
+			if (fAborted) {
+				logger.info("ZDB: compaction: aborted.");
+				return -1;
+			}
+
+			int j = i;
+			long batchBytes = 0;
+			while (j < records.size() && (j == i || batchBytes + records.get(j).fLength <= BATCH_SIZE)) {
+				batchBytes += records.get(j).fLength;
+				j++;
+			}
+
+			try {
+				copyBatch(records.subList(i, j));
+			} catch (IOException e) {
+				el.logException(e);
+				return -1;
+			} catch (InterruptedException e) {
+				el.logException(e);
+				return -1;
+			}
+
+			i = j;
+		}
+
+		if (fAborted) {
+			return -1;
+		}
+
+		fZDB.retireSegments(segments);
+
+		double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+		logger.info("ZDB: compaction: moved %d records (%d KB) in %f seconds, %d segment(s) retired.", fNumMoved, fBytesMoved / 1024, seconds, segments.size());
+
+		return fBytesMoved;
+	}
+
+	/*
+	 * The offsets are scanned a few pages per ZDB lock, so loads and stores
+	 * are not blocked for the whole scan. Records which change afterwards
+	 * are skipped by appendRaw() and commitRaw(). Entries moved to a new page
+	 * by a split are found by scanning the new pages in another round.
+	 */
+	private ArrayList<Record> collectLiveRecords(ArrayList<Integer> aSegments) {
+
+		HashSet<Integer> segments = new HashSet<Integer>(aSegments);
+
+		ArrayList<Record> records = new ArrayList<Record>();
+
+		ExtendibleHashMap offsets = fZDB.getOffsets();
+		ExtendibleHashMap lengths = fZDB.getLengths();
+		EHMPageManager manager = fZDB.getEHMManager();
+
+		HashSet<Long> scanned = new HashSet<Long>();
+		ArrayList<Long> pages = offsets.getPageIds();
+
+		while (!pages.isEmpty() && !fAborted) {
+
+			int n = pages.size();
+			for (int i = 0; i < n; i += SCAN_PAGES) {
+
+				synchronized (fZDB) {
+
+					for (int j = i; j < n && j < i + SCAN_PAGES; j++) {
+
+						LLFSHashMap page = manager.load(pages.get(j));
+
+						int m = page.getAllocedSize();
+						for (int k = 0; k < m; k++) {
+
+							if (page.getFree(k)) {
+								continue;
+							}
+
+							long id = page.getKey(k);
+							long address = page.getValue(k);
+							if (address < 0 || !segments.contains(ZDBDataFile.getSegment(address))) {
+								continue;
+							}
+							long length = lengths.get(id);
+							if (length <= 0) {
+								// record predates length tracking, we cannot move it
+								logger.error("ZDB: compaction: unknown length of record %d, skipping segment %d.", id, ZDBDataFile.getSegment(address));
+								aSegments.remove((Integer) ZDBDataFile.getSegment(address));
+								segments.remove(ZDBDataFile.getSegment(address));
+								continue;
+							}
+							records.add(new Record(id, address, length));
+						}
+					}
+				}
+			}
+
+			scanned.addAll(pages);
+			pages = offsets.getPageIds();
+			pages.removeAll(scanned);
+		}
+
+		ArrayList<Record> res = new ArrayList<Record>(records.size());
+		for (Record r : records) {
+			if (segments.contains(ZDBDataFile.getSegment(r.fAddress))) {
+				res.add(r);
+			}
+		}
+
+		// read old segments sequentially
+		Collections.sort(res, new Comparator<Record>() {
+			public int compare(Record aR1, Record aR2) {
+				return aR1.fAddress < aR2.fAddress ? -1 : (aR1.fAddress == aR2.fAddress ? 0 : 1);
+			}
+		});
+
+		// entries of pages which were split after their scan are seen twice
+		int n = 0;
+		for (Record r : res) {
+			if (n == 0 || res.get(n - 1).fAddress != r.fAddress) {
+				res.set(n++, r);
+			}
+		}
+		res.subList(n, res.size()).clear();
+
+		return res;
+	}
+
+	private void copyBatch(List<Record> aBatch) throws IOException, InterruptedException {
+
+		ZDBDataFile data = fZDB.getDataFile();
+
+		int n = aBatch.size();
+
+		long[] ids = new long[n];
+		long[] addresses = new long[n];
+		long[] lengths = new long[n];
+		long[] newAddresses = new long[n];
+		byte[][] bytes = new byte[n][];
+
+		for (int i = 0; i < n; i++) {
+			Record r = aBatch.get(i);
+			ids[i] = r.fId;
+			addresses[i] = r.fAddress;
+			lengths[i] = r.fLength;
+			bytes[i] = new byte[(int) r.fLength];
+			data.read(r.fAddress, bytes[i], 0, bytes[i].length);
+		}
+
+		CountDownLatch written = fZDB.appendRaw(ids, addresses, bytes, newAddresses);
+		written.await();
+
+		fZDB.commitRaw(ids, addresses, newAddresses, lengths);
+
+		for (int i = 0; i < n; i++) {
+			if (newAddresses[i] >= 0) {
+				fNumMoved++;
+				fBytesMoved += lengths[i];
+			}
+		}
+	}
+
+}
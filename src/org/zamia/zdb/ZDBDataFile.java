@@ -0,0 +1,715 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.zamia.ExceptionLogger;
+import org.zamia.ZamiaLogger;
+
+/**
+ * The ZDB data table, split into append-only segment files.
+ *
+ * Objects are addressed by a long whose upper bits select the segment and
+ * whose lower SEGMENT_SHIFT bits are the offset inside the segment file.
+ * Segment 0 lives in data.bin, so databases written before segmentation
+ * simply consist of one segment.
+ *
+ * For every segment we keep track of how many bytes were written to it and
+ * how many of those are dead (overwritten or deleted records), which drives
+ * compaction (see ZDBCompactor).
+ *
+ */
+public class ZDBDataFile {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	public final static String SEGMENTS_FILENAME = "segments.bin";
+
+	public final static int SEGMENTS_VERSION = 1;
+
+	public final static int SEGMENT_SHIFT = 40;
+
+	private final static long OFFSET_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private static final int BUFSIZE = 1 << 16;
+
+	private final File fDBDir;
+
+	private final String fBaseName;
+
+	private final long fSegmentSize;
+
+	private final TreeMap<Integer, Segment> fSegments = new TreeMap<Integer, Segment>();
+
+	class Segment {
+
+		final int fIdx;
+
+		final File fFile;
+
+		RandomAccessFile fRAF;
+
+		long fWritten;
+
+		long fDead;
+
+		// loads read through their own channel so they never contend with the writer
+		private RandomAccessFile fReadRAF;
+
+		private FileChannel fChannel;
+
+		// immutable snapshot of the whole segment, null if not mapped (yet)
+		private volatile MappedByteBuffer fMapping;
+
+		// mapping dropped by close() while readers were still using it
+		private volatile MappedByteBuffer fRetired;
+
+		// readers pin the segment while they use its channel or mapping, deleteSegment() waits for them
+		private final ReentrantReadWriteLock fPins = new ReentrantReadWriteLock();
+
+		Segment(int aIdx) {
+			fIdx = aIdx;
+			fFile = getSegmentFile(aIdx);
+		}
+
+		synchronized RandomAccessFile getRAF() throws FileNotFoundException {
+			if (fRAF == null) {
+				fRAF = new RandomAccessFile(fFile, "rw");
+			}
+			return fRAF;
+		}
+
+		synchronized FileChannel getChannel() throws IOException {
+			// a reader interrupted during I/O closes the channel for everybody, so re-open it
+			if (fChannel == null || !fChannel.isOpen()) {
+				if (fReadRAF != null) {
+					ZDB.safeClose(fReadRAF);
+				}
+				fReadRAF = new RandomAccessFile(fFile, "r");
+				fChannel = fReadRAF.getChannel();
+			}
+			return fChannel;
+		}
+
+		MappedByteBuffer getMapping(long aEnd) throws IOException {
+
+			MappedByteBuffer mapping = fMapping;
+			if (mapping != null && mapping.capacity() >= aEnd) {
+				return mapping;
+			}
+
+			synchronized (this) {
+				mapping = fMapping;
+				if (mapping != null && mapping.capacity() >= aEnd) {
+					return mapping;
+				}
+				FileChannel channel = getChannel();
+				long size = channel.size();
+				if (size < aEnd || size > Integer.MAX_VALUE) {
+					return null;
+				}
+				mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				fMapping = mapping;
+				return mapping;
+			}
+		}
+
+		/**
+		 * Release the files and the mapping. Readers that pinned this segment
+		 * may still use slices of the mapping, in that case the last of them
+		 * unmaps it in unpin().
+		 */
+		synchronized void close() {
+			if (fRAF != null) {
+				ZDB.safeClose(fRAF);
+				fRAF = null;
+			}
+			if (fReadRAF != null) {
+				ZDB.safeClose(fReadRAF);
+				fReadRAF = null;
+				fChannel = null;
+			}
+			if (fMapping != null) {
+				fRetired = fMapping;
+				fMapping = null;
+			}
+			unmapRetired();
+		}
+
+		synchronized void unmapRetired() {
+			if (fRetired != null && fPins.writeLock().tryLock()) {
+				try {
+					unmap(fRetired);
+					fRetired = null;
+				} finally {
+					fPins.writeLock().unlock();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Release the address space of aMapping right away instead of when the
+	 * buffer gets collected. There is no public API for this, so this goes
+	 * through the JDK internals and falls back to the GC if they are not
+	 * accessible.
+	 */
+	private static void unmap(MappedByteBuffer aMapping) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			try {
+				// Java 9 and later
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), aMapping);
+			} catch (NoSuchMethodException e) {
+				// Java 8 and earlier
+				Method getCleaner = aMapping.getClass().getMethod("cleaner");
+				getCleaner.setAccessible(true);
+				Object cleaner = getCleaner.invoke(aMapping);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (Throwable t) {
+			logger.debug("ZDB: failed to unmap a segment, leaving it to the GC: %s", t);
+		}
+	}
+
+	// per-thread read buffer for segments which are not mapped, see read(Segment, long, int)
+	private static final ThreadLocal<ByteBuffer> fReadBuffer = new ThreadLocal<ByteBuffer>();
+
+	private static final int MIN_READ_BUFFER_SIZE = 1 << 13;
+
+	private static final int MAX_READ_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * @param aDBDir
+	 *            directory containing the segment files
+	 * @param aBaseName
+	 *            segment 0 file name (e.g. data.bin)
+	 * @param aSegmentSize
+	 *            once a segment has reached this size, new records go to a
+	 *            fresh segment
+	 */
+	public ZDBDataFile(File aDBDir, String aBaseName, long aSegmentSize) {
+		fDBDir = aDBDir;
+		fBaseName = aBaseName;
+		fSegmentSize = aSegmentSize;
+
+		if (!loadStats()) {
+			scanSegments();
+		}
+	}
+
+	public static int getSegment(long aAddress) {
+		return (int) (aAddress >>> SEGMENT_SHIFT);
+	}
+
+	public static long getOffset(long aAddress) {
+		return aAddress & OFFSET_MASK;
+	}
+
+	public static long getAddress(int aSegment, long aOffset) {
+		return (((long) aSegment) << SEGMENT_SHIFT) | aOffset;
+	}
+
+	private String getPrefix() {
+		int dot = fBaseName.lastIndexOf('.');
+		return dot < 0 ? fBaseName + "." : fBaseName.substring(0, dot + 1);
+	}
+
+	private String getSuffix() {
+		int dot = fBaseName.lastIndexOf('.');
+		return dot < 0 ? "" : fBaseName.substring(dot);
+	}
+
+	File getSegmentFile(int aIdx) {
+		if (aIdx == 0) {
+			return new File(fDBDir, fBaseName);
+		}
+		return new File(fDBDir, getPrefix() + aIdx + getSuffix());
+	}
+
+	private void scanSegments() {
+
+		fSegments.clear();
+
+		String prefix = getPrefix();
+		String suffix = getSuffix();
+
+		String[] names = fDBDir.list();
+		if (names == null) {
+			return;
+		}
+
+		for (String name : names) {
+
+			int idx;
+			if (name.equals(fBaseName)) {
+				idx = 0;
+			} else if (name.startsWith(prefix) && name.endsWith(suffix) && name.length() > prefix.length() + suffix.length()) {
+				try {
+					idx = Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+				} catch (NumberFormatException e) {
+					continue;
+				}
+			} else {
+				continue;
+			}
+
+			Segment s = new Segment(idx);
+			s.fWritten = s.fFile.length();
+			fSegments.put(idx, s);
+		}
+	}
+
+	private boolean loadStats() {
+
+		File f = new File(fDBDir, SEGMENTS_FILENAME);
+		if (!f.exists() || !f.canRead()) {
+			return false;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+
+			if (in.readInt() != SEGMENTS_VERSION) {
+				return false;
+			}
+
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				Segment s = new Segment(in.readInt());
+				s.fWritten = in.readLong();
+				s.fDead = in.readLong();
+
+				// the data file is authoritative for the amount of data written
+				s.fWritten = s.fFile.length();
+				if (s.fDead > s.fWritten) {
+					s.fDead = s.fWritten;
+				}
+				fSegments.put(s.fIdx, s);
+			}
+			return true;
+
+		} catch (IOException e) {
+			el.logException(e);
+			fSegments.clear();
+			return false;
+		} finally {
+			if (in != null) {
+				ZDB.safeClose(in);
+			}
+		}
+	}
+
+	public synchronized void saveStats() {
+
+		File f = new File(fDBDir, SEGMENTS_FILENAME);
+
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+
+			out.writeInt(SEGMENTS_VERSION);
+			out.writeInt(fSegments.size());
+			for (Segment s : fSegments.values()) {
+				out.writeInt(s.fIdx);
+				out.writeLong(s.fWritten);
+				out.writeLong(s.fDead);
+			}
+
+		} catch (IOException e) {
+			el.logException(e);
+		} finally {
+			if (out != null) {
+				ZDB.safeClose(out);
+			}
+		}
+	}
+
+	private synchronized Segment getOrCreateSegment(int aIdx) {
+		Segment s = fSegments.get(aIdx);
+		if (s == null) {
+			s = new Segment(aIdx);
+			fSegments.put(aIdx, s);
+		}
+		return s;
+	}
+
+	private synchronized Segment getSegmentChecked(int aIdx) throws IOException {
+		Segment s = fSegments.get(aIdx);
+		if (s == null) {
+			throw new IOException("ZDB: segment " + aIdx + " does not exist.");
+		}
+		return s;
+	}
+
+	/**
+	 * @return the address the next record will be appended at
+	 */
+	public synchronized long getEndAddress() {
+		if (fSegments.isEmpty()) {
+			return 0;
+		}
+		Segment s = fSegments.lastEntry().getValue();
+		return getAddress(s.fIdx, s.fFile.length());
+	}
+
+	public synchronized int getActiveSegment() {
+		return fSegments.isEmpty() ? 0 : fSegments.lastKey();
+	}
+
+	/**
+	 * Compute the address for a new record of the given size appended at
+	 * aEndAddress, rolling over to a fresh segment if the current one is
+	 * full.
+	 */
+	public long allocate(long aEndAddress, long aSize) {
+		long offset = getOffset(aEndAddress);
+		if (offset > 0 && offset + aSize > fSegmentSize) {
+			return getAddress(getSegment(aEndAddress) + 1, 0);
+		}
+		return aEndAddress;
+	}
+
+	/**
+	 * Start a fresh segment so the current one becomes immutable.
+	 *
+	 * @return the new end address
+	 */
+	public synchronized long roll(long aEndAddress) {
+		if (getOffset(aEndAddress) == 0) {
+			return aEndAddress;
+		}
+		int idx = getSegment(aEndAddress) + 1;
+		getOrCreateSegment(idx);
+		return getAddress(idx, 0);
+	}
+
+	/**
+	 * Write a batch of records that starts at aAddress. Called from the ZDB
+	 * writer thread only.
+	 */
+	public void write(long aAddress, byte[] aBuf, int aLen) throws IOException {
+
+		Segment s = getOrCreateSegment(getSegment(aAddress));
+		long offset = getOffset(aAddress);
+
+		synchronized (s) {
+			RandomAccessFile raf = s.getRAF();
+			assert offset == raf.length() : "specified offset " + offset + " is different from file size " + raf.length();
+			raf.seek(offset);
+			raf.write(aBuf, 0, aLen);
+		}
+
+		synchronized (this) {
+			s.fWritten += aLen;
+		}
+	}
+
+	/**
+	 * Pin the segment containing aAddress so it cannot be deleted while the
+	 * caller reads from it. Must be called while holding the ZDB monitor,
+	 * which guarantees the segment is still referenced by the offsets table
+	 * and no deleteSegment() is in progress for it.
+	 */
+	Segment pin(long aAddress) throws IOException {
+		Segment s = getSegmentChecked(getSegment(aAddress));
+		s.fPins.readLock().lock();
+		return s;
+	}
+
+	void unpin(Segment aSegment) {
+		aSegment.fPins.readLock().unlock();
+		if (aSegment.fRetired != null) {
+			aSegment.unmapRetired();
+		}
+	}
+
+	/**
+	 * Fetch aLength bytes at aAddress from a pinned segment. Immutable
+	 * segments are served from a read-only memory mapping without copying,
+	 * the active one through a positional read into a per-thread buffer.
+	 * Hand the result back via release() once it has been consumed.
+	 */
+	ByteBuffer read(Segment aSegment, long aAddress, int aLength) throws IOException {
+
+		long offset = getOffset(aAddress);
+
+		if (ZDB.ENABLE_MMAP && aSegment.fIdx != getActiveSegment()) {
+			MappedByteBuffer mapping = aSegment.getMapping(offset + aLength);
+			if (mapping != null) {
+				ByteBuffer buf = mapping.duplicate();
+				buf.position((int) offset);
+				buf.limit((int) offset + aLength);
+				return buf.slice();
+			}
+		}
+
+		ByteBuffer buf = fReadBuffer.get();
+		if (buf != null && buf.capacity() >= aLength) {
+			fReadBuffer.set(null);
+		} else {
+			buf = ByteBuffer.allocate(Math.max(aLength, MIN_READ_BUFFER_SIZE));
+		}
+
+		buf.clear();
+		buf.limit(aLength);
+		readFully(aSegment, offset, buf);
+		buf.flip();
+
+		return buf;
+	}
+
+	void release(ByteBuffer aBuf) {
+		if (aBuf.hasArray() && aBuf.capacity() <= MAX_READ_BUFFER_SIZE) {
+			fReadBuffer.set(aBuf);
+		}
+	}
+
+	private void readFully(Segment aSegment, long aOffset, ByteBuffer aBuf) throws IOException {
+		FileChannel channel = aSegment.getChannel();
+		long pos = aOffset;
+		while (aBuf.hasRemaining()) {
+			int n = channel.read(aBuf, pos);
+			if (n < 0) {
+				throw new EOFException("ZDB: unexpected end of segment " + aSegment.fIdx + " at offset " + pos);
+			}
+			pos += n;
+		}
+	}
+
+	/**
+	 * Stream starting at the given address of a pinned segment, for records
+	 * whose length is unknown (written before lengths were tracked).
+	 */
+	InputStream openStream(final Segment aSegment, long aAddress) throws IOException {
+
+		final FileChannel channel = aSegment.getChannel();
+		final long start = getOffset(aAddress);
+
+		return new BufferedInputStream(new InputStream() {
+
+			private long fPos = start;
+
+			public int read() throws IOException {
+				throw new IOException("not implemneted, sorry"); // tell me if this happens
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = channel.read(ByteBuffer.wrap(b, off, len), fPos);
+				if (n > 0) {
+					fPos += n;
+				}
+				return n;
+			}
+		});
+	}
+
+	public void read(long aAddress, byte[] aBuf, int aOff, int aLen) throws IOException {
+
+		Segment s = getSegmentChecked(getSegment(aAddress));
+
+		readFully(s, getOffset(aAddress), ByteBuffer.wrap(aBuf, aOff, aLen));
+	}
+
+	public synchronized void markDead(long aAddress, long aLength) {
+		Segment s = fSegments.get(getSegment(aAddress));
+		if (s != null) {
+			s.fDead = Math.min(s.fWritten, s.fDead + aLength);
+		}
+	}
+
+	public synchronized long getTotalBytes() {
+		long total = 0;
+		for (Segment s : fSegments.values()) {
+			total += s.fWritten;
+		}
+		return total;
+	}
+
+	public synchronized long getDeadBytes() {
+		long dead = 0;
+		for (Segment s : fSegments.values()) {
+			dead += s.fDead;
+		}
+		return dead;
+	}
+
+	public synchronized long getDeadBytes(int aSegment) {
+		Segment s = fSegments.get(aSegment);
+		return s != null ? s.fDead : 0;
+	}
+
+	/**
+	 * @return indices of all segments except the active one whose fraction
+	 *         of dead bytes is at least aMinDeadRatio
+	 */
+	public synchronized ArrayList<Integer> getCompactionCandidates(double aMinDeadRatio) {
+
+		ArrayList<Integer> res = new ArrayList<Integer>();
+
+		int active = getActiveSegment();
+
+		for (Map.Entry<Integer, Segment> entry : fSegments.entrySet()) {
+			Segment s = entry.getValue();
+			if (s.fIdx == active || s.fDead == 0) {
+				continue;
+			}
+			if (s.fWritten == 0 || (double) s.fDead / (double) s.fWritten >= aMinDeadRatio) {
+				res.add(s.fIdx);
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Remove a segment that no longer contains live records.
+	 *
+	 * @return number of bytes reclaimed
+	 */
+	public long deleteSegment(int aIdx) {
+
+		Segment s;
+		synchronized (this) {
+			s = fSegments.remove(aIdx);
+		}
+		if (s == null) {
+			return 0;
+		}
+
+		// wait for readers which pinned the segment before its records were moved
+		s.fPins.writeLock().lock();
+
+		long size;
+		try {
+			synchronized (s) {
+				s.close();
+				size = s.fFile.length();
+				if (!s.fFile.delete()) {
+					logger.error("ZDB: failed to delete segment file %s", s.fFile.getAbsolutePath());
+				}
+			}
+		} finally {
+			s.fPins.writeLock().unlock();
+		}
+
+		return size;
+	}
+
+	/**
+	 * @return true if all records are in segment 0 (data.bin), the only one
+	 *         exportTo() and importFrom() deal with
+	 */
+	public synchronized boolean isSingleSegment() {
+		return fSegments.isEmpty() || (fSegments.size() == 1 && fSegments.firstKey() == 0);
+	}
+
+	/**
+	 * Copy the raw contents of segment 0 (data.bin), see ZDB.exportToFile().
+	 * Stores using further segments cannot be exported this way.
+	 */
+	public void exportTo(DataOutputStream aOutputStream) throws IOException {
+
+		Segment s;
+		synchronized (this) {
+			if (!isSingleSegment()) {
+				throw new IOException("ZDB: cannot export " + fSegments.size() + " data segments, only a single data.bin is supported.");
+			}
+			s = fSegments.get(0);
+		}
+		if (s == null) {
+			return;
+		}
+
+		synchronized (s) {
+			RandomAccessFile raf = s.getRAF();
+			raf.seek(0);
+
+			byte buffer[] = new byte[BUFSIZE];
+
+			int n;
+			while ((n = raf.read(buffer)) > 0) {
+				aOutputStream.write(buffer, 0, n);
+			}
+		}
+	}
+
+	public void importFrom(DataInputStream aInputStream) throws IOException {
+
+		Segment s = getOrCreateSegment(0);
+
+		synchronized (s) {
+			RandomAccessFile raf = s.getRAF();
+			raf.seek(0);
+
+			byte buffer[] = new byte[BUFSIZE];
+
+			int n;
+			do {
+				n = aInputStream.read(buffer);
+				if (n > 0) {
+					raf.write(buffer, 0, n);
+				}
+			} while (n > 0);
+		}
+
+		synchronized (this) {
+			s.fWritten = s.fFile.length();
+		}
+	}
+
+	public synchronized void close() {
+		for (Segment s : fSegments.values()) {
+			s.close();
+		}
+	}
+
+	/**
+	 * Force everything written so far to disk.
+	 */
+	public synchronized void force() throws IOException {
+		for (Segment s : fSegments.values()) {
+			synchronized (s) {
+				if (s.fRAF != null) {
+					s.fRAF.getChannel().force(false);
+				}
+			}
+		}
+	}
+
+}
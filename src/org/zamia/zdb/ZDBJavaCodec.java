@@ -0,0 +1,35 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+
+/**
+ * Plain java.io serialization, every record carries full class descriptors.
+ *
+ */
+public class ZDBJavaCodec implements ZDBCodec {
+
+	public int getMarker() {
+		return (ObjectStreamConstants.STREAM_MAGIC >>> 8) & 0xFF;
+	}
+
+	public ObjectOutputStream createOutputStream(OutputStream aOut) throws IOException {
+		return new ObjectOutputStream(aOut);
+	}
+
+	public ObjectInputStream createInputStream(InputStream aIn, ZDB aZDB) throws IOException {
+		return new ZDB.ZDBInputStream(aIn, aZDB);
+	}
+
+}
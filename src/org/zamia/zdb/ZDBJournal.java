@@ -0,0 +1,493 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+
+import org.zamia.ExceptionLogger;
+import org.zamia.ZamiaLogger;
+import org.zamia.util.ehm.EHMJournal;
+import org.zamia.util.ehm.EHMPageManager;
+
+/**
+ * Rollback journal which makes ZDB.commit() atomic.
+ *
+ * data.bin only ever grows between commits, old records are not
+ * overwritten, so it needs no journaling. EHM pages are overwritten in
+ * place, they have their previous content appended here before the first
+ * change after a commit; files which only grow just get their length
+ * recorded. Files which are rewritten or deleted as a whole (EHM node
+ * files, pd.bin and the other metadata files) are renamed to name.journaled
+ * instead, so journaling them costs a rename, not a copy. A commit
+ * truncates the journal and deletes the .journaled files. If ZDB finds a
+ * non-empty journal on startup, it undoes all recorded changes, which
+ * brings the database back to its last commit.
+ *
+ * Entries are checksummed, a torn entry at the end is ignored (its target
+ * has not been touched yet). With ZAMIA_EHM_FSYNC the journal is forced
+ * before every in-place write, otherwise ordering is only guaranteed
+ * across process crashes, not power failures.
+ *
+ */
+class ZDBJournal implements EHMJournal {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	public final static String JOURNAL_FILENAME = "journal";
+
+	private final static int MAGIC = 0x5A444A31;
+
+	// content of a range of a file
+	private final static byte RANGE = 1;
+
+	// length of a file, anything beyond is cut off on rollback
+	private final static byte LENGTH = 2;
+
+	// complete content of a file, or its absence (written by older versions)
+	private final static byte FILE = 3;
+
+	// the file was moved to name + BACKUP_SUFFIX, or did not exist
+	private final static byte MOVED = 4;
+
+	public final static String BACKUP_SUFFIX = ".journaled";
+
+	private final File fDBDir;
+
+	private final File fFile;
+
+	private RandomAccessFile fRAF;
+
+	private FileChannel fChannel;
+
+	private long fEnd = 0;
+
+	// what has been saved since the last commit, by file name
+	private final HashMap<String, HashSet<Long>> fSavedRanges = new HashMap<String, HashSet<Long>>();
+
+	private final HashMap<String, Long> fSavedLengths = new HashMap<String, Long>();
+
+	private final HashSet<String> fMovedFiles = new HashSet<String>();
+
+	private long fBytesWritten = 0;
+
+	ZDBJournal(File aDBDir) {
+		fDBDir = aDBDir;
+		fFile = new File(aDBDir, JOURNAL_FILENAME);
+	}
+
+	private FileChannel getChannel() throws IOException {
+		if (fChannel == null) {
+			fRAF = new RandomAccessFile(fFile, "rw");
+			fChannel = fRAF.getChannel();
+			fChannel.truncate(0);
+			fEnd = 0;
+		}
+		return fChannel;
+	}
+
+	private String getName(File aFile) throws IOException {
+		if (!fDBDir.getAbsoluteFile().equals(aFile.getAbsoluteFile().getParentFile())) {
+			throw new IOException("ZDB: journal: " + aFile + " is not part of " + fDBDir);
+		}
+		return aFile.getName();
+	}
+
+	public synchronized void save(File aFile, FileChannel aChannel, long[] aOffsets, int aLength) throws IOException {
+
+		String name = getName(aFile);
+
+		if (fMovedFiles.contains(name)) {
+			return;
+		}
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+
+		// pages beyond the length at the last commit are new, cutting the file is enough to undo them
+		Long length = fSavedLengths.get(name);
+		if (length == null) {
+			length = aChannel.size();
+			writeEntry(out, LENGTH, name, length, null);
+		}
+
+		HashSet<Long> saved = fSavedRanges.get(name);
+		if (saved == null) {
+			saved = new HashSet<Long>();
+		}
+
+		ArrayList<Long> offsets = new ArrayList<Long>();
+		for (long offset : aOffsets) {
+			if (offset >= length || saved.contains(offset)) {
+				continue;
+			}
+
+			ByteBuffer buf = ByteBuffer.allocate((int) Math.min(aLength, length - offset));
+			long pos = offset;
+			while (buf.hasRemaining()) {
+				int n = aChannel.read(buf, pos);
+				if (n < 0) {
+					break;
+				}
+				pos += n;
+			}
+			byte[] data = new byte[buf.position()];
+			buf.flip();
+			buf.get(data);
+
+			writeEntry(out, RANGE, name, offset, data);
+			offsets.add(offset);
+		}
+
+		if (baos.size() > 0) {
+			append(baos);
+		}
+
+		fSavedLengths.put(name, length);
+		saved.addAll(offsets);
+		fSavedRanges.put(name, saved);
+	}
+
+	/**
+	 * Record the length of a file that is only ever appended to.
+	 */
+	synchronized void saveLength(File aFile) throws IOException {
+
+		String name = getName(aFile);
+
+		if (fMovedFiles.contains(name) || fSavedLengths.containsKey(name)) {
+			return;
+		}
+
+		long length = aFile.length();
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		writeEntry(new DataOutputStream(baos), LENGTH, name, length, null);
+		append(baos);
+
+		fSavedLengths.put(name, length);
+	}
+
+	/**
+	 * Move a file that is about to be rewritten or deleted as a whole out of
+	 * the way. Its old content stays in name.journaled until the next commit.
+	 * If it does not exist, rollback deletes it.
+	 */
+	synchronized void moveAside(File aFile) throws IOException {
+
+		String name = getName(aFile);
+
+		if (fMovedFiles.contains(name)) {
+			return;
+		}
+		if (fSavedLengths.containsKey(name) || fSavedRanges.containsKey(name)) {
+			throw new IOException("ZDB: journal: " + name + " is journaled by range already");
+		}
+
+		File backup = getBackup(aFile);
+		if (backup.exists() && !backup.delete()) {
+			throw new IOException("ZDB: journal: failed to delete " + backup.getAbsolutePath());
+		}
+
+		boolean exists = aFile.exists();
+
+		// the entry has to be there before the rename
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		writeEntry(new DataOutputStream(baos), MOVED, name, exists ? 1 : 0, null);
+		append(baos);
+
+		if (exists && !aFile.renameTo(backup)) {
+			throw new IOException("ZDB: journal: failed to move " + aFile.getAbsolutePath() + " to " + backup.getName());
+		}
+
+		fMovedFiles.add(name);
+	}
+
+	/**
+	 * Move aFile back if moveAside() was called on it but it has not been
+	 * written since.
+	 */
+	synchronized void restoreIfMissing(File aFile) throws IOException {
+
+		if (!fMovedFiles.contains(getName(aFile)) || aFile.exists()) {
+			return;
+		}
+
+		File backup = getBackup(aFile);
+		if (backup.exists() && !backup.renameTo(aFile)) {
+			throw new IOException("ZDB: journal: failed to move " + backup.getAbsolutePath() + " back");
+		}
+	}
+
+	private static File getBackup(File aFile) {
+		return new File(aFile.getParentFile(), aFile.getName() + BACKUP_SUFFIX);
+	}
+
+	/**
+	 * Bytes appended to the journal since it was created.
+	 */
+	synchronized long getBytesWritten() {
+		return fBytesWritten;
+	}
+
+	/**
+	 * Everything written so far is the new state to roll back to. The caller
+	 * must have forced the changed files first if durability matters.
+	 */
+	synchronized void commit() throws IOException {
+		if (fChannel != null && fEnd > 0) {
+			fChannel.truncate(0);
+			if (EHMPageManager.ENABLE_FSYNC) {
+				fChannel.force(false);
+			}
+		}
+		fEnd = 0;
+		fSavedRanges.clear();
+		fSavedLengths.clear();
+
+		// the old versions are not needed for rollback anymore
+		for (String name : fMovedFiles) {
+			new File(fDBDir, name + BACKUP_SUFFIX).delete();
+		}
+		fMovedFiles.clear();
+	}
+
+	/**
+	 * Release the journal file, it stays on disk if there are uncommitted
+	 * changes.
+	 */
+	synchronized void close() {
+		if (fRAF != null) {
+			ZDB.safeClose(fRAF);
+			fRAF = null;
+			fChannel = null;
+			if (fEnd == 0) {
+				fFile.delete();
+			}
+		}
+	}
+
+	private void append(ByteArrayOutputStream aBAOS) throws IOException {
+
+		FileChannel channel = getChannel();
+
+		if (fEnd == 0) {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			header.putInt(MAGIC);
+			header.flip();
+			while (header.hasRemaining()) {
+				fEnd += channel.write(header, fEnd);
+			}
+		}
+
+		ByteBuffer buf = ByteBuffer.wrap(aBAOS.toByteArray());
+		while (buf.hasRemaining()) {
+			fEnd += channel.write(buf, fEnd);
+		}
+		fBytesWritten += aBAOS.size();
+
+		if (EHMPageManager.ENABLE_FSYNC) {
+			channel.force(false);
+		}
+	}
+
+	/*
+	 * entry: type, name, value (offset, length or exists flag), data length, data, crc32 of all of it
+	 */
+
+	private static void writeEntry(DataOutputStream aOut, byte aType, String aName, long aValue, byte[] aData) throws IOException {
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		out.writeByte(aType);
+		out.writeUTF(aName);
+		out.writeLong(aValue);
+		out.writeInt(aData != null ? aData.length : -1);
+		if (aData != null) {
+			out.write(aData);
+		}
+		out.flush();
+
+		byte[] entry = baos.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(entry);
+
+		aOut.write(entry);
+		aOut.writeLong(crc.getValue());
+		aOut.flush();
+	}
+
+	/**
+	 * Undo whatever has been changed in aDBDir since the last commit.
+	 *
+	 * @return number of journal entries applied
+	 */
+	static int recover(File aDBDir) throws IOException {
+
+		File f = new File(aDBDir, JOURNAL_FILENAME);
+
+		int n = 0;
+
+		if (f.exists() && f.length() > 4) {
+
+			RandomAccessFile journal = new RandomAccessFile(f, "r");
+			try {
+				long size = journal.length();
+
+				if (journal.readInt() == MAGIC) {
+
+					HashSet<File> touched = new HashSet<File>();
+
+					while (true) {
+
+						long start = journal.getFilePointer();
+
+						byte type;
+						String name;
+						long value;
+						byte[] data = null;
+						try {
+							type = journal.readByte();
+							name = journal.readUTF();
+							value = journal.readLong();
+							int len = journal.readInt();
+							if (len > size - journal.getFilePointer()) {
+								break;
+							}
+
+							CRC32 crc = new CRC32();
+							byte[] header = new byte[(int) (journal.getFilePointer() - start)];
+							journal.seek(start);
+							journal.readFully(header);
+							crc.update(header);
+
+							if (len >= 0) {
+								data = new byte[len];
+								journal.readFully(data);
+								crc.update(data);
+							}
+
+							if (journal.readLong() != crc.getValue()) {
+								logger.error("ZDB: journal: checksum mismatch, ignoring the rest of %s", f.getAbsolutePath());
+								break;
+							}
+						} catch (EOFException e) {
+							// torn entry, its target has not been written yet
+							break;
+						}
+
+						File target = new File(aDBDir, name);
+						undo(target, type, value, data);
+						touched.add(target);
+						n++;
+					}
+
+					for (File target : touched) {
+						if (target.exists()) {
+							RandomAccessFile raf = new RandomAccessFile(target, "rw");
+							try {
+								raf.getChannel().force(true);
+							} finally {
+								ZDB.safeClose(raf);
+							}
+						}
+					}
+				}
+			} finally {
+				ZDB.safeClose(journal);
+			}
+		}
+
+		// whatever is left over belongs to a commit that completed
+		String[] names = aDBDir.list();
+		if (names != null) {
+			for (String name : names) {
+				if (name.endsWith(BACKUP_SUFFIX)) {
+					new File(aDBDir, name).delete();
+				}
+			}
+		}
+
+		if (f.exists() && !f.delete()) {
+			throw new IOException("ZDB: journal: failed to delete " + f.getAbsolutePath());
+		}
+
+		return n;
+	}
+
+	private static void undo(File aTarget, byte aType, long aValue, byte[] aData) throws IOException {
+
+		switch (aType) {
+		case FILE:
+			if (aValue == 0) {
+				aTarget.delete();
+				return;
+			}
+			RandomAccessFile raf = new RandomAccessFile(aTarget, "rw");
+			try {
+				raf.setLength(0);
+				raf.write(aData);
+			} finally {
+				ZDB.safeClose(raf);
+			}
+			return;
+
+		case MOVED:
+			File backup = getBackup(aTarget);
+			if (backup.exists()) {
+				if (aTarget.exists() && !aTarget.delete()) {
+					throw new IOException("ZDB: journal: failed to delete " + aTarget.getAbsolutePath());
+				}
+				if (!backup.renameTo(aTarget)) {
+					throw new IOException("ZDB: journal: failed to move " + backup.getAbsolutePath() + " back");
+				}
+			} else if (aValue == 0) {
+				aTarget.delete();
+			}
+			// otherwise the file was never moved or already moved back
+			return;
+
+		case LENGTH:
+			if (aTarget.exists() && aTarget.length() > aValue) {
+				raf = new RandomAccessFile(aTarget, "rw");
+				try {
+					raf.setLength(aValue);
+				} finally {
+					ZDB.safeClose(raf);
+				}
+			}
+			return;
+
+		case RANGE:
+			raf = new RandomAccessFile(aTarget, "rw");
+			try {
+				raf.seek(aValue);
+				raf.write(aData);
+			} finally {
+				ZDB.safeClose(raf);
+			}
+			return;
+
+		default:
+			throw new IOException("ZDB: journal: unknown entry type " + aType);
+		}
+	}
+
+}
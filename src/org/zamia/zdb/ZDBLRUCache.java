@@ -0,0 +1,138 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.util.HashMap;
+
+/**
+ * Strict LRU cache: a hash map plus a doubly linked list, every hit moves the
+ * entry to the head of the list. All operations are serialized.
+ *
+ * Eviction is size-aware: out of the EVICTION_WINDOW least recently used
+ * entries the heaviest one goes first, so a single large, cold object
+ * frees the budget instead of many small ones.
+ *
+ */
+public class ZDBLRUCache implements ZDBCache {
+
+	private static final int EVICTION_WINDOW = 4;
+
+	private final HashMap<Long, ZDBCacheEntry> fMap = new HashMap<Long, ZDBCacheEntry>();
+
+	private ZDBCacheEntry fHead, fTail;
+
+	private long fWeight = 0;
+
+	public synchronized ZDBCacheEntry get(long aId) {
+
+		ZDBCacheEntry entry = fMap.get(aId);
+
+		if (entry != null && entry.getPrev() != null) {
+			unlink(entry);
+			linkHead(entry);
+		}
+
+		return entry;
+	}
+
+	public synchronized void put(ZDBCacheEntry aEntry) {
+
+		ZDBCacheEntry old = fMap.put(aEntry.getId(), aEntry);
+		if (old != null) {
+			unlink(old);
+			fWeight -= old.getWeight();
+		}
+
+		linkHead(aEntry);
+		fWeight += aEntry.getWeight();
+	}
+
+	public synchronized ZDBCacheEntry remove(long aId) {
+
+		ZDBCacheEntry entry = fMap.remove(aId);
+		if (entry != null) {
+			unlink(entry);
+			fWeight -= entry.getWeight();
+		}
+		return entry;
+	}
+
+	public synchronized ZDBCacheEntry evict() {
+
+		ZDBCacheEntry entry = fTail;
+		if (entry == null) {
+			return null;
+		}
+
+		ZDBCacheEntry candidate = entry.getPrev();
+		for (int i = 1; i < EVICTION_WINDOW && candidate != null; i++) {
+			if (candidate.getWeight() > entry.getWeight()) {
+				entry = candidate;
+			}
+			candidate = candidate.getPrev();
+		}
+
+		fMap.remove(entry.getId());
+		unlink(entry);
+		fWeight -= entry.getWeight();
+
+		return entry;
+	}
+
+	public synchronized void setWeight(ZDBCacheEntry aEntry, int aWeight) {
+		if (fMap.get(aEntry.getId()) == aEntry) {
+			fWeight += aWeight - aEntry.getWeight();
+		}
+		aEntry.setWeight(aWeight);
+	}
+
+	public synchronized int size() {
+		return fMap.size();
+	}
+
+	public synchronized long getWeight() {
+		return fWeight;
+	}
+
+	public synchronized boolean isEmpty() {
+		return fHead == null;
+	}
+
+	private void linkHead(ZDBCacheEntry aEntry) {
+		aEntry.setPrev(null);
+		aEntry.setNext(fHead);
+		if (fHead != null) {
+			fHead.setPrev(aEntry);
+		}
+		fHead = aEntry;
+		if (fTail == null) {
+			fTail = aEntry;
+		}
+	}
+
+	private void unlink(ZDBCacheEntry aEntry) {
+
+		ZDBCacheEntry prev = aEntry.getPrev();
+		ZDBCacheEntry next = aEntry.getNext();
+
+		if (prev != null) {
+			prev.setNext(next);
+		} else {
+			fHead = next;
+		}
+		if (next != null) {
+			next.setPrev(prev);
+		} else {
+			fTail = prev;
+		}
+
+		aEntry.setPrev(null);
+		aEntry.setNext(null);
+	}
+
+}
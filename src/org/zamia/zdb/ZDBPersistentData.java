@@ -18,11 +18,11 @@ import java.util.Iterator;
 
 import org.zamia.ExceptionLogger;
 import org.zamia.ZamiaLogger;
-import org.zamia.util.HashMapArray;
 
 
 /**
- * Persistent part of ZDB (essentially the indexes and offsets)
+ * Persistent part of ZDB (id counter and named objects, string indices
+ * live in ZDBStringIndices)
  * 
  * @author Guenter Bartsch
  * 
@@ -36,22 +36,18 @@ public class ZDBPersistentData {
 
 	public final static String OFFSETS_FILENAME = "offsets.zdb";
 
-	public final static int CURRENT_VERSION = 90701; // 0.9.7 rev 1
+	public final static int CURRENT_VERSION = 90703; // 0.9.7 rev 3: string indices moved to ZDBStringIndices
 
 	private long fCurId = 1;
 
 	private int fVersion = CURRENT_VERSION;
 
-	private HashMap<String, HashMapArray<String, Long>> fIndices = new HashMap<String, HashMapArray<String, Long>>();
-
 	private HashMap<String, Object> fNamedObjects = new HashMap<String, Object>();
 
 	void clear() {
 
 		fCurId = 1;
 
-		fIndices = new HashMap<String, HashMapArray<String, Long>>();
-
 		fNamedObjects = new HashMap<String, Object>();
 
 	}
@@ -67,38 +63,11 @@ public class ZDBPersistentData {
 
 				oos.writeLong(fCurId);
 
-				/*
-				 * save indices 
-				 */
-
-				int n = fIndices.size();
-
-				oos.writeInt(n);
-
-				for (String id : fIndices.keySet()) {
-
-					oos.writeUTF(id);
-
-					HashMapArray<String, Long> idx = fIndices.get(id);
-
-					int m = idx.size();
-
-					oos.writeInt(m);
-
-					for (String key : idx.keySet()) {
-
-						Long value = idx.get(key);
-
-						oos.writeUTF(key);
-						oos.writeLong(value.longValue());
-					}
-				}
-
 				/*
 				 * save named objects 
 				 */
 
-				n = fNamedObjects.size();
+				int n = fNamedObjects.size();
 
 				oos.writeInt(n);
 
@@ -138,37 +107,11 @@ public class ZDBPersistentData {
 
 					fCurId = ois.readLong();
 
-					/*
-					 * load indices
-					 */
-
-					int n = ois.readInt();
-
-					for (int i = 0; i < n; i++) {
-
-						String id = ois.readUTF();
-
-						int m = ois.readInt();
-
-						HashMapArray<String, Long> idx = new HashMapArray<String, Long>(m);
-
-						fIndices.put(id, idx);
-
-						for (int j = 0; j < m; j++) {
-
-							String key = ois.readUTF();
-
-							long value = ois.readLong();
-
-							idx.put(key, value);
-						}
-					}
-
 					/*
 					 * load named objects
 					 */
 
-					n = ois.readInt();
+					int n = ois.readInt();
 
 					for (int i = 0; i < n; i++) {
 
@@ -195,18 +138,6 @@ public class ZDBPersistentData {
 		return fCurId++;
 	}
 
-	HashMapArray<String, Long> getIdx(String aIdxName) {
-		return fIndices.get(aIdxName);
-	}
-
-	void putIdx(String aIdxName, HashMapArray<String, Long> aIdx) {
-		fIndices.put(aIdxName, aIdx);
-	}
-
-	void delIdx(String aIdxName) {
-		fIndices.remove(aIdxName);
-	}
-
 	Object getNamedObject(String aObjName) {
 		return fNamedObjects.get(aObjName);
 	}
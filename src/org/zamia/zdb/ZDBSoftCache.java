@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+
+/**
+ * Second cache tier: objects evicted from the primary ZDBCache stay
+ * reachable through soft references until the garbage collector needs the
+ * heap. A hit here saves both the disk read and the deserialization.
+ *
+ * Only objects whose current version is on disk (or being written) are
+ * kept, so the tier never has to write anything back. Guarded by the ZDB
+ * monitor.
+ *
+ */
+class ZDBSoftCache {
+
+	private static class Ref extends SoftReference<Object> {
+
+		final long fId;
+
+		Ref(long aId, Object aObject, ReferenceQueue<Object> aQueue) {
+			super(aObject, aQueue);
+			fId = aId;
+		}
+	}
+
+	private final HashMap<Long, Ref> fMap = new HashMap<Long, Ref>();
+
+	private final ReferenceQueue<Object> fQueue = new ReferenceQueue<Object>();
+
+	void put(long aId, Object aObject) {
+		expunge();
+		fMap.put(aId, new Ref(aId, aObject, fQueue));
+	}
+
+	/**
+	 * Remove aId from this tier.
+	 *
+	 * @return the object if it was still reachable, null otherwise
+	 */
+	Object remove(long aId) {
+		expunge();
+		Ref ref = fMap.remove(aId);
+		return ref != null ? ref.get() : null;
+	}
+
+	int size() {
+		expunge();
+		return fMap.size();
+	}
+
+	void clear() {
+		fMap.clear();
+		while (fQueue.poll() != null) {
+		}
+	}
+
+	/*
+	 * drop map entries of references the garbage collector has cleared
+	 */
+
+	private void expunge() {
+		Ref ref;
+		while ((ref = (Ref) fQueue.poll()) != null) {
+			if (fMap.get(ref.fId) == ref) {
+				fMap.remove(ref.fId);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import org.zamia.ExceptionLogger;
+import org.zamia.util.ehm.EHMPageManager;
+import org.zamia.util.ehm.ExtendibleHashMap;
+
+/**
+ * A string -> long index kept in EHM pages instead of the heap.
+ *
+ * Keys are hashed to 64 bit slots, collisions are resolved by linear
+ * probing over the slot space. Next to each slot a second, independent 63
+ * bit hash of the key is kept in the (cached) EHM pages, lookups compare
+ * only that one and do not touch the disk. A false hit would need two keys
+ * on the same probe chain whose fingerprints collide. put() still reads the
+ * key back from this index's append-only key file before it overwrites a
+ * value. Deleted slots become tombstones so probe chains stay intact.
+ *
+ * Entries are also numbered densely (swap-remove on delete) for
+ * positional access, see ZDB.getIdxObj(String, int).
+ *
+ * Not thread safe for writers, ZDB guards indices with its index lock.
+ *
+ */
+class ZDBStringIndex {
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	private static final long TOMBSTONE = -2;
+
+	private static final long SLOT_MASK = Long.MAX_VALUE;
+
+	private final ZDBJournal fJournal;
+
+	// slot -> value
+	private final ExtendibleHashMap fSlots;
+
+	// slot -> key reference in the key file
+	private final ExtendibleHashMap fKeyRefs;
+
+	// slot -> fingerprint of the key
+	private final ExtendibleHashMap fKeyHashes;
+
+	// position -> slot and slot -> position
+	private final ExtendibleHashMap fPositions;
+
+	private final ExtendibleHashMap fSlotPositions;
+
+	private volatile int fSize;
+
+	private final File fKeyFile;
+
+	private RandomAccessFile fKeyRAF;
+
+	private volatile FileChannel fKeyChannel;
+
+	private long fKeyEnd;
+
+	ZDBStringIndex(ZDBJournal aJournal, EHMPageManager aManager, File aDBDir, String aFilePrefix, int aSize) {
+		fJournal = aJournal;
+		fSlots = new ExtendibleHashMap(aManager, new File(aDBDir, aFilePrefix + ".slots.ehm"));
+		fKeyRefs = new ExtendibleHashMap(aManager, new File(aDBDir, aFilePrefix + ".keys.ehm"));
+		fKeyHashes = new ExtendibleHashMap(aManager, new File(aDBDir, aFilePrefix + ".hashes.ehm"));
+		fPositions = new ExtendibleHashMap(aManager, new File(aDBDir, aFilePrefix + ".pos.ehm"));
+		fSlotPositions = new ExtendibleHashMap(aManager, new File(aDBDir, aFilePrefix + ".slotpos.ehm"));
+		fSize = aSize;
+		fKeyFile = new File(aDBDir, aFilePrefix + ".keys");
+	}
+
+	static long hash(String aKey) {
+
+		// FNV-1a followed by the murmur3 finalizer
+
+		long h = 0xcbf29ce484222325L;
+		int n = aKey.length();
+		for (int i = 0; i < n; i++) {
+			h ^= aKey.charAt(i);
+			h *= 0x100000001b3L;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		// LLFSHashMap cannot deal with negative keys
+		return h & SLOT_MASK;
+	}
+
+	static long fingerprint(String aKey) {
+
+		// different mixing than hash() so both do not collide together
+
+		long h = 0x9e3779b97f4a7c15L;
+		int n = aKey.length();
+		for (int i = 0; i < n; i++) {
+			h = (h ^ aKey.charAt(i)) * 0xbf58476d1ce4e5b9L;
+			h ^= h >>> 29;
+		}
+		h ^= n;
+
+		h ^= h >>> 30;
+		h *= 0xbf58476d1ce4e5b9L;
+		h ^= h >>> 27;
+		h *= 0x94d049bb133111ebL;
+		h ^= h >>> 31;
+
+		return h & SLOT_MASK;
+	}
+
+	private static long next(long aSlot) {
+		return (aSlot + 1) & SLOT_MASK;
+	}
+
+	/**
+	 * @return slot holding aKey or -1
+	 */
+	private long find(String aKey) {
+
+		long fp = fingerprint(aKey);
+
+		for (long slot = hash(aKey);; slot = next(slot)) {
+
+			long v = fSlots.get(slot);
+			if (v == -1) {
+				return -1;
+			}
+			if (v != TOMBSTONE && fKeyHashes.get(slot) == fp) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * @return value stored for aKey or -1
+	 */
+	long get(String aKey) {
+		long slot = find(aKey);
+		return slot < 0 ? -1 : fSlots.get(slot);
+	}
+
+	void put(String aKey, long aValue) throws IOException {
+
+		if (aValue < 0) {
+			throw new IllegalArgumentException("ZDB: negative index values are not supported: " + aValue);
+		}
+
+		byte[] keyBytes = ZDBStringIndices.encode(aKey);
+		long fp = fingerprint(aKey);
+
+		// first tombstone on the probe chain, reused for new keys
+		long free = -1;
+
+		long slot = hash(aKey);
+		while (true) {
+			long v = fSlots.get(slot);
+			if (v == -1) {
+				break;
+			}
+			if (v == TOMBSTONE) {
+				if (free < 0) {
+					free = slot;
+				}
+			} else if (fKeyHashes.get(slot) == fp && keyEquals(fKeyRefs.get(slot), keyBytes)) {
+				fSlots.put(slot, aValue);
+				return;
+			}
+			slot = next(slot);
+		}
+
+		if (free >= 0) {
+			slot = free;
+		}
+
+		fKeyRefs.put(slot, appendKey(keyBytes));
+		fKeyHashes.put(slot, fp);
+		fSlots.put(slot, aValue);
+
+		int pos = fSize;
+		fPositions.put(pos, slot);
+		fSlotPositions.put(slot, pos);
+		fSize = pos + 1;
+	}
+
+	void remove(String aKey) {
+
+		long slot = find(aKey);
+		if (slot < 0) {
+			return;
+		}
+
+		fSlots.put(slot, TOMBSTONE);
+		fKeyRefs.delete(slot);
+		fKeyHashes.delete(slot);
+
+		// swap-remove to keep positions dense
+
+		int pos = (int) fSlotPositions.get(slot);
+		int last = fSize - 1;
+		if (pos != last) {
+			long lastSlot = fPositions.get(last);
+			fPositions.put(pos, lastSlot);
+			fSlotPositions.put(lastSlot, pos);
+		}
+		fPositions.delete(last);
+		fSlotPositions.delete(slot);
+		fSize = last;
+	}
+
+	boolean containsKey(String aKey) {
+		return find(aKey) >= 0;
+	}
+
+	/**
+	 * @return value of the aIdx-th entry or -1
+	 */
+	long get(int aIdx) {
+		if (aIdx < 0 || aIdx >= fSize) {
+			return -1;
+		}
+		long slot = fPositions.get(aIdx);
+		return slot < 0 ? -1 : fSlots.get(slot);
+	}
+
+	int size() {
+		return fSize;
+	}
+
+	void collectFiles(List<File> aFiles) {
+		aFiles.add(fSlots.getFile());
+		aFiles.add(fKeyRefs.getFile());
+		aFiles.add(fKeyHashes.getFile());
+		aFiles.add(fPositions.getFile());
+		aFiles.add(fSlotPositions.getFile());
+	}
+
+	/**
+	 * Hand the EHM pages of this index back to aManager, used when the whole
+	 * index is dropped.
+	 */
+	void freePages() {
+		fSlots.freePages();
+		fKeyRefs.freePages();
+		fKeyHashes.freePages();
+		fPositions.freePages();
+		fSlotPositions.freePages();
+	}
+
+	void flush() {
+		fSlots.flush();
+		fKeyRefs.flush();
+		fKeyHashes.flush();
+		fPositions.flush();
+		fSlotPositions.flush();
+
+		if (EHMPageManager.ENABLE_FSYNC && fKeyChannel != null) {
+			try {
+				fKeyChannel.force(false);
+			} catch (IOException e) {
+				el.logException(e);
+			}
+		}
+	}
+
+	synchronized void close() {
+		if (fKeyRAF != null) {
+			ZDB.safeClose(fKeyRAF);
+			fKeyRAF = null;
+			fKeyChannel = null;
+		}
+	}
+
+	/*
+	 * key file
+	 */
+
+	private FileChannel getKeyChannel() throws IOException {
+		FileChannel channel = fKeyChannel;
+		if (channel != null && channel.isOpen()) {
+			return channel;
+		}
+		synchronized (this) {
+			if (fKeyChannel == null || !fKeyChannel.isOpen()) {
+				if (fKeyRAF != null) {
+					ZDB.safeClose(fKeyRAF);
+				}
+				fKeyRAF = new RandomAccessFile(fKeyFile, "rw");
+				fKeyEnd = fKeyRAF.length();
+				fKeyChannel = fKeyRAF.getChannel();
+			}
+			return fKeyChannel;
+		}
+	}
+
+	private synchronized long appendKey(byte[] aKey) throws IOException {
+
+		FileChannel channel = getKeyChannel();
+
+		fJournal.saveLength(fKeyFile);
+
+		ByteBuffer buf = ByteBuffer.allocate(4 + aKey.length);
+		buf.putInt(aKey.length);
+		buf.put(aKey);
+		buf.flip();
+
+		long ref = fKeyEnd;
+		long pos = ref;
+		while (buf.hasRemaining()) {
+			pos += channel.write(buf, pos);
+		}
+		fKeyEnd = pos;
+
+		return ref;
+	}
+
+	private boolean keyEquals(long aRef, byte[] aKey) throws IOException {
+
+		if (aRef < 0) {
+			return false;
+		}
+
+		FileChannel channel = getKeyChannel();
+
+		ByteBuffer buf = ByteBuffer.allocate(4 + aKey.length);
+		long pos = aRef;
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, pos);
+			if (n < 0) {
+				// a shorter key at the end of the file
+				break;
+			}
+			pos += n;
+		}
+
+		if (buf.position() < 4 || buf.getInt(0) != aKey.length || buf.position() < 4 + aKey.length) {
+			return false;
+		}
+
+		byte[] stored = buf.array();
+		for (int i = 0; i < aKey.length; i++) {
+			if (stored[4 + i] != aKey[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
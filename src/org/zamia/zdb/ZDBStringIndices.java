@@ -0,0 +1,271 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.zamia.ExceptionLogger;
+import org.zamia.ZamiaLogger;
+import org.zamia.util.ehm.EHMPageManager;
+
+/**
+ * Catalog of the string indices of a ZDB.
+ *
+ * Only the catalog (index names and sizes) is read at startup, the EHM
+ * directories of an index are loaded on first access. Pages are shared
+ * with the other EHMs of the ZDB, so flushing only writes what has
+ * changed. Dropping an index deletes its files (including its key file)
+ * and hands its pages back to the page manager. The catalog also records
+ * which pages are free so they are reused after a restart.
+ *
+ */
+class ZDBStringIndices {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	public final static ExceptionLogger el = ExceptionLogger.getInstance();
+
+	public final static String INDICES_FILENAME = "indices.bin";
+
+	public final static int INDICES_VERSION = 2;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	static class Info {
+
+		final int fFileId;
+
+		int fSize;
+
+		Info(int aFileId, int aSize) {
+			fFileId = aFileId;
+			fSize = aSize;
+		}
+	}
+
+	private final File fDBDir;
+
+	private final EHMPageManager fManager;
+
+	private final ZDBJournal fJournal;
+
+	private final HashMap<String, Info> fCatalog = new HashMap<String, Info>();
+
+	private final HashMap<String, ZDBStringIndex> fLoaded = new HashMap<String, ZDBStringIndex>();
+
+	private int fNextFileId = 0;
+
+	ZDBStringIndices(File aDBDir, EHMPageManager aManager, ZDBJournal aJournal) {
+		fDBDir = aDBDir;
+		fManager = aManager;
+		fJournal = aJournal;
+		loadCatalog();
+	}
+
+	static byte[] encode(String aKey) {
+		return aKey.getBytes(UTF8);
+	}
+
+	private String getFilePrefix(int aFileId) {
+		return "idx" + aFileId;
+	}
+
+	private void loadCatalog() {
+
+		File f = new File(fDBDir, INDICES_FILENAME);
+		if (!f.exists() || !f.canRead()) {
+			return;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+
+			if (in.readInt() != INDICES_VERSION) {
+				logger.error("ZDB: %s has wrong version, ignoring it.", f.getAbsolutePath());
+				return;
+			}
+
+			fNextFileId = in.readInt();
+
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				String name = in.readUTF();
+				int fileId = in.readInt();
+				int size = in.readInt();
+				fCatalog.put(name, new Info(fileId, size));
+			}
+
+			n = in.readInt();
+			long[] free = new long[n];
+			for (int i = 0; i < n; i++) {
+				free[i] = in.readLong();
+			}
+			fManager.setFreePages(free);
+
+		} catch (IOException e) {
+			el.logException(e);
+			fCatalog.clear();
+		} finally {
+			if (in != null) {
+				ZDB.safeClose(in);
+			}
+		}
+	}
+
+	private void saveCatalog() {
+
+		File f = new File(fDBDir, INDICES_FILENAME);
+
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+
+			out.writeInt(INDICES_VERSION);
+			out.writeInt(fNextFileId);
+			out.writeInt(fCatalog.size());
+			for (Map.Entry<String, Info> entry : fCatalog.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue().fFileId);
+				out.writeInt(entry.getValue().fSize);
+			}
+
+			long[] free = fManager.getFreePages();
+			out.writeInt(free.length);
+			for (long id : free) {
+				out.writeLong(id);
+			}
+
+		} catch (IOException e) {
+			el.logException(e);
+		} finally {
+			if (out != null) {
+				ZDB.safeClose(out);
+			}
+		}
+	}
+
+	/**
+	 * @return the index or null if it does not exist
+	 */
+	synchronized ZDBStringIndex get(String aName) {
+
+		ZDBStringIndex idx = fLoaded.get(aName);
+		if (idx != null) {
+			return idx;
+		}
+
+		Info info = fCatalog.get(aName);
+		if (info == null) {
+			return null;
+		}
+
+		idx = new ZDBStringIndex(fJournal, fManager, fDBDir, getFilePrefix(info.fFileId), info.fSize);
+		fLoaded.put(aName, idx);
+		return idx;
+	}
+
+	synchronized ZDBStringIndex getOrCreate(String aName) throws IOException {
+
+		ZDBStringIndex idx = get(aName);
+		if (idx != null) {
+			return idx;
+		}
+
+		int fileId = fNextFileId++;
+		deleteFiles(fileId);
+		fCatalog.put(aName, new Info(fileId, 0));
+
+		return get(aName);
+	}
+
+	synchronized void remove(String aName) throws IOException {
+
+		ZDBStringIndex idx = get(aName);
+		if (idx == null) {
+			return;
+		}
+
+		idx.close();
+		idx.freePages();
+
+		Info info = fCatalog.remove(aName);
+		fLoaded.remove(aName);
+		deleteFiles(info.fFileId);
+	}
+
+	private void deleteFiles(int aFileId) throws IOException {
+		String prefix = getFilePrefix(aFileId) + ".";
+		String[] names = fDBDir.list();
+		if (names == null) {
+			return;
+		}
+		for (String name : names) {
+			if (name.startsWith(prefix)) {
+				fJournal.moveAside(new File(fDBDir, name));
+			}
+		}
+	}
+
+	/**
+	 * Add the files flush() is going to rewrite to aFiles.
+	 */
+	synchronized void collectFiles(List<File> aFiles) {
+		aFiles.add(new File(fDBDir, INDICES_FILENAME));
+		for (ZDBStringIndex idx : fLoaded.values()) {
+			idx.collectFiles(aFiles);
+		}
+	}
+
+	synchronized void flush() {
+
+		for (Map.Entry<String, ZDBStringIndex> entry : fLoaded.entrySet()) {
+			ZDBStringIndex idx = entry.getValue();
+			idx.flush();
+			fCatalog.get(entry.getKey()).fSize = idx.size();
+		}
+
+		saveCatalog();
+	}
+
+	synchronized void close() {
+		for (ZDBStringIndex idx : fLoaded.values()) {
+			idx.close();
+		}
+		fLoaded.clear();
+	}
+
+	/**
+	 * Drop all indices, e.g. because pd.bin could not be loaded.
+	 */
+	synchronized void clear() {
+		close();
+		for (Info info : fCatalog.values()) {
+			try {
+				deleteFiles(info.fFileId);
+			} catch (IOException e) {
+				el.logException(e);
+			}
+		}
+		fCatalog.clear();
+		fManager.setFreePages(new long[0]);
+		saveCatalog();
+	}
+
+}
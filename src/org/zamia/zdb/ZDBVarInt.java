@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Variable length encoding of non-negative numbers (7 bits per byte, high
+ * bit set on all but the last byte). DBIDs, line and column numbers are
+ * small, so they mostly take one to three bytes instead of eight.
+ * Negative numbers are still encoded correctly, they just take ten bytes.
+ *
+ */
+public final class ZDBVarInt {
+
+	private ZDBVarInt() {
+	}
+
+	public static void writeLong(DataOutput aOut, long aValue) throws IOException {
+		long v = aValue;
+		while ((v & ~0x7FL) != 0) {
+			aOut.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		aOut.writeByte((int) v);
+	}
+
+	public static long readLong(DataInput aIn) throws IOException {
+		long res = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = aIn.readUnsignedByte();
+			res |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return res;
+			}
+		}
+		throw new StreamCorruptedException("ZDB: malformed varint");
+	}
+
+	public static void writeInt(DataOutput aOut, int aValue) throws IOException {
+		writeLong(aOut, aValue & 0xFFFFFFFFL);
+	}
+
+	public static int readInt(DataInput aIn) throws IOException {
+		return (int) readLong(aIn);
+	}
+
+}
@@ -11,8 +11,12 @@ package org.zamia;
 import org.apache.log4j.Level;
 import org.junit.Before;
 import org.junit.Test;
+import org.zamia.util.ZamiaTmpDir;
 
 import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
 
 
 /**
@@ -32,4 +36,32 @@ public class BuildPathTest {
 		bp.parse(null, false, null);
 	}
 
+	@Test
+	public void testFindEntry() throws Exception {
+
+		File gcd = new File("examples/gcd").getCanonicalFile();
+
+		File f = new File(ZamiaTmpDir.getTmpDir(), "BuildPathTest.txt");
+		Files.write(f.toPath(), ("local LIBA \"rtl\"\n" + "local LIBB \"rtl2\"\n" + "extern GCD \"" + gcd.getPath() + "\"\n").getBytes());
+
+		try {
+			BuildPath bp = new BuildPath(new SourceFile(f));
+			bp.parse(null, false, null);
+
+			assertEquals("LIBA", bp.findEntry(new SourceFile(new File("a.vhd"), "rtl/a.vhd")).fLibId);
+			assertEquals("LIBB", bp.findEntry(new SourceFile(new File("a.vhd"), "rtl2/a.vhd")).fLibId);
+			assertEquals("LIBA", bp.findEntry(new SourceFile(new File("a.vhd"), "rtl//sub/a.vhd")).fLibId);
+			assertEquals("WORK", bp.findEntry(new SourceFile(new File("a.vhd"), "rtl3/a.vhd")).fLibId);
+			assertEquals("WORK", bp.findEntry(new SourceFile(new File("a.vhd"), "rtlx/a.vhd")).fLibId);
+
+			SourceFile sf = new SourceFile(new File(gcd, "latw_gcd.vhd"));
+			assertEquals("GCD", bp.findEntry(sf).fLibId);
+			// memoized
+			assertEquals("GCD", bp.findEntry(sf).fLibId);
+			assertEquals("WORK", bp.findEntry(new SourceFile(new File(gcd.getPath() + "x", "latw_gcd.vhd"))).fLibId);
+		} finally {
+			f.delete();
+		}
+	}
+
 }
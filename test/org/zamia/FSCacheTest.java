@@ -17,14 +17,17 @@ import org.zamia.util.Native;
 import org.zamia.util.ZamiaTmpDir;
 import org.zamia.vhdl.ast.DMUID;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.OutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * @author Guenter Bartsch
@@ -180,6 +183,73 @@ public class FSCacheTest {
 
 	}
 
+	@Test
+	public void testDirCacheWatcher() throws Exception {
+
+		/*
+		 * changes to files and directories that have been looked up should
+		 * show up in the cache without invalidate() being called
+		 */
+
+		assumeTrue(FSCache.ENABLE_WATCHER);
+
+		fFSCache = FSCache.getInstance();
+
+		File baseDir = ZamiaTmpDir.getTmpDir();
+
+		File tmpDir = null;
+		int cnt = 0;
+		do {
+			tmpDir = new File(baseDir.getAbsolutePath() + File.separator + "FSCacheTest" + cnt);
+			cnt++;
+		} while (tmpDir.exists());
+
+		fTmpDirStr = tmpDir.getAbsolutePath();
+
+		String file1 = fTmpDirStr + File.separator + "file1";
+		String file2 = fTmpDirStr + File.separator + "file2";
+
+		fFSCache.invalidate(fTmpDirStr);
+
+		createDummyDir(fTmpDirStr);
+
+		// invalidate() leaves cached file contents alone, writing through the cache drops them
+		OutputStream out = fFSCache.openFileWrite(file1);
+		out.write("Hello, World!".getBytes());
+		out.close();
+
+		assertEquals(1, fFSCache.list(fTmpDirStr, true).length);
+		assertEquals(1, fFSCache.list(fTmpDirStr, true).length);
+		assertEquals("Hello, World!", readFirstLine(file1));
+
+		createDummyFile(file2);
+
+		BufferedWriter w = new BufferedWriter(new FileWriter(file1));
+		w.append("Bye, World!");
+		w.close();
+
+		long deadline = System.currentTimeMillis() + 30000;
+		while (fFSCache.list(fTmpDirStr, true).length != 2 || !"Bye, World!".equals(readFirstLine(file1))) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Changes in '" + fTmpDirStr + "' did not show up in the cache");
+			}
+			Thread.sleep(50);
+		}
+		checkFile(file2, true);
+
+		deleteDirRek(tmpDir);
+		fFSCache.invalidate(fTmpDirStr);
+	}
+
+	private String readFirstLine(String aPath) throws Exception {
+		BufferedReader r = new BufferedReader(fFSCache.openFile(aPath, true));
+		try {
+			return r.readLine();
+		} finally {
+			r.close();
+		}
+	}
+
 	private void checkList(String aPath, boolean aShouldWork) {
 
 		String[] files = fFSCache.list(aPath, true);
@@ -9,47 +9,105 @@
 package org.zamia;
 
 import org.zamia.util.HashSetArray;
+import org.zamia.vhdl.VHDLIndexer;
 import org.zamia.vhdl.ast.DMUID;
 import org.zamia.vhdl.vhdl2008.VHDL2008Parser;
 
 import java.io.File;
 import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 
 
 /**
+ * Compares parsing and indexing from a Reader with parsing and indexing
+ * straight from the memory mapped SourceText: runtime and bytes allocated.
+ * Both variants run on TextCharStream, parse(Reader) first decodes the
+ * whole file into a SourceText. The difference is the cost of that copy,
+ * not the one between BackupCharStream and TextCharStream; for that run
+ * this benchmark against a tree before TextCharStream was introduced.
+ * 
  * @author Guenter Bartsch
  */
 
 public class ParserBenchmark {
 
-	private static FSCache fsCache = FSCache.getInstance();
+	private static final String FILE = "examples/leonSOC/lib/tech/axcelerator/components/axcelerator_full.vhd";
 
-	private void runBenchmark(IHDLParser aParser) {
-		ZamiaProject zprj;
-		try {
-			zprj = new ZamiaProject();
-			SourceFile sf = new SourceFile(new File("examples/leonSOC/lib/tech/axcelerator/components/axcelerator_full.vhd"));
+	private static final int ROUNDS = 5;
 
-			Reader rd = fsCache.openFile(sf, false);
-
-			long startTime = System.currentTimeMillis();
+	private static FSCache fsCache = FSCache.getInstance();
 
-			HashSetArray<DMUID> dus = aParser.parse(rd, "WORK", sf, 1, false, true, zprj);
+	// -1 if the VM cannot tell
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
 
-			long stopTime = System.currentTimeMillis();
+	private void report(String aName, int aNumDUs, int aNumErrors, long aStartTime, long aStartBytes) {
 
-			int n = dus.size();
-			int nErrors = zprj.getERM().getNumErrors();
-			System.out.println("Parser 1 : #DUs    : " + n);
+		double seconds = (System.currentTimeMillis() - aStartTime) / 1000.0;
+		long bytes = getAllocatedBytes();
 
-			System.out.println("Parser 1 : #Errors : " + nErrors);
+		System.out.println(aName + " : #DUs      : " + aNumDUs);
+		System.out.println(aName + " : #Errors   : " + aNumErrors);
+		System.out.println(aName + " : Runtime   : " + seconds);
+		if (bytes >= 0) {
+			System.out.println(aName + " : Allocated : " + (bytes - aStartBytes) / 1024 + " KB");
+		}
+		System.out.println("");
+	}
 
-			double seconds = (stopTime - startTime) / 1000.0;
+	private void runBenchmark(boolean aMapped) {
+		ZamiaProject zprj;
+		try {
+			zprj = new ZamiaProject();
+			SourceFile sf = new SourceFile(new File(FILE));
 
-			System.out.println("Parser 1 : Runtime : " + seconds);
+			String name = aMapped ? "Parser mmap  " : "Parser reader";
 
-			System.out.println("");
+			long startBytes = getAllocatedBytes();
+			long startTime = System.currentTimeMillis();
 
+			VHDL2008Parser parser = new VHDL2008Parser();
+			HashSetArray<DMUID> dus;
+			if (aMapped) {
+				dus = parser.parse(fsCache.openText(sf, false), "WORK", sf, 1, false, true, zprj);
+			} else {
+				// decoded into a SourceText copy, then parsed the same way
+				Reader rd = fsCache.openFile(sf, false);
+				try {
+					dus = parser.parse(rd, "WORK", sf, 1, false, true, zprj);
+				} finally {
+					rd.close();
+				}
+			}
+
+			report(name, dus.size(), zprj.getERM().getNumErrors(), startTime, startBytes);
+
+			name = aMapped ? "Indexer mmap  " : "Indexer reader";
+
+			startBytes = getAllocatedBytes();
+			startTime = System.currentTimeMillis();
+
+			VHDLIndexer indexer = new VHDLIndexer();
+			if (aMapped) {
+				indexer.parse(fsCache.openText(sf, false), "WORK", sf, 1, false, true, zprj.getDUM());
+			} else {
+				Reader rd = fsCache.openFile(sf, false);
+				try {
+					indexer.parse(rd, "WORK", sf, 1, false, true, zprj.getDUM());
+				} finally {
+					rd.close();
+				}
+			}
+
+			report(name, zprj.getDUM().getNumStubs(), zprj.getERM().getNumErrors(), startTime, startBytes);
+
+			zprj.shutdown();
 
 		} catch (Throwable e) {
 			e.printStackTrace();
@@ -59,9 +117,10 @@ public class ParserBenchmark {
 
 	public void run() {
 
-		VHDL2008Parser parser = new VHDL2008Parser();
-
-		runBenchmark(parser);
+		for (int i = 0; i < ROUNDS; i++) {
+			runBenchmark(false);
+			runBenchmark(true);
+		}
 	}
 
 	public static void main(String[] args) {
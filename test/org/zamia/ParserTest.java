@@ -10,9 +10,26 @@ package org.zamia;
 import org.apache.log4j.Level;
 import org.junit.After;
 import org.junit.Test;
+import org.zamia.util.FileUtils;
+import org.zamia.util.ZamiaTmpDir;
+import org.zamia.vhdl.ast.Architecture;
+import org.zamia.vhdl.ast.DMUID;
 
+import java.io.File;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -91,6 +108,199 @@ public class ParserTest {
 		}
 	}
 
+	@Test
+	public void testParallelParse() throws Exception {
+
+		setupTest();
+
+		fBuilder.clean();
+
+		final DMManager dum = fBuilder.getDUM();
+		ERManager erm = fBuilder.getZamiaProject().getERM();
+
+		ArrayList<SourceFile> sfs = new ArrayList<SourceFile>();
+		collectSources(new File("examples/suskaIIIc"), sfs);
+
+		HashSet<DMUID> expected = new HashSet<DMUID>();
+		for (SourceFile sf : sfs) {
+			for (DMUID duuid : dum.compileFile(sf, null, "WORK", 0, true, false, false)) {
+				expected.add(duuid);
+			}
+		}
+		int nStubs = dum.getNumStubs();
+		int nErrors = erm.getNumErrors();
+
+		fBuilder.clean();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		ArrayList<Future<SFDMInfo>> jobs = new ArrayList<Future<SFDMInfo>>();
+		for (final SourceFile sf : sfs) {
+			jobs.add(executor.submit(new Callable<SFDMInfo>() {
+				public SFDMInfo call() throws Exception {
+					return dum.compileFile(sf, null, "WORK", 0, true, false, false);
+				}
+			}));
+		}
+		HashSet<DMUID> actual = new HashSet<DMUID>();
+		for (Future<SFDMInfo> job : jobs) {
+			for (DMUID duuid : job.get()) {
+				actual.add(duuid);
+			}
+		}
+		executor.shutdown();
+
+		assertEquals(expected, actual);
+		assertEquals(nStubs, dum.getNumStubs());
+		assertEquals(nErrors, erm.getNumErrors());
+	}
+
+	@Test
+	public void testParseCache() throws Exception {
+
+		setupTest();
+
+		File cacheDir = new File(ZamiaTmpDir.getTmpDir(), "parsecache_test");
+		FileUtils.deleteDirRecursive(cacheDir);
+		String oldCacheDir = ParseCache.CACHE_DIR;
+		int maxCacheMB = ParseCache.MAX_CACHE_MB;
+		ParseCache.CACHE_DIR = cacheDir.getAbsolutePath();
+		try {
+			fBuilder.clean();
+
+			DMManager dum = fBuilder.getDUM();
+
+			SourceFile sf = new SourceFile(new File("examples/whenamp.vhdl").getAbsoluteFile());
+			HashSet<DMUID> expected = new HashSet<DMUID>();
+			for (DMUID duuid : dum.compileFile(sf, null, "WORK", 0, true, false, false)) {
+				expected.add(duuid);
+			}
+			assertEquals(1, countEntries(cacheDir));
+
+			// same content at a different path is served from the cache
+			File copyDir = new File(ZamiaTmpDir.getTmpDir(), "parsecache_copy");
+			copyDir.mkdirs();
+			File copy = new File(copyDir, "whenamp.vhdl");
+			Files.copy(new File("examples/whenamp.vhdl").toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			fBuilder.clean();
+
+			SourceFile copySF = new SourceFile(copy);
+			HashSet<DMUID> actual = new HashSet<DMUID>();
+			for (DMUID duuid : dum.compileFile(copySF, null, "WORK", 0, true, false, false)) {
+				actual.add(duuid);
+				IDesignModule dm = dum.getDM(duuid);
+				assertNotNull(dm);
+				assertEquals(copySF, dm.getLocation().fSF);
+				if (dm instanceof Architecture) {
+					Architecture arch = (Architecture) dm;
+					assertTrue(arch.getNumConcurrentStatements() > 0);
+					for (int i = 0; i < arch.getNumConcurrentStatements(); i++) {
+						assertNotNull(arch.getConcurrentStatement(i));
+					}
+				}
+			}
+
+			assertEquals(expected, actual);
+			assertEquals(1, countEntries(cacheDir));
+			assertEquals(0, fBuilder.getZamiaProject().getERM().getNumErrors());
+
+			FileUtils.deleteDirRecursive(copyDir);
+
+			// the least recently used entries are deleted beyond MAX_CACHE_MB
+			dum.compileFile(new SourceFile(new File("examples/counter.vhdl").getAbsoluteFile()), null, "WORK", 0, true, false, false);
+			assertEquals(2, countEntries(cacheDir));
+			ParseCache.trim();
+			assertEquals(2, countEntries(cacheDir));
+			ParseCache.MAX_CACHE_MB = 0;
+			ParseCache.trim();
+			assertEquals(0, countEntries(cacheDir));
+		} finally {
+			ParseCache.CACHE_DIR = oldCacheDir;
+			ParseCache.MAX_CACHE_MB = maxCacheMB;
+			FileUtils.deleteDirRecursive(cacheDir);
+		}
+	}
+
+	@Test
+	public void testSourceText() throws Exception {
+
+		setupTest();
+
+		ArrayList<SourceFile> sfs = new ArrayList<SourceFile>();
+		collectSources(new File("examples/leonFPU"), sfs);
+
+		File tmpFile = new File(ZamiaTmpDir.getTmpDir(), "sourcetext_test.vhd");
+		Files.write(tmpFile.toPath(), "-- caf\u00e9\r\nentity e is\rend e;\n\n".getBytes());
+		sfs.add(new SourceFile(tmpFile));
+
+		FSCache fsCache = FSCache.getInstance();
+
+		try {
+			for (SourceFile sf : sfs) {
+
+				Reader reader = fsCache.openFile(sf, false);
+				String expected;
+				try {
+					expected = SourceText.read(reader).toString();
+				} finally {
+					reader.close();
+				}
+
+				SourceText text = SourceText.map(sf.getFile());
+				assertEquals(sf.toString(), expected, text.toString());
+
+				// line numbering of the old char by char stream
+				int line = 1;
+				int col = 0;
+				boolean prevCR = false, prevLF = false;
+				for (int i = 0; i < text.length(); i++) {
+					char c = text.charAt(i);
+					col++;
+					if (prevLF || (prevCR && c != '\n')) {
+						line++;
+						col = 1;
+					}
+					prevLF = c == '\n';
+					prevCR = c == '\r';
+
+					assertEquals(line, text.getLine(i));
+					assertEquals(col, text.getColumn(i));
+					assertEquals(i, text.getOffset(line, col));
+				}
+			}
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	private int countEntries(File aDir) {
+		int n = 0;
+		File[] files = aDir.listFiles();
+		if (files == null)
+			return 0;
+		for (File f : files) {
+			if (f.isDirectory()) {
+				n += countEntries(f);
+			} else if (f.getName().endsWith(".bin")) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private void collectSources(File aDir, ArrayList<SourceFile> aSFs) {
+		File[] files = aDir.listFiles();
+		if (files == null)
+			return;
+		for (File f : files) {
+			if (f.isDirectory()) {
+				collectSources(f, aSFs);
+			} else if (ZamiaProjectBuilder.fileNameAcceptable(f.getName())) {
+				aSFs.add(new SourceFile(new File(f.getAbsolutePath())));
+			}
+		}
+	}
+
 	@After
 	public void tearDown() {
 		fBuilder.shutdown();
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+import org.zamia.util.FileUtils;
+import org.zamia.util.ZamiaTmpDir;
+
+public class StdLibSnapshotTest extends BasicTest {
+
+	@Test
+	public void testSnapshot() throws Exception {
+
+		File baseDir = new File(ZamiaTmpDir.getTmpDir(), "zamia-test-stdlib");
+		FileUtils.deleteDirRecursive(baseDir);
+
+		String oldDir = StdLibSnapshot.SNAPSHOT_DIR;
+		StdLibSnapshot.SNAPSHOT_DIR = baseDir.getAbsolutePath();
+		try {
+			File dir = StdLibSnapshot.create(baseDir);
+			assertTrue(dir.isDirectory());
+			assertEquals(dir, StdLibSnapshot.getDir(StdLibSnapshot.getBaseDir()));
+
+			// clean() starts from the snapshot, the design still elaborates against it
+			runTest("examples/avs_aes", 125);
+
+			assertTrue(StdLibSnapshot.isRestored(fZPrj.getZDB()));
+			assertNotNull(fZPrj.getIGM().findPackage("IEEE", "STD_LOGIC_1164", null));
+			assertNotNull(fZPrj.getDUM().findPackage("STD", "STANDARD"));
+
+		} finally {
+			StdLibSnapshot.SNAPSHOT_DIR = oldDir;
+			FileUtils.deleteDirRecursive(baseDir);
+		}
+	}
+
+	@Test
+	public void testCreateOnDemand() throws Exception {
+
+		File baseDir = new File(ZamiaTmpDir.getTmpDir(), "zamia-test-stdlib");
+		FileUtils.deleteDirRecursive(baseDir);
+
+		String oldDir = StdLibSnapshot.SNAPSHOT_DIR;
+		StdLibSnapshot.SNAPSHOT_DIR = baseDir.getAbsolutePath();
+		try {
+			// no snapshot yet: the first project creates it
+			runTest("examples/avs_aes", 125);
+
+			File dir = StdLibSnapshot.getDir(baseDir);
+			assertTrue(dir.isDirectory());
+			assertTrue(StdLibSnapshot.isRestored(fZPrj.getZDB()));
+			fZPrj.shutdown();
+
+			// a snapshot with records of a class that has changed since is replaced
+			File classes = new File(dir, "classes.bin");
+			long uid = getFirstClassUID(classes, true);
+
+			runTest("examples/avs_aes", 125);
+
+			assertTrue(StdLibSnapshot.isRestored(fZPrj.getZDB()));
+			assertEquals(uid, getFirstClassUID(classes, false));
+
+		} finally {
+			StdLibSnapshot.SNAPSHOT_DIR = oldDir;
+			FileUtils.deleteDirRecursive(baseDir);
+		}
+	}
+
+	/*
+	 * classes.bin: version, number of classes, then name and serialVersionUID
+	 * of each. aFlip stores a different UID.
+	 */
+	private long getFirstClassUID(File aFile, boolean aFlip) throws Exception {
+		RandomAccessFile raf = new RandomAccessFile(aFile, "rw");
+		try {
+			raf.readInt();
+			assertTrue(raf.readInt() > 0);
+			raf.readUTF();
+			long pos = raf.getFilePointer();
+			long uid = raf.readLong();
+			if (aFlip) {
+				raf.seek(pos);
+				raf.writeLong(uid ^ 1);
+			}
+			return uid;
+		} finally {
+			raf.close();
+		}
+	}
+}
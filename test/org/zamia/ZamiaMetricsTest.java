@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.zamia.util.ZamiaTmpDir;
+
+public class ZamiaMetricsTest extends BasicTest {
+
+	@Test
+	public void testBuildMetrics() throws Exception {
+
+		assumeTrue(ZamiaMetrics.ENABLE);
+
+		runTest("examples/avs_aes", 125);
+
+		ZamiaMetrics metrics = ZamiaMetrics.getInstance();
+
+		ZamiaMetrics.Histogram modules = metrics.timer("zamia_ig_module_seconds", "", "module");
+		long n = modules.getCount();
+		assertTrue(n > 0);
+		// files may come from the parse result cache
+		long parsed = metrics.timer("zamia_parse_file_seconds", "", "file").getCount();
+		assertTrue(parsed + metrics.counter("zamia_parse_cache_hits_total", "").get() > 0);
+
+		StringWriter prom = new StringWriter();
+		metrics.writePrometheus(prom);
+		String text = prom.toString();
+		assertTrue(text.contains("# TYPE zamia_build_phase_seconds histogram\n"));
+		assertTrue(text.contains("zamia_build_phase_seconds_by_phase_count{phase=\"IG\"} 1\n"));
+		assertTrue(text.contains("zamia_ig_module_seconds_bucket{le=\"+Inf\"} " + n + "\n"));
+		assertTrue(text.contains("# TYPE zamia_zdb_cache_hits gauge\n"));
+
+		File file = new File(ZamiaTmpDir.getTmpDir(), "zamia-test-metrics.json");
+		String oldFile = ZamiaMetrics.EXPORT_FILE;
+		ZamiaMetrics.EXPORT_FILE = file.getAbsolutePath();
+		try {
+			metrics.export();
+			String json = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+			assertTrue(json.contains("\"zamia_ig_module_seconds\": {\n      \"count\": " + n + ","));
+			assertTrue(json.contains("\"by_phase\": {"));
+		} finally {
+			ZamiaMetrics.EXPORT_FILE = oldFile;
+			file.delete();
+		}
+
+		metrics.reset();
+		assertEquals(0, modules.getCount());
+	}
+}
@@ -1,6 +1,7 @@
 package org.zamia.instgraph;
 
 import java.io.File;
+import java.util.ArrayList;
 
 import org.apache.log4j.Level;
 import org.junit.Test;
@@ -11,9 +12,14 @@ import org.zamia.ZamiaException;
 import org.zamia.ZamiaLogger;
 import org.zamia.ZamiaProject;
 import org.zamia.ZamiaProjectBuilder;
+import org.zamia.instgraph.IGObject.IGObjectCat;
+import org.zamia.instgraph.IGObject.OIDir;
+import org.zamia.util.PathName;
 import org.zamia.vhdl.ast.DMUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -91,4 +97,186 @@ public class IGManagerTest {
 	public void testCountObjectsLeonSOC() throws Exception {
 		runTest("examples/leonSOC", 3855);
 	}
+
+	@Test
+	public void testParallelElaboration() throws Exception {
+		checkParallelElaboration("examples/avs_aes");
+	}
+
+	@Test
+	public void testParallelElaborationLeonSOC() throws Exception {
+		checkParallelElaboration("examples/leonSOC");
+	}
+
+	@Test
+	public void testParallelElaborationRecursion() throws Exception {
+		checkParallelElaboration("examples/igrecursion");
+		runTest("examples/igrecursion", 84);
+	}
+
+	private void checkParallelElaboration(String aTestDir) throws Exception {
+
+		int numThreads = IGManager.NUM_THREADS;
+		try {
+			IGManager.NUM_THREADS = 1;
+			String expected = dumpIG(aTestDir);
+
+			IGManager.NUM_THREADS = 4;
+			String actual = dumpIG(aTestDir);
+
+			assertTrue(expected.length() > 0);
+			assertEquals(expected, actual);
+		} finally {
+			IGManager.NUM_THREADS = numThreads;
+		}
+	}
+
+	@Test
+	public void testResolveCache() throws Exception {
+
+		setupTest("examples/avs_aes", "examples/avs_aes" + File.separator + "BuildPath.txt");
+		boolean enable = IGContainer.ENABLE_RESOLVE_CACHE;
+		try {
+			fZPrj.getBuilder().build(true, true, null);
+
+			IGContainer container = fZPrj.getIGM().findModule(getUID(fZPrj)).getStructure().getContainer();
+
+			ArrayList<String> ids = new ArrayList<String>();
+			for (IGContainerItem item : container.localItems()) {
+				ids.add(item.getId());
+			}
+			ids.add("IEEE");
+			ids.add("STD_LOGIC_VECTOR");
+			ids.add("RISING_EDGE");
+			ids.add("\"and\"");
+			ids.add("NO_SUCH_ID");
+
+			for (String id : ids) {
+				IGContainer.ENABLE_RESOLVE_CACHE = false;
+				String expected = dumpResolveResult(container.resolve(id));
+				IGContainer.ENABLE_RESOLVE_CACHE = true;
+				assertEquals(id, expected, dumpResolveResult(container.resolve(id)));
+				// second time from the cache
+				assertEquals(id, expected, dumpResolveResult(container.resolve(id)));
+			}
+
+			// adding an item invalidates cached results
+			assertNull(container.resolveObject("ZAMIA_TEST_SIG"));
+			IGType type = container.resolveType("STD_LOGIC");
+			container.add(new IGObject(OIDir.NONE, null, IGObjectCat.SIGNAL, type, "ZAMIA_TEST_SIG", null, fZPrj.getZDB()));
+			assertNotNull(container.resolveObject("ZAMIA_TEST_SIG"));
+
+			// ... but only those of containers depending on it
+			for (String id : ids) {
+				container.resolve(id);
+				assertTrue(id, container.isResolveCached(id));
+			}
+			IGContainer unrelated = new IGContainer(0, null, fZPrj.getZDB());
+			unrelated.store();
+			unrelated.add(new IGObject(OIDir.NONE, null, IGObjectCat.SIGNAL, type, "STD_LOGIC_VECTOR", null, fZPrj.getZDB()));
+			for (String id : ids) {
+				assertTrue(id, container.isResolveCached(id));
+			}
+
+			// imported packages are dependencies, too
+			assertNull(container.resolveObject("ZAMIA_TEST_CONST"));
+			IGContainer pkgContainer = fZPrj.getIGM().findPackage("IEEE", "STD_LOGIC_1164", null).getContainer();
+			pkgContainer.add(new IGObject(OIDir.NONE, null, IGObjectCat.CONSTANT, type, "ZAMIA_TEST_CONST", null, fZPrj.getZDB()));
+			assertTrue(container.isResolveCached("ZAMIA_TEST_SIG"));
+			assertTrue(!container.isResolveCached("STD_LOGIC_VECTOR"));
+			assertNotNull(container.resolveObject("ZAMIA_TEST_CONST"));
+
+		} finally {
+			IGContainer.ENABLE_RESOLVE_CACHE = enable;
+			fZPrj.shutdown();
+			fZPrj = null;
+		}
+	}
+
+	@Test
+	public void testSharedIntStore() throws Exception {
+
+		setupTest("examples/refsim/intOverflow", "examples/refsim/intOverflow" + File.separator + "BuildPath.txt");
+		try {
+			fZPrj.getBuilder().build(true, true, null);
+
+			IGContainer container = fZPrj.getIGM().findModule(getUID(fZPrj)).getStructure().getContainer();
+			IGTypeStatic type = (IGTypeStatic) container.resolveType("INTEGER");
+
+			IGStaticValue.INT v = type.getCachedInt(42);
+			assertTrue(v == type.getCachedInt(42));
+
+			// every save stores a copy, the shared value itself stays unstored
+			long dbid = v.save(v);
+			assertTrue(dbid != 0);
+			assertEquals(0, v.getDBID());
+			assertTrue(v.save(v) != dbid);
+
+			IGStaticValue stored = (IGStaticValue) fZPrj.getZDB().load(dbid);
+			assertEquals(42, stored.getOrd());
+			assertTrue(stored != v);
+
+		} finally {
+			fZPrj.shutdown();
+			fZPrj = null;
+		}
+	}
+
+	private String dumpResolveResult(IGResolveResult aResult) {
+		StringBuilder buf = new StringBuilder();
+		for (IGItem item : aResult) {
+			buf.append(item.getClass().getSimpleName()).append(' ').append(item.getDBID()).append(' ').append(item).append('\n');
+		}
+		return buf.toString();
+	}
+
+	/*
+	 * everything but DBIDs, which depend on the order things got stored in,
+	 * and identity hash codes of items without a toString()
+	 */
+	private String dumpIG(String aTestDir) throws Exception {
+		setupTest(aTestDir, aTestDir + File.separator + "BuildPath.txt");
+		try {
+			fZPrj.getBuilder().build(true, true, null);
+
+			final IGManager igm = fZPrj.getIGM();
+			final StringBuilder buf = new StringBuilder();
+
+			IGModule module = igm.findModule(getUID(fZPrj));
+			module.accept(new IGStructureVisitor() {
+				@Override
+				public void visit(IGStructure aStructure, PathName aPath) throws ZamiaException {
+
+					buf.append(aPath).append(": ").append(aStructure).append(" at ").append(aStructure.getPath()).append('\n');
+
+					for (IGContainerItem item : aStructure.getContainer().localItems()) {
+						buf.append("  ").append(item).append('\n');
+					}
+
+					for (IGConcurrentStatement stmt : aStructure.getStatements()) {
+						buf.append("  ").append(stmt).append('\n');
+
+						if (stmt instanceof IGProcess) {
+							IGSequenceOfStatements sos = ((IGProcess) stmt).getSequenceOfStatements();
+							int n = sos.getNumStatements();
+							for (int i = 0; i < n; i++) {
+								IGSequentialStatement seqStmt = sos.getStatement(i);
+								buf.append("    ").append(seqStmt.getClass().getSimpleName()).append(' ').append(seqStmt.computeSourceLocation()).append('\n');
+							}
+						} else if (stmt instanceof IGInstantiation) {
+							IGInstantiation inst = (IGInstantiation) stmt;
+							IGModule child = igm.findModule(inst.getSignature());
+							buf.append("    module at ").append(child != null ? child.getStructure().getPath() : null).append('\n');
+							buf.append("    instantiators ").append(igm.findInstantiators(inst.getChildDUUID().getUID())).append('\n');
+						}
+					}
+				}
+			}, Integer.MAX_VALUE);
+
+			return buf.toString().replaceAll("@[0-9a-f]+\\b", "@");
+		} finally {
+			fZPrj.shutdown();
+			fZPrj = null;
+		}
+	}
 }
@@ -16,10 +16,13 @@ import org.zamia.ZamiaException;
 import org.zamia.ZamiaLogger;
 import org.zamia.ZamiaProject;
 import org.zamia.ZamiaProjectBuilder;
+import org.zamia.util.FileUtils;
 import org.zamia.util.HashSetArray;
+import org.zamia.util.ZamiaTmpDir;
 import org.zamia.vhdl.ast.DMUID;
 
 import java.io.File;
+import java.nio.file.Files;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -128,6 +131,55 @@ public class IncrementalUpdateIGTest {
 		runTest(baseDir, 1913, changed, 6);
 	}
 
+	@Test
+	public void testPackageChange() throws Exception {
+
+		File baseDir = new File(ZamiaTmpDir.getTmpDir(), "plasma_pkg_change");
+		FileUtils.deleteDirRecursive(baseDir);
+		baseDir.mkdirs();
+		for (File f : new File("examples/plasma").listFiles()) {
+			if (f.isFile()) {
+				Files.copy(f.toPath(), new File(baseDir, f.getName()).toPath());
+			}
+		}
+
+		File pkg = new File(baseDir, "mlite_pack.vhd");
+		SourceFile sf = new SourceFile(pkg);
+		sf.setLocalPath(pkg.getName());
+		HashSetArray<SourceFile> changed = new HashSetArray<SourceFile>(1);
+		changed.add(sf);
+
+		setupTest(baseDir.getAbsolutePath(), baseDir.getAbsolutePath() + "/BuildPath.txt");
+
+		ZamiaProjectBuilder builder = fZPrj.getBuilder();
+		builder.build(true, true, null);
+		assertEquals(0, fZPrj.getERM().getNumErrors());
+
+		DMUID duuid = getUID(fZPrj);
+		int numNodes = fZPrj.getIGM().countNodes(duuid);
+
+		// comments outside of declarations do not affect anybody
+		String text = new String(Files.readAllBytes(pkg.toPath()), "ISO-8859-1");
+		text = "-- edited\n" + text;
+		Files.write(pkg.toPath(), text.getBytes("ISO-8859-1"));
+
+		assertEquals(0, builder.build(false, false, changed));
+
+		// only the users of mult_signed_divide (control, mult) and their instantiator are rebuilt
+		text = text.replace("mult_signed_divide : mult_function_type := \"1000\"", "mult_signed_divide : mult_function_type := \"1001\"");
+		Files.write(pkg.toPath(), text.getBytes("ISO-8859-1"));
+
+		int n = builder.build(false, false, changed);
+		logger.info("IGTest: package change got %d nodes rebuilt.", n);
+		assertEquals(3, n);
+
+		assertEquals(0, fZPrj.getERM().getNumErrors());
+		assertEquals(numNodes, fZPrj.getIGM().countNodes(duuid));
+
+		fZPrj.shutdown();
+		FileUtils.deleteDirRecursive(baseDir);
+	}
+
 	private void addSource(String aBaseDir, String aLocalPath, HashSetArray<SourceFile> aChanged) {
 		SourceFile sf = new SourceFile(new File(aBaseDir + File.separator + aLocalPath));
 		sf.setLocalPath(aLocalPath);
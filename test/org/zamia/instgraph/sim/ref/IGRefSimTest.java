@@ -73,6 +73,11 @@ public class IGRefSimTest {
 	}
 
 	private void runTest(String aTestDir, String aBuildPathName, int aNumNodes, int aNanos) throws Exception {
+		DMUID duuid = buildTest(aTestDir, aBuildPathName, aNumNodes);
+		simulate(duuid, aNanos);
+	}
+
+	private DMUID buildTest(String aTestDir, String aBuildPathName, int aNumNodes) throws Exception {
 		setupTest(aTestDir, aTestDir + File.separator + aBuildPathName);
 
 		ZamiaProjectBuilder builder = fZPrj.getBuilder();
@@ -95,9 +100,13 @@ public class IGRefSimTest {
 		logger.info("IGTest: elaborated model for %s has %d unique modules.", duuid, n);
 		assertEquals(aNumNodes, n);
 
+		return duuid;
+	}
+
+	private void simulate(DMUID aDUUID, int aNanos) throws Exception {
 		fSim = new IGSimRef();
 
-		Toplevel tl = new Toplevel(duuid, null);
+		Toplevel tl = new Toplevel(aDUUID, null);
 
 		ToplevelPath tlp = new ToplevelPath(tl, new PathName(""));
 
@@ -147,6 +156,68 @@ public class IGRefSimTest {
 
 	}
 	
+	@Test
+	public void testIntOverflow() throws Exception {
+
+		runTest("examples/refsim/intOverflow", 1, 10);
+
+	}
+
+	@Test
+	public void testCallSites() throws Exception {
+
+		runTest("examples/refsim/callSites", 1, 10);
+
+	}
+
+	@Test
+	public void testPackedArrays() throws Exception {
+
+		boolean enable = IGStaticValue.ENABLE_PACKED_ARRAYS;
+		try {
+			IGStaticValue.ENABLE_PACKED_ARRAYS = true;
+			runTest("examples/refsim/packedArrays", 1, 10);
+			checkPackedArrayResults();
+			String packed = getArrayValue("COMPARES");
+			tearDown();
+
+			IGStaticValue.ENABLE_PACKED_ARRAYS = false;
+			runTest("examples/refsim/packedArrays", 1, 10);
+			checkPackedArrayResults();
+			assertEquals(packed, getArrayValue("COMPARES"));
+			tearDown();
+
+			// constants elaborated unpacked, everything computed at runtime packed
+			DMUID duuid = buildTest("examples/refsim/packedArrays", "BuildPath.txt", 1);
+			IGStaticValue.ENABLE_PACKED_ARRAYS = true;
+			simulate(duuid, 10);
+			checkPackedArrayResults();
+			assertEquals(packed, getArrayValue("COMPARES"));
+		} finally {
+			IGStaticValue.ENABLE_PACKED_ARRAYS = enable;
+		}
+	}
+
+	/*
+	 * the *_RES signals of examples/refsim/packedArrays, operands and
+	 * expected values are listed left to right in foo.vhdl
+	 */
+	private void checkPackedArrayResults() throws ZamiaException {
+		// not C5, not B5, and, or, xor, nand, nor, xnor
+		assertEquals("01001" + "00011" + "10100" + "11110" + "01010" + "01011" + "00001" + "10101", getElements("LOGIC_RES"));
+		assertEquals("FALSETRUEFALSE" + "FALSEFALSEFALSE" + "TRUETRUETRUE" + "FALSETRUETRUE", getElements("BOOL_RES"));
+		assertEquals("01XX" + "100X" + "101X" + "01XX", getElements("STD_LOGIC_RES"));
+
+		assertEquals("01100" + "01100" + "01011" + "00000", getElements("SLL_RES"));
+		assertEquals("00101" + "00101" + "11000" + "00000", getElements("SRL_RES"));
+		assertEquals("01100" + "11011" + "00111" + "00000", getElements("SLA_RES"));
+		assertEquals("11011" + "11011" + "11000" + "11111", getElements("SRA_RES"));
+		assertEquals("11010" + "11010" + "01011" + "11010", getElements("ROL_RES"));
+		assertEquals("01011" + "01011" + "01101" + "10101", getElements("ROR_RES"));
+
+		assertEquals("1011010110" + "10011" + "01110" + "1011" + "0110" + "1001110" + "1011", getElements("CONCAT_RES"));
+	}
+
 	@Test
 	public void testGCounter() throws Exception {
 
@@ -457,6 +528,36 @@ public class IGRefSimTest {
 		assertEquals("Signal " + signalName + " has wrong value.", valueAsString, value.toString());
 	}
 
+	private String getArrayValue(String aSignalName) throws ZamiaException {
+
+		IGStaticValue value = fSim.getValue(new PathName(aSignalName));
+
+		StringBuilder buf = new StringBuilder();
+		int offset = value.getArrayOffset();
+		int n = value.getNumArrayEntries(null);
+		for (int i = 0; i < n; i++) {
+			buf.append(value.getValue(offset + i, null));
+		}
+		return buf.toString();
+	}
+
+	/*
+	 * elements of the array signal left to right, as they are written in VHDL
+	 * (element 0 is the rightmost one, whatever the direction)
+	 */
+	private String getElements(String aSignalName) throws ZamiaException {
+
+		IGStaticValue value = fSim.getValue(new PathName(aSignalName));
+
+		StringBuilder buf = new StringBuilder();
+		int offset = value.getArrayOffset();
+		int n = value.getNumArrayEntries(null);
+		for (int i = n - 1; i >= 0; i--) {
+			buf.append(value.getValue(offset + i, null));
+		}
+		return buf.toString();
+	}
+
 	private void unzipBug(int bugNr) {
 
 		Map<String, String> buggyFiles = new HashMap<String, String>();
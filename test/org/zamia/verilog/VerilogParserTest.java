@@ -15,6 +15,8 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * @author Guenter Bartsch
  */
@@ -88,6 +90,50 @@ public class VerilogParserTest {
 
 	}
 
+	@Test
+	public void testPreprocessorPipeline() throws Exception {
+
+		String fileName = "examples/verilog/or1200-rel1/or1200_cpu.v";
+
+		boolean pipeline = VerilogPreprocessor.ENABLE_PIPELINE;
+		try {
+			VerilogPreprocessor.ENABLE_PIPELINE = false;
+			String expected = expand(fileName);
+
+			VerilogPreprocessor.ENABLE_PIPELINE = true;
+			assertEquals(expected, expand(fileName));
+		} finally {
+			VerilogPreprocessor.ENABLE_PIPELINE = pipeline;
+		}
+	}
+
+	private String expand(String aFileName) throws Exception {
+
+		StringBuilder buf = new StringBuilder();
+
+		VerilogPreprocessor pre = new VerilogPreprocessor(new SourceFile(new File(aFileName)), new BufferedReader(new FileReader(aFileName)), false);
+		try {
+			int cnt = 0;
+			while (true) {
+				int ic = pre.read();
+				if (ic < 0) {
+					break;
+				}
+				buf.append((char) ic).append(' ').append(pre.getLine()).append(':').append(pre.getCol()).append('\n');
+
+				// the lexer pushes back its lookahead all the time
+				if (++cnt % 7 == 0) {
+					pre.unread((char) ic);
+					assertEquals(ic, pre.read());
+				}
+			}
+		} finally {
+			pre.close();
+		}
+
+		return buf.toString();
+	}
+
 	@Test
 	public void testLVALUE() throws ParserException, LexerException, IOException {
 		compile("examples/verilog/misc/lvalue.v");
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+
+import org.zamia.SourceFile;
+import org.zamia.ZamiaProject;
+
+/**
+ * Compares record size and encode/decode speed of the ZDB codecs over all
+ * objects of a real, elaborated project.
+ *
+ * usage: ZDBCodecBenchmark [basePath [rounds]]
+ *
+ */
+public class ZDBCodecBenchmark {
+
+	private final String fBasePath;
+
+	private final int fRounds;
+
+	public ZDBCodecBenchmark(String aBasePath, int aRounds) {
+		fBasePath = aBasePath;
+		fRounds = aRounds;
+	}
+
+	private ZamiaProject openProject() throws Exception {
+		SourceFile bp = new SourceFile(new File(fBasePath + File.separator + "BuildPath.txt"));
+		return new ZamiaProject("ZDB Codec Benchmark", fBasePath, bp, null);
+	}
+
+	private void run(ZDB aZDB, ZDBCodec aCodec, ArrayList<Object> aObjects) throws Exception {
+
+		byte[][] records = new byte[aObjects.size()][];
+
+		long bytes = 0;
+		long encodeTime = 0, decodeTime = 0;
+
+		for (int round = 0; round < fRounds; round++) {
+
+			long startTime = System.nanoTime();
+			bytes = 0;
+			for (int i = 0; i < records.length; i++) {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				ObjectOutputStream out = aCodec.createOutputStream(baos);
+				out.writeObject(aObjects.get(i));
+				out.close();
+				records[i] = baos.toByteArray();
+				bytes += records[i].length;
+			}
+			encodeTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			for (int i = 0; i < records.length; i++) {
+				aCodec.createInputStream(new ByteArrayInputStream(records[i]), aZDB).readObject();
+			}
+			decodeTime = System.nanoTime() - startTime;
+		}
+
+		System.out.printf("ZDBCodecBenchmark: %-16s %10d KB %8.1f avg bytes, encode %8d ms, decode %8d ms\n", aCodec.getClass().getSimpleName(), bytes / 1024, (double) bytes / records.length, encodeTime / 1000000, decodeTime / 1000000);
+	}
+
+	public void run() throws Exception {
+
+		ZamiaProject zprj = openProject();
+		try {
+			zprj.clean();
+			zprj.getBuilder().build(true, true, null);
+
+			ZDB zdb = zprj.getZDB();
+
+			long[] ids = ZDBLoadBenchmark.collectIds(zdb);
+			ArrayList<Object> objects = new ArrayList<Object>(ids.length);
+			for (long id : ids) {
+				objects.add(zdb.load(id));
+			}
+
+			System.out.printf("ZDBCodecBenchmark: %s, %d objects, %d rounds\n", fBasePath, objects.size(), fRounds);
+
+			for (ZDBCodec codec : zdb.getCodecs()) {
+				run(zdb, codec, objects);
+			}
+		} finally {
+			zprj.shutdown();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		String basePath = args.length > 0 ? args[0] : "examples/leonSOC";
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		new ZDBCodecBenchmark(basePath, rounds).run();
+	}
+
+}
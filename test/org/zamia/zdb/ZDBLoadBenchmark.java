@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 by the authors indicated in the @author tags.
+ * All rights reserved.
+ *
+ * See the LICENSE file for details.
+ *
+ */
+package org.zamia.zdb;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.zamia.SourceFile;
+import org.zamia.ZamiaLogger;
+import org.zamia.ZamiaProject;
+
+/**
+ * Multi-threaded ZDB.load() throughput benchmark over a real, elaborated
+ * project. Builds the project once, then re-opens its ZDB with the LRU and
+ * the concurrent (CLOCK) cache and drives load() from 1..N threads.
+ *
+ * usage: ZDBLoadBenchmark [basePath [maxThreads [seconds]]]
+ *
+ */
+public class ZDBLoadBenchmark {
+
+	public final static ZamiaLogger logger = ZamiaLogger.getInstance();
+
+	private static final int MAX_CONSECUTIVE_MISSES = 1000;
+
+	private final String fBasePath;
+
+	private final int fMaxThreads;
+
+	private final long fMillis;
+
+	public ZDBLoadBenchmark(String aBasePath, int aMaxThreads, int aSeconds) {
+		fBasePath = aBasePath;
+		fMaxThreads = aMaxThreads;
+		fMillis = aSeconds * 1000L;
+	}
+
+	private ZamiaProject openProject() throws Exception {
+		SourceFile bp = new SourceFile(new File(fBasePath + File.separator + "BuildPath.txt"));
+		return new ZamiaProject("ZDB Load Benchmark", fBasePath, bp, null);
+	}
+
+	static long[] collectIds(ZDB aZDB) {
+
+		// DBIDs are handed out densely, so probing until a long run of misses finds them all
+
+		ArrayList<Long> ids = new ArrayList<Long>();
+		int misses = 0;
+		for (long id = 1; misses < MAX_CONSECUTIVE_MISSES; id++) {
+			if (aZDB.load(id) != null) {
+				ids.add(id);
+				misses = 0;
+			} else {
+				misses++;
+			}
+		}
+
+		long[] res = new long[ids.size()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = ids.get(i);
+		}
+		return res;
+	}
+
+	private double runThreads(final ZDB aZDB, final long[] aIds, int aNumThreads) throws InterruptedException {
+
+		final AtomicLong total = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final long deadline[] = new long[1];
+
+		Thread[] threads = new Thread[aNumThreads];
+		for (int i = 0; i < aNumThreads; i++) {
+			final int seed = i;
+			threads[i] = new Thread("ZDBLoadBenchmark-" + i) {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long n = 0;
+					int idx = seed * 7919;
+					while (System.currentTimeMillis() < deadline[0]) {
+						for (int j = 0; j < 1024; j++) {
+							idx = (idx + 1) % aIds.length;
+							aZDB.load(aIds[idx]);
+						}
+						n += 1024;
+					}
+					total.addAndGet(n);
+				}
+			};
+			threads[i].start();
+		}
+
+		long startTime = System.currentTimeMillis();
+		deadline[0] = startTime + fMillis;
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+		return total.get() / seconds;
+	}
+
+	private void runMode(boolean aConcurrent) throws Exception {
+
+		ZDB.ENABLE_CONCURRENT_CACHE = aConcurrent;
+
+		ZamiaProject zprj = openProject();
+		try {
+			ZDB zdb = zprj.getZDB();
+
+			long[] ids = collectIds(zdb);
+
+			System.out.printf("ZDBLoadBenchmark: %s cache, %d objects\n", aConcurrent ? "CLOCK" : "LRU", ids.length);
+
+			// warm up
+			runThreads(zdb, ids, 1);
+
+			for (int n = 1; n <= fMaxThreads; n *= 2) {
+				double rate = runThreads(zdb, ids, n);
+				System.out.printf("ZDBLoadBenchmark: %2d threads: %12.0f loads/sec\n", n, rate);
+			}
+		} finally {
+			zprj.shutdown();
+		}
+	}
+
+	public void run() throws Exception {
+
+		ZamiaProject zprj = openProject();
+		zprj.clean();
+		zprj.getBuilder().build(true, true, null);
+		zprj.shutdown();
+
+		runMode(false);
+		runMode(true);
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		String basePath = args.length > 0 ? args[0] : "examples/gcounter";
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		new ZDBLoadBenchmark(basePath, maxThreads, seconds).run();
+	}
+
+}
@@ -15,11 +15,15 @@ import org.zamia.util.FileUtils;
 import org.zamia.util.ZamiaTmpDir;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 
 /**
@@ -176,6 +180,588 @@ public class ZDBTest {
 
 	}
 
+	@Test
+	public void testConcurrentLoad() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest3");
+
+		FileUtils.deleteDirRecursive(file);
+
+		// cache well below the working set and no soft references, so the
+		// threads keep evicting and loading from disk
+		boolean concurrent = ZDB.ENABLE_CONCURRENT_CACHE;
+		boolean softCache = ZDB.ENABLE_SOFT_CACHE;
+		int cacheSize = ZDB.CACHE_MAX_SIZE;
+		ZDB.ENABLE_CONCURRENT_CACHE = true;
+		ZDB.ENABLE_SOFT_CACHE = false;
+		ZDB.CACHE_MAX_SIZE = 1000;
+		try {
+			fZDB = new ZDB(file, null);
+
+			final int n = 50000;
+			final long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = fZDB.store("Object #" + i);
+			}
+
+			long misses = fZDB.getCacheMisses();
+			long evictions = fZDB.getCacheEvictions();
+
+			final AtomicInteger failures = new AtomicInteger();
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				final Random rg = new Random(t);
+				threads[t] = new Thread() {
+					public void run() {
+						for (int it = 0; it < n; it++) {
+							int i = rg.nextInt(n);
+							if (!("Object #" + i).equals(fZDB.load(keys[i]))) {
+								failures.incrementAndGet();
+							}
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for (Thread t : threads) {
+				t.join();
+			}
+
+			assertEquals(0, failures.get());
+			assertTrue(fZDB.getCacheMisses() - misses > n);
+			assertTrue(fZDB.getCacheEvictions() > evictions);
+			assertTrue(fZDB.getCacheSize() <= 1000);
+		} finally {
+			ZDB.ENABLE_CONCURRENT_CACHE = concurrent;
+			ZDB.ENABLE_SOFT_CACHE = softCache;
+			ZDB.CACHE_MAX_SIZE = cacheSize;
+		}
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest4");
+
+		FileUtils.deleteDirRecursive(file);
+
+		int segmentSize = ZDB.SEGMENT_SIZE;
+		boolean autoCompaction = ZDB.ENABLE_AUTO_COMPACTION;
+		ZDB.SEGMENT_SIZE = 1;
+		ZDB.ENABLE_AUTO_COMPACTION = false;
+		try {
+			fZDB = new ZDB(file, null);
+
+			int n = 20000;
+			final long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = fZDB.store("Object #" + i);
+			}
+			fZDB.flush();
+
+			assertEquals(0, fZDB.getDeadBytes());
+
+			for (int i = 0; i < n; i++) {
+				fZDB.update(keys[i], "Updated object #" + i);
+			}
+			fZDB.delete(keys[0]);
+			fZDB.flush();
+
+			long size = fZDB.getDataSize();
+			assertTrue(fZDB.getDeadBytes() > 0);
+
+			long reclaimed = fZDB.compact();
+
+			assertTrue(reclaimed > 0);
+			assertEquals(size - reclaimed, fZDB.getDataSize());
+
+			assertEquals(null, fZDB.load(keys[0]));
+			for (int i = 1; i < n; i++) {
+				assertEquals("Updated object #" + i, fZDB.load(keys[i]));
+			}
+
+			fZDB.shutdown();
+			fZDB = new ZDB(file, null);
+
+			for (int i = 1; i < n; i++) {
+				assertEquals("Updated object #" + i, fZDB.load(keys[i]));
+			}
+
+			// objects stored while the offsets are being scanned
+			for (int i = 1; i < n; i += 2) {
+				fZDB.update(keys[i], "Again updated object #" + i);
+			}
+			fZDB.flush();
+			Thread updater = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 2; i < keys.length; i += 2) {
+						fZDB.update(keys[i], "Again updated object #" + i);
+						fZDB.store("New object #" + i);
+					}
+				}
+			};
+			updater.start();
+			assertTrue(fZDB.compact() > 0);
+			updater.join();
+			fZDB.compact();
+
+			for (int i = 1; i < n; i++) {
+				assertEquals("Again updated object #" + i, fZDB.load(keys[i]));
+			}
+
+			// records outside data.bin cannot be exported
+			File export = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest4.export");
+			export.delete();
+			fZDB.exportToFile(export.getAbsolutePath(), null);
+			assertTrue(!export.exists());
+
+			// clear() releases the mapped segments, the store is usable afterwards
+			fZDB.clear();
+			assertEquals(null, fZDB.load(keys[1]));
+			long id = fZDB.store("Object after clear");
+			fZDB.flush();
+			assertEquals("Object after clear", fZDB.load(id));
+
+			fZDB.exportToFile(export.getAbsolutePath(), null);
+			assertTrue(export.exists());
+			export.delete();
+
+		} finally {
+			ZDB.SEGMENT_SIZE = segmentSize;
+			ZDB.ENABLE_AUTO_COMPACTION = autoCompaction;
+		}
+	}
+
+	@Test
+	public void testMixedCodecs() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest5");
+
+		FileUtils.deleteDirRecursive(file);
+
+		int n = 1000;
+		long[] keys = new long[2 * n];
+
+		boolean compact = ZDB.ENABLE_COMPACT_CODEC;
+		try {
+			ZDB.ENABLE_COMPACT_CODEC = false;
+			fZDB = new ZDB(file, null);
+			for (int i = 0; i < n; i++) {
+				keys[i] = fZDB.store(createObject(i));
+			}
+			fZDB.shutdown();
+
+			ZDB.ENABLE_COMPACT_CODEC = true;
+			fZDB = new ZDB(file, null);
+			for (int i = n; i < 2 * n; i++) {
+				keys[i] = fZDB.store(createObject(i));
+			}
+			fZDB.shutdown();
+
+			fZDB = new ZDB(file, null);
+			for (int i = 0; i < 2 * n; i++) {
+				assertEquals(createObject(i), fZDB.load(keys[i]));
+			}
+
+		} finally {
+			ZDB.ENABLE_COMPACT_CODEC = compact;
+		}
+	}
+
+	@Test
+	public void testStringIndex() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest6");
+
+		FileUtils.deleteDirRecursive(file);
+
+		fZDB = new ZDB(file, null);
+
+		int n = 50000;
+		for (int i = 0; i < n; i++) {
+			fZDB.putIdx("Idx", "Key #" + i, i + 1);
+		}
+		fZDB.putIdx("Other", "Key #0", 42);
+
+		// overwrite and delete some
+		for (int i = 0; i < n; i += 3) {
+			fZDB.putIdx("Idx", "Key #" + i, i + 2);
+		}
+		for (int i = 1; i < n; i += 3) {
+			fZDB.delIdx("Idx", "Key #" + i);
+		}
+
+		for (int pass = 0; pass < 2; pass++) {
+
+			int size = n - (n + 1) / 3;
+			assertEquals(size, fZDB.getIdxNumEntries("Idx"));
+
+			for (int i = 0; i < n; i++) {
+				String key = "Key #" + i;
+				switch (i % 3) {
+				case 0:
+					assertEquals(i + 2, fZDB.getIdx("Idx", key));
+					break;
+				case 1:
+					assertEquals(0, fZDB.getIdx("Idx", key));
+					assertTrue(!fZDB.isIdxKey("Idx", key));
+					break;
+				default:
+					assertEquals(i + 1, fZDB.getIdx("Idx", key));
+				}
+			}
+			assertEquals(42, fZDB.getIdx("Other", "Key #0"));
+			assertEquals(0, fZDB.getIdx("Missing", "Key #0"));
+
+			// test persistency
+			fZDB.shutdown();
+			fZDB = new ZDB(file, null);
+		}
+
+		fZDB.delAllIdx("Idx");
+		assertEquals(0, fZDB.getIdxNumEntries("Idx"));
+		assertEquals(0, fZDB.getIdx("Idx", "Key #2"));
+		assertEquals(42, fZDB.getIdx("Other", "Key #0"));
+
+		// dropped indices hand their pages back, refilling does not grow the page file
+		File pages = new File(file, ZDB.EHM_PAGES_FILENAME);
+		long length = 0;
+		for (int cycle = 0; cycle < 3; cycle++) {
+			for (int i = 0; i < 10000; i++) {
+				fZDB.putIdx("Idx", "Key #" + i, i + 1);
+			}
+			fZDB.flush();
+			if (cycle == 0) {
+				length = pages.length();
+			} else {
+				assertTrue(pages.length() <= length);
+			}
+			assertEquals(10000, fZDB.getIdx("Idx", "Key #9999"));
+			fZDB.delAllIdx("Idx");
+		}
+		assertEquals(42, fZDB.getIdx("Other", "Key #0"));
+	}
+
+	@Test
+	public void testCacheBudget() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest7");
+
+		FileUtils.deleteDirRecursive(file);
+
+		int cacheMB = ZDB.CACHE_MAX_MB;
+		ZDB.CACHE_MAX_MB = 1;
+		try {
+			fZDB = new ZDB(file, null);
+		} finally {
+			ZDB.CACHE_MAX_MB = cacheMB;
+		}
+
+		int n = 20000;
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = fZDB.store(createObject(i));
+			assertTrue(fZDB.getCacheBytes() <= fZDB.getCacheMaxBytes());
+		}
+
+		assertTrue(fZDB.getCacheEvictions() > 0);
+		assertTrue(fZDB.getCacheSize() < n);
+
+		for (int i = 0; i < n; i++) {
+			assertEquals(createObject(i), fZDB.load(keys[i]));
+			assertTrue(fZDB.getCacheBytes() <= fZDB.getCacheMaxBytes());
+		}
+		assertEquals(createObject(0), fZDB.load(keys[0]));
+		assertEquals(createObject(0), fZDB.load(keys[0]));
+
+		assertTrue(fZDB.getCacheMisses() > 0);
+		assertTrue(fZDB.getCacheHits() > 0);
+	}
+
+	@Test
+	public void testSoftCache() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest8");
+
+		FileUtils.deleteDirRecursive(file);
+
+		fZDB = new ZDB(file, null);
+
+		int n = 1000;
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = fZDB.store(createObject(i));
+		}
+
+		// evicts everything from the primary cache
+		fZDB.flush();
+		assertEquals(0, fZDB.getCacheSize());
+
+		fZDB.update(keys[1], createObject(-1));
+		fZDB.flush();
+		fZDB.delete(keys[2]);
+
+		for (int i = 0; i < n; i++) {
+			Object obj = fZDB.load(keys[i]);
+			switch (i) {
+			case 1:
+				assertEquals(createObject(-1), obj);
+				break;
+			case 2:
+				assertEquals(null, obj);
+				break;
+			default:
+				assertEquals(createObject(i), obj);
+			}
+		}
+
+		// unless the GC was under pressure, these did not touch the disk
+		assertTrue(fZDB.getSoftCacheHits() > 0);
+	}
+
+	@Test
+	public void testLoadAll() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest9");
+
+		FileUtils.deleteDirRecursive(file);
+
+		fZDB = new ZDB(file, null);
+
+		int n = 10000;
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = fZDB.store(createObject(i));
+		}
+		fZDB.delete(keys[1]);
+
+		fZDB.shutdown();
+		fZDB = new ZDB(file, null);
+
+		// shuffled, with some of them cached already
+		long[] ids = new long[n + 1];
+		int[] idx = new int[n + 1];
+		Random rg = new Random(42);
+		for (int i = 0; i < n; i++) {
+			int j = rg.nextInt(i + 1);
+			idx[i] = idx[j];
+			idx[j] = i;
+		}
+		for (int i = 0; i < n; i++) {
+			ids[i] = keys[idx[i]];
+			if (i % 7 == 0) {
+				fZDB.load(ids[i]);
+			}
+		}
+		ids[n] = 0;
+
+		int loadThreads = ZDB.LOAD_THREADS;
+		ZDB.LOAD_THREADS = 4;
+		Object[] objs;
+		try {
+			objs = fZDB.loadAll(ids);
+		} finally {
+			ZDB.LOAD_THREADS = loadThreads;
+		}
+
+		assertEquals(n + 1, objs.length);
+		for (int i = 0; i < n; i++) {
+			assertEquals(idx[i] == 1 ? null : createObject(idx[i]), objs[i]);
+			assertTrue(objs[i] == fZDB.load(ids[i]));
+		}
+		assertEquals(null, objs[n]);
+	}
+
+	@Test
+	public void testRecovery() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest10");
+		File crashed = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest10crashed");
+
+		FileUtils.deleteDirRecursive(file);
+		FileUtils.deleteDirRecursive(crashed);
+
+		boolean locking = ZDB.ENABLE_LOCKING;
+		ZDB.ENABLE_LOCKING = false;
+		try {
+			fZDB = new ZDB(file, null);
+
+			int n = 5000;
+			long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = fZDB.store(createObject(i));
+				fZDB.putIdx("Idx", "Key #" + i, keys[i]);
+			}
+			fZDB.flush();
+
+			// uncommitted changes, with the index pages already written in place
+			for (int i = 0; i < n; i += 2) {
+				fZDB.update(keys[i], createObject(-i));
+				fZDB.putIdx("Idx", "Key #" + i, 42);
+			}
+			long newKey = fZDB.store(createObject(n));
+			fZDB.delIdx("Idx", "Key #1");
+			fZDB.delete(keys[3]);
+			fZDB.putIdx("Other", "Key #0", 42);
+			fZDB.getEHMManager().flush();
+
+			// crash
+			crashed.mkdirs();
+			FileUtils.copy(file, crashed);
+
+			ZDB zdb = new ZDB(crashed, null);
+			try {
+				for (int i = 0; i < n; i++) {
+					assertEquals(createObject(i), zdb.load(keys[i]));
+					assertEquals(keys[i], zdb.getIdx("Idx", "Key #" + i));
+				}
+				assertEquals(null, zdb.load(newKey));
+				assertEquals(0, zdb.getIdx("Other", "Key #0"));
+
+				// and it goes on from there
+				zdb.update(keys[0], createObject(-1));
+				zdb.flush();
+				assertEquals(createObject(-1), zdb.load(keys[0]));
+			} finally {
+				zdb.shutdown();
+			}
+
+			fZDB.shutdown();
+			fZDB = null;
+		} finally {
+			ZDB.ENABLE_LOCKING = locking;
+		}
+	}
+
+	@Test
+	public void testCommitCost() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File file = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest11");
+
+		FileUtils.deleteDirRecursive(file);
+
+		fZDB = new ZDB(file, null);
+
+		int n = 100000;
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = fZDB.store(createObject(i));
+			fZDB.putIdx("Idx", "Key #" + i, keys[i]);
+		}
+		fZDB.flush();
+
+		long metadata = 0;
+		for (File f : file.listFiles()) {
+			if (!f.getName().startsWith("data") && !f.getName().equals("ehm.pages")) {
+				metadata += f.length();
+			}
+		}
+
+		// a small change must not copy the metadata files into the journal
+		long journaled = fZDB.getJournal().getBytesWritten();
+		fZDB.update(keys[42], createObject(-42));
+		long startTime = System.nanoTime();
+		fZDB.flush();
+		long time = (System.nanoTime() - startTime) / 1000000;
+		journaled = fZDB.getJournal().getBytesWritten() - journaled;
+
+		logger.info("ZDBTest: commit of 1 change: %d ms, %d bytes journaled, %d bytes of metadata", time, journaled, metadata);
+
+		assertTrue(journaled < metadata / 10);
+		assertEquals(createObject(-42), fZDB.load(keys[42]));
+
+		for (String name : file.list()) {
+			assertTrue(name, !name.endsWith(ZDBJournal.BACKUP_SUFFIX));
+		}
+	}
+
+	@Test
+	public void testJournalMoveAside() throws Exception {
+
+		File tmpDir = ZamiaTmpDir.getTmpDir();
+
+		File dir = new File(tmpDir.getAbsolutePath() + File.separator + "ZDBTest12");
+
+		FileUtils.deleteDirRecursive(dir);
+		dir.mkdirs();
+
+		File rewritten = new File(dir, "rewritten.bin");
+		File unchanged = new File(dir, "unchanged.bin");
+		File created = new File(dir, "created.bin");
+		writeFile(rewritten, "old");
+		writeFile(unchanged, "same");
+
+		ZDBJournal journal = new ZDBJournal(dir);
+		journal.moveAside(rewritten);
+		journal.moveAside(unchanged);
+		journal.moveAside(created);
+		writeFile(rewritten, "new content");
+		writeFile(created, "new");
+		journal.restoreIfMissing(unchanged);
+		journal.restoreIfMissing(rewritten);
+		assertEquals("same", readFile(unchanged));
+		assertEquals("new content", readFile(rewritten));
+
+		// crash before the commit
+		journal.close();
+		assertEquals(3, ZDBJournal.recover(dir));
+		assertEquals("old", readFile(rewritten));
+		assertEquals("same", readFile(unchanged));
+		assertTrue(!created.exists());
+
+		// a commit keeps the new versions and drops the old ones
+		journal = new ZDBJournal(dir);
+		journal.moveAside(rewritten);
+		writeFile(rewritten, "new content");
+		journal.commit();
+		journal.close();
+		assertEquals(0, ZDBJournal.recover(dir));
+		assertEquals("new content", readFile(rewritten));
+		assertEquals(2, dir.list().length);
+	}
+
+	private static void writeFile(File aFile, String aContent) throws Exception {
+		FileOutputStream out = new FileOutputStream(aFile);
+		try {
+			out.write(aContent.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String readFile(File aFile) throws Exception {
+		return new String(Files.readAllBytes(aFile.toPath()), "UTF-8");
+	}
+
+	private HashMap<String, ArrayList<Long>> createObject(int aIdx) {
+		HashMap<String, ArrayList<Long>> obj = new HashMap<String, ArrayList<Long>>();
+		ArrayList<Long> l = new ArrayList<Long>();
+		for (int i = 0; i < aIdx % 10; i++) {
+			l.add((long) aIdx * i);
+		}
+		obj.put("Object #" + aIdx, l);
+		return obj;
+	}
+
 	@After
 	public void tearDown() {
 		if (fZDB != null) {